@@ -0,0 +1,52 @@
+package com.sketchflow.sketchflow_backend.cluster;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Single-node bus (default): there are no other nodes, so nothing leaves the process
+ */
+@Component
+@ConditionalOnProperty(name = "whiteboard.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalEventBus implements WhiteboardEventBus {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong published = new AtomicLong();
+
+    @Override
+    public void publish(String sessionId, WebSocketMessage message) {
+        published.incrementAndGet();
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, WebSocketMessage> listener) {
+        // No remote events to deliver
+    }
+
+    @Override
+    public void addGapListener(Consumer<String> listener) {
+        // No remote events to lose
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("type", "local");
+        stats.put("nodeId", nodeId);
+        stats.put("published", published.get());
+        return stats;
+    }
+}
@@ -0,0 +1,441 @@
+package com.sketchflow.sketchflow_backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchflow.sketchflow_backend.codec.PointCodec;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Event bus over UDP multicast.
+ *
+ * Each event is sent as one or more datagrams: magic, version, origin nodeId, sessionId,
+ * per-(node, session) sequence, fragment index/count, then a slice of the JSON payload.
+ * Receivers reassemble fragments and pass each (origin, session) stream through an
+ * {@link OrderedStream}, which drops duplicates and restores publish order. A gap the stream
+ * has to skip is reported to the gap listeners, since the events in it are gone for good.
+ * With the default TTL of 0 datagrams never leave the host, so several instances can be
+ * run side by side locally; raise the TTL to span a LAN.
+ */
+@Component
+@ConditionalOnProperty(name = "whiteboard.bus.type", havingValue = "multicast")
+public class MulticastEventBus implements WhiteboardEventBus {
+
+    private static final Logger logger = Logger.getLogger(MulticastEventBus.class.getName());
+
+    private static final byte MAGIC = 0x57;
+    private static final byte VERSION = 1;
+    // Up to 11 IP fragments on a standard 1500-byte MTU; losing any one of them loses the
+    // datagram, and the reorder window turns that into a gap (see OrderedStream)
+    private static final int MAX_FRAGMENT_PAYLOAD = 16000;
+    private static final int MAX_DATAGRAM = 65507;
+    private static final int MAX_FRAGMENTS = 1024;
+    private static final int MAX_PARTIAL_EVENTS = 1024;
+    private static final long PARTIAL_TIMEOUT_MS = 5000;
+    private static final long STREAM_IDLE_MS = 10 * 60 * 1000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<BiConsumer<String, WebSocketMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> gapListeners = new CopyOnWriteArrayList<>();
+
+    // Map: sessionId -> outgoing sequence state
+    private final Map<String, SenderState> senders = new ConcurrentHashMap<>();
+
+    // Receiver-thread state: (node|session) -> stream, (node|session|seq) -> fragments
+    private final Map<String, OrderedStream> streams = new HashMap<>();
+    private final Map<String, PartialEvent> partials = new HashMap<>();
+
+    private MulticastSocket socket;
+    private InetSocketAddress groupAddress;
+    private Thread receiverThread;
+    private volatile boolean running;
+
+    // Metrics
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong datagramsSent = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong gapsReported = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${whiteboard.bus.multicast.group:239.255.42.99}")
+    private String group;
+
+    @Value("${whiteboard.bus.multicast.port:47999}")
+    private int port;
+
+    @Value("${whiteboard.bus.multicast.ttl:0}")
+    private int ttl;
+
+    @Value("${whiteboard.bus.multicast.interface:}")
+    private String interfaceName;
+
+    @Value("${whiteboard.bus.multicast.receive-buffer:4194304}")
+    private int receiveBufferSize;
+
+    @Value("${whiteboard.bus.reorder-window:64}")
+    private int reorderWindow;
+
+    @Value("${whiteboard.bus.reorder-hold-ms:200}")
+    private long reorderHoldMs;
+
+    @PostConstruct
+    public void start() {
+        try {
+            groupAddress = new InetSocketAddress(InetAddress.getByName(group), port);
+            NetworkInterface networkInterface = interfaceName == null || interfaceName.isBlank()
+                ? null : NetworkInterface.getByName(interfaceName);
+
+            socket = new MulticastSocket(null);
+            socket.setReuseAddress(true);
+            // Bursts of fragments overflow the default socket buffer (capped by net.core.rmem_max)
+            socket.setReceiveBufferSize(receiveBufferSize);
+            socket.bind(new InetSocketAddress(port));
+            if (networkInterface != null) {
+                socket.setNetworkInterface(networkInterface);
+            }
+            socket.setTimeToLive(ttl);
+            socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            socket.joinGroup(groupAddress, networkInterface);
+            socket.setSoTimeout(100);
+
+            running = true;
+            receiverThread = new Thread(this::receiveLoop, "Whiteboard-BusReceiver");
+            receiverThread.setDaemon(true);
+            receiverThread.start();
+
+            logger.info("Multicast event bus node " + nodeId + " joined " + group + ":" + port + " (ttl " + ttl + ")");
+        } catch (Exception e) {
+            logger.severe("Failed to start multicast event bus, running single-node: " + e.getMessage());
+            running = false;
+        }
+    }
+
+    @Override
+    public void publish(String sessionId, WebSocketMessage message) {
+        if (!running || sessionId == null) {
+            return;
+        }
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(message);
+        } catch (Exception e) {
+            logger.severe("Error serializing bus event: " + e.getMessage());
+            sendErrors.incrementAndGet();
+            return;
+        }
+
+        SenderState sender = senders.computeIfAbsent(sessionId, k -> new SenderState());
+        // Sequence and send under one lock so datagram order matches sequence order
+        synchronized (sender) {
+            long seq = sender.nextSeq++;
+            sender.lastUse = System.currentTimeMillis();
+            sendFragments(sessionId, seq, payload);
+        }
+        published.incrementAndGet();
+    }
+
+    private void sendFragments(String sessionId, long seq, byte[] payload) {
+        int count = Math.max(1, (payload.length + MAX_FRAGMENT_PAYLOAD - 1) / MAX_FRAGMENT_PAYLOAD);
+        for (int i = 0; i < count; i++) {
+            int offset = i * MAX_FRAGMENT_PAYLOAD;
+            int length = Math.min(MAX_FRAGMENT_PAYLOAD, payload.length - offset);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length + 128);
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeString(out, nodeId);
+            writeString(out, sessionId);
+            PointCodec.writeVarLong(out, seq);
+            PointCodec.writeVarInt(out, i);
+            PointCodec.writeVarInt(out, count);
+            out.write(payload, offset, length);
+
+            byte[] datagram = out.toByteArray();
+            try {
+                socket.send(new DatagramPacket(datagram, datagram.length, groupAddress));
+                datagramsSent.incrementAndGet();
+            } catch (Exception e) {
+                sendErrors.incrementAndGet();
+                logger.warning("Error sending bus datagram: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[MAX_DATAGRAM];
+        long lastMaintenance = System.currentTimeMillis();
+
+        while (running) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+                handleDatagram(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()));
+            } catch (SocketTimeoutException e) {
+                // Wake up for maintenance
+            } catch (Exception e) {
+                if (running) {
+                    logger.warning("Error receiving bus datagram: " + e.getMessage());
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastMaintenance >= 50) {
+                maintain(now);
+                lastMaintenance = now;
+            }
+        }
+    }
+
+    private void handleDatagram(ByteBuffer in) {
+        String origin;
+        String sessionId;
+        long seq;
+        int index;
+        int count;
+        try {
+            if (in.get() != MAGIC || in.get() != VERSION) {
+                malformed.incrementAndGet();
+                return;
+            }
+            origin = readString(in);
+            sessionId = readString(in);
+            seq = PointCodec.readVarLong(in);
+            index = PointCodec.readVarInt(in);
+            count = PointCodec.readVarInt(in);
+        } catch (RuntimeException e) {
+            malformed.incrementAndGet();
+            return;
+        }
+        if (nodeId.equals(origin)) {
+            // Our own datagram looped back
+            return;
+        }
+        if (origin == null || sessionId == null || count <= 0 || count > MAX_FRAGMENTS || index < 0 || index >= count) {
+            malformed.incrementAndGet();
+            return;
+        }
+        received.incrementAndGet();
+
+        byte[] chunk = new byte[in.remaining()];
+        in.get(chunk);
+
+        byte[] payload;
+        if (count == 1) {
+            payload = chunk;
+        } else {
+            String key = origin + "|" + sessionId + "|" + seq;
+            PartialEvent partial = partials.get(key);
+            if (partial == null) {
+                if (partials.size() >= MAX_PARTIAL_EVENTS) {
+                    malformed.incrementAndGet();
+                    return;
+                }
+                partial = new PartialEvent(count);
+                partials.put(key, partial);
+            }
+            payload = partial.add(index, chunk);
+            if (payload == null) {
+                return;
+            }
+            partials.remove(key);
+        }
+
+        WebSocketMessage message;
+        try {
+            message = objectMapper.readValue(payload, WebSocketMessage.class);
+        } catch (Exception e) {
+            malformed.incrementAndGet();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        OrderedStream stream = streams.computeIfAbsent(origin + "|" + sessionId,
+            k -> new OrderedStream(reorderWindow, reorderHoldMs, duplicates, skipped));
+        deliver(sessionId, stream, stream.offer(seq, message, now));
+    }
+
+    private void maintain(long now) {
+        Iterator<Map.Entry<String, OrderedStream>> it = streams.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, OrderedStream> entry = it.next();
+            String key = entry.getKey();
+            deliver(key.substring(key.indexOf('|') + 1), entry.getValue(), entry.getValue().expire(now));
+            if (now - entry.getValue().lastActivity > STREAM_IDLE_MS) {
+                it.remove();
+            }
+        }
+        partials.values().removeIf(p -> now - p.firstSeen > PARTIAL_TIMEOUT_MS);
+        senders.values().removeIf(s -> now - s.lastUse > STREAM_IDLE_MS);
+    }
+
+    private void deliver(String sessionId, OrderedStream stream, List<WebSocketMessage> messages) {
+        for (WebSocketMessage message : messages) {
+            delivered.incrementAndGet();
+            for (BiConsumer<String, WebSocketMessage> listener : listeners) {
+                try {
+                    listener.accept(sessionId, message);
+                } catch (Exception e) {
+                    logger.warning("Error delivering bus event: " + e.getMessage());
+                }
+            }
+        }
+        if (stream.takeSkippedGap()) {
+            gapsReported.incrementAndGet();
+            for (Consumer<String> listener : gapListeners) {
+                try {
+                    listener.accept(sessionId);
+                } catch (Exception e) {
+                    logger.warning("Error reporting bus gap: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, WebSocketMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addGapListener(Consumer<String> listener) {
+        gapListeners.add(listener);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("type", "multicast");
+        stats.put("nodeId", nodeId);
+        stats.put("running", running);
+        stats.put("group", group + ":" + port);
+        stats.put("published", published.get());
+        stats.put("datagramsSent", datagramsSent.get());
+        stats.put("sendErrors", sendErrors.get());
+        stats.put("received", received.get());
+        stats.put("delivered", delivered.get());
+        stats.put("duplicatesDropped", duplicates.get());
+        stats.put("gapsSkipped", skipped.get());
+        stats.put("gapsReported", gapsReported.get());
+        stats.put("malformed", malformed.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (socket != null) {
+            try {
+                socket.leaveGroup(groupAddress, null);
+            } catch (Exception e) {
+                // Closing anyway
+            }
+            socket.close();
+        }
+        if (receiverThread != null) {
+            receiverThread.interrupt();
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        PointCodec.writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = PointCodec.readVarInt(in);
+        if (len == 0) {
+            return null;
+        }
+        len -= 1;
+        if (len > in.remaining()) {
+            throw new IllegalArgumentException("String length " + len + " exceeds datagram size");
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Outgoing sequence of one session; starts at ms * 1000 so it keeps increasing if recreated
+     */
+    private static class SenderState {
+        long nextSeq = System.currentTimeMillis() * 1000;
+        volatile long lastUse = System.currentTimeMillis();
+    }
+
+    /**
+     * Fragments of one event being reassembled
+     */
+    private static class PartialEvent {
+        final byte[][] parts;
+        final long firstSeen = System.currentTimeMillis();
+        int received;
+        int totalLength;
+
+        PartialEvent(int count) {
+            this.parts = new byte[count][];
+        }
+
+        /**
+         * @return the whole payload once every fragment is present, otherwise null
+         */
+        byte[] add(int index, byte[] chunk) {
+            if (index >= parts.length || parts[index] != null) {
+                return null;
+            }
+            parts[index] = chunk;
+            received++;
+            totalLength += chunk.length;
+            if (received < parts.length) {
+                return null;
+            }
+            byte[] payload = new byte[totalLength];
+            int offset = 0;
+            for (byte[] part : parts) {
+                System.arraycopy(part, 0, payload, offset, part.length);
+                offset += part.length;
+            }
+            return payload;
+        }
+    }
+}
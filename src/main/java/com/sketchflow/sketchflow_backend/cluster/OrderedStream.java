@@ -0,0 +1,108 @@
+package com.sketchflow.sketchflow_backend.cluster;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery order for the events of one session from one origin node.
+ * Duplicates (seq already delivered) are dropped; events that arrive early are held until
+ * the gap fills, and a gap is skipped once the reorder window overflows or the oldest held
+ * event has waited longer than the hold time; the skipped events are reported lost through
+ * {@link #takeSkippedGap}. Not thread-safe; used by the receiver thread.
+ */
+class OrderedStream {
+
+    private final int window;
+    private final long maxHoldMs;
+    private final AtomicLong duplicates;
+    private final AtomicLong skipped;
+
+    private final TreeMap<Long, WebSocketMessage> pending = new TreeMap<>();
+    private long nextExpected = -1;
+    private long oldestPendingSince;
+    private boolean gapSkipped;
+    long lastActivity;
+
+    OrderedStream(int window, long maxHoldMs, AtomicLong duplicates, AtomicLong skipped) {
+        this.window = window;
+        this.maxHoldMs = maxHoldMs;
+        this.duplicates = duplicates;
+        this.skipped = skipped;
+    }
+
+    /**
+     * Accept an event and return whatever is now deliverable, in order
+     */
+    List<WebSocketMessage> offer(long seq, WebSocketMessage message, long now) {
+        lastActivity = now;
+        if (nextExpected < 0) {
+            // First event seen from this stream
+            nextExpected = seq;
+        }
+        if (seq < nextExpected || pending.containsKey(seq)) {
+            duplicates.incrementAndGet();
+            return Collections.emptyList();
+        }
+        if (seq > nextExpected) {
+            if (pending.isEmpty()) {
+                oldestPendingSince = now;
+            }
+            pending.put(seq, message);
+            if (pending.size() > window) {
+                return skipGap(now);
+            }
+            return Collections.emptyList();
+        }
+
+        List<WebSocketMessage> ready = new ArrayList<>();
+        ready.add(message);
+        nextExpected++;
+        drainConsecutive(ready, now);
+        return ready;
+    }
+
+    /**
+     * Give up on a gap that has been open longer than the hold time
+     */
+    List<WebSocketMessage> expire(long now) {
+        if (!pending.isEmpty() && now - oldestPendingSince >= maxHoldMs) {
+            return skipGap(now);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<WebSocketMessage> skipGap(long now) {
+        long first = pending.firstKey();
+        skipped.addAndGet(first - nextExpected);
+        nextExpected = first;
+        gapSkipped = true;
+        List<WebSocketMessage> ready = new ArrayList<>();
+        drainConsecutive(ready, now);
+        return ready;
+    }
+
+    /**
+     * Whether a gap was skipped since the last call: events were lost, not just late
+     */
+    boolean takeSkippedGap() {
+        boolean gap = gapSkipped;
+        gapSkipped = false;
+        return gap;
+    }
+
+    private void drainConsecutive(List<WebSocketMessage> ready, long now) {
+        Map.Entry<Long, WebSocketMessage> head;
+        while ((head = pending.firstEntry()) != null && head.getKey() == nextExpected) {
+            pending.pollFirstEntry();
+            ready.add(head.getValue());
+            nextExpected++;
+        }
+        oldestPendingSince = now;
+    }
+}
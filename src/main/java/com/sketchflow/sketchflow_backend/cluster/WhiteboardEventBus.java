@@ -0,0 +1,42 @@
+package com.sketchflow.sketchflow_backend.cluster;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Inter-node broadcast bus for whiteboard session events.
+ * A node publishes each session event once; every other node delivers it to its own
+ * connections. Implementations drop duplicates and deliver each origin node's events
+ * for a session in the order they were published.
+ */
+public interface WhiteboardEventBus {
+
+    /**
+     * Publish a session event to all other nodes
+     */
+    void publish(String sessionId, WebSocketMessage message);
+
+    /**
+     * Register a consumer for events published by other nodes
+     */
+    void addListener(BiConsumer<String, WebSocketMessage> listener);
+
+    /**
+     * Register a consumer told the sessionId whenever events another node published for it
+     * were lost; state built from those events must be reloaded from the database
+     */
+    void addGapListener(Consumer<String> listener);
+
+    /**
+     * Identifier of this node on the bus
+     */
+    String getNodeId();
+
+    /**
+     * Get bus statistics
+     */
+    Map<String, Object> getStatistics();
+}
@@ -0,0 +1,122 @@
+package com.sketchflow.sketchflow_backend.codec;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.bson.BsonBinarySubType;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spring Data converters storing {@link DrawingAction.Coordinates} points as packed binary.
+ *
+ * The points field becomes BSON binary (user-defined subtype): one version byte followed by
+ * a {@link PointCodec} point array (delta + zigzag varints, quantized to 1/scale pixel),
+ * instead of an array of {x, y} sub-documents. start and end stay {x, y} documents.
+ * Reading accepts both forms, so documents written before packing keep loading.
+ */
+public final class CoordinatesConverters {
+
+    /** Delta/zigzag varint point array as written by PointCodec.writePoints */
+    public static final byte VERSION_DELTA_VARINT = 1;
+
+    private CoordinatesConverters() {
+    }
+
+    /**
+     * Pack a point list: version byte, then the PointCodec array
+     */
+    public static byte[] pack(List<DrawingAction.Point> points, int scale) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + (points == null ? 0 : points.size() * 4));
+        out.write(VERSION_DELTA_VARINT);
+        PointCodec.writePoints(out, points, scale);
+        return out.toByteArray();
+    }
+
+    /**
+     * Unpack a point list written by {@link #pack}
+     */
+    public static List<DrawingAction.Point> unpack(byte[] packed) {
+        ByteBuffer in = ByteBuffer.wrap(packed);
+        byte version = in.get();
+        if (version != VERSION_DELTA_VARINT) {
+            throw new IllegalArgumentException("Unsupported packed point version " + version);
+        }
+        return PointCodec.readPoints(in);
+    }
+
+    @WritingConverter
+    public static class PackedWriter implements Converter<DrawingAction.Coordinates, Document> {
+        private final int scale;
+
+        public PackedWriter(int scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        public Document convert(DrawingAction.Coordinates source) {
+            Document document = new Document();
+            if (source.getPoints() != null) {
+                document.put("points", new Binary(BsonBinarySubType.USER_DEFINED, pack(source.getPoints(), scale)));
+            }
+            if (source.getStart() != null) {
+                document.put("start", writePoint(source.getStart()));
+            }
+            if (source.getEnd() != null) {
+                document.put("end", writePoint(source.getEnd()));
+            }
+            return document;
+        }
+    }
+
+    @ReadingConverter
+    public static class Reader implements Converter<Document, DrawingAction.Coordinates> {
+        @Override
+        public DrawingAction.Coordinates convert(Document source) {
+            return new DrawingAction.Coordinates(
+                readPoints(source.get("points")),
+                readPoint(source.get("start")),
+                readPoint(source.get("end")));
+        }
+    }
+
+    private static Document writePoint(DrawingAction.Point point) {
+        return new Document("x", point.getX()).append("y", point.getY());
+    }
+
+    private static List<DrawingAction.Point> readPoints(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Binary binary) {
+            return unpack(binary.getData());
+        }
+        if (value instanceof byte[] bytes) {
+            return unpack(bytes);
+        }
+        // Documents written before packing: an array of {x, y}
+        List<?> list = (List<?>) value;
+        List<DrawingAction.Point> points = new ArrayList<>(list.size());
+        for (Object element : list) {
+            points.add(readPoint(element));
+        }
+        return points;
+    }
+
+    private static DrawingAction.Point readPoint(Object value) {
+        if (!(value instanceof Document document)) {
+            return null;
+        }
+        return new DrawingAction.Point(number(document.get("x")), number(document.get("y")));
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number n ? n.doubleValue() : 0;
+    }
+}
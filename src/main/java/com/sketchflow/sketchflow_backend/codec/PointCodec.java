@@ -0,0 +1,147 @@
+package com.sketchflow.sketchflow_backend.codec;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact encoding primitives for point data: LEB128 varints, zigzag signed integers
+ * and delta-encoded, fixed-point quantized point arrays.
+ *
+ * A point array is written as: varint count, varint scale, then the first point as
+ * absolute zigzag varints and every following point as a zigzag delta from its predecessor.
+ * Coordinates are quantized to 1/scale pixel, so a freehand stroke typically costs
+ * 2-4 bytes per point instead of two 8-byte doubles.
+ */
+public final class PointCodec {
+
+    // Default quantization: 0.1 px
+    public static final int DEFAULT_SCALE = 10;
+
+    private PointCodec() {
+    }
+
+    public static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        while (shift < 64) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static void writeVarInt(ByteArrayOutputStream out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Varint out of int range");
+        }
+        return (int) value;
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeSignedVarLong(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, zigzag(value));
+    }
+
+    public static long readSignedVarLong(ByteBuffer in) {
+        return unzigzag(readVarLong(in));
+    }
+
+    /**
+     * Quantize a coordinate to fixed point
+     */
+    public static long quantize(double value, int scale) {
+        return Math.round(value * scale);
+    }
+
+    /**
+     * Write a delta-encoded point array
+     */
+    public static void writePoints(ByteArrayOutputStream out, List<DrawingAction.Point> points, int scale) {
+        int count = points == null ? 0 : points.size();
+        writeVarInt(out, count);
+        writeVarInt(out, scale);
+
+        long prevX = 0;
+        long prevY = 0;
+        for (int i = 0; i < count; i++) {
+            DrawingAction.Point p = points.get(i);
+            long x = quantize(p.getX(), scale);
+            long y = quantize(p.getY(), scale);
+            writeSignedVarLong(out, x - prevX);
+            writeSignedVarLong(out, y - prevY);
+            prevX = x;
+            prevY = y;
+        }
+    }
+
+    /**
+     * Read a point array written by {@link #writePoints}
+     */
+    public static List<DrawingAction.Point> readPoints(ByteBuffer in) {
+        int count = readVarInt(in);
+        int scale = readVarInt(in);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Invalid point scale " + scale);
+        }
+        // Each point needs at least two bytes; reject counts the buffer cannot hold
+        if (count > in.remaining() / 2) {
+            throw new IllegalArgumentException("Point count " + count + " exceeds frame size");
+        }
+
+        List<DrawingAction.Point> points = new ArrayList<>(count);
+        long x = 0;
+        long y = 0;
+        for (int i = 0; i < count; i++) {
+            x += readSignedVarLong(in);
+            y += readSignedVarLong(in);
+            points.add(new DrawingAction.Point((double) x / scale, (double) y / scale));
+        }
+        return points;
+    }
+
+    /**
+     * Write a single absolute point
+     */
+    public static void writePoint(ByteArrayOutputStream out, DrawingAction.Point point, int scale) {
+        writeSignedVarLong(out, quantize(point.getX(), scale));
+        writeSignedVarLong(out, quantize(point.getY(), scale));
+    }
+
+    public static DrawingAction.Point readPoint(ByteBuffer in, int scale) {
+        long x = readSignedVarLong(in);
+        long y = readSignedVarLong(in);
+        return new DrawingAction.Point((double) x / scale, (double) y / scale);
+    }
+}
@@ -5,8 +5,15 @@ import org.springframework.data.mongodb.repository.config.EnableMongoRepositorie
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sketchflow.sketchflow_backend.codec.CoordinatesConverters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class MongoConfig {
@@ -28,4 +35,28 @@ public class MongoConfig {
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         return mapper;
     }
+
+    /**
+     * Drawing action points are stored packed (see CoordinatesConverters) unless
+     * whiteboard.persistence.points.encoding=documents; both forms are always readable.
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions(
+            @Value("${whiteboard.persistence.points.encoding:packed}") String pointEncoding,
+            @Value("${whiteboard.persistence.points.scale:100}") int pointScale) {
+        List<Object> converters = new ArrayList<>();
+        converters.add(new CoordinatesConverters.Reader());
+        if ("packed".equalsIgnoreCase(pointEncoding)) {
+            converters.add(new CoordinatesConverters.PackedWriter(pointScale));
+        }
+        return new MongoCustomConversions(converters);
+    }
+
+    /**
+     * Let the query plan monitor see every command the driver sends
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer queryPlanMonitorCustomizer(QueryPlanMonitor queryPlanMonitor) {
+        return builder -> builder.addCommandListener(queryPlanMonitor);
+    }
 }
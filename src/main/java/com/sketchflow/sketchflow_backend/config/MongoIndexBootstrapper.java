@@ -0,0 +1,257 @@
+package com.sketchflow.sketchflow_backend.config;
+
+import com.sketchflow.sketchflow_backend.model.ActiveUserSession;
+import com.sketchflow.sketchflow_backend.model.ActivityLog;
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.model.CanvasSnapshot;
+import com.sketchflow.sketchflow_backend.model.ChatMessage;
+import com.sketchflow.sketchflow_backend.model.DirectMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.model.Notification;
+import com.sketchflow.sketchflow_backend.model.SessionStats;
+import com.sketchflow.sketchflow_backend.model.User;
+import com.sketchflow.sketchflow_backend.model.VoiceChat;
+import com.sketchflow.sketchflow_backend.model.WhiteboardSession;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepositoryCustom;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Creates the indexes our hot queries need, since spring.data.mongodb.auto-index-creation is off.
+ * Every index is declared here next to the query it serves and applied with createIndexes,
+ * which is a no-op when an identical index already exists. This runs in the background once
+ * the application is ready and is retried until every index has been applied.
+ */
+@Component
+public class MongoIndexBootstrapper {
+
+    private static final Logger logger = Logger.getLogger(MongoIndexBootstrapper.class.getName());
+
+    /**
+     * An index, the collection it belongs to and the repository query it is for
+     */
+    public record IndexSpec(Class<?> entity, String collection, Index index, String servesQuery) {
+        public IndexSpec(Class<?> entity, Index index, String servesQuery) {
+            this(entity, null, index, servesQuery);
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${whiteboard.mongo.indexes.enabled:true}")
+    private boolean enabled;
+
+    @Value("${whiteboard.mongo.indexes.retry-interval-ms:60000}")
+    private long retryIntervalMs;
+
+    // Backstop for presence rows the periodic cleanup missed (0 disables the TTL)
+    @Value("${whiteboard.mongo.indexes.active-session-ttl-hours:24}")
+    private long activeSessionTtlHours;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-IndexBootstrap");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // index description -> last result ("ok" or the error)
+    private final Map<String, String> results = new LinkedHashMap<>();
+    private final AtomicLong attempts = new AtomicLong();
+    private volatile boolean complete;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            executor.execute(this::applyUntilComplete);
+        }
+    }
+
+    /**
+     * The indexes required by the repositories
+     */
+    public List<IndexSpec> getIndexSpecs() {
+        List<IndexSpec> specs = new ArrayList<>();
+
+        // DrawingActionRepository: checkpoint tails (find, stream, count) and compaction within a
+        // clear epoch, epoch collection, deleteBySessionId
+        specs.add(new IndexSpec(DrawingAction.class,
+            new Index().on("sessionId", Sort.Direction.ASC).on("epoch", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            "drawing_actions by session and epoch in (timestamp, _id) order"));
+
+        // ChatMessageRepository.findBySessionIdOrderByTimestampAsc and keyset pages
+        specs.add(new IndexSpec(ChatMessage.class,
+            new Index().on("sessionId", Sort.Direction.ASC).on("timestamp", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            "chat history by session in (timestamp, _id) order"));
+
+        // ActivityLogRepository: newest first, overall and per filter, plus countByTimestampAfter
+        specs.add(new IndexSpec(ActivityLog.class,
+            new Index().on("timestamp", Sort.Direction.DESC).on("_id", Sort.Direction.DESC),
+            "activity logs newest first, countByTimestampAfter"));
+        for (String filter : List.of("userId", "action", "severity")) {
+            specs.add(new IndexSpec(ActivityLog.class,
+                new Index().on(filter, Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC).on("_id", Sort.Direction.DESC),
+                "activity logs by " + filter + " newest first"));
+        }
+
+        // ActiveUserSessionRepository: findBySessionId, findByUserIdAndSessionId, deleteBy...
+        specs.add(new IndexSpec(ActiveUserSession.class,
+            new Index().on("sessionId", Sort.Direction.ASC).on("userId", Sort.Direction.ASC),
+            "active users by session (and user)"));
+        // findByLastActivityBefore; doubles as a TTL that removes rows nobody cleaned up
+        Index lastActivity = new Index().on("lastActivity", Sort.Direction.ASC);
+        if (activeSessionTtlHours > 0) {
+            lastActivity.expire(Duration.ofHours(activeSessionTtlHours));
+        }
+        specs.add(new IndexSpec(ActiveUserSession.class, lastActivity,
+            "findByLastActivityBefore" + (activeSessionTtlHours > 0 ? ", TTL " + activeSessionTtlHours + "h" : "")));
+
+        // NotificationRepository: unread per receiver (and its count), all per receiver
+        specs.add(new IndexSpec(Notification.class,
+            new Index().on("receiverId", Sort.Direction.ASC).on("read", Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC),
+            "findByReceiverIdAndReadFalseOrderByTimestampDesc, countByReceiverIdAndReadFalse"));
+        specs.add(new IndexSpec(Notification.class,
+            new Index().on("receiverId", Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC),
+            "findByReceiverIdOrderByTimestampDesc"));
+
+        // VoiceChatRepository.findConversationBetween: each $or branch is an equality on both fields
+        specs.add(new IndexSpec(VoiceChat.class,
+            new Index().on("senderId", Sort.Direction.ASC).on("receiverId", Sort.Direction.ASC),
+            "findConversationBetween ($or of sender/receiver pairs)"));
+
+        // DirectMessageRepository
+        specs.add(new IndexSpec(DirectMessage.class,
+            new Index().on("conversationId", Sort.Direction.ASC).on("timestamp", Sort.Direction.ASC),
+            "findByConversationId sorted by timestamp"));
+        specs.add(new IndexSpec(DirectMessage.class,
+            new Index().on("conversationId", Sort.Direction.ASC).on("receiverUsername", Sort.Direction.ASC).on("read", Sort.Direction.ASC),
+            "unread messages per conversation and receiver (find and count)"));
+        specs.add(new IndexSpec(DirectMessage.class,
+            new Index().on("senderUsername", Sort.Direction.ASC),
+            "findBySenderUsernameOrReceiverUsername (sender branch)"));
+        specs.add(new IndexSpec(DirectMessage.class,
+            new Index().on("receiverUsername", Sort.Direction.ASC),
+            "findBySenderUsernameOrReceiverUsername (receiver branch)"));
+
+        // CanvasSnapshotRepository
+        specs.add(new IndexSpec(CanvasSnapshot.class,
+            new Index().on("sessionId", Sort.Direction.ASC).on("createdAt", Sort.Direction.DESC),
+            "findBySessionIdOrderByCreatedAtDesc"));
+        specs.add(new IndexSpec(CanvasSnapshot.class,
+            new Index().on("createdBy", Sort.Direction.ASC),
+            "findByCreatedBy"));
+
+        // CanvasCheckpointStore: latest header per session and epoch, parts by id; compaction sweep
+        specs.add(new IndexSpec(CanvasCheckpoint.class,
+            new Index().on("sessionId", Sort.Direction.ASC).on("epoch", Sort.Direction.ASC)
+                .on("part", Sort.Direction.ASC).on("generation", Sort.Direction.DESC),
+            "findBySessionIdAndEpochAndPartOrderByGenerationDesc, deleteBySessionIdAndEpochLessThan"));
+        specs.add(new IndexSpec(CanvasCheckpoint.class,
+            new Index().on("part", Sort.Direction.ASC).on("compacted", Sort.Direction.ASC).on("upToTimestamp", Sort.Direction.ASC),
+            "findByPartAndCompactedFalseAndUpToTimestampBefore"));
+        // CanvasEpochRepository.findByCollectedFalse: sessions the epoch collector still has to visit
+        specs.add(new IndexSpec(CanvasEpoch.class, new Index().on("collected", Sort.Direction.ASC), "findByCollectedFalse"));
+        // SessionStatsRepository.findByDirtyTrueAndUpdatedAtBefore: counters the reconciliation job has to recount
+        specs.add(new IndexSpec(SessionStats.class,
+            new Index().on("dirty", Sort.Direction.ASC).on("updatedAt", Sort.Direction.ASC),
+            "findByDirtyTrueAndUpdatedAtBefore"));
+        // Actions moved out of drawing_actions by compaction, read back per session in order
+        specs.add(new IndexSpec(DrawingAction.class, DrawingActionRepositoryCustom.ARCHIVE_COLLECTION,
+            new Index().on("sessionId", Sort.Direction.ASC).on("timestamp", Sort.Direction.ASC).on("_id", Sort.Direction.ASC),
+            "archived drawing actions by session in (timestamp, _id) order"));
+
+        // UserRepository: same unique indexes the entity declares with @Indexed
+        specs.add(new IndexSpec(User.class, new Index().on("username", Sort.Direction.ASC).unique(), "findByUsername"));
+        specs.add(new IndexSpec(User.class, new Index().on("email", Sort.Direction.ASC).unique(), "findByEmail"));
+        specs.add(new IndexSpec(User.class, new Index().on("status", Sort.Direction.ASC), "findByStatus"));
+
+        // WhiteboardSessionRepository
+        specs.add(new IndexSpec(WhiteboardSession.class, new Index().on("createdBy", Sort.Direction.ASC), "findByCreatedBy"));
+        specs.add(new IndexSpec(WhiteboardSession.class, new Index().on("isActive", Sort.Direction.ASC), "findByIsActiveTrue"));
+        specs.add(new IndexSpec(WhiteboardSession.class, new Index().on("activeUsers", Sort.Direction.ASC), "findByActiveUsersContaining"));
+
+        return specs;
+    }
+
+    /**
+     * Apply every declared index once
+     * @return the number of indexes that could not be applied
+     */
+    public int applyAll() {
+        attempts.incrementAndGet();
+        int failures = 0;
+        for (IndexSpec spec : getIndexSpecs()) {
+            String collection = spec.collection() != null ? spec.collection() : mongoTemplate.getCollectionName(spec.entity());
+            String key = collection + " " + spec.index().getIndexKeys().toJson();
+            try {
+                mongoTemplate.indexOps(collection).ensureIndex(spec.index());
+                record(key, "ok");
+            } catch (Exception e) {
+                // e.g. an index on the same keys with other options, or duplicates under a unique index
+                failures++;
+                record(key, "failed: " + e.getMessage());
+                logger.warning("Could not apply index " + key + " (" + spec.servesQuery() + "): " + e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    private void applyUntilComplete() {
+        int failures;
+        try {
+            failures = applyAll();
+        } catch (Exception e) {
+            failures = -1;
+            logger.warning("Index bootstrap failed: " + e.getMessage());
+        }
+        if (failures == 0) {
+            complete = true;
+            logger.info("Applied " + getIndexSpecs().size() + " MongoDB indexes");
+        } else if (!executor.isShutdown()) {
+            executor.schedule(this::applyUntilComplete, retryIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void record(String key, String result) {
+        synchronized (results) {
+            results.put(key, result);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("complete", complete);
+        stats.put("attempts", attempts.get());
+        synchronized (results) {
+            stats.put("indexes", new LinkedHashMap<>(results));
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
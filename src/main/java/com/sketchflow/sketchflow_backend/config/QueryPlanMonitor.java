@@ -0,0 +1,266 @@
+package com.sketchflow.sketchflow_backend.config;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Reports queries that run as collection scans.
+ * Registered as a driver command listener, it records the shape of every find and count
+ * (collection, filter fields and operators, sort; never the values) and, in the background,
+ * explains each new shape once with the first values seen. Shapes whose winning plan contains
+ * a COLLSCAN stage are logged and listed in the statistics.
+ */
+@Component
+public class QueryPlanMonitor implements CommandListener {
+
+    private static final Logger logger = Logger.getLogger(QueryPlanMonitor.class.getName());
+
+    private static final Set<String> SYSTEM_DATABASES = Set.of("admin", "config", "local");
+
+    // Resolved lazily: the template's client is built with this listener
+    @Autowired
+    private ObjectProvider<MongoTemplate> mongoTemplate;
+
+    @Value("${whiteboard.mongo.query-plans.enabled:true}")
+    private boolean enabled;
+
+    @Value("${whiteboard.mongo.query-plans.check-interval-ms:30000}")
+    private long checkIntervalMs;
+
+    @Value("${whiteboard.mongo.query-plans.max-shapes:500}")
+    private int maxShapes;
+
+    // shape -> first command seen and its plan
+    private final Map<String, QueryShape> shapes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-QueryPlans");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong commandsSeen = new AtomicLong();
+    private final AtomicLong explained = new AtomicLong();
+    private final AtomicLong explainFailures = new AtomicLong();
+
+    private static final class QueryShape {
+        final String database;
+        final String collection;
+        final BsonDocument filter;
+        final BsonDocument sort;
+        final AtomicLong executions = new AtomicLong();
+        volatile String plan;
+        volatile boolean collectionScan;
+
+        QueryShape(String database, String collection, BsonDocument filter, BsonDocument sort) {
+            this.database = database;
+            this.collection = collection;
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::safeExplainPending, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!enabled || SYSTEM_DATABASES.contains(event.getDatabaseName())) {
+            return;
+        }
+        BsonDocument command = event.getCommand();
+        String collection;
+        BsonValue filter;
+        BsonValue sort = null;
+        switch (event.getCommandName()) {
+            case "find":
+                collection = command.getString("find").getValue();
+                filter = command.get("filter");
+                sort = command.get("sort");
+                break;
+            case "count":
+                collection = command.getString("count").getValue();
+                filter = command.get("query");
+                break;
+            default:
+                return;
+        }
+        commandsSeen.incrementAndGet();
+        BsonDocument filterDocument = filter != null && filter.isDocument() ? filter.asDocument() : new BsonDocument();
+        BsonDocument sortDocument = sort != null && sort.isDocument() ? sort.asDocument() : null;
+
+        String key = event.getDatabaseName() + "." + collection + " " + shapeOf(filterDocument) +
+            (sortDocument != null && !sortDocument.isEmpty() ? " sort " + sortDocument.toJson() : "");
+        QueryShape shape = shapes.get(key);
+        if (shape == null) {
+            if (shapes.size() >= maxShapes) {
+                return;
+            }
+            shape = shapes.computeIfAbsent(key, k -> new QueryShape(event.getDatabaseName(), collection,
+                filterDocument.clone(), sortDocument != null ? sortDocument.clone() : null));
+        }
+        shape.executions.incrementAndGet();
+    }
+
+    /**
+     * Filter with every value replaced by "?", keeping field names and operators
+     */
+    static String shapeOf(BsonValue value) {
+        if (value.isDocument()) {
+            StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(entry.getKey()).append(": ").append(shapeOf(entry.getValue()));
+            }
+            return sb.append('}').toString();
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            // $or / $and / $nor branches keep their structure; value lists collapse
+            if (!array.isEmpty() && array.get(0).isDocument()) {
+                List<String> parts = new ArrayList<>();
+                for (BsonValue element : array) {
+                    parts.add(shapeOf(element));
+                }
+                return parts.toString();
+            }
+            return "[?]";
+        }
+        return "?";
+    }
+
+    /**
+     * Whether the winning plan of an explain result scans the whole collection
+     */
+    public static boolean usesCollectionScan(Document explain) {
+        Object planner = explain.get("queryPlanner");
+        Object winningPlan = planner instanceof Document d ? d.get("winningPlan") : null;
+        return containsStage(winningPlan, "COLLSCAN");
+    }
+
+    /**
+     * Run explain (queryPlanner verbosity) for a find
+     */
+    public static Document explainFind(MongoTemplate template, String database, String collection,
+                                       BsonDocument filter, BsonDocument sort) {
+        BsonDocument find = new BsonDocument("find", new BsonString(collection)).append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        BsonDocument explain = new BsonDocument("explain", find)
+            .append("verbosity", new BsonString("queryPlanner"));
+        return template.getMongoDatabaseFactory().getMongoDatabase(database).runCommand(explain);
+    }
+
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            for (Object child : document.values()) {
+                if (containsStage(child, stage)) {
+                    return true;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object child : list) {
+                if (containsStage(child, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void safeExplainPending() {
+        try {
+            explainPending();
+        } catch (Exception e) {
+            logger.warning("Error checking query plans: " + e.getMessage());
+        }
+    }
+
+    private void explainPending() {
+        MongoTemplate template = mongoTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        shapes.forEach((key, shape) -> {
+            if (shape.plan != null) {
+                return;
+            }
+            try {
+                Document explain = explainFind(template, shape.database, shape.collection, shape.filter, shape.sort);
+                shape.collectionScan = usesCollectionScan(explain);
+                shape.plan = shape.collectionScan ? "COLLSCAN" : "indexed";
+                explained.incrementAndGet();
+                if (shape.collectionScan) {
+                    logger.warning("Query runs as a collection scan: " + key);
+                }
+            } catch (Exception e) {
+                // Not retried: mark it so a failing explain is not repeated every interval
+                shape.plan = "explain failed: " + e.getMessage();
+                explainFailures.incrementAndGet();
+            }
+        });
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Long> collectionScans = new HashMap<>();
+        int pending = 0;
+        for (Map.Entry<String, QueryShape> entry : shapes.entrySet()) {
+            QueryShape shape = entry.getValue();
+            if (shape.plan == null) {
+                pending++;
+            } else if (shape.collectionScan) {
+                collectionScans.put(entry.getKey(), shape.executions.get());
+            }
+        }
+        stats.put("enabled", enabled);
+        stats.put("commandsSeen", commandsSeen.get());
+        stats.put("shapes", shapes.size());
+        stats.put("pendingExplain", pending);
+        stats.put("explained", explained.get());
+        stats.put("explainFailures", explainFailures.get());
+        // shape -> executions seen
+        stats.put("collectionScans", collectionScans);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
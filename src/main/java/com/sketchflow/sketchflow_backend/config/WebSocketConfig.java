@@ -28,10 +28,6 @@ public class WebSocketConfig implements WebSocketConfigurer {
         // Use origin patterns rather than wildcard when credentials are allowed elsewhere
         registry.addHandler(whiteboardWebSocketHandler, "/api/whiteboard/sessions/{sessionId}/ws")
                 .setAllowedOriginPatterns("http://localhost:*", "http://127.0.0.1:*"); // safer CORS patterns
-    }
-        // This is the existing route for the whiteboard
-        registry.addHandler(whiteboardWebSocketHandler, "/api/whiteboard/sessions/{sessionId}/ws")
-                .setAllowedOrigins("*");
 
         // ADD THIS NEW ROUTE for the DM chat
         registry.addHandler(chatWebSocketHandler, "/api/chat/ws")
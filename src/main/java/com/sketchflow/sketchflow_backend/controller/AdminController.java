@@ -223,12 +223,16 @@ public class AdminController {
 
     /**
      * Get activity logs with pagination
+     * Without page, returns a keyset page (items, nextCursor, hasMore; total only with
+     * includeTotal=true); pass nextCursor back as cursor for the next one
      */
     @GetMapping("/activity-logs")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<ActivityLog>> getActivityLogs(
-            @RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<?> getActivityLogs(
+            @RequestParam(required = false) Integer page,
             @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
             @RequestParam(required = false) String userId,
             @RequestParam(required = false) String action,
             @RequestParam(required = false) String severity,
@@ -244,6 +248,14 @@ public class AdminController {
             "INFO"
         );
 
+        if (page == null) {
+            try {
+                return ResponseEntity.ok(activityLogService.getLogsPage(userId, action, severity, cursor, size, includeTotal));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+
         Pageable pageable = PageRequest.of(page, size);
         Page<ActivityLog> logs;
 
@@ -0,0 +1,74 @@
+package com.sketchflow.sketchflow_backend.controller;
+
+import com.sketchflow.sketchflow_backend.render.CanvasTileCache;
+import com.sketchflow.sketchflow_backend.service.WhiteboardSessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/api/whiteboard/sessions/{sessionId}")
+// CORS handled by global SecurityConfig
+public class CanvasImageController {
+
+    private static final Logger logger = Logger.getLogger(CanvasImageController.class.getName());
+
+    @Autowired
+    private CanvasTileCache tileCache;
+
+    @Autowired
+    private WhiteboardSessionService sessionService;
+
+    /**
+     * PNG preview of the whole canvas, for session lists
+     */
+    @GetMapping("/thumbnail")
+    public CompletableFuture<ResponseEntity<byte[]>> getThumbnail(@PathVariable String sessionId) {
+        if (sessionService.getSession(sessionId).isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        return png(tileCache.thumbnail(sessionId));
+    }
+
+    /**
+     * PNG of one tile of the canvas: tile (x, y) covers canvas units
+     * [x * tile-size, (x + 1) * tile-size) horizontally and likewise vertically
+     */
+    @GetMapping("/tiles/{x}/{y}")
+    public CompletableFuture<ResponseEntity<byte[]>> getTile(@PathVariable String sessionId,
+                                                             @PathVariable int x, @PathVariable int y) {
+        if (sessionService.getSession(sessionId).isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        return png(tileCache.tile(sessionId, x, y));
+    }
+
+    private static CompletableFuture<ResponseEntity<byte[]>> png(CompletableFuture<byte[]> image) {
+        return image
+            .thenApply(bytes -> ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                // The canvas changes under it: clients revalidate every time
+                .cacheControl(CacheControl.noCache())
+                .body(bytes))
+            .exceptionally(ex -> {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof RejectedExecutionException) {
+                    // Renderer saturated: shed load rather than queue without limit
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+                }
+                logger.severe("Error rendering canvas image: " + cause.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            });
+    }
+}
@@ -1,11 +1,13 @@
 package com.sketchflow.sketchflow_backend.controller;
 
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
 import com.sketchflow.sketchflow_backend.model.ChatMessage;
 import com.sketchflow.sketchflow_backend.service.ChatService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,9 +21,34 @@ public class ChatController {
 
     /**
      * Get chat history for a session
+     * With limit (and cursor from the previous page), returns one keyset page instead:
+     * history, nextCursor, hasMore and, if includeTotal=true, total.
      */
     @GetMapping("/sessions/{sessionId}/history")
-    public ResponseEntity<Map<String, Object>> getSessionChatHistory(@PathVariable String sessionId) {
+    public ResponseEntity<Map<String, Object>> getSessionChatHistory(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        if (limit != null || cursor != null) {
+            KeysetPage<ChatMessage> page;
+            try {
+                page = chatService.getChatHistoryPage(sessionId, cursor, limit != null ? limit : 100, includeTotal);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("sessionId", sessionId);
+            response.put("history", page.getItems());
+            response.put("count", page.getItems().size());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
+            if (page.getTotal() != null) {
+                response.put("total", page.getTotal());
+            }
+            return ResponseEntity.ok(response);
+        }
 
         List<ChatMessage> history = chatService.getChatHistory(sessionId);
 
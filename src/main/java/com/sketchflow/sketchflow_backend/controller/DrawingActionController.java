@@ -1,21 +1,31 @@
 package com.sketchflow.sketchflow_backend.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sketchflow.sketchflow_backend.dto.DrawingActionRequest;
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
 import com.sketchflow.sketchflow_backend.model.DrawingAction;
 import com.sketchflow.sketchflow_backend.model.User;
 import com.sketchflow.sketchflow_backend.service.AuthService;
 import com.sketchflow.sketchflow_backend.service.DrawingActionService;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/whiteboard/sessions/{sessionId}/actions")
@@ -28,8 +38,17 @@ public class DrawingActionController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Actions written between explicit flushes of a streamed response
+    private static final int STREAM_FLUSH_EVERY = 256;
+
     /**
      * Save a drawing action (authenticated users only)
+     * Retrying with the same actionId is safe: the retry gets 200 and nothing is saved twice;
+     * 503 if the action could not be queued. An actionId another session already uses is
+     * discarded once the writer finds it taken
      */
     @PostMapping
     public CompletableFuture<ResponseEntity<Map<String, Object>>> saveAction(
@@ -48,7 +67,25 @@ public class DrawingActionController {
         // Set the authenticated user as the action creator
         request.setUserId(currentUser.getId());
 
-        return drawingActionService.saveActionAsync(sessionId, request)
+        Optional<CompletableFuture<DrawingAction>> saved;
+        try {
+            saved = drawingActionService.saveNewActionAsync(sessionId, request);
+        } catch (RejectedExecutionException e) {
+            // Persistence backed up: nothing was stored, the client retries with the same actionId
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("error", e.getMessage())));
+        }
+        if (saved.isEmpty()) {
+            // A retry of an action already saved: acknowledge it again without storing anything
+            Map<String, Object> response = new HashMap<>();
+            response.put("actionId", request.getActionId());
+            response.put("duplicate", true);
+            response.put("userId", currentUser.getId());
+            response.put("username", currentUser.getUsername());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(response));
+        }
+        return saved.get()
             .thenApply(action -> {
                 Map<String, Object> response = new HashMap<>();
                 response.put("actionId", action.getActionId());
@@ -64,12 +101,53 @@ public class DrawingActionController {
 
     /**
      * Get drawing history for a session (paginated)
+     * Pages are keyset pages: pass nextCursor back as cursor for the next one; total is only
+     * computed with includeTotal=true. page=N still selects the old offset paging.
+     * With bbox=minX,minY,maxX,maxY, returns only the strokes intersecting that viewport instead
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getSessionActions(
             @PathVariable String sessionId,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "100") int size) {
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String bbox) {
+
+        if (bbox != null) {
+            BoundingBox viewport;
+            try {
+                viewport = BoundingBox.parse(bbox);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+            List<DrawingAction> actions = drawingActionService.getSessionActionsInViewport(sessionId, viewport);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("actions", actions);
+            response.put("total", actions.size());
+            response.put("bbox", viewport.toString());
+            return ResponseEntity.ok(response);
+        }
+
+        if (page == null) {
+            KeysetPage<DrawingAction> actionsPage;
+            try {
+                actionsPage = drawingActionService.getSessionActionsAfter(sessionId, cursor, size, includeTotal);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("actions", actionsPage.getItems());
+            response.put("size", actionsPage.getItems().size());
+            response.put("nextCursor", actionsPage.getNextCursor());
+            response.put("hasMore", actionsPage.isHasMore());
+            if (actionsPage.getTotal() != null) {
+                response.put("total", actionsPage.getTotal());
+            }
+            return ResponseEntity.ok(response);
+        }
 
         Page<DrawingAction> actionsPage = drawingActionService.getSessionActions(sessionId, page, size);
 
@@ -97,6 +175,60 @@ public class DrawingActionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream all actions for a session without building the response in memory.
+     * format=ndjson (default) writes one action per line, format=json a single JSON array.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamSessionActions(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, Map.of("error", "format must be ndjson or json")));
+        }
+
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+            long[] written = {0};
+            try {
+                drawingActionService.streamSessionActions(sessionId, action -> {
+                    try {
+                        generator.writeObject(action);
+                        if (ndjson) {
+                            generator.writeRaw('\n');
+                        }
+                        // First action early for time-to-first-byte, then in chunks
+                        if (++written[0] % STREAM_FLUSH_EVERY == 1) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Client went away; stop reading the cursor
+                throw e.getCause();
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        };
+
+        return ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+
     /**
      * Clear all actions for a session (authenticated users only)
      */
@@ -2,9 +2,11 @@ package com.sketchflow.sketchflow_backend.controller;
 
 import com.sketchflow.sketchflow_backend.model.CanvasSnapshot;
 import com.sketchflow.sketchflow_backend.model.User;
+import com.sketchflow.sketchflow_backend.render.CanvasTileCache;
 import com.sketchflow.sketchflow_backend.repository.CanvasSnapshotRepository;
 import com.sketchflow.sketchflow_backend.service.AuthService;
 import com.sketchflow.sketchflow_backend.service.FileStorageService;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -12,11 +14,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 @RestController
@@ -35,6 +42,16 @@ public class SnapshotController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private CanvasTileCache tileCache;
+
+    // Stores thumbnails and saves snapshots once rendered, so the render pool only renders
+    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "Whiteboard-SnapshotIO");
+        t.setDaemon(true);
+        return t;
+    });
+
     /**
      * Save canvas snapshot with JSON data (authenticated users only)
      * This endpoint accepts JSON for canvas data without file upload
@@ -86,9 +103,12 @@ public class SnapshotController {
     /**
      * Save canvas snapshot with file upload (authenticated users only)
      * This endpoint accepts multipart/form-data for uploading images
+     * The thumbnail is the uploaded image scaled down on the render pool, or without an
+     * image, a rendering of the session's canvas; if neither can be made, it is left empty.
+     * Storing it and saving the snapshot run on a separate I/O pool.
      */
     @PostMapping(value = "/sessions/{sessionId}/snapshots/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Map<String, Object>> saveSnapshotWithImage(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> saveSnapshotWithImage(
             @PathVariable String sessionId,
             @RequestParam String name,
             @RequestParam(required = false) MultipartFile image,
@@ -97,21 +117,48 @@ public class SnapshotController {
         // Get authenticated user
         User currentUser = authService.getCurrentUser();
         if (currentUser == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                .body(Map.of("error", "User not authenticated"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "User not authenticated")));
         }
 
+        String imageUrl = null;
+        CompletableFuture<byte[]> thumbnailPng;
         try {
-            String snapshotId = UUID.randomUUID().toString();
-            String imageUrl = null;
-            String thumbnail = null;
-
             // Store image if provided
             if (image != null && !image.isEmpty()) {
                 imageUrl = fileStorageService.storeFile(image);
-                // In production, generate thumbnail here
-                thumbnail = imageUrl; // Simplified for now
+                thumbnailPng = tileCache.thumbnailOf(image.getBytes());
+            } else {
+                thumbnailPng = tileCache.thumbnail(sessionId);
             }
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage())));
+        }
+
+        String storedImageUrl = imageUrl;
+        return thumbnailPng
+            .thenApplyAsync(png -> png != null ? storeThumbnail(png) : null, ioExecutor)
+            .exceptionally(ex -> {
+                logger.warning("Could not generate snapshot thumbnail: " + ex.getMessage());
+                return null;
+            })
+            .thenApplyAsync(thumbnail -> saveSnapshot(sessionId, name, canvasData, currentUser, storedImageUrl, thumbnail),
+                ioExecutor);
+    }
+
+    private String storeThumbnail(byte[] png) {
+        try {
+            return fileStorageService.storeBytes(png, ".png");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> saveSnapshot(String sessionId, String name, String canvasData,
+                                                             User currentUser, String imageUrl, String thumbnail) {
+        try {
+            String snapshotId = UUID.randomUUID().toString();
 
             CanvasSnapshot snapshot = new CanvasSnapshot(
                 snapshotId,
@@ -197,5 +244,10 @@ public class SnapshotController {
         }
         return ResponseEntity.notFound().build();
     }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdown();
+    }
 }
 
@@ -1,7 +1,24 @@
 package com.sketchflow.sketchflow_backend.controller;
 
+import com.sketchflow.sketchflow_backend.cluster.WhiteboardEventBus;
+import com.sketchflow.sketchflow_backend.config.MongoIndexBootstrapper;
+import com.sketchflow.sketchflow_backend.config.QueryPlanMonitor;
 import com.sketchflow.sketchflow_backend.nio.WhiteboardNioServer;
+import com.sketchflow.sketchflow_backend.render.CanvasTileCache;
+import com.sketchflow.sketchflow_backend.service.ActionDeduplicator;
+import com.sketchflow.sketchflow_backend.service.CanvasCheckpointer;
+import com.sketchflow.sketchflow_backend.service.CanvasEpochCollector;
+import com.sketchflow.sketchflow_backend.service.CanvasHistoryService;
+import com.sketchflow.sketchflow_backend.service.CanvasStateStore;
+import com.sketchflow.sketchflow_backend.service.DrawingActionWriteBehind;
+import com.sketchflow.sketchflow_backend.service.SessionStatsService;
+import com.sketchflow.sketchflow_backend.service.UndoHistory;
+import com.sketchflow.sketchflow_backend.websocket.CursorAggregator;
+import com.sketchflow.sketchflow_backend.websocket.SessionEventLog;
+import com.sketchflow.sketchflow_backend.websocket.SessionPlayback;
+import com.sketchflow.sketchflow_backend.websocket.StrokeAssembler;
 import com.sketchflow.sketchflow_backend.websocket.WebSocketSessionManager;
+import com.sketchflow.sketchflow_backend.websocket.WhiteboardWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,6 +39,57 @@ public class WhiteboardMonitorController {
     @Autowired
     private WhiteboardNioServer nioServer;
 
+    @Autowired
+    private WhiteboardWebSocketHandler whiteboardWebSocketHandler;
+
+    @Autowired
+    private CursorAggregator cursorAggregator;
+
+    @Autowired
+    private StrokeAssembler strokeAssembler;
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Autowired
+    private SessionEventLog sessionEventLog;
+
+    @Autowired
+    private WhiteboardEventBus eventBus;
+
+    @Autowired
+    private DrawingActionWriteBehind drawingActionWriteBehind;
+
+    @Autowired
+    private CanvasCheckpointer canvasCheckpointer;
+
+    @Autowired
+    private CanvasEpochCollector canvasEpochCollector;
+
+    @Autowired
+    private UndoHistory undoHistory;
+
+    @Autowired
+    private CanvasHistoryService canvasHistoryService;
+
+    @Autowired
+    private SessionPlayback sessionPlayback;
+
+    @Autowired
+    private CanvasTileCache canvasTileCache;
+
+    @Autowired
+    private SessionStatsService sessionStatsService;
+
+    @Autowired
+    private ActionDeduplicator actionDeduplicator;
+
+    @Autowired
+    private MongoIndexBootstrapper mongoIndexBootstrapper;
+
+    @Autowired
+    private QueryPlanMonitor queryPlanMonitor;
+
     /**
      * Get system statistics and health
      */
@@ -32,6 +100,42 @@ public class WhiteboardMonitorController {
         // WebSocket statistics
         stats.put("websocket", webSocketSessionManager.getStatistics());
 
+        // Per-connection outbound queue statistics (backpressure)
+        stats.put("outbound", whiteboardWebSocketHandler.getOutboundStatistics());
+
+        // Slow consumers: degraded / resynced / disconnected peers and who is lagging now
+        stats.put("slowConsumers", whiteboardWebSocketHandler.getSlowConsumerStatistics());
+
+        // Cursor coalescing statistics
+        stats.put("cursors", cursorAggregator.getStatistics());
+
+        // Incremental stroke streaming statistics
+        stats.put("strokes", strokeAssembler.getStatistics());
+
+        // In-memory canvas state (cached sessions, hydrations, evictions)
+        stats.put("canvas", canvasStateStore.getStatistics());
+        stats.put("undo", undoHistory.getStatistics());
+        stats.put("history", canvasHistoryService.getStatistics());
+        stats.put("playback", sessionPlayback.getStatistics());
+        stats.put("render", canvasTileCache.getStatistics());
+
+        // Event sequencing and RESUME statistics
+        stats.put("events", sessionEventLog.getStatistics());
+
+        // Cross-node event bus statistics
+        stats.put("bus", eventBus.getStatistics());
+
+        // Drawing action write-behind (queue depth, flush latency, drops)
+        stats.put("persistence", drawingActionWriteBehind.getStatistics());
+        stats.put("dedup", actionDeduplicator.getStatistics());
+        stats.put("checkpoints", canvasCheckpointer.getStatistics());
+        stats.put("epochCollector", canvasEpochCollector.getStatistics());
+        stats.put("actionCounters", sessionStatsService.getStatistics());
+
+        // MongoDB indexes applied at startup and queries seen running as collection scans
+        stats.put("mongoIndexes", mongoIndexBootstrapper.getStatistics());
+        stats.put("queryPlans", queryPlanMonitor.getStatistics());
+
         // NIO server statistics
         stats.put("nioServer", nioServer.getStatistics());
 
@@ -56,6 +160,16 @@ public class WhiteboardMonitorController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Get connections currently lagging behind their board, grouped by whiteboard session
+     */
+    @GetMapping("/slow-consumers")
+    public ResponseEntity<Map<String, Object>> getSlowConsumers() {
+        Map<String, Object> stats = new HashMap<>(whiteboardWebSocketHandler.getSlowConsumerStatistics());
+        stats.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(stats);
+    }
+
     /**
      * Health check endpoint
      */
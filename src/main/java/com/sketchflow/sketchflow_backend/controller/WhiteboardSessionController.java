@@ -6,12 +6,17 @@ import com.sketchflow.sketchflow_backend.model.User;
 import com.sketchflow.sketchflow_backend.model.WhiteboardSession;
 import com.sketchflow.sketchflow_backend.service.ActiveUserService;
 import com.sketchflow.sketchflow_backend.service.AuthService;
+import com.sketchflow.sketchflow_backend.service.CanvasHistoryService;
 import com.sketchflow.sketchflow_backend.service.WhiteboardSessionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +36,9 @@ public class WhiteboardSessionController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private CanvasHistoryService historyService;
+
     /**
      * Create a new whiteboard session
      * Synchronous to ensure SecurityContext is available throughout the operation
@@ -189,6 +197,63 @@ public class WhiteboardSessionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Canvas as it was at a point in time
+     * at is epoch milliseconds or an ISO local date-time; replayed from the nearest checkpoint
+     * before it. States from before the last clear are gone (410).
+     */
+    @GetMapping("/{sessionId}/state")
+    public ResponseEntity<Map<String, Object>> getStateAt(@PathVariable String sessionId, @RequestParam String at) {
+        LocalDateTime time;
+        try {
+            time = parseTime(at);
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid time: " + at));
+        }
+
+        if (sessionService.getSession(sessionId).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Session not found"));
+        }
+
+        LocalDateTime clearedAt = historyService.clearedAt(sessionId);
+        if (clearedAt != null && time.isBefore(clearedAt)) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                .body(Map.of("error", "The canvas was cleared after that time", "clearedAt", clearedAt));
+        }
+
+        try {
+            CanvasHistoryService.HistoryState state = historyService.stateAt(sessionId, time);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("sessionId", sessionId);
+            response.put("at", time);
+            response.put("epoch", state.epoch());
+            response.put("checkpointId", state.checkpointId());
+            response.put("actions", state.actions());
+            response.put("actionCount", state.actions().size());
+            response.put("replayed", state.replayed());
+            response.put("complete", state.complete());
+            return ResponseEntity.ok(response);
+        } catch (Exception ex) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Epoch milliseconds (the whole millisecond, as actions carry sub-millisecond
+     * timestamps) or an ISO local date-time
+     */
+    private static LocalDateTime parseTime(String at) {
+        if (!at.isEmpty() && at.chars().allMatch(Character::isDigit)) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(at)), ZoneId.systemDefault())
+                .plusNanos(999_999);
+        }
+        return LocalDateTime.parse(at);
+    }
+
     /**
      * Clear canvas (authenticated users only)
      */
@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class DrawingActionRequest {
+    private String actionId; // Optional; server generates one when absent
     private String userId;
     private String tool;
     private String color;
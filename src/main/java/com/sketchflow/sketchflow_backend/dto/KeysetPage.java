@@ -0,0 +1,24 @@
+package com.sketchflow.sketchflow_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ * nextCursor is passed back as cursor to get the following page; it is null on the last page.
+ * total is only filled in when the caller asked for it (includeTotal=true).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long total;
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,10 +20,17 @@ public class WebSocketMessage {
     private String color;
     private DrawingAction.Coordinates coordinates;
     private Long timestamp; // Changed from LocalDateTime to Long (epoch milliseconds)
+    private Long seq; // Per-session event sequence; on RESUME, the last sequence the client saw
     private String messageContent;
     private String receiverUsername;
     private String token;
     private CursorPosition position;
+    private List<CursorUpdate> cursors; // Combined cursor positions (CURSORS frame)
+    private List<DrawingAction> actions; // Ordered canvas actions (CANVAS_STATE frame)
+    private Viewport viewport; // Visible canvas area (JOIN / RESUME / VIEWPORT)
+    private Long epoch; // Canvas clear epoch (CANVAS_CLEAR)
+    private Long from; // Epoch milliseconds to start a playback at (PLAYBACK_START)
+    private Double speed; // Playback speed, 1 to 32 (PLAYBACK_START)
 
     @Data
     @NoArgsConstructor
@@ -30,5 +39,25 @@ public class WebSocketMessage {
         private double x;
         private double y;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Viewport {
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CursorUpdate {
+        private String userId;
+        private String username;
+        private double x;
+        private double y;
+    }
 }
 
@@ -0,0 +1,48 @@
+package com.sketchflow.sketchflow_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Server-generated canvas state: a session's drawing log folded up to a position.
+ * One checkpoint (a generation) is stored as a header (part 0, no actions) plus parts
+ * holding the folded actions in canonical order. The header is written last, so a
+ * checkpoint is complete once its header exists. A generation reuses the full parts of
+ * the one before it when they still hold the same actions, so the header lists its parts
+ * by id; headers written before that have parts 1..parts of their own generation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "canvas_checkpoints")
+public class CanvasCheckpoint {
+
+    @Id
+    private String checkpointId;
+
+    private String sessionId;
+    private long generation;
+    private int part;
+    // Clear epoch of the folded canvas
+    private long epoch;
+
+    // Header only
+    private int parts;
+    private LocalDateTime createdAt;
+    private LocalDateTime upToTimestamp;
+    private String upToActionId;
+    private long actionCount;
+    private boolean compacted;
+    // Ids of the parts in order, and a digest of the action ids each one holds
+    private List<String> partIds;
+    private List<Long> partDigests;
+
+    // Parts only
+    private List<DrawingAction> actions;
+}
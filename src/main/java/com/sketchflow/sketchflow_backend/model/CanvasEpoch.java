@@ -0,0 +1,29 @@
+package com.sketchflow.sketchflow_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Clear epoch of a session's canvas.
+ * Every drawing action and checkpoint is stamped with the epoch it was drawn in; a clear
+ * only increments the epoch, and readers ignore anything from an older one. collected is
+ * false until the background collector has deleted what the older epochs left behind.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "canvas_epochs")
+public class CanvasEpoch {
+
+    @Id
+    private String sessionId;
+
+    private long epoch;
+    private LocalDateTime clearedAt;
+    private boolean collected;
+}
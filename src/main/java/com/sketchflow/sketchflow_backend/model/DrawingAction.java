@@ -27,6 +27,10 @@ public class DrawingAction {
     private String actionType;
     private Coordinates coordinates;
     private Properties properties;
+    // Clear epoch the action was drawn in; documents from before epochs were introduced read as 0
+    private long epoch;
+    // Undo/redo tombstones (actionType "undo" / "redo"): the action they hide or restore
+    private String targetActionId;
 
     @Data
     @NoArgsConstructor
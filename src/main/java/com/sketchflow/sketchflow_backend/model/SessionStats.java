@@ -0,0 +1,33 @@
+package com.sketchflow.sketchflow_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Maintained action counter of a session's current clear epoch, so statistics never count
+ * drawing_actions. One extra document (GLOBAL_ID) holds the total over all sessions.
+ * dirty is set by every increment and cleared once the reconciliation job has checked
+ * the counter against the log.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "session_stats")
+public class SessionStats {
+
+    public static final String GLOBAL_ID = "_global";
+
+    @Id
+    private String sessionId;
+
+    private long epoch;
+    private long actionCount;
+    private boolean dirty;
+    private LocalDateTime updatedAt;
+    private LocalDateTime reconciledAt;
+}
@@ -0,0 +1,207 @@
+package com.sketchflow.sketchflow_backend.render;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Headless Java2D rasteriser for drawing actions.
+ * Draws strokes the way the web client does: freehand tools as a polyline through their
+ * points, line / rectangle / circle tools between start and end, all with round caps and
+ * joins at the action's line width. Eraser strokes clear what is below them (paint the
+ * background on opaque images). Stateless; every method may be called from any thread.
+ */
+public final class CanvasRenderer {
+
+    private static final float DEFAULT_LINE_WIDTH = 2f;
+
+    private CanvasRenderer() {
+    }
+
+    /**
+     * Render actions, in canonical order, into a new image showing the canvas region
+     * starting at (originX, originY), scale pixels per canvas unit
+     * @param background fill colour, or null for a transparent image
+     */
+    public static BufferedImage render(List<DrawingAction> actions, double originX, double originY, double scale,
+                                       int width, int height, Color background) {
+        BufferedImage image = new BufferedImage(width, height,
+            background == null ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            if (background != null) {
+                g.setColor(background);
+                g.fillRect(0, 0, width, height);
+            }
+            g.scale(scale, scale);
+            g.translate(-originX, -originY);
+            for (DrawingAction action : actions) {
+                draw(g, action, background);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Canvas area covered by the given actions, or null if none has geometry
+     */
+    public static BoundingBox bounds(List<DrawingAction> actions) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (DrawingAction action : actions) {
+            BoundingBox box = BoundingBox.of(action);
+            if (box == null) {
+                continue;
+            }
+            minX = Math.min(minX, box.getMinX());
+            minY = Math.min(minY, box.getMinY());
+            maxX = Math.max(maxX, box.getMaxX());
+            maxY = Math.max(maxY, box.getMaxY());
+        }
+        return minX > maxX ? null : new BoundingBox(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Scale an image down to fit a size x size square, on a white background
+     */
+    public static BufferedImage fit(BufferedImage source, int size) {
+        double scale = Math.min(1, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    public static byte[] toPng(BufferedImage image) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void draw(Graphics2D g, DrawingAction action, Color background) {
+        DrawingAction.Coordinates coordinates = action.getCoordinates();
+        if (coordinates == null || BoundingBox.of(action) == null) {
+            return;
+        }
+        boolean eraser = (action.getProperties() != null && action.getProperties().isEraser())
+            || "eraser".equalsIgnoreCase(action.getTool());
+        if (eraser && background == null) {
+            g.setComposite(AlphaComposite.Clear);
+        } else {
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setColor(eraser ? background : parseColor(action.getColor()));
+        }
+        float width = action.getProperties() != null && action.getProperties().getLineWidth() > 0
+            ? (float) action.getProperties().getLineWidth() : DEFAULT_LINE_WIDTH;
+        // Scaled down (thumbnails), a stroke still covers at least one pixel
+        width = (float) Math.max(width, 1 / g.getTransform().getScaleX());
+        g.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+
+        DrawingAction.Point start = coordinates.getStart();
+        DrawingAction.Point end = coordinates.getEnd();
+        String tool = action.getTool() != null ? action.getTool().toLowerCase() : "";
+        if (start != null && end != null && !eraser) {
+            double x = Math.min(start.getX(), end.getX());
+            double y = Math.min(start.getY(), end.getY());
+            double w = Math.abs(end.getX() - start.getX());
+            double h = Math.abs(end.getY() - start.getY());
+            switch (tool) {
+                case "rectangle":
+                case "rect":
+                    g.draw(new Rectangle2D.Double(x, y, w, h));
+                    return;
+                case "circle":
+                case "ellipse":
+                    g.draw(new Ellipse2D.Double(x, y, w, h));
+                    return;
+                case "line":
+                case "arrow":
+                    g.draw(new Line2D.Double(start.getX(), start.getY(), end.getX(), end.getY()));
+                    return;
+                default:
+                    break;
+            }
+        }
+        g.draw(path(coordinates));
+    }
+
+    private static Path2D path(DrawingAction.Coordinates coordinates) {
+        Path2D.Double path = new Path2D.Double();
+        List<DrawingAction.Point> points = coordinates.getPoints();
+        if (points != null && !points.isEmpty()) {
+            path.moveTo(points.get(0).getX(), points.get(0).getY());
+            if (points.size() == 1) {
+                // A dot: a zero-length segment still gets round caps
+                path.lineTo(points.get(0).getX(), points.get(0).getY());
+            }
+            for (int i = 1; i < points.size(); i++) {
+                path.lineTo(points.get(i).getX(), points.get(i).getY());
+            }
+        } else {
+            DrawingAction.Point start = coordinates.getStart() != null ? coordinates.getStart() : coordinates.getEnd();
+            DrawingAction.Point end = coordinates.getEnd() != null ? coordinates.getEnd() : start;
+            path.moveTo(start.getX(), start.getY());
+            path.lineTo(end.getX(), end.getY());
+        }
+        return path;
+    }
+
+    /**
+     * CSS hex colour (#rgb, #rrggbb, #rrggbbaa); anything else draws black
+     */
+    static Color parseColor(String value) {
+        if (value == null || !value.startsWith("#")) {
+            return Color.BLACK;
+        }
+        String hex = value.substring(1);
+        try {
+            switch (hex.length()) {
+                case 3:
+                    return new Color(Integer.parseInt(hex.substring(0, 1).repeat(2), 16),
+                        Integer.parseInt(hex.substring(1, 2).repeat(2), 16),
+                        Integer.parseInt(hex.substring(2, 3).repeat(2), 16));
+                case 6:
+                    return new Color(Integer.parseInt(hex, 16));
+                case 8:
+                    return new Color(Integer.parseInt(hex.substring(0, 6), 16) | Integer.parseInt(hex.substring(6), 16) << 24, true);
+                default:
+                    return Color.BLACK;
+            }
+        } catch (NumberFormatException e) {
+            return Color.BLACK;
+        }
+    }
+}
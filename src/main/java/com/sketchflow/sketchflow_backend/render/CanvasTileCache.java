@@ -0,0 +1,370 @@
+package com.sketchflow.sketchflow_backend.render;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.service.CanvasStateStore;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Rendered canvas images: fixed-size PNG tiles and a thumbnail per session.
+ *
+ * Tile (x, y) shows the canvas square [x * tile-size, (x + 1) * tile-size) at one pixel per
+ * canvas unit, drawn from the strokes the in-memory canvas index returns for it. Encoded
+ * tiles are kept in an LRU bounded to cache-max-bytes. CanvasStateStore reports the area
+ * every mutation changes, and only the tiles under that area are dropped (a clear drops
+ * them all); the thumbnail is dropped on any change. A render racing a change to its area
+ * is returned but not cached.
+ * Rendering runs on a fixed pool of threads with a bounded queue: a full queue fails the
+ * request instead of queueing without limit or blocking a request thread, and concurrent
+ * requests for the same image share one render.
+ */
+@Component
+public class CanvasTileCache {
+
+    private static final Logger logger = Logger.getLogger(CanvasTileCache.class.getName());
+
+    // Changed areas remembered per session to decide whether a finished render is still current
+    private static final int RECENT_CHANGES = 64;
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Value("${whiteboard.render.tile-size:256}")
+    private int tileSize;
+
+    @Value("${whiteboard.render.thumbnail-size:256}")
+    private int thumbnailSize;
+
+    @Value("${whiteboard.render.threads:2}")
+    private int threads;
+
+    @Value("${whiteboard.render.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${whiteboard.render.cache-max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    private ThreadPoolExecutor pool;
+
+    // Every cached image in LRU order; it and sessions are guarded by the map itself
+    private final LinkedHashMap<Key, byte[]> images = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, SessionImages> sessions = new HashMap<>();
+    private long cachedBytes;
+
+    // Map: image -> render in progress
+    private final Map<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong staleRenders = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * A tile, or the session's thumbnail
+     */
+    private record Key(String sessionId, int x, int y, boolean thumbnail) {
+    }
+
+    private record Change(long version, BoundingBox area) {
+    }
+
+    private static final class SessionImages {
+        final Set<Key> keys = new HashSet<>();
+        final Deque<Change> recent = new ArrayDeque<>();
+        long version;
+    }
+
+    @PostConstruct
+    public void start() {
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                Thread t = new Thread(r, "Whiteboard-Renderer");
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            });
+        canvasStateStore.setChangeListener(this::invalidate);
+        logger.info("Rendering canvas tiles of " + tileSize + "px on " + threads + " threads (cache " +
+            (cacheMaxBytes >> 20) + " MB)");
+    }
+
+    /**
+     * PNG of one tile of a session's canvas (transparent where nothing is drawn)
+     * Fails with RejectedExecutionException when the render queue is full.
+     */
+    public CompletableFuture<byte[]> tile(String sessionId, int x, int y) {
+        Key key = new Key(sessionId, x, y, false);
+        return cachedOrRender(key, () -> {
+            double minX = (double) x * tileSize;
+            double minY = (double) y * tileSize;
+            List<DrawingAction> actions = canvasStateStore.getActionsInViewport(sessionId,
+                new BoundingBox(minX, minY, minX + tileSize, minY + tileSize));
+            return CanvasRenderer.render(actions, minX, minY, 1, tileSize, tileSize, null);
+        });
+    }
+
+    /**
+     * PNG preview of a session's whole canvas, fitted into a thumbnail-size square on white
+     * Fails with RejectedExecutionException when the render queue is full.
+     */
+    public CompletableFuture<byte[]> thumbnail(String sessionId) {
+        Key key = new Key(sessionId, 0, 0, true);
+        return cachedOrRender(key, () -> {
+            List<DrawingAction> actions = canvasStateStore.getActions(sessionId);
+            BoundingBox bounds = CanvasRenderer.bounds(actions);
+            if (bounds == null) {
+                return CanvasRenderer.render(List.of(), 0, 0, 1, thumbnailSize, thumbnailSize, Color.WHITE);
+            }
+            double width = Math.max(1, bounds.getMaxX() - bounds.getMinX());
+            double height = Math.max(1, bounds.getMaxY() - bounds.getMinY());
+            double scale = Math.min(thumbnailSize / width, thumbnailSize / height);
+            // Center the drawing in the square
+            double originX = bounds.getMinX() - (thumbnailSize / scale - width) / 2;
+            double originY = bounds.getMinY() - (thumbnailSize / scale - height) / 2;
+            return CanvasRenderer.render(actions, originX, originY, scale, thumbnailSize, thumbnailSize, Color.WHITE);
+        });
+    }
+
+    /**
+     * PNG thumbnail of an uploaded image, or null if the bytes are not a readable image
+     * Fails with RejectedExecutionException when the render queue is full.
+     */
+    public CompletableFuture<byte[]> thumbnailOf(byte[] image) {
+        try {
+            return CompletableFuture.supplyAsync(() -> renderThumbnailOf(image), this::execute);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private byte[] renderThumbnailOf(byte[] image) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+            if (source == null) {
+                return null;
+            }
+            return CanvasRenderer.toPng(CanvasRenderer.fit(source, thumbnailSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rendered.incrementAndGet();
+            renderNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private CompletableFuture<byte[]> cachedOrRender(Key key, Supplier<BufferedImage> renderer) {
+        byte[] cached;
+        synchronized (images) {
+            cached = images.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+        CompletableFuture<byte[]> render = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, render);
+        if (running != null) {
+            return running;
+        }
+        try {
+            execute(() -> {
+                byte[] png = null;
+                Throwable failure = null;
+                try {
+                    png = render(key, renderer);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // Unregister first: a request after this one must not be handed a finished render
+                inFlight.remove(key, render);
+                if (failure != null) {
+                    render.completeExceptionally(failure);
+                } else {
+                    render.complete(png);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, render);
+            render.completeExceptionally(e);
+        }
+        return render;
+    }
+
+    private byte[] render(Key key, Supplier<BufferedImage> renderer) {
+        SessionImages session;
+        long version;
+        synchronized (images) {
+            session = sessions.computeIfAbsent(key.sessionId(), k -> new SessionImages());
+            version = session.version;
+        }
+        long start = System.nanoTime();
+        byte[] png = CanvasRenderer.toPng(renderer.get());
+        rendered.incrementAndGet();
+        renderNanos.addAndGet(System.nanoTime() - start);
+
+        synchronized (images) {
+            if (sessions.get(key.sessionId()) != session || changedSince(session, version, key)) {
+                staleRenders.incrementAndGet();
+                return png;
+            }
+            byte[] previous = images.put(key, png);
+            cachedBytes += png.length - (previous != null ? previous.length : 0);
+            session.keys.add(key);
+            evictOverBudget();
+        }
+        return png;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Drop the cached images of a session under a changed area (null: all of them)
+     */
+    public void invalidate(String sessionId, BoundingBox area) {
+        synchronized (images) {
+            SessionImages session = sessions.get(sessionId);
+            if (session == null) {
+                // Nothing cached or rendering
+                return;
+            }
+            // Requests from now on must not join a render that started before the change
+            inFlight.keySet().removeIf(key -> key.sessionId().equals(sessionId) && (area == null || covers(key, area)));
+            session.version++;
+            session.recent.addLast(new Change(session.version, area));
+            if (session.recent.size() > RECENT_CHANGES) {
+                session.recent.removeFirst();
+            }
+            for (Iterator<Key> it = session.keys.iterator(); it.hasNext(); ) {
+                Key key = it.next();
+                if (area == null || covers(key, area)) {
+                    byte[] png = images.remove(key);
+                    if (png != null) {
+                        cachedBytes -= png.length;
+                        invalidated.incrementAndGet();
+                    }
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the area of an image changed after a version; call holding the images lock
+     */
+    private boolean changedSince(SessionImages session, long version, Key key) {
+        if (session.version == version) {
+            return false;
+        }
+        if (session.recent.isEmpty() || session.recent.peekFirst().version() > version + 1) {
+            // Changed more often than remembered
+            return true;
+        }
+        for (Change change : session.recent) {
+            if (change.version() > version && (change.area() == null || covers(key, change.area()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean covers(Key key, BoundingBox area) {
+        if (key.thumbnail()) {
+            // Any change can move the drawing's bounds
+            return true;
+        }
+        double minX = (double) key.x() * tileSize;
+        double minY = (double) key.y() * tileSize;
+        return area.intersects(new BoundingBox(minX, minY, minX + tileSize, minY + tileSize));
+    }
+
+    /**
+     * Drop least recently used images until the cache fits; call holding the images lock
+     */
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Key, byte[]>> it = images.entrySet().iterator();
+        while (cachedBytes > cacheMaxBytes && it.hasNext()) {
+            Map.Entry<Key, byte[]> eldest = it.next();
+            it.remove();
+            cachedBytes -= eldest.getValue().length;
+            evicted.incrementAndGet();
+            SessionImages session = sessions.get(eldest.getKey().sessionId());
+            if (session != null) {
+                session.keys.remove(eldest.getKey());
+                if (session.keys.isEmpty()) {
+                    // Renders still running for it see a different session and skip the cache
+                    sessions.remove(eldest.getKey().sessionId());
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (images) {
+            stats.put("cachedImages", images.size());
+            stats.put("cachedBytes", cachedBytes);
+            stats.put("cachedSessions", sessions.size());
+        }
+        long renders = rendered.get();
+        stats.put("tileSize", tileSize);
+        stats.put("cacheMaxBytes", cacheMaxBytes);
+        stats.put("queued", pool != null ? pool.getQueue().size() : 0);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("rendered", renders);
+        stats.put("avgRenderMs", renders > 0 ? renderNanos.get() / renders / 1_000_000.0 : 0.0);
+        stats.put("rejected", rejected.get());
+        stats.put("invalidated", invalidated.get());
+        stats.put("staleRenders", staleRenders.get());
+        stats.put("evicted", evicted.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ActiveUserSessionRepository extends MongoRepository<ActiveUserSession, String> {
+public interface ActiveUserSessionRepository extends MongoRepository<ActiveUserSession, String>, ActiveUserSessionRepositoryCustom {
     List<ActiveUserSession> findBySessionId(String sessionId);
     Optional<ActiveUserSession> findByUserIdAndSessionId(String userId, String sessionId);
     void deleteBySessionId(String sessionId);
@@ -0,0 +1,18 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.ActiveUserSession;
+
+import java.util.Map;
+
+/**
+ * Bulk updates of active users that Spring Data cannot derive
+ */
+public interface ActiveUserSessionRepositoryCustom {
+
+    /**
+     * Set the cursor position and last activity of several users of one session in one
+     * unordered bulk write; users no longer in the session are skipped
+     * @return the number of users matched
+     */
+    int updateCursorPositions(String sessionId, Map<String, ActiveUserSession.CursorPosition> positions);
+}
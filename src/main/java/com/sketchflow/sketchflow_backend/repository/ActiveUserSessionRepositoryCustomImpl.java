@@ -0,0 +1,33 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.ActiveUserSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class ActiveUserSessionRepositoryCustomImpl implements ActiveUserSessionRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public int updateCursorPositions(String sessionId, Map<String, ActiveUserSession.CursorPosition> positions) {
+        if (positions.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActiveUserSession.class);
+        for (Map.Entry<String, ActiveUserSession.CursorPosition> entry : positions.entrySet()) {
+            bulk.updateOne(
+                new Query(Criteria.where("userId").is(entry.getKey()).and("sessionId").is(sessionId)),
+                new Update().set("cursorPosition", entry.getValue()).set("lastActivity", now));
+        }
+        return bulk.execute().getMatchedCount();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CanvasCheckpointRepository extends MongoRepository<CanvasCheckpoint, String> {
+    List<CanvasCheckpoint> findBySessionIdAndEpochAndPartOrderByGenerationDesc(String sessionId, long epoch, int part);
+    List<CanvasCheckpoint> findByPartAndCompactedFalseAndUpToTimestampBefore(int part, LocalDateTime before);
+    void deleteBySessionId(String sessionId);
+    long deleteBySessionIdAndEpochLessThan(String sessionId, long epoch);
+}
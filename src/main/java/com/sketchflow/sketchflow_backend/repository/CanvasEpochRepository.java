@@ -0,0 +1,12 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CanvasEpochRepository extends MongoRepository<CanvasEpoch, String>, CanvasEpochRepositoryCustom {
+    List<CanvasEpoch> findByCollectedFalse();
+}
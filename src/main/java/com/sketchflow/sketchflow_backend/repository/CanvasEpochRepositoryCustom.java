@@ -0,0 +1,19 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+/**
+ * Atomic updates of clear epochs that Spring Data cannot derive
+ */
+public interface CanvasEpochRepositoryCustom {
+
+    /**
+     * Increment a session's clear epoch, creating it at 1 if the session has none
+     * @return the new epoch
+     */
+    long incrementEpoch(String sessionId);
+
+    /**
+     * Mark a session's older epochs as collected, unless it has been cleared again since
+     * @return whether the mark was applied
+     */
+    boolean markCollected(String sessionId, long epoch);
+}
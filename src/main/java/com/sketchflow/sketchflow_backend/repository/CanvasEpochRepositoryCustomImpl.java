@@ -0,0 +1,35 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+public class CanvasEpochRepositoryCustomImpl implements CanvasEpochRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public long incrementEpoch(String sessionId) {
+        CanvasEpoch updated = mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(sessionId)),
+            new Update().inc("epoch", 1).set("clearedAt", LocalDateTime.now()).set("collected", false),
+            FindAndModifyOptions.options().upsert(true).returnNew(true),
+            CanvasEpoch.class);
+        return updated.getEpoch();
+    }
+
+    @Override
+    public boolean markCollected(String sessionId, long epoch) {
+        return mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(sessionId).and("epoch").is(epoch)),
+            new Update().set("collected", true),
+            CanvasEpoch.class).getModifiedCount() > 0;
+    }
+}
@@ -9,10 +9,9 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface DrawingActionRepository extends MongoRepository<DrawingAction, String> {
+public interface DrawingActionRepository extends MongoRepository<DrawingAction, String>, DrawingActionRepositoryCustom {
     List<DrawingAction> findBySessionIdOrderByTimestampAsc(String sessionId);
     Page<DrawingAction> findBySessionIdOrderByTimestampAsc(String sessionId, Pageable pageable);
-    long countBySessionId(String sessionId);
     void deleteBySessionId(String sessionId);
 }
 
@@ -0,0 +1,61 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bulk operations on drawing actions that Spring Data cannot derive
+ */
+public interface DrawingActionRepositoryCustom {
+
+    /** Collection that compaction moves folded actions to */
+    String ARCHIVE_COLLECTION = "drawing_actions_archive";
+
+    /**
+     * Insert actions in one unordered bulk write. Actions whose actionId already exists are
+     * skipped rather than failing the batch, so a batch can safely be written again.
+     * @return the actions skipped because their actionId already exists
+     */
+    List<DrawingAction> insertUnordered(Collection<DrawingAction> actions);
+
+    /**
+     * Get a session's actions of one clear epoch strictly after a (timestamp, actionId)
+     * position, in that order; null returns them all
+     */
+    List<DrawingAction> findTail(String sessionId, long epoch, Keyset after);
+
+    /**
+     * Stream variant of {@link #findTail} over a server-side cursor; the stream must be closed
+     */
+    Stream<DrawingAction> streamTail(String sessionId, long epoch, Keyset after);
+
+    /**
+     * Stream a session's actions of one clear epoch strictly after a position (null: from the
+     * start) and up to and including a timestamp (null: to the end), in (timestamp, actionId)
+     * order, from drawing_actions or, when archived is set, from {@link #ARCHIVE_COLLECTION};
+     * the stream must be closed
+     */
+    Stream<DrawingAction> streamRange(String sessionId, long epoch, Keyset after, LocalDateTime upTo, boolean archived);
+
+    /**
+     * Count a session's actions of one clear epoch strictly after a position; null counts them all
+     */
+    long countTail(String sessionId, long epoch, Keyset after);
+
+    /**
+     * Remove a session's actions of one clear epoch up to and including a position, in
+     * batches, copying them to {@link #ARCHIVE_COLLECTION} first when archive is set
+     * @return the number of actions removed
+     */
+    long compactUpTo(String sessionId, long epoch, Keyset upTo, boolean archive);
+
+    /**
+     * Delete up to limit of a session's actions from clear epochs before the given one
+     * @return the number of actions deleted; less than limit once none are left
+     */
+    int deleteBeforeEpoch(String sessionId, long epoch, int limit);
+}
@@ -0,0 +1,139 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DrawingActionRepositoryCustomImpl implements DrawingActionRepositoryCustom {
+
+    // Documents fetched per cursor round trip while streaming
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    // Actions moved or deleted per round trip while compacting
+    private static final int COMPACT_BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<DrawingAction> insertUnordered(Collection<DrawingAction> actions) {
+        return insertUnordered(actions, mongoTemplate.getCollectionName(DrawingAction.class));
+    }
+
+    private List<DrawingAction> insertUnordered(Collection<DrawingAction> actions, String collection) {
+        if (actions.isEmpty()) {
+            return List.of();
+        }
+        List<DrawingAction> batch = new ArrayList<>(actions);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DrawingAction.class, collection)
+                .insert(batch)
+                .execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            // Unordered: everything else was written; only duplicate keys are acceptable failures
+            List<DrawingAction> skipped = new ArrayList<>(e.getErrors().size());
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                skipped.add(batch.get(error.getIndex()));
+            }
+            return skipped;
+        }
+    }
+
+    @Override
+    public List<DrawingAction> findTail(String sessionId, long epoch, Keyset after) {
+        return mongoTemplate.find(tailQuery(sessionId, epoch, after), DrawingAction.class);
+    }
+
+    @Override
+    public Stream<DrawingAction> streamTail(String sessionId, long epoch, Keyset after) {
+        return mongoTemplate.stream(tailQuery(sessionId, epoch, after).cursorBatchSize(STREAM_BATCH_SIZE), DrawingAction.class);
+    }
+
+    @Override
+    public long countTail(String sessionId, long epoch, Keyset after) {
+        return mongoTemplate.count(new Query(tailCriteria(sessionId, epoch, after)), DrawingAction.class);
+    }
+
+    @Override
+    public long compactUpTo(String sessionId, long epoch, Keyset upTo, boolean archive) {
+        Query batchQuery = new Query(new Criteria().andOperator(
+                Criteria.where("sessionId").is(sessionId),
+                inEpoch(epoch),
+                new Criteria().norOperator(upTo.after("timestamp", false))))
+            .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"))
+            .limit(COMPACT_BATCH_SIZE);
+        long removed = 0;
+        while (true) {
+            List<DrawingAction> batch = mongoTemplate.find(batchQuery, DrawingAction.class);
+            if (batch.isEmpty()) {
+                return removed;
+            }
+            if (archive) {
+                // Idempotent, so a batch interrupted before the delete is simply archived again
+                insertUnordered(batch, ARCHIVE_COLLECTION);
+            }
+            List<String> ids = batch.stream().map(DrawingAction::getActionId).toList();
+            removed += mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), DrawingAction.class).getDeletedCount();
+            if (batch.size() < COMPACT_BATCH_SIZE) {
+                return removed;
+            }
+        }
+    }
+
+    @Override
+    public Stream<DrawingAction> streamRange(String sessionId, long epoch, Keyset after, LocalDateTime upTo, boolean archived) {
+        Criteria range = tailCriteria(sessionId, epoch, after);
+        if (upTo != null) {
+            range = new Criteria().andOperator(range, Criteria.where("timestamp").lte(upTo));
+        }
+        Query query = new Query(range).with(Sort.by(Sort.Direction.ASC, "timestamp", "_id")).cursorBatchSize(STREAM_BATCH_SIZE);
+        String collection = archived ? ARCHIVE_COLLECTION : mongoTemplate.getCollectionName(DrawingAction.class);
+        return mongoTemplate.stream(query, DrawingAction.class, collection);
+    }
+
+    @Override
+    public int deleteBeforeEpoch(String sessionId, long epoch, int limit) {
+        // $not/$gte also matches documents written before epochs existed
+        Query batchQuery = new Query(Criteria.where("sessionId").is(sessionId).and("epoch").not().gte(epoch)).limit(limit);
+        batchQuery.fields().include("_id");
+        List<Object> ids = mongoTemplate.find(batchQuery, Document.class, mongoTemplate.getCollectionName(DrawingAction.class))
+            .stream().map(d -> d.get("_id")).toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), DrawingAction.class);
+        return ids.size();
+    }
+
+    private static Query tailQuery(String sessionId, long epoch, Keyset after) {
+        return new Query(tailCriteria(sessionId, epoch, after)).with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"));
+    }
+
+    private static Criteria tailCriteria(String sessionId, long epoch, Keyset after) {
+        Criteria session = new Criteria().andOperator(Criteria.where("sessionId").is(sessionId), inEpoch(epoch));
+        return after == null ? session : new Criteria().andOperator(session, after.after("timestamp", false));
+    }
+
+    private static Criteria inEpoch(long epoch) {
+        // Documents written before epochs existed have no epoch and belong to the first one
+        return epoch == 0 ? Criteria.where("epoch").in(0L, null) : Criteria.where("epoch").is(epoch);
+    }
+}
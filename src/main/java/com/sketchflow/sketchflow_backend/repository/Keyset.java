@@ -0,0 +1,62 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a row in (timestamp, id) order, carried between pages as an opaque token.
+ * The token is base64url("v1\n" + ISO timestamp + "\n" + id); clients must not parse it.
+ */
+public record Keyset(LocalDateTime timestamp, String id) {
+
+    private static final String VERSION = "v1";
+
+    /**
+     * Encode as a continuation token
+     */
+    public String encode() {
+        String raw = VERSION + "\n" + (timestamp != null ? timestamp.toString() : "") + "\n" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token; null or blank means "from the start"
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Keyset decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 3);
+            if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime timestamp = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+            return new Keyset(timestamp, parts[2]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Criteria selecting the rows strictly after this position in the given direction
+     */
+    public Criteria after(String timestampField, boolean descending) {
+        if (timestamp == null) {
+            // Missing timestamps sort first ascending and last descending; compare on id among them
+            Criteria sameKey = new Criteria().andOperator(Criteria.where(timestampField).is(null),
+                descending ? Criteria.where("_id").lt(id) : Criteria.where("_id").gt(id));
+            return descending ? sameKey : new Criteria().orOperator(Criteria.where(timestampField).ne(null), sameKey);
+        }
+        return new Criteria().orOperator(
+            descending ? Criteria.where(timestampField).lt(timestamp) : Criteria.where(timestampField).gt(timestamp),
+            new Criteria().andOperator(Criteria.where(timestampField).is(timestamp),
+                descending ? Criteria.where("_id").lt(id) : Criteria.where("_id").gt(id)));
+    }
+}
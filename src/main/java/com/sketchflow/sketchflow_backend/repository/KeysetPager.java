@@ -0,0 +1,68 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) pagination over (timestamp, _id).
+ * Each page is one indexed range scan of limit + 1 documents, however deep the page is;
+ * the extra document only tells whether there is a next page. Nothing is counted unless asked.
+ */
+@Component
+public class KeysetPager {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String TIMESTAMP = "timestamp";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Fetch the page after the cursor
+     * @param filter      criteria every row must match (e.g. the session), or null
+     * @param cursor      token from the previous page, null or blank for the first page
+     * @param descending  newest first instead of oldest first
+     * @param keyOf       the (timestamp, id) of a row, to build the next cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public <T> KeysetPage<T> find(Class<T> type, Criteria filter, String cursor, int limit,
+                                  boolean descending, boolean includeTotal, Function<T, Keyset> keyOf) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        Keyset after = Keyset.decode(cursor);
+
+        Query query = new Query();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        if (after != null) {
+            query.addCriteria(after.after(TIMESTAMP, descending));
+        }
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        query.with(Sort.by(direction, TIMESTAMP, "_id")).limit(pageSize + 1);
+
+        List<T> rows = mongoTemplate.find(query, type);
+        Long total = includeTotal
+            ? mongoTemplate.count(filter != null ? new Query(filter) : new Query(), type)
+            : null;
+        return page(rows, pageSize, total, keyOf);
+    }
+
+    /**
+     * Build a page from up to limit + 1 rows already in keyset order
+     */
+    public static <T> KeysetPage<T> page(List<T> rows, int limit, Long total, Function<T, Keyset> keyOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? rows.subList(0, limit) : rows;
+        String next = hasMore ? keyOf.apply(items.get(items.size() - 1)).encode() : null;
+        return new KeysetPage<>(items, next, hasMore, total);
+    }
+}
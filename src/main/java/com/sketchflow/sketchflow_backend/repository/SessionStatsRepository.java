@@ -0,0 +1,14 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.SessionStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SessionStatsRepository extends MongoRepository<SessionStats, String>, SessionStatsRepositoryCustom {
+    List<SessionStats> findByDirtyTrueAndUpdatedAtBefore(LocalDateTime cutoff, Pageable pageable);
+}
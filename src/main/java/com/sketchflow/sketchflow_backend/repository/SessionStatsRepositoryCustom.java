@@ -0,0 +1,37 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+/**
+ * Atomic counter updates that Spring Data cannot derive
+ */
+public interface SessionStatsRepositoryCustom {
+
+    /**
+     * Add persisted actions to a session's counter. Actions of a newer epoch than the
+     * counter's restart it at delta; actions of an older epoch were cleared and are ignored.
+     * @return how much the counter changed, for the global total
+     */
+    long addActions(String sessionId, long epoch, long delta);
+
+    /**
+     * Restart a session's counter at zero for a new clear epoch, unless it is already there
+     * @return how much the counter changed (minus the old count)
+     */
+    long resetEpoch(String sessionId, long epoch);
+
+    /**
+     * Create a counter with an initial count if the session has none yet
+     * @return whether it was created
+     */
+    boolean seed(String sessionId, long epoch, long count);
+
+    /**
+     * Replace a counter's value if it is still at (epoch, expected), and mark it reconciled
+     * @return whether it was replaced
+     */
+    boolean compareAndSetCount(String sessionId, long epoch, long expected, long actual);
+
+    /**
+     * Sum of all session counters (the global document excluded)
+     */
+    long sumSessionCounts();
+}
@@ -0,0 +1,85 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.model.SessionStats;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+public class SessionStatsRepositoryCustomImpl implements SessionStatsRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public long addActions(String sessionId, long epoch, long delta) {
+        LocalDateTime now = LocalDateTime.now();
+        long matched = mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(sessionId).and("epoch").is(epoch)),
+            new Update().inc("actionCount", delta).set("dirty", true).set("updatedAt", now),
+            SessionStats.class).getMatchedCount();
+        if (matched > 0) {
+            return delta;
+        }
+        // No counter yet, or one from before a clear: this epoch starts at delta
+        try {
+            SessionStats previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(sessionId).and("epoch").lt(epoch)),
+                new Update().set("epoch", epoch).set("actionCount", delta).set("dirty", true).set("updatedAt", now),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                SessionStats.class);
+            return delta - (previous != null ? previous.getActionCount() : 0);
+        } catch (DuplicateKeyException e) {
+            // The counter is at a newer epoch: these actions were cleared
+            return 0;
+        }
+    }
+
+    @Override
+    public long resetEpoch(String sessionId, long epoch) {
+        try {
+            SessionStats previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(sessionId).and("epoch").lt(epoch)),
+                new Update().set("epoch", epoch).set("actionCount", 0L).set("dirty", true).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                SessionStats.class);
+            return previous != null ? -previous.getActionCount() : 0;
+        } catch (DuplicateKeyException e) {
+            // Already at this epoch or a newer one
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean seed(String sessionId, long epoch, long count) {
+        return mongoTemplate.upsert(
+            new Query(Criteria.where("_id").is(sessionId)),
+            new Update().setOnInsert("epoch", epoch).setOnInsert("actionCount", count)
+                .setOnInsert("dirty", true).setOnInsert("updatedAt", LocalDateTime.now()),
+            SessionStats.class).getUpsertedId() != null;
+    }
+
+    @Override
+    public boolean compareAndSetCount(String sessionId, long epoch, long expected, long actual) {
+        return mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(sessionId).and("epoch").is(epoch).and("actionCount").is(expected)),
+            new Update().set("actionCount", actual).set("dirty", false).set("reconciledAt", LocalDateTime.now()),
+            SessionStats.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public long sumSessionCounts() {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("_id").ne(SessionStats.GLOBAL_ID)),
+            Aggregation.group().sum("actionCount").as("total"));
+        Document result = mongoTemplate.aggregate(aggregation, SessionStats.class, Document.class).getUniqueMappedResult();
+        return result != null ? ((Number) result.get("total")).longValue() : 0;
+    }
+}
@@ -0,0 +1,344 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Drops retried drawing actions (a REST POST repeated after a timeout, a DRAW re-sent after
+ * a reconnect) by the actionId the client chose for them.
+ * Each session keeps a Bloom filter of the ids it has seen, seeded from its canvas log in the
+ * background: an id the filter has never seen is new, which is the answer for nearly every
+ * action and costs a few hash probes. A filter hit is checked exactly against the ids claimed
+ * most recently and the in-memory canvas only; nothing here waits on the database, since
+ * claims are made on the WebSocket threads. A hit neither check confirms is accepted, so a
+ * false positive never drops a real action, and the unique _id index is the final check: the
+ * writer skips a retry as a duplicate key, and takes back an action whose id another session
+ * already stored (see DrawingActionWriteBehind). Until a session's filter is seeded only the
+ * in-memory checks apply; filters grow when they fill up and the least recently used ones
+ * are dropped beyond max-sessions.
+ */
+@Component
+public class ActionDeduplicator {
+
+    private static final Logger logger = Logger.getLogger(ActionDeduplicator.class.getName());
+
+    // Exact ids kept per session: covers claimed actions that have not reached the canvas yet
+    private static final int RECENT_IDS = 1024;
+
+    /**
+     * Outcome of claiming an actionId for a session
+     */
+    public enum Claim {
+        // Not seen before: store it
+        NEW,
+        // Already stored in this session: a retry
+        DUPLICATE
+    }
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Value("${whiteboard.dedup.expected-actions:10000}")
+    private int expectedActions;
+
+    @Value("${whiteboard.dedup.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${whiteboard.dedup.max-sessions:1000}")
+    private int maxSessions;
+
+    // Map: sessionId -> filter
+    private final Map<String, SessionFilter> filters = new ConcurrentHashMap<>();
+
+    // Seeds filters from the canvas (a hydrate may read Mongo) off the WebSocket threads
+    private final ExecutorService seeder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-DedupSeeder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong unconfirmedHits = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong seeds = new AtomicLong();
+
+    private static final class SessionFilter {
+        BloomFilter bloom;
+        // Filters that filled up before the rebuild replacing them was done, still consulted
+        final List<BloomFilter> full = new ArrayList<>();
+        boolean seeded;
+        boolean seeding;
+        final LinkedHashSet<String> recent = new LinkedHashSet<>();
+        volatile long lastUsed = System.currentTimeMillis();
+
+        boolean mightContain(String actionId) {
+            if (bloom.mightContain(actionId)) {
+                return true;
+            }
+            for (BloomFilter filled : full) {
+                if (filled.mightContain(actionId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Claim a client-supplied actionId for a session, without waiting on the database
+     * @return NEW if the action should be stored, DUPLICATE if this session already has it
+     */
+    public Claim claim(String sessionId, String actionId) {
+        if (sessionId == null || actionId == null) {
+            return Claim.NEW;
+        }
+        claims.incrementAndGet();
+        SessionFilter filter = filter(sessionId);
+        Claim claim;
+        synchronized (filter) {
+            if (filter.bloom == null) {
+                filter.bloom = new BloomFilter(expectedActions, falsePositiveRate);
+            }
+            if (!filter.seeded) {
+                scheduleSeed(sessionId, filter, filter.bloom.capacity());
+            }
+            if (filter.seeded && !filter.mightContain(actionId)) {
+                claim = Claim.NEW;
+            } else if (filter.recent.contains(actionId) || canvasStateStore.contains(sessionId, actionId)) {
+                claim = Claim.DUPLICATE;
+            } else {
+                // A false positive, or stored but no longer cached: the unique index decides
+                if (filter.seeded) {
+                    unconfirmedHits.incrementAndGet();
+                }
+                claim = Claim.NEW;
+            }
+            if (claim == Claim.NEW) {
+                remember(sessionId, filter, actionId);
+            }
+        }
+        if (claim == Claim.DUPLICATE) {
+            duplicates.incrementAndGet();
+        }
+        return claim;
+    }
+
+    /**
+     * Give back a claim whose action was refused before it was stored, so a retry is accepted.
+     * The filter keeps its bits; the retry's filter hit finds nothing cached and goes through.
+     */
+    public void release(String sessionId, String actionId) {
+        SessionFilter filter = filters.get(sessionId);
+        if (filter == null || actionId == null) {
+            return;
+        }
+        synchronized (filter) {
+            if (filter.recent.remove(actionId)) {
+                released.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop a session's filter (session deleted)
+     */
+    public void forget(String sessionId) {
+        filters.remove(sessionId);
+    }
+
+    private SessionFilter filter(String sessionId) {
+        SessionFilter filter = filters.get(sessionId);
+        if (filter == null) {
+            if (filters.size() >= maxSessions) {
+                evictLeastRecentlyUsed();
+            }
+            filter = filters.computeIfAbsent(sessionId, k -> new SessionFilter());
+        }
+        filter.lastUsed = System.currentTimeMillis();
+        return filter;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        String oldest = null;
+        long oldestUse = Long.MAX_VALUE;
+        for (Map.Entry<String, SessionFilter> entry : filters.entrySet()) {
+            if (entry.getValue().lastUsed < oldestUse) {
+                oldest = entry.getKey();
+                oldestUse = entry.getValue().lastUsed;
+            }
+        }
+        if (oldest != null) {
+            filters.remove(oldest);
+        }
+    }
+
+    /**
+     * Add a newly claimed id to the filters; call holding the filter lock
+     */
+    private void remember(String sessionId, SessionFilter filter, String actionId) {
+        filter.bloom.put(actionId);
+        if (filter.seeded && filter.bloom.size() >= filter.bloom.capacity()) {
+            // Full: the false-positive rate would climb. New ids go to a filter twice the size
+            // at once, and one filter is rebuilt from the canvas in the background
+            int capacity = filter.bloom.capacity() * 2;
+            filter.full.add(filter.bloom);
+            filter.bloom = new BloomFilter(capacity, falsePositiveRate);
+            scheduleSeed(sessionId, filter, capacity);
+        }
+        filter.recent.add(actionId);
+        if (filter.recent.size() > RECENT_IDS) {
+            Iterator<String> oldest = filter.recent.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Build a filter from the session's canvas log in the background; call holding the filter lock
+     */
+    private void scheduleSeed(String sessionId, SessionFilter filter, int capacity) {
+        if (filter.seeding) {
+            return;
+        }
+        filter.seeding = true;
+        seeder.execute(() -> {
+            BloomFilter bloom = new BloomFilter(capacity, falsePositiveRate);
+            try {
+                canvasStateStore.forEachActionId(sessionId, bloom::put);
+            } catch (Exception e) {
+                // Unseeded ids are still caught by the canvas and the unique index
+                logger.warning("Error seeding action filter for session " + sessionId + ": " + e.getMessage());
+            }
+            synchronized (filter) {
+                // Ids claimed meanwhile are on the canvas or among the recent ones
+                filter.recent.forEach(bloom::put);
+                filter.bloom = bloom;
+                filter.full.clear();
+                filter.seeded = true;
+                filter.seeding = false;
+            }
+            seeds.incrementAndGet();
+        });
+    }
+
+    /**
+     * Get deduplication statistics
+     */
+    public Map<String, Object> getStatistics() {
+        long filterBytes = 0;
+        for (SessionFilter filter : filters.values()) {
+            synchronized (filter) {
+                filterBytes += filter.bloom != null ? filter.bloom.bytes() : 0;
+                for (BloomFilter filled : filter.full) {
+                    filterBytes += filled.bytes();
+                }
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", filters.size());
+        stats.put("filterBytes", filterBytes);
+        stats.put("claims", claims.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("unconfirmedHits", unconfirmedHits.get());
+        stats.put("released", released.get());
+        stats.put("seeds", seeds.get());
+        stats.put("expectedActions", expectedActions);
+        stats.put("falsePositiveRate", falsePositiveRate);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        seeder.shutdownNow();
+    }
+
+    /**
+     * Fixed-size Bloom filter over strings, sized for a capacity and false-positive rate;
+     * probes use double hashing of one 64-bit hash. Not thread-safe.
+     */
+    static final class BloomFilter {
+        private final long[] words;
+        private final int bits;
+        private final int hashes;
+        private final int capacity;
+        private int size;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = Math.max(capacity, 1);
+            double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+            long m = (long) Math.ceil(-this.capacity * Math.log(p) / (Math.log(2) * Math.log(2)));
+            this.bits = (int) Math.min(Math.max(m, 64), Integer.MAX_VALUE - 63);
+            this.hashes = Math.max(1, (int) Math.round((double) bits / this.capacity * Math.log(2)));
+            this.words = new long[(bits + 63) / 64];
+        }
+
+        void put(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                words[bit >>> 6] |= 1L << bit;
+            }
+            size++;
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words[bit >>> 6] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        long bytes() {
+            return (long) words.length * Long.BYTES;
+        }
+
+        /**
+         * FNV-1a over the chars, finished with the MurmurHash3 mixer so both halves are usable
+         */
+        private static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
@@ -91,27 +92,18 @@ public class ActiveUserService {
     }
 
     /**
-     * Update user cursor position
+     * Update the cursor positions of several users of a session in one bulk write.
+     * Blocks on the database; callers run it on their own background thread.
      */
-    public void updateCursorPosition(String sessionId, String userId, double x, double y) {
-        executorService.submit(() -> {
-            Optional<ActiveUserSession> userSessionOpt =
-                activeUserRepository.findByUserIdAndSessionId(userId, sessionId);
-
-            if (userSessionOpt.isPresent()) {
-                ActiveUserSession userSession = userSessionOpt.get();
-                userSession.setCursorPosition(new ActiveUserSession.CursorPosition(x, y));
-                userSession.updateActivity();
-                activeUserRepository.save(userSession);
-            }
-        });
+    public void updateCursorPositions(String sessionId, Map<String, ActiveUserSession.CursorPosition> positions) {
+        activeUserRepository.updateCursorPositions(sessionId, positions);
     }
 
     /**
-     * Update user tool and color
+     * Update user tool and color in the background
      */
-    public void updateUserTool(String sessionId, String userId, String tool, String color) {
-        executorService.submit(() -> {
+    public CompletableFuture<Void> updateUserToolAsync(String sessionId, String userId, String tool, String color) {
+        return CompletableFuture.runAsync(() -> {
             Optional<ActiveUserSession> userSessionOpt =
                 activeUserRepository.findByUserIdAndSessionId(userId, sessionId);
 
@@ -122,14 +114,14 @@ public class ActiveUserService {
                 userSession.updateActivity();
                 activeUserRepository.save(userSession);
             }
-        });
+        }, executorService);
     }
 
     /**
-     * Update user activity timestamp
+     * Update user activity timestamp in the background
      */
-    public void updateActivity(String sessionId, String userId) {
-        executorService.submit(() -> {
+    public CompletableFuture<Void> updateActivityAsync(String sessionId, String userId) {
+        return CompletableFuture.runAsync(() -> {
             Optional<ActiveUserSession> userSessionOpt =
                 activeUserRepository.findByUserIdAndSessionId(userId, sessionId);
 
@@ -138,7 +130,7 @@ public class ActiveUserService {
                 userSession.updateActivity();
                 activeUserRepository.save(userSession);
             }
-        });
+        }, executorService);
     }
 
     /**
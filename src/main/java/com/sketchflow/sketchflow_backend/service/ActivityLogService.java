@@ -1,11 +1,15 @@
 package com.sketchflow.sketchflow_backend.service;
 
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
 import com.sketchflow.sketchflow_backend.model.ActivityLog;
 import com.sketchflow.sketchflow_backend.repository.ActivityLogRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import com.sketchflow.sketchflow_backend.repository.KeysetPager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -21,6 +25,7 @@ import java.util.List;
 public class ActivityLogService {
 
     private final ActivityLogRepository activityLogRepository;
+    private final KeysetPager keysetPager;
 
     /**
      * Log a user activity
@@ -93,6 +98,26 @@ public class ActivityLogService {
         return activityLogRepository.findBySeverityOrderByTimestampDesc(severity, pageable);
     }
 
+    /**
+     * Get one keyset page of activity logs, newest first, matching every filter given
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public KeysetPage<ActivityLog> getLogsPage(String userId, String action, String severity,
+                                               String cursor, int limit, boolean includeTotal) {
+        Criteria filter = new Criteria();
+        if (userId != null) {
+            filter = filter.and("userId").is(userId);
+        }
+        if (action != null) {
+            filter = filter.and("action").is(action);
+        }
+        if (severity != null) {
+            filter = filter.and("severity").is(severity);
+        }
+        return keysetPager.find(ActivityLog.class, filter, cursor, limit, true, includeTotal,
+            l -> new Keyset(l.getTimestamp(), l.getId()));
+    }
+
     /**
      * Get recent activity count
      */
@@ -111,9 +136,8 @@ public class ActivityLogService {
      * Get recent logs (last 100)
      */
     public List<ActivityLog> getRecentLogs(int limit) {
-        return activityLogRepository.findAllByOrderByTimestampDesc(
-            org.springframework.data.domain.PageRequest.of(0, limit)
-        ).getContent();
+        // First keyset page: no count query, unlike a Page
+        return getLogsPage(null, null, null, null, limit, false).getItems();
     }
 }
 
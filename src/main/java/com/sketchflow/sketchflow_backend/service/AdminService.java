@@ -26,7 +26,7 @@ public class AdminService {
     private final UserRepository userRepository;
     private final ActivityLogRepository activityLogRepository;
     private final WhiteboardSessionRepository whiteboardSessionRepository;
-    private final DrawingActionRepository drawingActionRepository;
+    private final SessionStatsService sessionStatsService;
     private final ActiveUserSessionRepository activeUserSessionRepository;
     private final PasswordEncoder passwordEncoder;
     private final EncryptionUtil encryptionUtil;
@@ -165,8 +165,8 @@ public class AdminService {
                     .count()
             );
 
-            // Drawing actions
-            metrics.setTotalDrawingActions(drawingActionRepository.count());
+            // Drawing actions: maintained counter over all sessions' current canvases
+            metrics.setTotalDrawingActions(sessionStatsService.getTotalActionCount());
 
             // Today's activity
             LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
@@ -0,0 +1,288 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasCheckpointRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes a session's drawing history as checkpoint plus tail.
+ * The latest complete checkpoint holds the folded canvas up to a (timestamp, actionId)
+ * position; drawing_actions only has to be read after that position, so loading a board
+ * costs one checkpoint plus a bounded tail however long its history is.
+ * Everything is read within one clear epoch: checkpoints and actions of older epochs are
+ * invisible here and only wait for the epoch collector.
+ */
+@Service
+public class CanvasCheckpointStore {
+
+    private static final Logger logger = Logger.getLogger(CanvasCheckpointStore.class.getName());
+
+    @Autowired
+    private CanvasCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private DrawingActionRepository actionRepository;
+
+    // Keeps each part well under the 16 MB document limit
+    @Value("${whiteboard.checkpoint.actions-per-part:2000}")
+    private int actionsPerPart;
+
+    /**
+     * Latest complete checkpoint header of a session in a clear epoch, or null if it has none
+     */
+    public CanvasCheckpoint latest(String sessionId, long epoch) {
+        List<CanvasCheckpoint> headers = headers(sessionId, epoch);
+        return headers.isEmpty() ? null : headers.get(0);
+    }
+
+    /**
+     * Position a checkpoint folds up to
+     */
+    public static Keyset positionOf(CanvasCheckpoint header) {
+        return new Keyset(header.getUpToTimestamp(), header.getUpToActionId());
+    }
+
+    /**
+     * Load every action of a session in canonical order: the latest checkpoint, then the tail
+     */
+    public List<DrawingAction> loadActions(String sessionId, long epoch) {
+        List<DrawingAction> actions = new ArrayList<>();
+        forEachAction(sessionId, epoch, actions::add);
+        return actions;
+    }
+
+    /**
+     * Pass every action of a session to the sink in canonical order, one checkpoint part
+     * and one cursor batch at a time
+     * @return the number of actions passed to the sink
+     */
+    public long forEachAction(String sessionId, long epoch, Consumer<DrawingAction> sink) {
+        CanvasCheckpoint header = latest(sessionId, epoch);
+        long count = 0;
+        Keyset position = null;
+        if (header != null) {
+            count = forEachFolded(header, sink);
+            position = positionOf(header);
+        }
+        try (Stream<DrawingAction> tail = actionRepository.streamTail(sessionId, epoch, position)) {
+            Iterator<DrawingAction> it = tail.iterator();
+            while (it.hasNext()) {
+                sink.accept(it.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pass the actions a checkpoint folds to the sink in canonical order, one part at a time
+     * @return the number of actions passed to the sink
+     */
+    public long forEachFolded(CanvasCheckpoint header, Consumer<DrawingAction> sink) {
+        long count = 0;
+        for (String partId : partIdsOf(header)) {
+            CanvasCheckpoint chunk = checkpointRepository.findById(partId)
+                .orElseThrow(() -> new IllegalStateException("Checkpoint " + header.getCheckpointId() + " is missing a part"));
+            for (DrawingAction action : chunk.getActions()) {
+                action.setSessionId(header.getSessionId());
+                sink.accept(action);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Every complete checkpoint header of a session in a clear epoch, newest first
+     */
+    public List<CanvasCheckpoint> headers(String sessionId, long epoch) {
+        return checkpointRepository.findBySessionIdAndEpochAndPartOrderByGenerationDesc(sessionId, epoch, 0);
+    }
+
+    /**
+     * Count the actions of a session without loading them
+     */
+    public long countActions(String sessionId, long epoch) {
+        CanvasCheckpoint header = latest(sessionId, epoch);
+        if (header == null) {
+            return actionRepository.countTail(sessionId, epoch, null);
+        }
+        return header.getActionCount() + actionRepository.countTail(sessionId, epoch, positionOf(header));
+    }
+
+    /**
+     * Write a new checkpoint folding the given actions, which must be in canonical order
+     * and include everything up to the last of them. Full parts of the previous checkpoint
+     * that still hold the same actions are shared rather than written again, so a new
+     * generation costs its changed tail parts, inserted in one bulk write, and a header.
+     * @return the header of the new checkpoint
+     */
+    public CanvasCheckpoint write(String sessionId, long epoch, List<DrawingAction> folded) {
+        CanvasCheckpoint previous = latest(sessionId, epoch);
+        long generation = Math.max(System.currentTimeMillis(), previous != null ? previous.getGeneration() + 1 : 0);
+
+        int parts = (folded.size() + actionsPerPart - 1) / actionsPerPart;
+        List<String> partIds = new ArrayList<>(parts);
+        List<Long> partDigests = new ArrayList<>(parts);
+        List<CanvasCheckpoint> written = new ArrayList<>();
+        for (int part = 1; part <= parts; part++) {
+            List<DrawingAction> slice = folded.subList((part - 1) * actionsPerPart, Math.min(part * actionsPerPart, folded.size()));
+            long digest = digest(slice);
+            partDigests.add(digest);
+            String shared = slice.size() == actionsPerPart ? sharedPart(previous, part, digest) : null;
+            if (shared != null) {
+                partIds.add(shared);
+                continue;
+            }
+            CanvasCheckpoint chunk = new CanvasCheckpoint();
+            chunk.setCheckpointId(partId(sessionId, generation, part));
+            chunk.setSessionId(sessionId);
+            chunk.setGeneration(generation);
+            chunk.setPart(part);
+            chunk.setEpoch(epoch);
+            chunk.setActions(new ArrayList<>(slice));
+            written.add(chunk);
+            partIds.add(chunk.getCheckpointId());
+        }
+        if (!written.isEmpty()) {
+            checkpointRepository.insert(written);
+        }
+
+        // The header goes last: readers only ever see complete checkpoints
+        DrawingAction last = folded.get(folded.size() - 1);
+        CanvasCheckpoint header = new CanvasCheckpoint();
+        header.setCheckpointId(partId(sessionId, generation, 0));
+        header.setSessionId(sessionId);
+        header.setGeneration(generation);
+        header.setPart(0);
+        header.setEpoch(epoch);
+        header.setParts(parts);
+        header.setCreatedAt(LocalDateTime.now());
+        header.setUpToTimestamp(last.getTimestamp());
+        header.setUpToActionId(last.getActionId());
+        header.setActionCount(folded.size());
+        header.setPartIds(partIds);
+        header.setPartDigests(partDigests);
+        checkpointRepository.save(header);
+
+        logger.fine("Wrote checkpoint " + header.getCheckpointId() + " folding " + folded.size() + " actions (" +
+            written.size() + " of " + parts + " parts new)");
+        return header;
+    }
+
+    /**
+     * Id of the previous checkpoint's part at the same position if it holds the same actions, or null
+     */
+    private static String sharedPart(CanvasCheckpoint previous, int part, long digest) {
+        if (previous == null || previous.getPartDigests() == null || previous.getPartDigests().size() < part) {
+            return null;
+        }
+        return previous.getPartDigests().get(part - 1) == digest ? previous.getPartIds().get(part - 1) : null;
+    }
+
+    /**
+     * 64-bit FNV-1a digest of the action ids of a part, in order
+     */
+    private static long digest(List<DrawingAction> slice) {
+        long digest = 0xcbf29ce484222325L;
+        for (DrawingAction action : slice) {
+            String id = String.valueOf(action.getActionId());
+            for (int i = 0; i < id.length(); i++) {
+                digest = (digest ^ id.charAt(i)) * 0x100000001b3L;
+            }
+            // Separator, so ids cannot run into each other
+            digest = (digest ^ 0xffff) * 0x100000001b3L;
+        }
+        return digest;
+    }
+
+    /**
+     * Delete all but the newest keep checkpoints of a session in a clear epoch, with the
+     * parts no remaining checkpoint shares, in one delete
+     * @return the number of checkpoints deleted
+     */
+    public int prune(String sessionId, long epoch, int keep) {
+        List<CanvasCheckpoint> headers = headers(sessionId, epoch);
+        int kept = Math.min(Math.max(keep, 1), headers.size());
+        Set<String> live = new HashSet<>();
+        for (CanvasCheckpoint header : headers.subList(0, kept)) {
+            live.addAll(partIdsOf(header));
+        }
+        Set<String> deleted = new LinkedHashSet<>();
+        for (CanvasCheckpoint header : headers.subList(kept, headers.size())) {
+            deleted.add(header.getCheckpointId());
+            partIdsOf(header).stream().filter(id -> !live.contains(id)).forEach(deleted::add);
+        }
+        if (!deleted.isEmpty()) {
+            checkpointRepository.deleteAllById(deleted);
+        }
+        return headers.size() - kept;
+    }
+
+    /**
+     * Checkpoint headers whose folded actions are all older than the cutoff and still in drawing_actions
+     */
+    public List<CanvasCheckpoint> findCompactable(LocalDateTime cutoff) {
+        return checkpointRepository.findByPartAndCompactedFalseAndUpToTimestampBefore(0, cutoff);
+    }
+
+    /**
+     * Record that the actions a checkpoint folds have left drawing_actions, unless the
+     * checkpoint has been deleted meanwhile (pruned or collected: it must not come back)
+     */
+    public void markCompacted(CanvasCheckpoint header) {
+        if (checkpointRepository.existsById(header.getCheckpointId())) {
+            header.setCompacted(true);
+            checkpointRepository.save(header);
+        }
+    }
+
+    /**
+     * Delete the checkpoints a session has left from clear epochs before the given one
+     * @return the number of documents deleted
+     */
+    public long deleteBeforeEpoch(String sessionId, long epoch) {
+        return checkpointRepository.deleteBySessionIdAndEpochLessThan(sessionId, epoch);
+    }
+
+    /**
+     * Delete every checkpoint of a session (session deleted)
+     */
+    public void deleteSession(String sessionId) {
+        checkpointRepository.deleteBySessionId(sessionId);
+    }
+
+    /**
+     * Ids of a checkpoint's parts in order
+     */
+    private static List<String> partIdsOf(CanvasCheckpoint header) {
+        if (header.getPartIds() != null) {
+            return header.getPartIds();
+        }
+        List<String> ids = new ArrayList<>();
+        for (int part = 1; part <= header.getParts(); part++) {
+            ids.add(partId(header.getSessionId(), header.getGeneration(), part));
+        }
+        return ids;
+    }
+
+    private static String partId(String sessionId, long generation, int part) {
+        return sessionId + ":" + generation + ":" + part;
+    }
+}
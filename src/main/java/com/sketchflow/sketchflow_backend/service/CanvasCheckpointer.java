@@ -0,0 +1,301 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Periodically folds each session's drawing log into a checkpoint and compacts the log.
+ *
+ * A session is checkpointed once this node has saved every-actions actions for it, or
+ * every-minutes after its first unfolded action. Only actions older than settle-ms are
+ * folded, so a late action (another node, a lagging writer) still lands in the tail.
+ * Checkpoints are written on the checkpointer's own thread once the session's writer has
+ * flushed the actions queued before them, and belong to the clear epoch of the canvas they
+ * fold; each one writes only the parts that changed since the last. Once a checkpoint is
+ * older than the retention window, the actions it folds are moved to
+ * drawing_actions_archive or deleted, depending on the compaction mode.
+ */
+@Component
+public class CanvasCheckpointer {
+
+    private static final Logger logger = Logger.getLogger(CanvasCheckpointer.class.getName());
+
+    public enum Compaction { ARCHIVE, DELETE, OFF }
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Autowired
+    private DrawingActionWriteBehind writeBehind;
+
+    @Autowired
+    private DrawingActionRepository actionRepository;
+
+    @Value("${whiteboard.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${whiteboard.checkpoint.every-actions:1000}")
+    private int everyActions;
+
+    @Value("${whiteboard.checkpoint.every-minutes:10}")
+    private long everyMinutes;
+
+    @Value("${whiteboard.checkpoint.settle-ms:10000}")
+    private long settleMs;
+
+    @Value("${whiteboard.checkpoint.check-interval-ms:5000}")
+    private long checkIntervalMs;
+
+    @Value("${whiteboard.checkpoint.keep:3}")
+    private int keep;
+
+    @Value("${whiteboard.checkpoint.compaction:archive}")
+    private String compactionSetting;
+
+    @Value("${whiteboard.checkpoint.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${whiteboard.checkpoint.compaction-interval-ms:600000}")
+    private long compactionIntervalMs;
+
+    private Compaction compaction;
+
+    // Map: sessionId -> actions saved here since its last checkpoint
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-Checkpointer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong checkpointsWritten = new AtomicLong();
+    private final AtomicLong actionsFolded = new AtomicLong();
+    private final AtomicLong checkpointFailures = new AtomicLong();
+    private final AtomicLong checkpointsPruned = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong actionsCompacted = new AtomicLong();
+    private final AtomicLong compactionFailures = new AtomicLong();
+
+    private static final class Progress {
+        final AtomicLong pending = new AtomicLong();
+        volatile long since = System.currentTimeMillis();
+        volatile boolean inFlight;
+    }
+
+    @PostConstruct
+    public void start() {
+        compaction = Compaction.valueOf(compactionSetting.trim().toUpperCase());
+        if (!enabled) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::safeCheckDue, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        if (compaction != Compaction.OFF) {
+            executor.scheduleWithFixedDelay(this::safeCompact, compactionIntervalMs, compactionIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Checkpointing canvases every " + everyActions + " actions or " + everyMinutes +
+            " minutes (compaction " + compaction + " after " + retentionHours + "h)");
+    }
+
+    /**
+     * Count an action saved by this node towards its session's next checkpoint
+     */
+    public void recordAction(String sessionId) {
+        if (!enabled) {
+            return;
+        }
+        progress.compute(sessionId, (k, p) -> {
+            Progress current = p != null ? p : new Progress();
+            current.pending.incrementAndGet();
+            return current;
+        });
+    }
+
+    /**
+     * Forget a session's progress (cleared or deleted)
+     */
+    public void reset(String sessionId) {
+        progress.remove(sessionId);
+    }
+
+    private void safeCheckDue() {
+        try {
+            checkDue();
+        } catch (Exception e) {
+            logger.severe("Error scheduling checkpoints: " + e.getMessage());
+        }
+    }
+
+    private void checkDue() {
+        long now = System.currentTimeMillis();
+        long maxAgeMs = TimeUnit.MINUTES.toMillis(everyMinutes);
+        progress.forEach((sessionId, p) -> {
+            long pending = p.pending.get();
+            boolean due = pending >= everyActions || (pending > 0 && now - p.since >= maxAgeMs);
+            if (!due || p.inFlight) {
+                return;
+            }
+            p.inFlight = true;
+            // The writer only marks when the earlier actions are flushed; the fold runs here
+            writeBehind.afterPending(sessionId, () -> { })
+                .thenRunAsync(() -> checkpoint(sessionId, p), executor)
+                .whenComplete((v, e) -> {
+                    p.inFlight = false;
+                    if (e != null) {
+                        checkpointFailures.incrementAndGet();
+                        logger.warning("Checkpoint failed for session " + sessionId + ": " + e.getMessage());
+                    }
+                });
+        });
+    }
+
+    /**
+     * Fold the settled part of a session's log into a new checkpoint. Runs on the checkpointer's thread.
+     */
+    private void checkpoint(String sessionId, Progress p) {
+        long pendingBefore = p.pending.get();
+        CanvasStateStore.CachedActions cached = canvasStateStore.peek(sessionId);
+        long epoch = cached != null && cached.hydrated() ? cached.epoch() : canvasStateStore.getEpoch(sessionId);
+        List<DrawingAction> actions = currentActions(sessionId, epoch, cached);
+
+        // Fold only what is old enough that nothing can still be inserted before it
+        LocalDateTime settled = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(settleMs));
+        int cut = actions.size();
+        while (cut > 0) {
+            LocalDateTime timestamp = actions.get(cut - 1).getTimestamp();
+            if (timestamp == null || !timestamp.isAfter(settled)) {
+                break;
+            }
+            cut--;
+        }
+
+        CanvasCheckpoint previous = checkpointStore.latest(sessionId, epoch);
+        boolean advanced = cut > 0 && (previous == null
+            || CanvasStateStore.ACTION_ORDER.compare(actions.get(cut - 1), positionProbe(previous)) > 0);
+        if (advanced) {
+            checkpointStore.write(sessionId, epoch, actions.subList(0, cut));
+            checkpointsWritten.incrementAndGet();
+            actionsFolded.addAndGet(cut);
+            checkpointsPruned.addAndGet(checkpointStore.prune(sessionId, epoch, keep));
+        }
+
+        // What is left unfolded, plus whatever was recorded while this ran
+        p.pending.addAndGet((actions.size() - cut) - pendingBefore);
+        p.since = System.currentTimeMillis();
+        progress.computeIfPresent(sessionId, (k, current) -> current.pending.get() <= 0 ? null : current);
+    }
+
+    /**
+     * The session's full log: from memory when hydrated, otherwise checkpoint plus tail
+     * merged with the actions cached since
+     */
+    private List<DrawingAction> currentActions(String sessionId, long epoch, CanvasStateStore.CachedActions cached) {
+        if (cached != null && cached.hydrated()) {
+            return cached.actions();
+        }
+        Map<String, DrawingAction> merged = new LinkedHashMap<>();
+        checkpointStore.forEachAction(sessionId, epoch, a -> merged.put(a.getActionId(), a));
+        if (cached != null) {
+            cached.actions().stream().filter(a -> a.getEpoch() == epoch).forEach(a -> merged.put(a.getActionId(), a));
+        }
+        List<DrawingAction> actions = new ArrayList<>(merged.values());
+        actions.sort(CanvasStateStore.ACTION_ORDER);
+        return actions;
+    }
+
+    private static DrawingAction positionProbe(CanvasCheckpoint header) {
+        DrawingAction probe = new DrawingAction();
+        probe.setTimestamp(header.getUpToTimestamp());
+        probe.setActionId(header.getUpToActionId());
+        return probe;
+    }
+
+    private void safeCompact() {
+        try {
+            compact();
+        } catch (Exception e) {
+            logger.severe("Error compacting drawing actions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Move or delete the actions folded by checkpoints that are past the retention window
+     */
+    public void compact() {
+        if (compaction == Compaction.OFF) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        for (CanvasCheckpoint header : checkpointStore.findCompactable(cutoff)) {
+            try {
+                long removed = actionRepository.compactUpTo(header.getSessionId(), header.getEpoch(),
+                    CanvasCheckpointStore.positionOf(header), compaction == Compaction.ARCHIVE);
+                checkpointStore.markCompacted(header);
+                compactions.incrementAndGet();
+                actionsCompacted.addAndGet(removed);
+                if (removed > 0) {
+                    logger.info("Compacted " + removed + " actions of session " + header.getSessionId() +
+                        " (" + compaction.name().toLowerCase() + ")");
+                }
+            } catch (Exception e) {
+                compactionFailures.incrementAndGet();
+                logger.warning("Compaction failed for session " + header.getSessionId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Compaction getCompaction() {
+        return compaction;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long pending = 0;
+        for (Progress p : progress.values()) {
+            pending += Math.max(p.pending.get(), 0);
+        }
+        stats.put("enabled", enabled);
+        stats.put("everyActions", everyActions);
+        stats.put("everyMinutes", everyMinutes);
+        stats.put("compaction", compaction != null ? compaction.name() : compactionSetting);
+        stats.put("retentionHours", retentionHours);
+        stats.put("trackedSessions", progress.size());
+        stats.put("pendingActions", pending);
+        stats.put("checkpointsWritten", checkpointsWritten.get());
+        stats.put("actionsFolded", actionsFolded.get());
+        stats.put("checkpointFailures", checkpointFailures.get());
+        stats.put("checkpointsPruned", checkpointsPruned.get());
+        stats.put("compactions", compactions.get());
+        stats.put("actionsCompacted", actionsCompacted.get());
+        stats.put("compactionFailures", compactionFailures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Deletes what cleared canvases left behind.
+ * A clear only starts a new epoch; this collector finds sessions whose older epochs have not
+ * been collected yet and deletes their actions in small batches, throttled to
+ * max-deletes-per-second so a large board never competes with live writes, then drops their
+ * checkpoints. A session cleared again while it is being collected is simply picked up on
+ * the next run.
+ */
+@Component
+public class CanvasEpochCollector {
+
+    private static final Logger logger = Logger.getLogger(CanvasEpochCollector.class.getName());
+
+    @Autowired
+    private CanvasEpochRepository epochRepository;
+
+    @Autowired
+    private DrawingActionRepository actionRepository;
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Value("${whiteboard.canvas.epoch-gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${whiteboard.canvas.epoch-gc.interval-ms:30000}")
+    private long intervalMs;
+
+    @Value("${whiteboard.canvas.epoch-gc.batch-size:500}")
+    private int batchSize;
+
+    @Value("${whiteboard.canvas.epoch-gc.max-deletes-per-second:2000}")
+    private int maxDeletesPerSecond;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-EpochCollector");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong sessionsCollected = new AtomicLong();
+    private final AtomicLong actionsDeleted = new AtomicLong();
+    private final AtomicLong checkpointsDeleted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile int backlog;
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::safeCollect, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void safeCollect() {
+        try {
+            collect();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.severe("Error collecting cleared canvases: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collect every session with uncollected epochs
+     */
+    public void collect() throws InterruptedException {
+        runs.incrementAndGet();
+        List<CanvasEpoch> uncollected = epochRepository.findByCollectedFalse();
+        backlog = uncollected.size();
+        for (CanvasEpoch epoch : uncollected) {
+            try {
+                collect(epoch);
+                backlog--;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                logger.warning("Could not collect cleared canvas of session " + epoch.getSessionId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void collect(CanvasEpoch epoch) throws InterruptedException {
+        String sessionId = epoch.getSessionId();
+        long deleted = 0;
+        int batch;
+        do {
+            batch = actionRepository.deleteBeforeEpoch(sessionId, epoch.getEpoch(), batchSize);
+            deleted += batch;
+            actionsDeleted.addAndGet(batch);
+            throttle(batch);
+        } while (batch >= batchSize);
+
+        checkpointsDeleted.addAndGet(checkpointStore.deleteBeforeEpoch(sessionId, epoch.getEpoch()));
+        if (epochRepository.markCollected(sessionId, epoch.getEpoch())) {
+            sessionsCollected.incrementAndGet();
+        }
+        if (deleted > 0) {
+            logger.info("Deleted " + deleted + " cleared actions of session " + sessionId);
+        }
+    }
+
+    private void throttle(int deleted) throws InterruptedException {
+        if (deleted > 0 && maxDeletesPerSecond > 0) {
+            Thread.sleep(deleted * 1000L / maxDeletesPerSecond);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDeletesPerSecond", maxDeletesPerSecond);
+        stats.put("runs", runs.get());
+        stats.put("backlog", backlog);
+        stats.put("sessionsCollected", sessionsCollected.get());
+        stats.put("actionsDeleted", actionsDeleted.get());
+        stats.put("checkpointsDeleted", checkpointsDeleted.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
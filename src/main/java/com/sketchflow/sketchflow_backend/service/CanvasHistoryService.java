@@ -0,0 +1,215 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reconstructs past states of a canvas for time travel and playback.
+ * The state at a time T is the newest checkpoint folding nothing after T, plus the log
+ * entries after that checkpoint up to T, replayed in canonical order; so a seek costs one
+ * checkpoint plus at most one checkpoint interval of log however old T is. Log entries are
+ * read from drawing_actions and, where compaction has archived them, drawing_actions_archive,
+ * merged into one ordered cursor.
+ * Only the current clear epoch can be replayed: older ones are deleted by the collector.
+ */
+@Service
+public class CanvasHistoryService {
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasCheckpointer checkpointer;
+
+    @Autowired
+    private DrawingActionRepository actionRepository;
+
+    @Autowired
+    private CanvasEpochRepository epochRepository;
+
+    // Metrics
+    private final AtomicLong seeks = new AtomicLong();
+    private final AtomicLong checkpointsUsed = new AtomicLong();
+    private final AtomicLong actionsReplayed = new AtomicLong();
+
+    /**
+     * Canvas of a session at a point in time
+     * @param checkpointId checkpoint the replay started from, or null if it started at the beginning
+     * @param position log position of the last entry applied, or null if nothing was
+     * @param replayed log entries read after the checkpoint
+     * @param complete false if part of the history before the state was deleted by compaction
+     */
+    public record HistoryState(long epoch, LocalDateTime at, String checkpointId, List<DrawingAction> actions,
+                               Keyset position, long replayed, boolean complete) {
+    }
+
+    /**
+     * Where replaying a session up to some time starts from
+     * @param start position after which the log is read, or null for its beginning
+     * @param archived whether part of the log after start is in drawing_actions_archive
+     */
+    public record Seek(long epoch, CanvasCheckpoint checkpoint, Keyset start, boolean archived, boolean complete) {
+    }
+
+    /**
+     * When the session's canvas was last cleared, or null if it never was; earlier states are gone
+     */
+    public LocalDateTime clearedAt(String sessionId) {
+        return epochRepository.findById(sessionId).map(CanvasEpoch::getClearedAt).orElse(null);
+    }
+
+    /**
+     * Reconstruct the canvas of a session as it was at a time, within the current clear epoch
+     */
+    public HistoryState stateAt(String sessionId, LocalDateTime at) {
+        Seek seek = seek(sessionId, at);
+        CanvasStateStore.Replay replay = new CanvasStateStore.Replay();
+        Keyset position = seek.start();
+        if (seek.checkpoint() != null) {
+            checkpointStore.forEachFolded(seek.checkpoint(), replay::add);
+            checkpointsUsed.incrementAndGet();
+        }
+        long replayed = 0;
+        try (Stream<DrawingAction> log = openLog(sessionId, seek, at)) {
+            Iterator<DrawingAction> it = log.iterator();
+            while (it.hasNext()) {
+                DrawingAction action = it.next();
+                replay.add(action);
+                position = new Keyset(action.getTimestamp(), action.getActionId());
+                replayed++;
+            }
+        }
+        seeks.incrementAndGet();
+        actionsReplayed.addAndGet(replayed);
+        return new HistoryState(seek.epoch(), at, seek.checkpoint() != null ? seek.checkpoint().getCheckpointId() : null,
+            replay.visible(), position, replayed, seek.complete());
+    }
+
+    /**
+     * Find the newest checkpoint of the current epoch that folds nothing after a time
+     * @param at the time, or null to start from the beginning of the log
+     */
+    public Seek seek(String sessionId, LocalDateTime at) {
+        long epoch = epochRepository.findById(sessionId).map(CanvasEpoch::getEpoch).orElse(0L);
+        List<CanvasCheckpoint> headers = checkpointStore.headers(sessionId, epoch);
+        CanvasCheckpoint base = null;
+        if (at != null) {
+            for (CanvasCheckpoint header : headers) {
+                if (header.getUpToTimestamp() != null && !header.getUpToTimestamp().isAfter(at)) {
+                    base = header;
+                    break;
+                }
+            }
+        }
+        Keyset start = base != null ? CanvasCheckpointStore.positionOf(base) : null;
+
+        // Compaction moves or deletes what a checkpoint folds; it only matters after start
+        boolean compacted = false;
+        for (CanvasCheckpoint header : headers) {
+            if (header.isCompacted() && (start == null || compare(CanvasCheckpointStore.positionOf(header), start) > 0)) {
+                compacted = true;
+                break;
+            }
+        }
+        boolean deleted = compacted && checkpointer.getCompaction() == CanvasCheckpointer.Compaction.DELETE;
+        return new Seek(epoch, base, start, compacted && !deleted, !deleted);
+    }
+
+    /**
+     * Open the log of a session after a seek's start, up to and including a time (null: to
+     * the end), in canonical order; the stream must be closed
+     */
+    public Stream<DrawingAction> openLog(String sessionId, Seek seek, LocalDateTime upTo) {
+        Stream<DrawingAction> live = actionRepository.streamRange(sessionId, seek.epoch(), seek.start(), upTo, false);
+        if (!seek.archived()) {
+            return live;
+        }
+        Stream<DrawingAction> archive;
+        try {
+            archive = actionRepository.streamRange(sessionId, seek.epoch(), seek.start(), upTo, true);
+        } catch (RuntimeException e) {
+            live.close();
+            throw e;
+        }
+        Iterator<DrawingAction> merged = new MergedLog(archive.iterator(), live.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(archive::close)
+            .onClose(live::close);
+    }
+
+    private static int compare(Keyset a, Keyset b) {
+        int byTime = a.timestamp() == null || b.timestamp() == null
+            ? Boolean.compare(a.timestamp() != null, b.timestamp() != null)
+            : a.timestamp().compareTo(b.timestamp());
+        return byTime != 0 ? byTime : a.id().compareTo(b.id());
+    }
+
+    /**
+     * Two cursors in canonical order merged into one; an action caught between the archive
+     * insert and the live delete of a compaction is in both and comes out once
+     */
+    private static final class MergedLog implements Iterator<DrawingAction> {
+        private final Iterator<DrawingAction> left;
+        private final Iterator<DrawingAction> right;
+        private DrawingAction nextLeft;
+        private DrawingAction nextRight;
+
+        MergedLog(Iterator<DrawingAction> left, Iterator<DrawingAction> right) {
+            this.left = left;
+            this.right = right;
+            nextLeft = left.hasNext() ? left.next() : null;
+            nextRight = right.hasNext() ? right.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLeft != null || nextRight != null;
+        }
+
+        @Override
+        public DrawingAction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int order = nextLeft == null ? 1 : nextRight == null ? -1 : CanvasStateStore.ACTION_ORDER.compare(nextLeft, nextRight);
+            DrawingAction action;
+            if (order <= 0) {
+                action = nextLeft;
+                nextLeft = left.hasNext() ? left.next() : null;
+                if (order == 0) {
+                    nextRight = right.hasNext() ? right.next() : null;
+                }
+            } else {
+                action = nextRight;
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+            return action;
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("seeks", seeks.get());
+        stats.put("checkpointsUsed", checkpointsUsed.get());
+        stats.put("actionsReplayed", actionsReplayed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,856 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.cluster.WhiteboardEventBus;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import com.sketchflow.sketchflow_backend.spatial.StrokeQuadtree;
+import com.sketchflow.sketchflow_backend.websocket.WebSocketSessionManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Authoritative in-memory canvas state for active whiteboard sessions.
+ * Keeps the ordered action log of each session in memory so joins and history reads
+ * do not replay the drawing_actions collection. A session is hydrated from MongoDB once,
+ * on first read, from its latest checkpoint plus the tail of the log, and evicted once its
+ * last connection has left and an idle grace period has passed.
+ * Each session also keeps a quadtree over stroke bounds for viewport-scoped reads.
+ * Local mutations are published on the event bus (CANVAS_APPEND / CANVAS_REMOVE /
+ * CANVAS_CLEAR) so the copies held by other nodes stay in step; when the bus reports some
+ * of them lost, the
+ * session is hydrated again once the origin node has had time to persist them.
+ * A clear moves the session to a new clear epoch instead of deleting anything: actions are
+ * stamped with the epoch they were appended in, and an action from an older epoch is
+ * dropped wherever it turns up, so strokes racing a clear can never outlive it.
+ * Undo and redo are tombstones in the same log (actionType "undo" / "redo" naming a target
+ * action): applying one only hides or restores its target, and reads skip hidden actions
+ * and the tombstones themselves.
+ */
+@Service
+public class CanvasStateStore {
+
+    private static final Logger logger = Logger.getLogger(CanvasStateStore.class.getName());
+
+    // Tombstone action types
+    public static final String UNDO = "undo";
+    public static final String REDO = "redo";
+
+    // Canonical action order: timestamp, then actionId as a tie-breaker
+    static final Comparator<DrawingAction> ACTION_ORDER = Comparator
+        .comparing(DrawingAction::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(DrawingAction::getActionId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    // Map: sessionId -> canvas state
+    private final Map<String, SessionCanvas> canvases = new ConcurrentHashMap<>();
+
+    // Pool for hydrating sessions off the WebSocket threads
+    private final ExecutorService hydrationExecutor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "Whiteboard-CanvasHydrator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-CanvasEvictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong hydrations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong staleDrops = new AtomicLong();
+    private final AtomicLong gapResyncs = new AtomicLong();
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasEpochRepository epochRepository;
+
+    @Autowired
+    private WebSocketSessionManager sessionManager;
+
+    @Autowired
+    private WhiteboardEventBus eventBus;
+
+    @Value("${whiteboard.canvas.idle-grace-ms:300000}")
+    private long idleGraceMs;
+
+    @Value("${whiteboard.canvas.gap-resync-delay-ms:2000}")
+    private long gapResyncDelayMs;
+
+    // Told which canvas area each mutation changed (null: all of it), outside the canvas lock
+    private volatile BiConsumer<String, BoundingBox> changeListener;
+
+    @PostConstruct
+    public void start() {
+        eventBus.addListener(this::applyRemote);
+        eventBus.addGapListener(this::scheduleGapResync);
+        evictionExecutor.scheduleAtFixedRate(this::evictIdleSessions, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Register the sink told about the canvas area each mutation changes
+     * (e.g. to invalidate rendered tiles); a null area means the whole canvas
+     */
+    public void setChangeListener(BiConsumer<String, BoundingBox> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Record a new action, stamping it with the session's current clear epoch.
+     * Sessions that are not hydrated yet buffer it and merge it on hydration.
+     */
+    public void append(DrawingAction action) {
+        append(action, true);
+    }
+
+    /**
+     * Record a new action already stamped with the epoch it was drawn in (read with getEpoch
+     * before it was persisted). If a clear has moved the session past that epoch since, the
+     * action is dropped, as it is wherever an action from an older epoch turns up.
+     * @return false if it was dropped
+     */
+    public boolean appendStamped(DrawingAction action) {
+        return append(action, false);
+    }
+
+    private boolean append(DrawingAction action, boolean stamp) {
+        SessionCanvas canvas = canvases.computeIfAbsent(action.getSessionId(), k -> new SessionCanvas());
+        if (stamp) {
+            // Stamping needs the epoch; resolving it is the only read, done outside the lock
+            resolveEpoch(action.getSessionId(), canvas);
+        }
+        BoundingBox changed;
+        synchronized (canvas) {
+            if (stamp) {
+                action.setEpoch(canvas.epoch);
+            } else if (canvas.epoch < 0) {
+                // Epoch not known yet: buffer it, stale ones are dropped once it is settled
+                loadEpochAsync(action.getSessionId(), canvas);
+            } else if (action.getEpoch() < canvas.epoch) {
+                staleDrops.incrementAndGet();
+                return false;
+            }
+            canvas.insert(action);
+            canvas.touch();
+            changed = canvas.changedArea(action);
+        }
+        if (changed != null) {
+            notifyChanged(action.getSessionId(), changed);
+        }
+
+        WebSocketMessage event = new WebSocketMessage();
+        event.setType("CANVAS_APPEND");
+        event.setActions(List.of(action));
+        eventBus.publish(action.getSessionId(), event);
+        return true;
+    }
+
+    /**
+     * Take back an action that was appended but will never be stored
+     * @return whether this node had it cached
+     */
+    public boolean remove(String sessionId, String actionId) {
+        boolean removed = removeLocal(sessionId, actionId);
+
+        WebSocketMessage event = new WebSocketMessage();
+        event.setType("CANVAS_REMOVE");
+        event.setActionId(actionId);
+        eventBus.publish(sessionId, event);
+        return removed;
+    }
+
+    private boolean removeLocal(String sessionId, String actionId) {
+        SessionCanvas canvas = canvases.get(sessionId);
+        if (canvas == null || actionId == null) {
+            return false;
+        }
+        BoundingBox changed;
+        synchronized (canvas) {
+            DrawingAction removed = canvas.remove(actionId);
+            if (removed == null) {
+                return false;
+            }
+            changed = isTombstone(removed) ? null : BoundingBox.of(removed);
+        }
+        notifyChanged(sessionId, changed);
+        return true;
+    }
+
+    /**
+     * Clear a session's canvas immediately by moving it to a new clear epoch
+     * @return the new epoch
+     */
+    public long clear(String sessionId) {
+        long epoch = epochRepository.incrementEpoch(sessionId);
+        clearLocal(sessionId, epoch);
+
+        WebSocketMessage event = new WebSocketMessage();
+        event.setType("CANVAS_CLEAR");
+        event.setEpoch(epoch);
+        eventBus.publish(sessionId, event);
+        return epoch;
+    }
+
+    /**
+     * Current clear epoch of a session; reads MongoDB if it is not known on this node yet
+     */
+    public long getEpoch(String sessionId) {
+        SessionCanvas canvas = canvases.get(sessionId);
+        if (canvas == null) {
+            return loadEpoch(sessionId);
+        }
+        return resolveEpoch(sessionId, canvas);
+    }
+
+    /**
+     * Current clear epoch of a session without touching MongoDB, for message handler paths.
+     * A session has it from the moment it is hydrated, which JOIN starts.
+     * @throws RejectedExecutionException if it is not known yet; loading it is started, retry later
+     */
+    public long getLoadedEpoch(String sessionId) {
+        SessionCanvas canvas = canvases.computeIfAbsent(sessionId, k -> new SessionCanvas());
+        synchronized (canvas) {
+            if (canvas.epoch < 0) {
+                loadEpochAsync(sessionId, canvas);
+                throw new RejectedExecutionException("Clear epoch of session " + sessionId + " is still loading");
+            }
+            canvas.touch();
+            return canvas.epoch;
+        }
+    }
+
+    /**
+     * Apply a canvas mutation published by another node
+     */
+    private void applyRemote(String sessionId, WebSocketMessage event) {
+        if ("CANVAS_APPEND".equals(event.getType()) && event.getActions() != null) {
+            for (DrawingAction action : event.getActions()) {
+                action.setSessionId(sessionId);
+                appendLocal(action);
+            }
+        } else if ("CANVAS_REMOVE".equals(event.getType())) {
+            removeLocal(sessionId, event.getActionId());
+        } else if ("CANVAS_CLEAR".equals(event.getType()) && event.getEpoch() != null) {
+            clearLocal(sessionId, event.getEpoch());
+        }
+    }
+
+    /**
+     * Events another node published for a session were lost: reload the session after a
+     * delay, since the missing actions reach MongoDB through the origin's write-behind
+     */
+    private void scheduleGapResync(String sessionId) {
+        if (!canvases.containsKey(sessionId)) {
+            // Not cached here: the next read hydrates it from MongoDB anyway
+            return;
+        }
+        evictionExecutor.schedule(() -> resync(sessionId), gapResyncDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void resync(String sessionId) {
+        try {
+            SessionCanvas canvas = canvases.get(sessionId);
+            if (canvas == null) {
+                return;
+            }
+            synchronized (canvas) {
+                if (!canvas.hydrated) {
+                    return;
+                }
+                // Hydration merges what is persisted with the cached log, so nothing cached is lost
+                canvas.hydrated = false;
+            }
+            hydrate(sessionId);
+            gapResyncs.incrementAndGet();
+            logger.info("Re-hydrated canvas for session " + sessionId + " after lost bus events");
+            notifyChanged(sessionId, null);
+        } catch (Exception e) {
+            logger.severe("Error re-hydrating canvas for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    private void appendLocal(DrawingAction action) {
+        SessionCanvas canvas = canvases.computeIfAbsent(action.getSessionId(), k -> new SessionCanvas());
+        boolean cleared = false;
+        BoundingBox changed;
+        synchronized (canvas) {
+            if (canvas.epoch < 0) {
+                // Epoch not known yet: buffer it, stale ones are dropped once it is settled
+                loadEpochAsync(action.getSessionId(), canvas);
+            } else if (action.getEpoch() < canvas.epoch) {
+                // Drawn before a clear this node has already applied
+                staleDrops.incrementAndGet();
+                return;
+            } else if (action.getEpoch() > canvas.epoch) {
+                // The clear that started this epoch has not arrived yet
+                reset(canvas, action.getEpoch());
+                cleared = true;
+            }
+            canvas.insert(action);
+            canvas.touch();
+            changed = canvas.changedArea(action);
+        }
+        if (cleared || changed != null) {
+            notifyChanged(action.getSessionId(), cleared ? null : changed);
+        }
+    }
+
+    private void clearLocal(String sessionId, long epoch) {
+        SessionCanvas canvas = canvases.computeIfAbsent(sessionId, k -> new SessionCanvas());
+        boolean cleared = false;
+        synchronized (canvas) {
+            if (canvas.epoch < epoch) {
+                reset(canvas, epoch);
+                cleared = true;
+            }
+            canvas.touch();
+        }
+        if (cleared) {
+            notifyChanged(sessionId, null);
+        }
+    }
+
+    private void notifyChanged(String sessionId, BoundingBox area) {
+        BiConsumer<String, BoundingBox> listener = changeListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(sessionId, area);
+        } catch (Exception e) {
+            logger.warning("Error notifying canvas change of session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    private static void reset(SessionCanvas canvas, long epoch) {
+        canvas.actions.clear();
+        canvas.rebuild();
+        canvas.epoch = epoch;
+        // The new epoch starts empty: there is nothing to hydrate
+        canvas.hydrated = true;
+    }
+
+    /**
+     * Epoch of a cached session, read from MongoDB the first time without holding the canvas lock
+     */
+    private long resolveEpoch(String sessionId, SessionCanvas canvas) {
+        synchronized (canvas) {
+            if (canvas.epoch >= 0) {
+                return canvas.epoch;
+            }
+        }
+        long loaded = loadEpoch(sessionId);
+        synchronized (canvas) {
+            settleEpoch(canvas, loaded);
+            return canvas.epoch;
+        }
+    }
+
+    /**
+     * Resolve a session's epoch in the background, once at a time; call holding the canvas lock
+     */
+    private void loadEpochAsync(String sessionId, SessionCanvas canvas) {
+        if (canvas.epochLoading) {
+            return;
+        }
+        canvas.epochLoading = true;
+        try {
+            hydrationExecutor.execute(() -> {
+                try {
+                    resolveEpoch(sessionId, canvas);
+                } catch (Exception e) {
+                    logger.warning("Error loading clear epoch of session " + sessionId + ": " + e.getMessage());
+                } finally {
+                    synchronized (canvas) {
+                        canvas.epochLoading = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            canvas.epochLoading = false;
+        }
+    }
+
+    /**
+     * Fix the epoch of a session it was unknown for; call holding the canvas lock.
+     * An action buffered meanwhile from a newer epoch means a clear the read missed, and
+     * those from older epochs are dropped.
+     */
+    private void settleEpoch(SessionCanvas canvas, long loaded) {
+        if (canvas.epoch >= 0) {
+            // A clear set it meanwhile
+            return;
+        }
+        long epoch = loaded;
+        for (DrawingAction action : canvas.actions) {
+            epoch = Math.max(epoch, action.getEpoch());
+        }
+        long settled = epoch;
+        canvas.epoch = settled;
+        int buffered = canvas.actions.size();
+        if (canvas.actions.removeIf(action -> action.getEpoch() < settled)) {
+            staleDrops.addAndGet(buffered - canvas.actions.size());
+            canvas.rebuild();
+        }
+    }
+
+    private long loadEpoch(String sessionId) {
+        return epochRepository.findById(sessionId).map(CanvasEpoch::getEpoch).orElse(0L);
+    }
+
+    /**
+     * Whether an action is an undo/redo tombstone rather than something drawn
+     */
+    public static boolean isTombstone(DrawingAction action) {
+        return UNDO.equals(action.getActionType()) || REDO.equals(action.getActionType());
+    }
+
+    /**
+     * Drop all state for a session (session deleted)
+     */
+    public void evict(String sessionId) {
+        canvases.remove(sessionId);
+    }
+
+    /**
+     * Get a snapshot of the visible actions in canonical order, hydrating from MongoDB on first access
+     */
+    public List<DrawingAction> getActions(String sessionId) {
+        SessionCanvas canvas = hydrate(sessionId);
+        synchronized (canvas) {
+            return canvas.visible(0, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Snapshot of what is cached for a session without hydrating it, or null if nothing is.
+     * The actions are the raw log, tombstones and undone actions included; when not
+     * hydrated, they are only those appended since caching began.
+     */
+    public CachedActions peek(String sessionId) {
+        SessionCanvas canvas = canvases.get(sessionId);
+        if (canvas == null) {
+            return null;
+        }
+        synchronized (canvas) {
+            return new CachedActions(canvas.hydrated, canvas.epoch, new ArrayList<>(canvas.actions));
+        }
+    }
+
+    /**
+     * Cached actions of a session; epoch is -1 while it is not known yet
+     */
+    public record CachedActions(boolean hydrated, long epoch, List<DrawingAction> actions) {
+    }
+
+    /**
+     * Hydrate a session without blocking the caller
+     */
+    public CompletableFuture<Void> hydrateAsync(String sessionId) {
+        return CompletableFuture.runAsync(() -> hydrate(sessionId), hydrationExecutor);
+    }
+
+    /**
+     * Get a page of the visible actions
+     */
+    public List<DrawingAction> getActions(String sessionId, int offset, int limit) {
+        SessionCanvas canvas = hydrate(sessionId);
+        synchronized (canvas) {
+            return canvas.visible(0, Math.max(offset, 0), Math.max(limit, 0));
+        }
+    }
+
+    /**
+     * Get up to limit visible actions strictly after a (timestamp, actionId) position in
+     * canonical order, located by binary search; null starts from the beginning
+     */
+    public List<DrawingAction> getActionsAfter(String sessionId, Keyset after, int limit) {
+        SessionCanvas canvas = hydrate(sessionId);
+        synchronized (canvas) {
+            int from = 0;
+            if (after != null) {
+                DrawingAction probe = new DrawingAction();
+                probe.setTimestamp(after.timestamp());
+                probe.setActionId(after.id());
+                int i = Collections.binarySearch(canvas.actions, probe, ACTION_ORDER);
+                from = i >= 0 ? i + 1 : -(i + 1);
+            }
+            return canvas.visible(from, 0, Math.max(limit, 0));
+        }
+    }
+
+    /**
+     * Get the actions whose bounds intersect the box, in canonical order
+     */
+    public List<DrawingAction> getActionsInViewport(String sessionId, BoundingBox viewport) {
+        SessionCanvas canvas = hydrate(sessionId);
+        List<DrawingAction> visible;
+        synchronized (canvas) {
+            visible = canvas.index.query(viewport);
+        }
+        visible.sort(ACTION_ORDER);
+        return visible;
+    }
+
+    /**
+     * Get the number of visible actions on the canvas
+     */
+    public int getActionCount(String sessionId) {
+        SessionCanvas canvas = hydrate(sessionId);
+        synchronized (canvas) {
+            return canvas.visibleCount();
+        }
+    }
+
+    /**
+     * Whether the cached canvas holds a drawn action with this id, without hydrating:
+     * false only means it has not been appended here since caching began
+     */
+    public boolean contains(String sessionId, String actionId) {
+        SessionCanvas canvas = canvases.get(sessionId);
+        if (canvas == null) {
+            return false;
+        }
+        synchronized (canvas) {
+            return canvas.drawn.containsKey(actionId);
+        }
+    }
+
+    /**
+     * Pass the id of every entry in the current epoch's log, tombstones included,
+     * to the sink, hydrating the session if needed; the sink runs holding the canvas lock
+     */
+    public void forEachActionId(String sessionId, Consumer<String> sink) {
+        SessionCanvas canvas = hydrate(sessionId);
+        synchronized (canvas) {
+            for (DrawingAction action : canvas.actions) {
+                sink.accept(action.getActionId());
+            }
+        }
+    }
+
+    /**
+     * Restart the idle grace period (e.g. the last connection just left)
+     */
+    public void touch(String sessionId) {
+        SessionCanvas canvas = canvases.get(sessionId);
+        if (canvas != null) {
+            canvas.touch();
+        }
+    }
+
+    private SessionCanvas hydrate(String sessionId) {
+        reads.incrementAndGet();
+        SessionCanvas canvas = canvases.computeIfAbsent(sessionId, k -> new SessionCanvas());
+        CompletableFuture<Void> loading;
+        boolean loader = false;
+        synchronized (canvas) {
+            canvas.touch();
+            if (canvas.hydrated) {
+                return canvas;
+            }
+            if (canvas.loading == null) {
+                canvas.loading = new CompletableFuture<>();
+                loader = true;
+            }
+            loading = canvas.loading;
+        }
+        if (!loader) {
+            // Another thread is already reading it
+            try {
+                loading.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            return canvas;
+        }
+        try {
+            load(sessionId, canvas);
+            loading.complete(null);
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (canvas) {
+                canvas.loading = null;
+            }
+        }
+        return canvas;
+    }
+
+    /**
+     * Read a session's persisted log without holding the canvas lock, so appends and the
+     * bus receiver are not held up by MongoDB, then merge it under the lock
+     */
+    private void load(String sessionId, SessionCanvas canvas) {
+        long epoch = resolveEpoch(sessionId, canvas);
+        List<DrawingAction> persisted = checkpointStore.loadActions(sessionId, epoch);
+        synchronized (canvas) {
+            if (canvas.hydrated || canvas.epoch != epoch) {
+                // Cleared while reading: the new epoch started empty
+                return;
+            }
+
+            // Merge with actions appended before hydration; some may already be persisted
+            Map<String, DrawingAction> merged = new LinkedHashMap<>();
+            for (DrawingAction action : persisted) {
+                merged.put(action.getActionId(), action);
+            }
+            for (DrawingAction action : canvas.actions) {
+                merged.put(action.getActionId(), action);
+            }
+            canvas.actions.clear();
+            canvas.actions.addAll(merged.values());
+            canvas.actions.sort(ACTION_ORDER);
+            canvas.rebuild();
+            canvas.hydrated = true;
+
+            hydrations.incrementAndGet();
+            logger.info("Hydrated canvas for session " + sessionId + " with " + canvas.actions.size() + " actions");
+        }
+    }
+
+    private void evictIdleSessions() {
+        try {
+            long threshold = System.currentTimeMillis() - idleGraceMs;
+            canvases.forEach((sessionId, canvas) -> {
+                if (canvas.lastAccess < threshold && sessionManager.getConnectionCount(sessionId) == 0
+                        && canvases.remove(sessionId, canvas)) {
+                    evictions.incrementAndGet();
+                    logger.info("Evicted idle canvas state for session " + sessionId);
+                }
+            });
+        } catch (Exception e) {
+            logger.severe("Error evicting canvas state: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get store statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long cachedActions = 0;
+        long undoneActions = 0;
+        for (SessionCanvas canvas : canvases.values()) {
+            synchronized (canvas) {
+                cachedActions += canvas.actions.size();
+                undoneActions += canvas.undone.size();
+            }
+        }
+        stats.put("cachedSessions", canvases.size());
+        stats.put("cachedActions", cachedActions);
+        stats.put("undoneActions", undoneActions);
+        stats.put("hydrations", hydrations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("reads", reads.get());
+        stats.put("staleEpochDrops", staleDrops.get());
+        stats.put("gapResyncs", gapResyncs.get());
+        stats.put("idleGraceMs", idleGraceMs);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hydrationExecutor.shutdown();
+        evictionExecutor.shutdown();
+    }
+
+    /**
+     * Canvas rebuilt from a log read in canonical order, applied exactly as a live session
+     * applies it (tombstones hide and restore their targets); used to reconstruct past states
+     */
+    public static final class Replay {
+        private final SessionCanvas canvas = new SessionCanvas();
+
+        public void add(DrawingAction action) {
+            canvas.actions.add(action);
+            canvas.apply(action);
+        }
+
+        /**
+         * Number of log entries replayed, tombstones included
+         */
+        public int size() {
+            return canvas.actions.size();
+        }
+
+        /**
+         * The visible actions in canonical order
+         */
+        public List<DrawingAction> visible() {
+            return canvas.visible(0, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Ordered action log of one session, and the canvas it replays to
+     */
+    private static class SessionCanvas {
+        // The log in canonical order, tombstones included
+        final List<DrawingAction> actions = new ArrayList<>();
+        // Map: actionId -> drawn (non-tombstone) action
+        final Map<String, DrawingAction> drawn = new HashMap<>();
+        // Drawn actions currently hidden by an undo; never in the index
+        final Set<String> undone = new HashSet<>();
+        final StrokeQuadtree index = new StrokeQuadtree();
+        int tombstones;
+        boolean hydrated;
+        // Clear epoch of the cached actions, -1 until loaded
+        long epoch = -1;
+        boolean epochLoading;
+        // Pending read of the persisted log, joined by concurrent readers
+        CompletableFuture<Void> loading;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        /**
+         * Insert keeping canonical order; new actions almost always land at the end.
+         * An action that cannot be applied is not left in the log.
+         */
+        void insert(DrawingAction action) {
+            int i = actions.size();
+            while (i > 0 && ACTION_ORDER.compare(actions.get(i - 1), action) > 0) {
+                i--;
+            }
+            if (i < actions.size() && tombstones > 0) {
+                // Lands before tombstones already applied: replay so they apply in log order
+                actions.add(i, action);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    actions.remove(i);
+                    rebuild();
+                    throw e;
+                }
+            } else {
+                apply(action);
+                actions.add(i, action);
+            }
+        }
+
+        /**
+         * Remove an entry from the log and replay it, so tombstones naming it no longer apply
+         * @return the removed entry, or null if it is not in the log
+         */
+        DrawingAction remove(String actionId) {
+            for (int i = actions.size() - 1; i >= 0; i--) {
+                DrawingAction action = actions.get(i);
+                if (actionId.equals(action.getActionId())) {
+                    actions.remove(i);
+                    rebuild();
+                    return action;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Apply one log entry to the canvas: index a drawn action, or hide / restore the
+         * target of a tombstone. Constant time either way.
+         */
+        void apply(DrawingAction action) {
+            if (!isTombstone(action)) {
+                // Index first: an action the index rejects leaves no trace
+                if (!undone.contains(action.getActionId())) {
+                    index.insert(action);
+                }
+                drawn.put(action.getActionId(), action);
+                return;
+            }
+            tombstones++;
+            String targetId = action.getTargetActionId();
+            DrawingAction target = targetId != null ? drawn.get(targetId) : null;
+            if (target == null) {
+                // Cleared, or drawn in a part of the log this node has not seen
+                return;
+            }
+            if (UNDO.equals(action.getActionType())) {
+                if (undone.add(targetId)) {
+                    index.remove(targetId);
+                }
+            } else if (undone.remove(targetId)) {
+                index.insert(target);
+            }
+        }
+
+        /**
+         * Replay the whole log into a fresh canvas
+         */
+        void rebuild() {
+            drawn.clear();
+            undone.clear();
+            index.clear();
+            tombstones = 0;
+            for (DrawingAction action : actions) {
+                apply(action);
+            }
+        }
+
+        /**
+         * Canvas area an entry just applied changed: a drawn action's own bounds, the bounds
+         * of a tombstone's target, or null if nothing visible changed
+         */
+        BoundingBox changedArea(DrawingAction action) {
+            if (!isTombstone(action)) {
+                return BoundingBox.of(action);
+            }
+            DrawingAction target = action.getTargetActionId() != null ? drawn.get(action.getTargetActionId()) : null;
+            return target != null ? BoundingBox.of(target) : null;
+        }
+
+        boolean isVisible(DrawingAction action) {
+            return !isTombstone(action) && !undone.contains(action.getActionId());
+        }
+
+        int visibleCount() {
+            return actions.size() - tombstones - undone.size();
+        }
+
+        /**
+         * Up to limit visible actions from log position from, after skipping the first skip of them
+         */
+        List<DrawingAction> visible(int from, int skip, int limit) {
+            if (tombstones == 0) {
+                int start = Math.min(from + skip, actions.size());
+                int end = (int) Math.min((long) start + limit, actions.size());
+                return new ArrayList<>(actions.subList(start, end));
+            }
+            List<DrawingAction> page = new ArrayList<>();
+            for (int i = from; i < actions.size() && page.size() < limit; i++) {
+                DrawingAction action = actions.get(i);
+                if (!isVisible(action)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    page.add(action);
+                }
+            }
+            return page;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.sketchflow.sketchflow_backend.service;
 
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
 import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
 import com.sketchflow.sketchflow_backend.model.ChatMessage;
 import com.sketchflow.sketchflow_backend.repository.ChatMessageRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import com.sketchflow.sketchflow_backend.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -17,13 +21,17 @@ public class ChatService {
     @Autowired
     private ChatMessageRepository chatMessageRepository;
 
+    @Autowired
+    private KeysetPager keysetPager;
+
     // Use an executor for non-blocking database saves
     private final ExecutorService executor = Executors.newFixedThreadPool(10);
 
     /**
      * Saves a chat message to the database asynchronously.
+     * @return the message as it will be stored, at once; the write happens on the executor
      */
-    public ChatMessage saveMessage(WebSocketMessage wsMessage, String sessionId) {
+    public ChatMessage saveMessageAsync(WebSocketMessage wsMessage, String sessionId) {
         ChatMessage chatMessage = new ChatMessage(
                 sessionId,
                 wsMessage.getUserId(),
@@ -47,4 +55,13 @@ public class ChatService {
     public List<ChatMessage> getChatHistory(String sessionId) {
         return chatMessageRepository.findBySessionIdOrderByTimestampAsc(sessionId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves one page of a session's chat messages after a continuation token, oldest first.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public KeysetPage<ChatMessage> getChatHistoryPage(String sessionId, String cursor, int limit, boolean includeTotal) {
+        return keysetPager.find(ChatMessage.class, Criteria.where("sessionId").is(sessionId), cursor, limit,
+            false, includeTotal, m -> new Keyset(m.getTimestamp(), m.getId()));
+    }
+}
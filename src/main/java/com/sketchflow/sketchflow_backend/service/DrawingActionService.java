@@ -1,18 +1,29 @@
 package com.sketchflow.sketchflow_backend.service;
 
 import com.sketchflow.sketchflow_backend.dto.DrawingActionRequest;
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
 import com.sketchflow.sketchflow_backend.model.DrawingAction;
 import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import com.sketchflow.sketchflow_backend.repository.KeysetPager;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 @Service
@@ -23,62 +34,65 @@ public class DrawingActionService {
     // Thread pool for high-throughput drawing action processing
     private final ExecutorService executorService = Executors.newFixedThreadPool(20);
 
-    // Batch processing queue with blocking capabilities
-    private final BlockingQueue<DrawingAction> actionQueue = new LinkedBlockingQueue<>(10000);
-
-    // Batch size for bulk inserts
-    private static final int BATCH_SIZE = 100;
-
     @Autowired
     private DrawingActionRepository actionRepository;
 
     @Autowired
     private WhiteboardSessionService sessionService;
 
-    public DrawingActionService() {
-        // Start batch processor thread
-        startBatchProcessor();
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Autowired
+    private DrawingActionWriteBehind writeBehind;
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasCheckpointer checkpointer;
+
+    @Autowired
+    private SessionStatsService sessionStats;
+
+    @Autowired
+    private ActionDeduplicator deduplicator;
+
+    @PostConstruct
+    public void start() {
+        writeBehind.setDiscardListener(this::discard);
     }
 
     /**
      * Save drawing action asynchronously with batching
+     * The action is built and added to the canvas state on the caller's thread, so it is
+     * visible to readers before the caller broadcasts it; only persistence is asynchronous.
+     * Saving is idempotent on a client-supplied actionId: a retry completes with the action
+     * as submitted and stores nothing.
+     * @throws RejectedExecutionException if the session's writer is full or its clear epoch is
+     *         still loading; nothing was stored
      */
     public CompletableFuture<DrawingAction> saveActionAsync(String sessionId, DrawingActionRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            String actionId = UUID.randomUUID().toString();
-
-            DrawingAction action = new DrawingAction();
-            action.setActionId(actionId);
-            action.setSessionId(sessionId);
-            action.setUserId(request.getUserId());
-            action.setTool(request.getTool());
-            action.setColor(request.getColor());
-            action.setActionType(request.getActionType());
-            action.setCoordinates(request.getCoordinates());
-            action.setProperties(request.getProperties());
-            action.setTimestamp(LocalDateTime.now());
-
-            try {
-                // Add to batch queue for optimized persistence
-                actionQueue.offer(action, 1, TimeUnit.SECONDS);
-                logger.fine("Queued drawing action: " + actionId);
-            } catch (InterruptedException e) {
-                logger.warning("Failed to queue action: " + e.getMessage());
-                Thread.currentThread().interrupt();
-            }
-
-            // Update session activity
-            sessionService.updateSessionActivity(sessionId);
-
-            return action;
-        }, executorService);
+        DrawingAction action = buildAction(sessionId, request);
+        if (!isNew(action)) {
+            return CompletableFuture.completedFuture(action);
+        }
+        return submit(action);
     }
 
     /**
-     * Save action immediately (for critical operations)
+     * Save drawing action asynchronously, unless its client-supplied actionId was already saved
+     * @return the pending save, or empty if the action is a retry and was dropped
+     * @throws RejectedExecutionException if the session's writer is full or its clear epoch is
+     *         still loading; nothing was stored
      */
-    public DrawingAction saveActionImmediately(String sessionId, DrawingActionRequest request) {
-        String actionId = UUID.randomUUID().toString();
+    public Optional<CompletableFuture<DrawingAction>> saveNewActionAsync(String sessionId, DrawingActionRequest request) {
+        DrawingAction action = buildAction(sessionId, request);
+        return isNew(action) ? Optional.of(submit(action)) : Optional.empty();
+    }
+
+    private DrawingAction buildAction(String sessionId, DrawingActionRequest request) {
+        String actionId = request.getActionId() != null ? request.getActionId() : UUID.randomUUID().toString();
 
         DrawingAction action = new DrawingAction();
         action.setActionId(actionId);
@@ -90,8 +104,117 @@ public class DrawingActionService {
         action.setCoordinates(request.getCoordinates());
         action.setProperties(request.getProperties());
         action.setTimestamp(LocalDateTime.now());
+        return action;
+    }
+
+    /**
+     * Whether an action's id has not been saved before; checked before it reaches the
+     * canvas or the write-behind queue. An id another session already stored passes here
+     * and is taken back by {@link #discard} once the writer finds it taken.
+     */
+    private boolean isNew(DrawingAction action) {
+        if (deduplicator.claim(action.getSessionId(), action.getActionId()) == ActionDeduplicator.Claim.NEW) {
+            return true;
+        }
+        logger.fine("Dropped duplicate drawing action: " + action.getActionId());
+        return false;
+    }
+
+    /**
+     * Take back an action that was accepted but will never be stored
+     */
+    private void discard(DrawingAction action) {
+        deduplicator.release(action.getSessionId(), action.getActionId());
+        canvasStateStore.remove(action.getSessionId(), action.getActionId());
+    }
+
+    /**
+     * Save an undo or redo tombstone for an action, the same way as any other action:
+     * it is appended to the canvas log at once and persisted by the session's writer
+     * @param actionType CanvasStateStore.UNDO or CanvasStateStore.REDO
+     * @throws RejectedExecutionException if the session's writer is full or its clear epoch is
+     *         still loading; nothing was stored
+     */
+    public CompletableFuture<DrawingAction> saveTombstoneAsync(String sessionId, String userId,
+                                                               String actionType, String targetActionId) {
+        DrawingAction tombstone = new DrawingAction();
+        tombstone.setActionId(UUID.randomUUID().toString());
+        tombstone.setSessionId(sessionId);
+        tombstone.setUserId(userId);
+        tombstone.setActionType(actionType);
+        tombstone.setTargetActionId(targetActionId);
+        tombstone.setTimestamp(LocalDateTime.now());
+
+        return submit(tombstone);
+    }
+
+    private CompletableFuture<DrawingAction> submit(DrawingAction action) {
+        String sessionId = action.getSessionId();
+        String actionId = action.getActionId();
+
+        // Queue for persistence before the canvas sees it: an action the writer refuses
+        // (overflow policy), or sent before the session's epoch is loaded, is not stored
+        // anywhere, and its retry is accepted
+        boolean queued;
+        try {
+            action.setEpoch(canvasStateStore.getLoadedEpoch(sessionId));
+            queued = writeBehind.submit(action);
+        } catch (RejectedExecutionException e) {
+            deduplicator.release(sessionId, actionId);
+            throw e;
+        }
+        if (!queued) {
+            deduplicator.release(sessionId, actionId);
+            throw new RejectedExecutionException("Drawing action writer is full, action " + actionId + " was not saved");
+        }
+        logger.fine("Queued drawing action: " + actionId);
+        canvasStateStore.appendStamped(action);
+        checkpointer.recordAction(sessionId);
+
+        return CompletableFuture.supplyAsync(() -> {
+            // Update session activity
+            sessionService.updateSessionActivity(sessionId);
 
-        DrawingAction saved = actionRepository.save(action);
+            return action;
+        }, executorService);
+    }
+
+    /**
+     * Save action immediately (for critical operations)
+     * A retried client actionId returns the action this session stored under it. This path
+     * waits on the database, so the unique index settles an id the filters let through.
+     * @throws IllegalArgumentException if another session already uses the actionId
+     */
+    public DrawingAction saveActionImmediately(String sessionId, DrawingActionRequest request) {
+        DrawingAction action = buildAction(sessionId, request);
+        String actionId = action.getActionId();
+        if (!isNew(action)) {
+            return actionRepository.findById(actionId)
+                .filter(stored -> sessionId.equals(stored.getSessionId()))
+                .orElse(action);
+        }
+
+        // The clear epoch has to be persisted with the action
+        action.setEpoch(canvasStateStore.getEpoch(sessionId));
+        DrawingAction saved;
+        try {
+            // insert, not save: an existing _id must fail instead of being overwritten
+            saved = actionRepository.insert(action);
+        } catch (DuplicateKeyException e) {
+            Optional<DrawingAction> stored = actionRepository.findById(actionId)
+                .filter(existing -> sessionId.equals(existing.getSessionId()));
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+            deduplicator.release(sessionId, actionId);
+            throw new IllegalArgumentException("actionId " + actionId + " is already used by another session");
+        } catch (RuntimeException e) {
+            deduplicator.release(sessionId, actionId);
+            throw e;
+        }
+        canvasStateStore.appendStamped(saved);
+        sessionStats.recordPersisted(List.of(saved));
+        checkpointer.recordAction(sessionId);
         logger.info("Saved drawing action immediately: " + actionId);
 
         return saved;
@@ -102,76 +225,92 @@ public class DrawingActionService {
      */
     public Page<DrawingAction> getSessionActions(String sessionId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return actionRepository.findBySessionIdOrderByTimestampAsc(sessionId, pageable);
+        List<DrawingAction> content = canvasStateStore.getActions(sessionId, (int) pageable.getOffset(), size);
+        return new PageImpl<>(content, pageable, canvasStateStore.getActionCount(sessionId));
     }
 
     /**
-     * Get all actions for a session
+     * Get the page of a session's actions after a continuation token, oldest first
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    public List<DrawingAction> getAllSessionActions(String sessionId) {
-        return actionRepository.findBySessionIdOrderByTimestampAsc(sessionId);
+    public KeysetPage<DrawingAction> getSessionActionsAfter(String sessionId, String cursor, int limit, boolean includeTotal) {
+        int pageSize = Math.min(Math.max(limit, 1), KeysetPager.MAX_LIMIT);
+        List<DrawingAction> rows = canvasStateStore.getActionsAfter(sessionId, Keyset.decode(cursor), pageSize + 1);
+        Long total = includeTotal ? (long) canvasStateStore.getActionCount(sessionId) : null;
+        return KeysetPager.page(rows, pageSize, total, a -> new Keyset(a.getTimestamp(), a.getActionId()));
     }
 
     /**
-     * Clear all actions for a session
+     * Get all actions for a session
      */
-    public CompletableFuture<Void> clearSessionActionsAsync(String sessionId) {
-        return CompletableFuture.runAsync(() -> {
-            actionRepository.deleteBySessionId(sessionId);
-            logger.info("Cleared all actions for session: " + sessionId);
-        }, executorService);
+    public List<DrawingAction> getAllSessionActions(String sessionId) {
+        return canvasStateStore.getActions(sessionId);
     }
 
     /**
-     * Batch processor for optimized database writes
+     * Pass every action of a session to the sink in canonical order without materialising
+     * the history. This is the raw log: undo/redo tombstones are included for the reader
+     * to replay, since a cursor cannot know what a later tombstone hides. Hot sessions are
+     * read from the in-memory canvas, cold ones from the latest checkpoint and a Mongo cursor
+     * over the tail, followed by any actions appended since that may not be persisted yet.
+     * @return the number of actions passed to the sink
      */
-    private void startBatchProcessor() {
-        Thread batchThread = new Thread(() -> {
-            List<DrawingAction> batch = new CopyOnWriteArrayList<>();
-
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    // Wait for actions or timeout
-                    DrawingAction action = actionQueue.poll(5, TimeUnit.SECONDS);
-
-                    if (action != null) {
-                        batch.add(action);
-                    }
-
-                    // Save batch when size reached or timeout occurred
-                    if (batch.size() >= BATCH_SIZE || (action == null && !batch.isEmpty())) {
-                        actionRepository.saveAll(batch);
-                        logger.info("Saved batch of " + batch.size() + " drawing actions");
-                        batch.clear();
-                    }
-
-                } catch (InterruptedException e) {
-                    logger.info("Batch processor interrupted");
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    logger.severe("Error in batch processor: " + e.getMessage());
-                }
-            }
-
-            // Save remaining actions
-            if (!batch.isEmpty()) {
-                actionRepository.saveAll(batch);
-                logger.info("Saved final batch of " + batch.size() + " actions");
+    public long streamSessionActions(String sessionId, Consumer<DrawingAction> sink) {
+        CanvasStateStore.CachedActions cached = canvasStateStore.peek(sessionId);
+        if (cached != null && cached.hydrated()) {
+            cached.actions().forEach(sink);
+            return cached.actions().size();
+        }
+
+        Set<String> recent = new HashSet<>();
+        if (cached != null) {
+            cached.actions().forEach(a -> recent.add(a.getActionId()));
+        }
+        long[] count = {0};
+        long epoch = cached != null && cached.epoch() >= 0 ? cached.epoch() : canvasStateStore.getEpoch(sessionId);
+        checkpointStore.forEachAction(sessionId, epoch, action -> {
+            if (!recent.contains(action.getActionId())) {
+                sink.accept(action);
+                count[0]++;
             }
         });
+        if (cached != null) {
+            cached.actions().forEach(sink);
+            count[0] += cached.actions().size();
+        }
+        return count[0];
+    }
+
+    /**
+     * Get the actions intersecting a viewport
+     */
+    public List<DrawingAction> getSessionActionsInViewport(String sessionId, BoundingBox viewport) {
+        return canvasStateStore.getActionsInViewport(sessionId, viewport);
+    }
 
-        batchThread.setDaemon(true);
-        batchThread.setName("DrawingAction-BatchProcessor");
-        batchThread.start();
-        logger.info("Started drawing action batch processor thread");
+    /**
+     * Clear all actions for a session
+     * The clear has taken effect when the returned future is: the session moved to a new
+     * clear epoch, which is a single small write however long its history is. Actions of
+     * older epochs, including any still queued for persistence, are never read again and
+     * are deleted in the background by the epoch collector.
+     * Runs on the service's pool, never on the caller's thread.
+     */
+    public CompletableFuture<Void> clearSessionActionsAsync(String sessionId) {
+        return CompletableFuture.runAsync(() -> {
+            long epoch = canvasStateStore.clear(sessionId);
+            checkpointer.reset(sessionId);
+            sessionStats.onClear(sessionId, epoch);
+            logger.info("Cleared all actions for session: " + sessionId + " (epoch " + epoch + ")");
+        }, executorService);
     }
 
     /**
-     * Get action count for session
+     * Get the number of entries in a session's log, undo/redo tombstones included.
+     * Read from the maintained counter, never by counting drawing_actions.
      */
     public long getActionCount(String sessionId) {
-        return actionRepository.countBySessionId(sessionId);
+        return sessionStats.getActionCount(sessionId);
     }
 
     public void shutdown() {
@@ -0,0 +1,379 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log for drawing actions waiting in the write-behind stage.
+ * Actions are appended to memory-mapped segment files before they are acknowledged, so they
+ * survive a crash or redeploy of the process (the OS writes the pages back; force-interval-ms
+ * additionally syncs them to disk). Each record is released once its batch is in Mongo; a
+ * segment is deleted, or rewound if it is the active one, when none of its records are pending.
+ *
+ * Record layout: int length, int crc32 of the payload, JSON payload. A zero length marks
+ * the end of a segment, so one is written after every record.
+ */
+@Component
+public class DrawingActionWal {
+
+    private static final Logger logger = Logger.getLogger(DrawingActionWal.class.getName());
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    /** Returned by append when the action is not in the log */
+    public static final long NOT_LOGGED = -1;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${whiteboard.persistence.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${whiteboard.persistence.wal.dir:data/wal}")
+    private String directory;
+
+    @Value("${whiteboard.persistence.wal.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    // 0 leaves write-back to the OS (survives process crashes, not power loss)
+    @Value("${whiteboard.persistence.wal.force-interval-ms:0}")
+    private long forceIntervalMs;
+
+    private ScheduledExecutorService forcer;
+
+    // segment id -> segment, oldest first
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private Path dir;
+    private Segment active;
+
+    // Metrics
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong notLogged = new AtomicLong();
+    private final AtomicLong segmentsDeleted = new AtomicLong();
+    private final AtomicLong rewinds = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+    private volatile int recovered;
+    private volatile int corruptTails;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Read every record left by a previous run, oldest first, then start a fresh segment.
+     * The old segments stay on disk until {@link #discardRecovered()} is called.
+     */
+    public List<DrawingAction> recover() throws IOException {
+        List<DrawingAction> actions = new ArrayList<>();
+        if (!enabled) {
+            return actions;
+        }
+        dir = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(dir);
+
+        long nextId = 0;
+        for (Path file : listSegments()) {
+            long id = segmentId(file);
+            nextId = Math.max(nextId, id + 1);
+            readSegment(file, actions);
+        }
+        recovered = actions.size();
+        synchronized (appendLock) {
+            active = openSegment(nextId);
+        }
+        if (forceIntervalMs > 0) {
+            forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Whiteboard-WalSync");
+                t.setDaemon(true);
+                return t;
+            });
+            forcer.scheduleWithFixedDelay(this::safeForce, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Write-ahead log at " + dir + ": recovered " + actions.size() + " unpersisted actions");
+        return actions;
+    }
+
+    /**
+     * Delete the segments left by a previous run once their actions are in Mongo
+     */
+    public void discardRecovered() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (Path file : listSegments()) {
+            if (!segments.containsKey(segmentId(file))) {
+                Files.deleteIfExists(file);
+                segmentsDeleted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Append an action before it is acknowledged
+     * @return the segment holding it, to be passed to {@link #release}, or NOT_LOGGED
+     */
+    public long append(DrawingAction action) {
+        if (!enabled) {
+            return NOT_LOGGED;
+        }
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(action);
+        } catch (IOException e) {
+            logger.warning("Could not serialize action " + action.getActionId() + " for the write-ahead log: " + e.getMessage());
+            notLogged.incrementAndGet();
+            return NOT_LOGGED;
+        }
+        int recordBytes = HEADER_BYTES + payload.length;
+        // Room for the record and the end marker after it
+        if (recordBytes + 4 > segmentBytes) {
+            notLogged.incrementAndGet();
+            return NOT_LOGGED;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        long segmentId;
+        synchronized (appendLock) {
+            Segment segment = active;
+            if (segment == null) {
+                notLogged.incrementAndGet();
+                return NOT_LOGGED;
+            }
+            try {
+                if (segment.buffer.remaining() < recordBytes + 4) {
+                    segment = roll();
+                }
+            } catch (IOException e) {
+                logger.severe("Could not roll the write-ahead log: " + e.getMessage());
+                notLogged.incrementAndGet();
+                return NOT_LOGGED;
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            int start = buffer.position();
+            // End marker first, then the body, then the length that makes the record visible
+            buffer.putInt(start + recordBytes, 0);
+            buffer.putInt(start + 4, (int) crc.getValue());
+            buffer.put(start + HEADER_BYTES, payload);
+            buffer.putInt(start, payload.length);
+            buffer.position(start + recordBytes);
+            segment.pending.incrementAndGet();
+            segmentId = segment.id;
+        }
+        appended.incrementAndGet();
+        appendedBytes.addAndGet(recordBytes);
+        return segmentId;
+    }
+
+    /**
+     * Mark records of a segment as persisted (or abandoned); empty segments are truncated
+     */
+    public void release(long segmentId, int count) {
+        if (segmentId == NOT_LOGGED || count == 0) {
+            return;
+        }
+        released.addAndGet(count);
+        Segment segment = segments.get(segmentId);
+        if (segment == null || segment.pending.addAndGet(-count) > 0) {
+            return;
+        }
+        synchronized (appendLock) {
+            if (segment.pending.get() != 0) {
+                return;
+            }
+            if (segment == active) {
+                // Everything written here is in Mongo: start over at the beginning of the file
+                if (segment.buffer.position() > 0) {
+                    segment.buffer.putInt(0, 0);
+                    segment.buffer.position(0);
+                    rewinds.incrementAndGet();
+                }
+            } else if (segments.remove(segmentId, segment)) {
+                delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Sync the active segment to disk
+     */
+    public void force() {
+        Segment segment = active;
+        if (segment != null) {
+            segment.buffer.force();
+            forces.incrementAndGet();
+        }
+    }
+
+    private void safeForce() {
+        try {
+            force();
+        } catch (Exception e) {
+            logger.warning("Error syncing the write-ahead log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sync and stop accepting records; pending records stay on disk for the next start
+     */
+    public void close() {
+        if (forcer != null) {
+            forcer.shutdownNow();
+        }
+        synchronized (appendLock) {
+            if (active != null) {
+                active.buffer.force();
+                active = null;
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        long pending = 0;
+        for (Segment segment : segments.values()) {
+            pending += segment.pending.get();
+        }
+        Segment segment = active;
+        stats.put("directory", String.valueOf(dir));
+        stats.put("segments", segments.size());
+        stats.put("segmentBytes", segmentBytes);
+        stats.put("forceIntervalMs", forceIntervalMs);
+        stats.put("activeSegment", segment != null ? segment.id : null);
+        stats.put("activePosition", segment != null ? segment.buffer.position() : 0);
+        stats.put("pendingRecords", pending);
+        stats.put("appended", appended.get());
+        stats.put("appendedBytes", appendedBytes.get());
+        stats.put("released", released.get());
+        stats.put("notLogged", notLogged.get());
+        stats.put("rewinds", rewinds.get());
+        stats.put("segmentsDeleted", segmentsDeleted.get());
+        stats.put("forces", forces.get());
+        stats.put("recovered", recovered);
+        stats.put("corruptTails", corruptTails);
+        return stats;
+    }
+
+    private Segment roll() throws IOException {
+        Segment previous = active;
+        active = openSegment(previous.id + 1);
+        if (previous.pending.get() == 0 && segments.remove(previous.id, previous)) {
+            delete(previous);
+        }
+        return active;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path file = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.putInt(0, 0);
+            Segment segment = new Segment(id, file, buffer);
+            segments.put(id, segment);
+            return segment;
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+            segmentsDeleted.incrementAndGet();
+        } catch (IOException e) {
+            logger.warning("Could not delete write-ahead log segment " + segment.file + ": " + e.getMessage());
+        }
+    }
+
+    private void readSegment(Path file, List<DrawingAction> actions) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length == 0) {
+                    return;
+                }
+                if (length < 0 || length > buffer.remaining()) {
+                    corruptTails++;
+                    logger.warning("Truncated record in " + file.getFileName() + ", ignoring the rest of the segment");
+                    return;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    corruptTails++;
+                    logger.warning("Checksum mismatch in " + file.getFileName() + ", ignoring the rest of the segment");
+                    return;
+                }
+                actions.add(objectMapper.readValue(payload, DrawingAction.class));
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(f -> {
+                    String name = f.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path file;
+        final MappedByteBuffer buffer;
+        // Records appended to this segment and not yet released
+        final AtomicInteger pending = new AtomicInteger();
+
+        Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind stage for drawing actions.
+ * Actions are partitioned by sessionId over several writer threads; each writer collects a
+ * batch and flushes it as one unordered bulk insert when it is full or its oldest action has
+ * waited flush-interval-ms. Each partition holds at most queue-capacity actions; what happens
+ * beyond that is the configured overflow policy, and every drop is counted. The default
+ * policy spills to one extra writer thread so a stalled database never blocks the submitting
+ * (WebSocket) thread.
+ * Actions are appended to the write-ahead log before they are queued and released from it
+ * once their batch is written; whatever a previous run left in the log is replayed on start.
+ * The unique _id index is the final duplicate check: a row skipped as a duplicate key is a
+ * retry unless the stored action belongs to another session, in which case the action is
+ * reported to the discard listener so it can be taken back.
+ */
+@Component
+public class DrawingActionWriteBehind {
+
+    private static final Logger logger = Logger.getLogger(DrawingActionWriteBehind.class.getName());
+
+    /**
+     * What submit does when a partition already holds queue-capacity actions
+     */
+    public enum OverflowPolicy {
+        // Wait up to offer-timeout-ms for space, then drop the action
+        BLOCK,
+        // Drop the action being submitted
+        DROP_NEWEST,
+        // Drop the oldest queued action of the partition to make room; it is taken back
+        // through the discard listener, since it was already accepted
+        DROP_OLDEST,
+        // Write the action synchronously on the submitting thread (blocks it while Mongo is slow)
+        CALLER_RUNS,
+        // Hand the action to the spill writer, which holds up to queue-capacity more; then drop
+        SPILL
+    }
+
+    private static final long MAX_BACKOFF_MS = 2000;
+
+    @Autowired
+    private DrawingActionRepository actionRepository;
+
+    @Autowired
+    private DrawingActionWal wal;
+
+    @Autowired
+    private SessionStatsService sessionStats;
+
+    @Value("${whiteboard.persistence.writers:4}")
+    private int writerCount;
+
+    @Value("${whiteboard.persistence.batch-size:500}")
+    private int batchSize;
+
+    @Value("${whiteboard.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${whiteboard.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${whiteboard.persistence.overflow-policy:spill}")
+    private String overflowPolicyName;
+
+    @Value("${whiteboard.persistence.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    @Value("${whiteboard.persistence.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${whiteboard.persistence.retry-backoff-ms:100}")
+    private long retryBackoffMs;
+
+    private OverflowPolicy overflowPolicy;
+    private Partition[] partitions;
+    private volatile boolean stopping;
+
+    // Writes overflow one action at a time, in submission order, off the submitting thread
+    private ThreadPoolExecutor spillWriter;
+    private Semaphore spillPermits;
+
+    // Queued by shutdown to wake the writers
+    private static final Object WAKE = new Object();
+
+    // Told of actions that were accepted but will never be stored
+    private volatile Consumer<DrawingAction> discardListener;
+
+    // Metrics
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong sizeFlushes = new AtomicLong();
+    private final AtomicLong timeFlushes = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private final AtomicLong flushNanosMax = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long lastDropLogAt;
+
+    @PostConstruct
+    public void start() {
+        replayWal();
+        overflowPolicy = OverflowPolicy.valueOf(overflowPolicyName.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        writerCount = Math.max(1, writerCount);
+        batchSize = Math.max(1, batchSize);
+        spillPermits = new Semaphore(queueCapacity);
+        spillWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Whiteboard-ActionSpillWriter");
+            t.setDaemon(true);
+            return t;
+        });
+        partitions = new Partition[writerCount];
+        for (int i = 0; i < writerCount; i++) {
+            partitions[i] = new Partition(i);
+            partitions[i].thread.start();
+        }
+        logger.info("Started " + writerCount + " drawing action writers (batch " + batchSize +
+                   ", flush every " + flushIntervalMs + " ms, capacity " + queueCapacity +
+                   " per writer, overflow " + overflowPolicy + ")");
+    }
+
+    /**
+     * Write what a previous run left in the log to Mongo before accepting new actions.
+     * If that fails the old segments are kept and replayed again on the next start.
+     */
+    private void replayWal() {
+        List<DrawingAction> recovered;
+        try {
+            recovered = wal.recover();
+        } catch (Exception e) {
+            logger.severe("Could not open the write-ahead log, actions will not be logged: " + e.getMessage());
+            return;
+        }
+        try {
+            if (recovered.isEmpty()) {
+                wal.discardRecovered();
+                return;
+            }
+            int inserted = 0;
+            for (int i = 0; i < recovered.size(); i += Math.max(1, batchSize)) {
+                List<DrawingAction> chunk = recovered.subList(i, Math.min(recovered.size(), i + Math.max(1, batchSize)));
+                List<DrawingAction> skipped = actionRepository.insertUnordered(chunk);
+                countPersisted(chunk, skipped);
+                inserted += chunk.size() - skipped.size();
+            }
+            wal.discardRecovered();
+            replayed.addAndGet(inserted);
+            logger.info("Replayed " + recovered.size() + " actions from the write-ahead log (" +
+                       inserted + " were not yet in the database)");
+        } catch (Exception e) {
+            logger.severe("Could not replay " + recovered.size() +
+                         " actions from the write-ahead log, keeping them for the next start: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Register the sink told of actions submit accepted that will never be stored (their
+     * actionId is taken by another session, or drop-oldest evicted them), e.g. to take them
+     * off the canvas
+     */
+    public void setDiscardListener(Consumer<DrawingAction> discardListener) {
+        this.discardListener = discardListener;
+    }
+
+    /**
+     * Log an action and queue it for persistence on its session's writer
+     * @return false if the action was dropped by the overflow policy
+     */
+    public boolean submit(DrawingAction action) {
+        submitted.incrementAndGet();
+        Queued queued = new Queued(action, wal.append(action));
+        if (stopping) {
+            writeNow(queued);
+            return true;
+        }
+        Partition partition = partitionFor(action.getSessionId());
+        if (partition.permits.tryAcquire()) {
+            partition.queue.add(queued);
+            return true;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    if (partition.permits.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        partition.queue.add(queued);
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_OLDEST:
+                if (replaceOldest(partition, queued)) {
+                    return true;
+                }
+                break;
+            case CALLER_RUNS:
+                callerRuns.incrementAndGet();
+                writeNow(queued);
+                return true;
+            case SPILL:
+                if (spill(queued)) {
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        wal.release(queued.walSegment(), 1);
+        recordDrop(partition);
+        return false;
+    }
+
+    /**
+     * Run a task on a session's writer once every action submitted for that session before it
+     * has been flushed, e.g. deleting the session's actions without racing queued inserts
+     */
+    public CompletableFuture<Void> afterPending(String sessionId, Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Runnable barrier = () -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (Exception e) {
+                done.completeExceptionally(e);
+            }
+        };
+        if (stopping) {
+            barrier.run();
+        } else if (spillPermits.availablePermits() < queueCapacity) {
+            // Spilled actions may belong to the session: queue the barrier once they are written
+            spillWriter.execute(() -> {
+                if (stopping) {
+                    barrier.run();
+                } else {
+                    partitionFor(sessionId).queue.add(barrier);
+                }
+            });
+        } else {
+            // Barriers bypass the capacity bound so they are never dropped
+            partitionFor(sessionId).queue.add(barrier);
+        }
+        return done;
+    }
+
+    /**
+     * Number of actions queued or in a batch that is not yet flushed
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (Partition partition : partitions) {
+            pending += queueCapacity - partition.permits.availablePermits();
+        }
+        return pending + queueCapacity - spillPermits.availablePermits();
+    }
+
+    private Partition partitionFor(String sessionId) {
+        int hash = sessionId != null ? sessionId.hashCode() : 0;
+        return partitions[Math.floorMod(hash, partitions.length)];
+    }
+
+    /**
+     * Swap the oldest queued action of a partition for a new one (the freed slot is reused)
+     */
+    private boolean replaceOldest(Partition partition, Queued queued) {
+        for (Iterator<Object> it = partition.queue.iterator(); it.hasNext(); ) {
+            Object item = it.next();
+            if (item instanceof Queued oldest && partition.queue.remove(oldest)) {
+                partition.queue.add(queued);
+                wal.release(oldest.walSegment(), 1);
+                dropped.incrementAndGet();
+                discard(oldest.action());
+                return true;
+            }
+        }
+        // Everything is already in the writer's batch
+        return false;
+    }
+
+    /**
+     * Queue an action on the spill writer if it has room
+     */
+    private boolean spill(Queued queued) {
+        if (!spillPermits.tryAcquire()) {
+            return false;
+        }
+        spilled.incrementAndGet();
+        try {
+            spillWriter.execute(() -> {
+                try {
+                    writeNow(queued);
+                } finally {
+                    spillPermits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            spillPermits.release();
+            writeNow(queued);
+            return true;
+        }
+    }
+
+    private void recordDrop(Partition partition) {
+        dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDropLogAt >= 5000) {
+            lastDropLogAt = now;
+            logger.warning("Drawing action writer " + partition.index + " is full (" + queueCapacity +
+                          " pending), dropped actions so far: " + dropped.get());
+        }
+    }
+
+    private void writeNow(Queued queued) {
+        List<Queued> single = new ArrayList<>(1);
+        single.add(queued);
+        flush(single);
+    }
+
+    /**
+     * Insert a batch, retrying transient failures with exponential backoff, and release it
+     * from the log once written. A batch that still fails stays in the log for the next start.
+     */
+    private void flush(List<Queued> batch) {
+        List<DrawingAction> actions = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            actions.add(queued.action());
+        }
+        long backoff = retryBackoffMs;
+        for (int attempt = 0; ; attempt++) {
+            long started = System.nanoTime();
+            try {
+                List<DrawingAction> skipped = actionRepository.insertUnordered(actions);
+                int inserted = actions.size() - skipped.size();
+                recordFlush(System.nanoTime() - started);
+                written.addAndGet(inserted);
+                duplicates.addAndGet(skipped.size());
+                releaseFromWal(batch);
+                countPersisted(actions, skipped);
+                resolveSkipped(skipped);
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    failed.addAndGet(batch.size());
+                    logger.severe("Failed to write " + batch.size() + " drawing actions after " +
+                                 (attempt + 1) + " attempts: " + e.getMessage());
+                    return;
+                }
+                retries.incrementAndGet();
+                logger.warning("Writing " + batch.size() + " drawing actions failed, retrying in " +
+                              backoff + " ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    // Interrupted: make the remaining attempts without waiting
+                    Thread.currentThread().interrupt();
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Tell retries from ids already used by another session among rows skipped as duplicate
+     * keys, and report the latter to the discard listener
+     */
+    private void resolveSkipped(List<DrawingAction> skipped) {
+        if (skipped.isEmpty()) {
+            return;
+        }
+        Map<String, String> owners = new HashMap<>();
+        try {
+            List<String> ids = new ArrayList<>(skipped.size());
+            for (DrawingAction action : skipped) {
+                ids.add(action.getActionId());
+            }
+            actionRepository.findAllById(ids).forEach(stored -> owners.put(stored.getActionId(), stored.getSessionId()));
+        } catch (Exception e) {
+            logger.warning("Could not check " + skipped.size() + " duplicate drawing actions: " + e.getMessage());
+            return;
+        }
+        for (DrawingAction action : skipped) {
+            String owner = owners.get(action.getActionId());
+            if (owner == null || owner.equals(action.getSessionId())) {
+                continue;
+            }
+            conflicts.incrementAndGet();
+            logger.warning("Drawing action " + action.getActionId() + " of session " + action.getSessionId() +
+                          " reuses the id of an action of session " + owner + ", discarding it");
+            discard(action);
+        }
+    }
+
+    /**
+     * Tell the discard listener about an accepted action that will never be stored
+     */
+    private void discard(DrawingAction action) {
+        Consumer<DrawingAction> listener = discardListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(action);
+        } catch (Exception e) {
+            logger.warning("Error discarding drawing action " + action.getActionId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Report the rows of a written batch that were actually inserted to the action counters
+     * @param skipped the batch's rows that were already stored, as returned by insertUnordered
+     */
+    private void countPersisted(List<DrawingAction> actions, List<DrawingAction> skipped) {
+        if (skipped.isEmpty()) {
+            sessionStats.recordPersisted(actions);
+            return;
+        }
+        Set<DrawingAction> duplicates = Collections.newSetFromMap(new IdentityHashMap<>());
+        duplicates.addAll(skipped);
+        List<DrawingAction> inserted = new ArrayList<>(actions.size());
+        for (DrawingAction action : actions) {
+            if (!duplicates.contains(action)) {
+                inserted.add(action);
+            }
+        }
+        sessionStats.recordPersisted(inserted);
+    }
+
+    /**
+     * Release a written batch, one call per run of records in the same segment
+     */
+    private void releaseFromWal(List<Queued> batch) {
+        long segment = DrawingActionWal.NOT_LOGGED;
+        int count = 0;
+        for (Queued queued : batch) {
+            if (queued.walSegment() != segment) {
+                wal.release(segment, count);
+                segment = queued.walSegment();
+                count = 0;
+            }
+            count++;
+        }
+        wal.release(segment, count);
+    }
+
+    private void recordFlush(long nanos) {
+        batches.incrementAndGet();
+        lastFlushNanos = nanos;
+        flushNanosTotal.addAndGet(nanos);
+        flushNanosMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        List<Integer> depths = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            depths.add(queueCapacity - partition.permits.availablePermits());
+        }
+        long batchCount = batches.get();
+        stats.put("writers", partitions.length);
+        stats.put("batchSize", batchSize);
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("queueDepth", depths.stream().mapToInt(Integer::intValue).sum());
+        stats.put("queueDepthByWriter", depths);
+        stats.put("submitted", submitted.get());
+        stats.put("written", written.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("conflicts", conflicts.get());
+        stats.put("dropped", dropped.get());
+        stats.put("callerRuns", callerRuns.get());
+        stats.put("spilled", spilled.get());
+        stats.put("spillDepth", queueCapacity - spillPermits.availablePermits());
+        stats.put("failed", failed.get());
+        stats.put("retries", retries.get());
+        stats.put("batches", batchCount);
+        stats.put("sizeFlushes", sizeFlushes.get());
+        stats.put("timeFlushes", timeFlushes.get());
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (written.get() + duplicates.get()) / batchCount);
+        stats.put("avgFlushLatencyMs", batchCount == 0 ? 0.0 : flushNanosTotal.get() / 1e6 / batchCount);
+        stats.put("lastFlushLatencyMs", lastFlushNanos / 1e6);
+        stats.put("maxFlushLatencyMs", flushNanosMax.get() / 1e6);
+        stats.put("replayed", replayed.get());
+        stats.put("wal", wal.getStatistics());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        // Wake idle writers without interrupting one mid-write, which would fail the batch
+        for (Partition partition : partitions) {
+            partition.queue.add(WAKE);
+        }
+        spillWriter.shutdown();
+        try {
+            spillWriter.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        wal.close();
+        logger.info("Stopped drawing action writers (written " + written.get() + ", dropped " +
+                   dropped.get() + ", failed " + failed.get() + ")");
+    }
+
+    /**
+     * A queued action and the log segment holding it
+     */
+    private record Queued(DrawingAction action, long walSegment) {
+    }
+
+    /**
+     * One writer: its queue (actions and barriers), capacity permits and thread
+     */
+    private final class Partition implements Runnable {
+        final int index;
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        final Semaphore permits = new Semaphore(queueCapacity);
+        final Thread thread;
+
+        Partition(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "Whiteboard-ActionWriter-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Queued> batch = new ArrayList<>(batchSize);
+            long deadline = 0;
+            while (!stopping) {
+                try {
+                    long wait = batch.isEmpty()
+                        ? flushIntervalMs
+                        : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    Object item = queue.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                    if (item instanceof Queued queued) {
+                        if (batch.isEmpty()) {
+                            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                        }
+                        batch.add(queued);
+                        if (batch.size() >= batchSize) {
+                            sizeFlushes.incrementAndGet();
+                            flushBatch(batch);
+                        }
+                    } else if (item instanceof Runnable barrier) {
+                        flushBatch(batch);
+                        barrier.run();
+                    } else if (!batch.isEmpty() && System.nanoTime() - deadline >= 0) {
+                        timeFlushes.incrementAndGet();
+                        flushBatch(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    logger.severe("Error in drawing action writer " + index + ": " + e.getMessage());
+                }
+            }
+
+            // Drain what is left, still in submission order
+            Object item;
+            while ((item = queue.poll()) != null) {
+                if (item instanceof Queued queued) {
+                    batch.add(queued);
+                    if (batch.size() >= batchSize) {
+                        flushBatch(batch);
+                    }
+                } else if (item instanceof Runnable barrier) {
+                    flushBatch(batch);
+                    barrier.run();
+                }
+            }
+            flushBatch(batch);
+        }
+
+        private void flushBatch(List<Queued> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                flush(batch);
+            } finally {
+                permits.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+}
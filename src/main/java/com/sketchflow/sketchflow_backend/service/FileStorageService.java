@@ -71,6 +71,16 @@ public class FileStorageService {
         return "/files/" + filename;
     }
 
+    /**
+     * Store generated content (e.g. a rendered thumbnail) under a new unique name
+     * @param extension file extension including the dot, e.g. ".png"
+     */
+    public String storeBytes(byte[] content, String extension) throws IOException {
+        String filename = System.currentTimeMillis() + "_" + UUID.randomUUID() + extension;
+        Files.write(base.resolve(filename), content);
+        return "/files/" + filename;
+    }
+
     public boolean deleteFile(String filename) {
         try {
             Path filePath = base.resolve(filename);
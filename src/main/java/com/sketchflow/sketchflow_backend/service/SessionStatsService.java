@@ -0,0 +1,298 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.model.SessionStats;
+import com.sketchflow.sketchflow_backend.repository.SessionStatsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Maintained action counters, so statistics are one document read instead of a count over
+ * drawing_actions.
+ *
+ * The persistence pipeline reports every batch it writes; the counts are summed in memory
+ * per session and clear epoch and added to session_stats (and the global total) every
+ * flush-interval-ms. A read is the session's document plus whatever this node has not
+ * flushed yet. Counters can drift (a crash between a write and its flush, duplicates
+ * replayed from the write-ahead log, another node's unflushed counts), so a periodic job
+ * recounts each session that changed, once it has been quiet for quiet-ms, from its latest
+ * checkpoint plus tail, and then the global total from the session counters. Corrections
+ * are compare-and-set, so an increment racing the recount is never lost.
+ */
+@Service
+public class SessionStatsService {
+
+    private static final Logger logger = Logger.getLogger(SessionStatsService.class.getName());
+
+    @Autowired
+    private SessionStatsRepository statsRepository;
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Value("${whiteboard.stats.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${whiteboard.stats.reconcile-interval-ms:300000}")
+    private long reconcileIntervalMs;
+
+    @Value("${whiteboard.stats.quiet-ms:60000}")
+    private long quietMs;
+
+    @Value("${whiteboard.stats.reconcile-batch-size:200}")
+    private int reconcileBatchSize;
+
+    // Map: (sessionId, epoch) -> actions persisted here and not yet added to session_stats
+    private final Map<Key, Long> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-SessionStats");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+    private final AtomicLong driftCorrected = new AtomicLong();
+    private final AtomicLong reconcileFailures = new AtomicLong();
+
+    private record Key(String sessionId, long epoch) {
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::safeFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::safeReconcile, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Count actions the persistence pipeline has just written
+     */
+    public void recordPersisted(List<DrawingAction> actions) {
+        for (DrawingAction action : actions) {
+            pending.merge(new Key(action.getSessionId(), action.getEpoch()), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Restart a session's counter for the clear epoch it just moved to
+     */
+    public void onClear(String sessionId, long epoch) {
+        try {
+            addGlobal(statsRepository.resetEpoch(sessionId, epoch));
+        } catch (Exception e) {
+            // The reconciliation job notices the counter is behind the session's epoch
+            logger.warning("Could not reset action counter of session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop a session's counter (session deleted)
+     */
+    public void onSessionDeleted(String sessionId) {
+        pending.keySet().removeIf(key -> key.sessionId().equals(sessionId));
+        statsRepository.findById(sessionId).ifPresent(stats -> {
+            statsRepository.deleteById(sessionId);
+            addGlobal(-stats.getActionCount());
+        });
+    }
+
+    /**
+     * Number of entries in a session's log in its current clear epoch
+     */
+    public long getActionCount(String sessionId) {
+        SessionStats stats = statsRepository.findById(sessionId).orElse(null);
+        if (stats == null) {
+            // Never counted (history from before counters existed): count once and seed
+            long epoch = canvasStateStore.getEpoch(sessionId);
+            long count = checkpointStore.countActions(sessionId, epoch);
+            if (statsRepository.seed(sessionId, epoch, count)) {
+                addGlobal(count);
+                return count + pendingFor(sessionId, epoch);
+            }
+            stats = statsRepository.findById(sessionId).orElse(null);
+            if (stats == null) {
+                return count;
+            }
+        }
+        return stats.getActionCount() + pendingFor(sessionId, stats.getEpoch());
+    }
+
+    /**
+     * Number of entries in the current logs of all sessions
+     */
+    public long getTotalActionCount() {
+        long flushed = statsRepository.findById(SessionStats.GLOBAL_ID).map(SessionStats::getActionCount).orElse(0L);
+        long unflushed = 0;
+        for (Long count : pending.values()) {
+            unflushed += count;
+        }
+        return flushed + unflushed;
+    }
+
+    private long pendingFor(String sessionId, long epoch) {
+        return pending.getOrDefault(new Key(sessionId, epoch), 0L);
+    }
+
+    private void addGlobal(long delta) {
+        if (delta != 0) {
+            statsRepository.addActions(SessionStats.GLOBAL_ID, 0, delta);
+        }
+    }
+
+    private void safeFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.severe("Error flushing action counters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add the counts gathered since the last flush to session_stats
+     */
+    public void flush() {
+        long global = 0;
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            long[] delta = {0};
+            pending.computeIfPresent(key, (k, count) -> {
+                delta[0] = count;
+                return null;
+            });
+            if (delta[0] == 0) {
+                continue;
+            }
+            try {
+                global += statsRepository.addActions(key.sessionId(), key.epoch(), delta[0]);
+            } catch (Exception e) {
+                // Put it back for the next flush
+                pending.merge(key, delta[0], Long::sum);
+                flushFailures.incrementAndGet();
+                logger.warning("Could not update action counter of session " + key.sessionId() + ": " + e.getMessage());
+            }
+        }
+        addGlobal(global);
+        flushes.incrementAndGet();
+    }
+
+    private void safeReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.severe("Error reconciling action counters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recount the sessions whose counters changed and have been quiet since, then the global total
+     */
+    public void reconcile() {
+        flush();
+        LocalDateTime quietSince = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(quietMs));
+        List<SessionStats> changed = statsRepository.findByDirtyTrueAndUpdatedAtBefore(quietSince,
+            PageRequest.of(0, Math.max(1, reconcileBatchSize)));
+        long global = 0;
+        for (SessionStats stats : changed) {
+            if (SessionStats.GLOBAL_ID.equals(stats.getSessionId())) {
+                continue;
+            }
+            try {
+                global += reconcile(stats);
+            } catch (Exception e) {
+                reconcileFailures.incrementAndGet();
+                logger.warning("Could not reconcile action counter of session " + stats.getSessionId() + ": " + e.getMessage());
+            }
+        }
+        addGlobal(global);
+        reconcileGlobal();
+    }
+
+    /**
+     * @return how much the session's counter changed
+     */
+    private long reconcile(SessionStats stats) {
+        String sessionId = stats.getSessionId();
+        long epoch = canvasStateStore.getEpoch(sessionId);
+        if (stats.getEpoch() < epoch) {
+            // A clear whose reset was lost; the recount below happens on the next run
+            return statsRepository.resetEpoch(sessionId, epoch);
+        }
+        long actual = checkpointStore.countActions(sessionId, stats.getEpoch());
+        if (!statsRepository.compareAndSetCount(sessionId, stats.getEpoch(), stats.getActionCount(), actual)) {
+            // Changed while counting: it is dirty again and is recounted once quiet
+            return 0;
+        }
+        reconciled.incrementAndGet();
+        long drift = actual - stats.getActionCount();
+        if (drift != 0) {
+            corrections.incrementAndGet();
+            driftCorrected.addAndGet(Math.abs(drift));
+            logger.info("Corrected action counter of session " + sessionId + " by " + drift);
+        }
+        return drift;
+    }
+
+    private void reconcileGlobal() {
+        SessionStats global = statsRepository.findById(SessionStats.GLOBAL_ID).orElse(null);
+        long sum = statsRepository.sumSessionCounts();
+        if (global == null) {
+            statsRepository.seed(SessionStats.GLOBAL_ID, 0, sum);
+        } else if (global.getActionCount() != sum
+                && statsRepository.compareAndSetCount(SessionStats.GLOBAL_ID, 0, global.getActionCount(), sum)) {
+            corrections.incrementAndGet();
+            driftCorrected.addAndGet(Math.abs(sum - global.getActionCount()));
+            logger.info("Corrected global action counter by " + (sum - global.getActionCount()));
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long unflushed = 0;
+        for (Long count : pending.values()) {
+            unflushed += count;
+        }
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("reconcileIntervalMs", reconcileIntervalMs);
+        stats.put("pendingSessions", pending.size());
+        stats.put("pendingActions", unflushed);
+        stats.put("flushes", flushes.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("reconciled", reconciled.get());
+        stats.put("corrections", corrections.get());
+        stats.put("driftCorrected", driftCorrected.get());
+        stats.put("reconcileFailures", reconcileFailures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warning("Could not flush action counters on shutdown: " + e.getMessage());
+        }
+    }
+}
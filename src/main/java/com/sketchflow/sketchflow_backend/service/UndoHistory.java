@@ -0,0 +1,166 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user undo and redo stacks of drawing action ids, kept in memory for each session.
+ * Both stacks hold at most max-depth entries (the oldest undo entry falls off the bottom),
+ * so undo and redo are a pop and a push. Each entry remembers the clear epoch it was
+ * recorded in: once the canvas has been cleared there is nothing left to undo, and the
+ * stale entries are dropped the next time the user reaches them.
+ * A new action by the user empties their redo stack.
+ */
+@Component
+public class UndoHistory {
+
+    @Value("${whiteboard.undo.max-depth:100}")
+    private int maxDepth;
+
+    // Map: sessionId -> userId -> stacks
+    private final Map<String, Map<String, UserHistory>> sessions = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong undos = new AtomicLong();
+    private final AtomicLong redos = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reverts = new AtomicLong();
+
+    private record Entry(String actionId, long epoch) {
+    }
+
+    private static final class UserHistory {
+        final Deque<Entry> undo = new ArrayDeque<>();
+        final Deque<Entry> redo = new ArrayDeque<>();
+    }
+
+    /**
+     * Push an action the user just drew
+     */
+    public void record(String sessionId, String userId, String actionId, long epoch) {
+        if (sessionId == null || userId == null || actionId == null) {
+            return;
+        }
+        UserHistory history = sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(userId, k -> new UserHistory());
+        synchronized (history) {
+            history.undo.addLast(new Entry(actionId, epoch));
+            if (history.undo.size() > maxDepth) {
+                history.undo.removeFirst();
+            }
+            history.redo.clear();
+        }
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Pop the user's latest action in the current epoch onto the redo stack
+     * @return the action to hide, or null if there is nothing to undo
+     */
+    public String undo(String sessionId, String userId, long epoch) {
+        String actionId = move(sessionId, userId, epoch, true);
+        count(actionId, undos);
+        return actionId;
+    }
+
+    /**
+     * Pop the user's latest undone action back onto the undo stack
+     * @return the action to restore, or null if there is nothing to redo
+     */
+    public String redo(String sessionId, String userId, long epoch) {
+        String actionId = move(sessionId, userId, epoch, false);
+        count(actionId, redos);
+        return actionId;
+    }
+
+    /**
+     * Take back an undo or redo whose tombstone could not be saved: the entry returns to
+     * the stack it was popped from, if nothing has moved it since
+     * @param undo whether the move being taken back was an undo
+     */
+    public void revert(String sessionId, String userId, String actionId, boolean undo) {
+        Map<String, UserHistory> users = sessionId != null ? sessions.get(sessionId) : null;
+        UserHistory history = users != null && userId != null ? users.get(userId) : null;
+        if (history == null || actionId == null) {
+            return;
+        }
+        synchronized (history) {
+            Deque<Entry> from = undo ? history.undo : history.redo;
+            Deque<Entry> to = undo ? history.redo : history.undo;
+            Entry entry = to.peekLast();
+            if (entry == null || !actionId.equals(entry.actionId())) {
+                return;
+            }
+            to.removeLast();
+            from.addLast(entry);
+        }
+        reverts.incrementAndGet();
+    }
+
+    private void count(String actionId, AtomicLong hits) {
+        if (actionId != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    private String move(String sessionId, String userId, long epoch, boolean undo) {
+        Map<String, UserHistory> users = sessionId != null ? sessions.get(sessionId) : null;
+        UserHistory history = users != null && userId != null ? users.get(userId) : null;
+        if (history == null) {
+            return null;
+        }
+        synchronized (history) {
+            Deque<Entry> from = undo ? history.undo : history.redo;
+            Deque<Entry> to = undo ? history.redo : history.undo;
+            Entry entry = from.pollLast();
+            if (entry == null) {
+                return null;
+            }
+            if (entry.epoch() != epoch) {
+                // Cleared since: everything below is older still
+                history.undo.clear();
+                history.redo.clear();
+                return null;
+            }
+            to.addLast(entry);
+            if (to.size() > maxDepth) {
+                to.removeFirst();
+            }
+            return entry.actionId();
+        }
+    }
+
+    /**
+     * Forget every user's history in a session (nobody is connected to it any more)
+     */
+    public void removeSession(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        int users = 0;
+        for (Map<String, UserHistory> histories : sessions.values()) {
+            users += histories.size();
+        }
+        stats.put("maxDepth", maxDepth);
+        stats.put("sessions", sessions.size());
+        stats.put("users", users);
+        stats.put("recorded", recorded.get());
+        stats.put("undos", undos.get());
+        stats.put("redos", redos.get());
+        stats.put("misses", misses.get());
+        stats.put("reverts", reverts.get());
+        return stats;
+    }
+}
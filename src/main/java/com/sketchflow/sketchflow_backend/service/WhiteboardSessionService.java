@@ -3,6 +3,7 @@ package com.sketchflow.sketchflow_backend.service;
 import com.sketchflow.sketchflow_backend.dto.SessionCreateRequest;
 import com.sketchflow.sketchflow_backend.model.WhiteboardSession;
 import com.sketchflow.sketchflow_backend.repository.ActiveUserSessionRepository;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
 import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
 import com.sketchflow.sketchflow_backend.repository.WhiteboardSessionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +36,21 @@ public class WhiteboardSessionService {
     @Autowired
     private DrawingActionRepository drawingActionRepository;
 
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Autowired
+    private CanvasEpochRepository epochRepository;
+
+    @Autowired
+    private SessionStatsService sessionStats;
+
+    @Autowired
+    private ActionDeduplicator actionDeduplicator;
+
     /**
      * Create a new whiteboard session synchronously
      * This ensures SecurityContext is available during the entire operation
@@ -106,6 +122,11 @@ public class WhiteboardSessionService {
 
             // Delete all drawing actions
             drawingActionRepository.deleteBySessionId(sessionId);
+            checkpointStore.deleteSession(sessionId);
+            epochRepository.deleteById(sessionId);
+            sessionStats.onSessionDeleted(sessionId);
+            canvasStateStore.evict(sessionId);
+            actionDeduplicator.forget(sessionId);
 
             // Delete active user sessions
             activeUserSessionRepository.deleteBySessionId(sessionId);
@@ -131,6 +152,11 @@ public class WhiteboardSessionService {
 
                 // Delete all drawing actions
                 drawingActionRepository.deleteBySessionId(sessionId);
+                checkpointStore.deleteSession(sessionId);
+                epochRepository.deleteById(sessionId);
+                sessionStats.onSessionDeleted(sessionId);
+                canvasStateStore.evict(sessionId);
+                actionDeduplicator.forget(sessionId);
 
                 // Delete active user sessions
                 activeUserSessionRepository.deleteBySessionId(sessionId);
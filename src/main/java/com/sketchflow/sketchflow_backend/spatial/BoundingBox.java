@@ -0,0 +1,127 @@
+package com.sketchflow.sketchflow_backend.spatial;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+
+/**
+ * Immutable axis-aligned rectangle in canvas coordinates (edges inclusive)
+ */
+public final class BoundingBox {
+
+    // Coordinates beyond this are treated as having no usable geometry
+    private static final double MAX_COORDINATE = 1e9;
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    public BoundingBox(double minX, double minY, double maxX, double maxY) {
+        if (!(minX <= maxX) || !(minY <= maxY)) {
+            throw new IllegalArgumentException("Invalid bounding box: min must not exceed max");
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Parse "minX,minY,maxX,maxY"
+     * @throws IllegalArgumentException if the value is malformed
+     */
+    public static BoundingBox parse(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Bounding box is required");
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Bounding box must be minX,minY,maxX,maxY");
+        }
+        try {
+            return new BoundingBox(
+                Double.parseDouble(parts[0].trim()),
+                Double.parseDouble(parts[1].trim()),
+                Double.parseDouble(parts[2].trim()),
+                Double.parseDouble(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bounding box must be minX,minY,maxX,maxY", e);
+        }
+    }
+
+    /**
+     * Bounds of a stroke, padded by half its line width
+     * @return null if the action has no usable geometry
+     */
+    public static BoundingBox of(DrawingAction action) {
+        double pad = action.getProperties() != null ? action.getProperties().getLineWidth() / 2 : 0;
+        return of(action.getCoordinates(), pad);
+    }
+
+    /**
+     * Bounds of points/start/end, grown by pad on every side; a negative or non-finite
+     * pad counts as 0 and a larger one than the coordinate range as that range
+     * @return null if there are no finite points
+     */
+    public static BoundingBox of(DrawingAction.Coordinates coordinates, double pad) {
+        if (coordinates == null) {
+            return null;
+        }
+        pad = Double.isFinite(pad) ? Math.min(Math.max(pad, 0), MAX_COORDINATE) : 0;
+        double[] b = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        if (coordinates.getPoints() != null) {
+            for (DrawingAction.Point p : coordinates.getPoints()) {
+                extend(b, p);
+            }
+        }
+        extend(b, coordinates.getStart());
+        extend(b, coordinates.getEnd());
+
+        if (b[0] > b[2]) {
+            return null;
+        }
+        return new BoundingBox(b[0] - pad, b[1] - pad, b[2] + pad, b[3] + pad);
+    }
+
+    private static void extend(double[] b, DrawingAction.Point p) {
+        if (p == null || !usable(p.getX()) || !usable(p.getY())) {
+            return;
+        }
+        b[0] = Math.min(b[0], p.getX());
+        b[1] = Math.min(b[1], p.getY());
+        b[2] = Math.max(b[2], p.getX());
+        b[3] = Math.max(b[3], p.getY());
+    }
+
+    private static boolean usable(double v) {
+        return Double.isFinite(v) && Math.abs(v) <= MAX_COORDINATE;
+    }
+
+    public boolean intersects(BoundingBox other) {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY;
+    }
+
+    public boolean contains(BoundingBox other) {
+        return minX <= other.minX && other.maxX <= maxX && minY <= other.minY && other.maxY <= maxY;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public String toString() {
+        return minX + "," + minY + "," + maxX + "," + maxY;
+    }
+}
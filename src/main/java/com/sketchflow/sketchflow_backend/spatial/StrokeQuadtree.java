@@ -0,0 +1,187 @@
+package com.sketchflow.sketchflow_backend.spatial;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quadtree over stroke bounding boxes for viewport queries.
+ *
+ * Each stroke is stored in the smallest node that fully contains its bounds, so a stroke
+ * straddling a split line stays at the parent. The root starts as a 4096 px square around the
+ * origin and doubles towards any stroke that falls outside it, so the canvas is unbounded.
+ * Actions without geometry are kept aside and returned by every query.
+ *
+ * Not thread-safe; callers synchronize (CanvasStateStore guards it with the session lock).
+ */
+public class StrokeQuadtree {
+
+    private static final int NODE_CAPACITY = 16;
+    private static final double MIN_NODE_SIZE = 1.0;
+    private static final double INITIAL_SIZE = 4096;
+
+    private Node root = new Node(-INITIAL_SIZE / 2, -INITIAL_SIZE / 2, INITIAL_SIZE);
+
+    // actionId -> entry, for replacement and removal
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // Actions with no usable coordinates (always visible)
+    private final Map<String, DrawingAction> unbounded = new LinkedHashMap<>();
+
+    /**
+     * Insert or replace an action
+     */
+    public void insert(DrawingAction action) {
+        remove(action.getActionId());
+
+        BoundingBox bounds = BoundingBox.of(action);
+        if (bounds == null) {
+            unbounded.put(action.getActionId(), action);
+            return;
+        }
+        while (!root.bounds.contains(bounds)) {
+            grow(bounds);
+        }
+        Entry entry = new Entry(action, bounds);
+        entries.put(action.getActionId(), entry);
+        root.insert(entry);
+    }
+
+    /**
+     * Remove an action by id
+     * @return false if it was not indexed
+     */
+    public boolean remove(String actionId) {
+        if (unbounded.remove(actionId) != null) {
+            return true;
+        }
+        Entry entry = entries.remove(actionId);
+        if (entry == null) {
+            return false;
+        }
+        entry.node.items.remove(entry);
+        return true;
+    }
+
+    /**
+     * Actions whose bounds intersect the box, plus all actions without geometry (unordered)
+     */
+    public List<DrawingAction> query(BoundingBox box) {
+        List<DrawingAction> result = new ArrayList<>(unbounded.values());
+        root.query(box, result);
+        return result;
+    }
+
+    public void clear() {
+        root = new Node(-INITIAL_SIZE / 2, -INITIAL_SIZE / 2, INITIAL_SIZE);
+        entries.clear();
+        unbounded.clear();
+    }
+
+    public int size() {
+        return entries.size() + unbounded.size();
+    }
+
+    /**
+     * Double the root towards the given bounds; the old root becomes one quadrant
+     */
+    private void grow(BoundingBox towards) {
+        Node old = root;
+        double size = old.size;
+        boolean left = towards.getMinX() < old.minX;
+        boolean up = towards.getMinY() < old.minY;
+
+        Node grown = new Node(left ? old.minX - size : old.minX, up ? old.minY - size : old.minY, size * 2);
+        grown.split();
+        grown.children[(left ? 1 : 0) + (up ? 2 : 0)] = old;
+        root = grown;
+    }
+
+    private static class Entry {
+        final DrawingAction action;
+        final BoundingBox bounds;
+        Node node;
+
+        Entry(DrawingAction action, BoundingBox bounds) {
+            this.action = action;
+            this.bounds = bounds;
+        }
+    }
+
+    private static class Node {
+        final double minX;
+        final double minY;
+        final double size;
+        final BoundingBox bounds;
+        final List<Entry> items = new ArrayList<>();
+        // Quadrants: 0 = top-left, 1 = top-right, 2 = bottom-left, 3 = bottom-right
+        Node[] children;
+
+        Node(double minX, double minY, double size) {
+            this.minX = minX;
+            this.minY = minY;
+            this.size = size;
+            this.bounds = new BoundingBox(minX, minY, minX + size, minY + size);
+        }
+
+        void insert(Entry entry) {
+            if (children != null) {
+                Node child = childContaining(entry.bounds);
+                if (child != null) {
+                    child.insert(entry);
+                    return;
+                }
+            }
+            items.add(entry);
+            entry.node = this;
+
+            if (children == null && items.size() > NODE_CAPACITY && size / 2 >= MIN_NODE_SIZE) {
+                split();
+                List<Entry> current = new ArrayList<>(items);
+                items.clear();
+                for (Entry e : current) {
+                    insert(e);
+                }
+            }
+        }
+
+        void split() {
+            double half = size / 2;
+            children = new Node[]{
+                new Node(minX, minY, half),
+                new Node(minX + half, minY, half),
+                new Node(minX, minY + half, half),
+                new Node(minX + half, minY + half, half)
+            };
+        }
+
+        Node childContaining(BoundingBox b) {
+            for (Node child : children) {
+                if (child.bounds.contains(b)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        void query(BoundingBox box, List<DrawingAction> result) {
+            if (!bounds.intersects(box)) {
+                return;
+            }
+            for (Entry entry : items) {
+                if (entry.bounds.intersects(box)) {
+                    result.add(entry.action);
+                }
+            }
+            if (children != null) {
+                for (Node child : children) {
+                    child.query(box, result);
+                }
+            }
+        }
+    }
+}
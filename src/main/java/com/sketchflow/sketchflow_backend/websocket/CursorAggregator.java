@@ -0,0 +1,208 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.ActiveUserSession;
+import com.sketchflow.sketchflow_backend.service.ActiveUserService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces cursor movements per whiteboard session.
+ * Only the latest position per user is kept; one combined CURSORS frame per session
+ * is flushed at a fixed tick rate, and positions are persisted at a much lower sampled rate.
+ */
+@Component
+public class CursorAggregator {
+
+    private static final Logger logger = Logger.getLogger(CursorAggregator.class.getName());
+
+    // Map: sessionId -> (userId -> latest position not yet broadcast)
+    private final Map<String, Map<String, WebSocketMessage.CursorUpdate>> pendingBroadcast = new ConcurrentHashMap<>();
+
+    // Map: sessionId -> (userId -> latest position not yet persisted)
+    private final Map<String, Map<String, WebSocketMessage.CursorUpdate>> pendingPersist = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-CursorFlush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Persistence waits on the database, so it must never delay a broadcast tick
+    private final ScheduledExecutorService persistScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-CursorPersist");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong movesReceived = new AtomicLong();
+    private final AtomicLong framesFlushed = new AtomicLong();
+    private final AtomicLong positionsPersisted = new AtomicLong();
+
+    private volatile BiConsumer<String, List<WebSocketMessage.CursorUpdate>> flushListener;
+
+    @Autowired
+    private ActiveUserService activeUserService;
+
+    @Value("${whiteboard.cursor.flush-interval-ms:33}")
+    private long flushIntervalMs;
+
+    @Value("${whiteboard.cursor.persist-interval-ms:5000}")
+    private long persistIntervalMs;
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::safeFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        persistScheduler.scheduleWithFixedDelay(this::safePersist, persistIntervalMs, persistIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Started cursor aggregator (flush every " + flushIntervalMs +
+                   " ms, persist every " + persistIntervalMs + " ms)");
+    }
+
+    /**
+     * Register the sink that broadcasts a combined CURSORS frame for a session
+     */
+    public void setFlushListener(BiConsumer<String, List<WebSocketMessage.CursorUpdate>> flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    /**
+     * Record the latest cursor position of a user (O(1), replaces any unflushed position)
+     */
+    public void update(String sessionId, String userId, String username, double x, double y) {
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        WebSocketMessage.CursorUpdate update = new WebSocketMessage.CursorUpdate(userId, username, x, y);
+        pendingBroadcast.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(userId, update);
+        pendingPersist.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(userId, update);
+        movesReceived.incrementAndGet();
+    }
+
+    /**
+     * Forget a user's cursor (user left the session)
+     */
+    public void removeUser(String sessionId, String userId) {
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        Map<String, WebSocketMessage.CursorUpdate> pending = pendingBroadcast.get(sessionId);
+        if (pending != null) {
+            pending.remove(userId);
+        }
+        Map<String, WebSocketMessage.CursorUpdate> persist = pendingPersist.get(sessionId);
+        if (persist != null) {
+            persist.remove(userId);
+        }
+    }
+
+    /**
+     * Drop all cursor state for a session (last connection left)
+     */
+    public void removeSession(String sessionId) {
+        pendingBroadcast.remove(sessionId);
+        pendingPersist.remove(sessionId);
+    }
+
+    private void safeFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warning("Error flushing cursor updates: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Emit one combined frame per session containing every cursor that moved since the last tick
+     */
+    void flush() {
+        BiConsumer<String, List<WebSocketMessage.CursorUpdate>> listener = flushListener;
+        if (listener == null) {
+            return;
+        }
+
+        for (Map.Entry<String, Map<String, WebSocketMessage.CursorUpdate>> entry : pendingBroadcast.entrySet()) {
+            List<WebSocketMessage.CursorUpdate> batch = drain(entry.getValue());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            listener.accept(entry.getKey(), batch);
+            framesFlushed.incrementAndGet();
+        }
+    }
+
+    private void safePersist() {
+        try {
+            persist();
+        } catch (Exception e) {
+            logger.warning("Error persisting cursor positions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Persist the latest sampled position per user, one bulk write per session
+     */
+    void persist() {
+        for (Map.Entry<String, Map<String, WebSocketMessage.CursorUpdate>> entry : pendingPersist.entrySet()) {
+            List<WebSocketMessage.CursorUpdate> batch = drain(entry.getValue());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            Map<String, ActiveUserSession.CursorPosition> positions = new HashMap<>();
+            for (WebSocketMessage.CursorUpdate update : batch) {
+                positions.put(update.getUserId(), new ActiveUserSession.CursorPosition(update.getX(), update.getY()));
+            }
+            activeUserService.updateCursorPositions(entry.getKey(), positions);
+            positionsPersisted.addAndGet(batch.size());
+        }
+    }
+
+    /**
+     * Remove and return the current entries without losing updates that race with the drain
+     */
+    private List<WebSocketMessage.CursorUpdate> drain(Map<String, WebSocketMessage.CursorUpdate> pending) {
+        List<WebSocketMessage.CursorUpdate> batch = new ArrayList<>(pending.size());
+        for (Map.Entry<String, WebSocketMessage.CursorUpdate> e : pending.entrySet()) {
+            // Only remove if unchanged; a newer position stays for the next tick
+            if (pending.remove(e.getKey(), e.getValue())) {
+                batch.add(e.getValue());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Get aggregator statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("persistIntervalMs", persistIntervalMs);
+        stats.put("movesReceived", movesReceived.get());
+        stats.put("framesFlushed", framesFlushed.get());
+        stats.put("positionsPersisted", positionsPersisted.get());
+        stats.put("trackedSessions", pendingBroadcast.size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        persistScheduler.shutdown();
+    }
+}
@@ -0,0 +1,320 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounded outbound queue for a single WebSocket connection.
+ * Producers only enqueue; at most one writer task drains the queue at a time,
+ * so a slow peer can hold at most one writer thread and never blocks broadcasters.
+ *
+ * Backpressure uses high/low watermarks: once the depth reaches the high watermark
+ * new frames are dropped until the writer has drained the queue down to the low watermark.
+ *
+ * The queue also tracks how far the peer lags behind (pending bytes, age of the oldest
+ * pending frame, send latency) and carries the level the {@link SlowConsumerPolicy} assigned to it.
+ */
+public class OutboundMessageQueue {
+
+    private static final Logger logger = Logger.getLogger(OutboundMessageQueue.class.getName());
+
+    // Max frames written per drain run before yielding the writer thread to other connections
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    // Weight of the latest sample in the send latency moving average
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+
+    private final WebSocketSession session;
+    private final Executor writerExecutor;
+    private final int highWatermark;
+    private final int lowWatermark;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean saturated = false;
+
+    // Start of the send currently in progress (0 = none); a blocked send shows up as lag
+    private volatile long sendStartedNanos = 0;
+
+    // Send latency (enqueue to written), only updated by the single active writer
+    private volatile double avgSendLatencyMs = 0;
+    private volatile long lastSendLatencyMs = 0;
+    private final AtomicLong maxSendLatencyMs = new AtomicLong();
+
+    // Slow-consumer state, owned by the policy check
+    private volatile SlowConsumerPolicy.Level level = SlowConsumerPolicy.Level.NORMAL;
+    private volatile long levelSince = System.currentTimeMillis();
+    private final AtomicLong droppedSinceResync = new AtomicLong();
+    private volatile long lastResyncAt = 0;
+    private int recentResyncs = 0;
+
+    // Metrics
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sendErrors = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong maxPendingBytes = new AtomicLong();
+
+    public OutboundMessageQueue(WebSocketSession session, Executor writerExecutor,
+                                int highWatermark, int lowWatermark) {
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("lowWatermark must be in [0, highWatermark)");
+        }
+        this.session = session;
+        this.writerExecutor = writerExecutor;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * Enqueue a frame for delivery. Never blocks.
+     * @return false if the frame was dropped (connection closed or queue saturated)
+     */
+    public boolean enqueue(WebSocketMessage<?> message) {
+        if (!session.isOpen()) {
+            return false;
+        }
+        if (saturated) {
+            dropped.incrementAndGet();
+            droppedSinceResync.incrementAndGet();
+            return false;
+        }
+
+        int bytes = message.getPayloadLength();
+        int newDepth = depth.incrementAndGet();
+        maxPendingBytes.accumulateAndGet(pendingBytes.addAndGet(bytes), Math::max);
+        queue.offer(new Entry(message, bytes, System.nanoTime()));
+        enqueued.incrementAndGet();
+        maxDepth.accumulateAndGet(newDepth, Math::max);
+
+        if (newDepth >= highWatermark) {
+            saturated = true;
+            logger.warning("Outbound queue for session " + session.getId() +
+                           " reached high watermark (" + highWatermark + "), dropping until drained");
+        }
+
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Ensure exactly one writer task is running for this connection
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writerExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                logger.warning("Writer pool rejected drain for session " + session.getId());
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            int written = 0;
+            Entry entry;
+            while (written < MAX_FRAMES_PER_DRAIN && (entry = queue.poll()) != null) {
+                written++;
+
+                if (session.isOpen()) {
+                    sendStartedNanos = System.nanoTime();
+                    try {
+                        session.sendMessage(entry.message);
+                        sent.incrementAndGet();
+                        recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.enqueuedNanos));
+                    } catch (IOException | IllegalStateException e) {
+                        sendErrors.incrementAndGet();
+                        logger.warning("Failed to send message to session " + session.getId() + ": " + e.getMessage());
+                    } finally {
+                        sendStartedNanos = 0;
+                    }
+                } else {
+                    dropped.incrementAndGet();
+                }
+
+                // Accounted after the send so pending bytes include the frame being written
+                pendingBytes.addAndGet(-entry.bytes);
+                int remaining = depth.decrementAndGet();
+                if (saturated && remaining <= lowWatermark) {
+                    saturated = false;
+                    logger.info("Outbound queue for session " + session.getId() + " drained below low watermark");
+                }
+            }
+        } finally {
+            draining.set(false);
+            // Frames may have arrived after the last poll, or we yielded early
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void recordLatency(long latencyMs) {
+        lastSendLatencyMs = latencyMs;
+        avgSendLatencyMs = avgSendLatencyMs == 0
+            ? latencyMs
+            : avgSendLatencyMs + LATENCY_EWMA_ALPHA * (latencyMs - avgSendLatencyMs);
+        maxSendLatencyMs.accumulateAndGet(latencyMs, Math::max);
+    }
+
+    /**
+     * Discard all pending frames (e.g. after the connection closed)
+     * @return the number of frames discarded
+     */
+    public int clear() {
+        int discarded = 0;
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            pendingBytes.addAndGet(-entry.bytes);
+            depth.decrementAndGet();
+            discarded++;
+        }
+        dropped.addAndGet(discarded);
+        saturated = false;
+        return discarded;
+    }
+
+    /**
+     * How far the peer lags behind: the age of the oldest frame not yet written,
+     * or of the send in progress if it is stuck inside the socket
+     */
+    public long getLagMs() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        Entry head = queue.peek();
+        if (head != null) {
+            oldest = now - head.enqueuedNanos;
+        }
+        long started = sendStartedNanos;
+        if (started != 0) {
+            oldest = Math.max(oldest, now - started);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(oldest);
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public double getAvgSendLatencyMs() {
+        return avgSendLatencyMs;
+    }
+
+    public SlowConsumerPolicy.Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Whether optional traffic (cursors, per-delta stroke frames) should be held back for this peer
+     */
+    public boolean isDegraded() {
+        return level != SlowConsumerPolicy.Level.NORMAL;
+    }
+
+    void setLevel(SlowConsumerPolicy.Level newLevel) {
+        if (level != newLevel) {
+            level = newLevel;
+            levelSince = System.currentTimeMillis();
+        }
+    }
+
+    long getLevelSince() {
+        return levelSince;
+    }
+
+    /**
+     * Frames dropped by backpressure since the peer was last resynced
+     */
+    long getDroppedSinceResync() {
+        return droppedSinceResync.get();
+    }
+
+    /**
+     * Record a forced resync
+     * @return the number of resyncs within the window, including this one
+     */
+    int recordResync(long now, long windowMs) {
+        recentResyncs = now - lastResyncAt <= windowMs ? recentResyncs + 1 : 1;
+        lastResyncAt = now;
+        droppedSinceResync.set(0);
+        return recentResyncs;
+    }
+
+    long getLastResyncAt() {
+        return lastResyncAt;
+    }
+
+    /**
+     * Resyncs within the window ending now
+     */
+    int getRecentResyncs(long now, long windowMs) {
+        return now - lastResyncAt <= windowMs ? recentResyncs : 0;
+    }
+
+    /**
+     * Get queue statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("depth", depth.get());
+        stats.put("maxDepth", maxDepth.get());
+        stats.put("pendingBytes", pendingBytes.get());
+        stats.put("maxPendingBytes", maxPendingBytes.get());
+        stats.put("saturated", saturated);
+        stats.put("enqueued", enqueued.get());
+        stats.put("sent", sent.get());
+        stats.put("dropped", dropped.get());
+        stats.put("sendErrors", sendErrors.get());
+        stats.put("lagMs", getLagMs());
+        stats.put("avgSendLatencyMs", Math.round(avgSendLatencyMs * 10) / 10.0);
+        stats.put("lastSendLatencyMs", lastSendLatencyMs);
+        stats.put("maxSendLatencyMs", maxSendLatencyMs.get());
+        stats.put("level", level.name());
+        return stats;
+    }
+
+    /**
+     * A pending frame with its size and enqueue time
+     */
+    private static final class Entry {
+        final WebSocketMessage<?> message;
+        final int bytes;
+        final long enqueuedNanos;
+
+        Entry(WebSocketMessage<?> message, int bytes, long enqueuedNanos) {
+            this.message = message;
+            this.bytes = bytes;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
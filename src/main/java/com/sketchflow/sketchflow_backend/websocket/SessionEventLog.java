@@ -0,0 +1,207 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Per-session event sequencing for gap-free reconnects.
+ * Every broadcast event gets a monotonically increasing sequence number and is kept in a
+ * bounded ring buffer, so a client that reconnects with RESUME{lastSeq} can be sent only
+ * the events it missed. Sequencing and fan-out run under one per-session lock, which keeps
+ * each connection's frames in sequence order.
+ *
+ * Sequences start at (creation time in ms * 1000), so they keep increasing across restarts
+ * and evictions and a stale lastSeq is detected instead of being replayed from the wrong log.
+ */
+@Component
+public class SessionEventLog {
+
+    private static final Logger logger = Logger.getLogger(SessionEventLog.class.getName());
+
+    // Map: sessionId -> ring of recent events
+    private final Map<String, EventRing> rings = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-EventLogEvictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong resumesServed = new AtomicLong();
+    private final AtomicLong eventsReplayed = new AtomicLong();
+    private final AtomicLong resumeGaps = new AtomicLong();
+
+    @Autowired
+    private WebSocketSessionManager sessionManager;
+
+    @Value("${whiteboard.ws.resume.buffer-size:1024}")
+    private int bufferSize;
+
+    @Value("${whiteboard.canvas.idle-grace-ms:300000}")
+    private long idleGraceMs;
+
+    @PostConstruct
+    public void start() {
+        evictionExecutor.scheduleAtFixedRate(this::evictIdleSessions, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stamp the next sequence number on a message, record it and fan it out.
+     * The fan-out runs under the session lock and must only enqueue.
+     */
+    public void publish(String sessionId, WebSocketMessage message, Consumer<Event> fanOut) {
+        EventRing ring = rings.computeIfAbsent(sessionId, k -> new EventRing(bufferSize));
+        synchronized (ring) {
+            message.setSeq(ring.nextSeq);
+            Event event = new Event(message);
+            ring.add(event);
+            fanOut.accept(event);
+        }
+        eventsPublished.incrementAndGet();
+    }
+
+    /**
+     * Run an action under the session lock with the last assigned sequence number.
+     * Used for full syncs: nothing can be published between reading the state and enqueueing it.
+     */
+    public void atHead(String sessionId, LongConsumer action) {
+        EventRing ring = rings.computeIfAbsent(sessionId, k -> new EventRing(bufferSize));
+        synchronized (ring) {
+            action.accept(ring.nextSeq - 1);
+        }
+    }
+
+    /**
+     * Hand every event after lastSeq to the sink, under the session lock
+     * @return the last sequence replayed up to, or -1 if the gap is not covered by the buffer
+     */
+    public long replaySince(String sessionId, long lastSeq, Consumer<Event> sink) {
+        EventRing ring = rings.get(sessionId);
+        if (ring == null) {
+            resumeGaps.incrementAndGet();
+            return -1;
+        }
+        synchronized (ring) {
+            long head = ring.nextSeq - 1;
+            if (lastSeq > head || lastSeq < ring.oldestSeq() - 1) {
+                resumeGaps.incrementAndGet();
+                return -1;
+            }
+            for (long seq = lastSeq + 1; seq <= head; seq++) {
+                sink.accept(ring.get(seq));
+            }
+            eventsReplayed.addAndGet(head - lastSeq);
+            resumesServed.incrementAndGet();
+            return head;
+        }
+    }
+
+    private void evictIdleSessions() {
+        try {
+            long threshold = System.currentTimeMillis() - idleGraceMs;
+            rings.forEach((sessionId, ring) -> {
+                if (ring.lastPublish < threshold && sessionManager.getConnectionCount(sessionId) == 0) {
+                    rings.remove(sessionId, ring);
+                }
+            });
+        } catch (Exception e) {
+            logger.severe("Error evicting event logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get sequencing and resume statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", rings.size());
+        stats.put("bufferSize", bufferSize);
+        stats.put("eventsPublished", eventsPublished.get());
+        stats.put("resumesServed", resumesServed.get());
+        stats.put("eventsReplayed", eventsReplayed.get());
+        stats.put("resumeFullSyncs", resumeGaps.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionExecutor.shutdown();
+    }
+
+    /**
+     * A sequenced event with its wire encodings, filled in lazily by whoever needs them first
+     */
+    public static final class Event {
+        private final WebSocketMessage message;
+        TextMessage text;
+        byte[] binary;
+        private BoundingBox bounds;
+        private boolean boundsResolved;
+
+        Event(WebSocketMessage message) {
+            this.message = message;
+        }
+
+        public WebSocketMessage getMessage() {
+            return message;
+        }
+
+        /**
+         * Bounds of a DRAW event (null for other types or events without geometry)
+         */
+        BoundingBox getBounds() {
+            if (!boundsResolved) {
+                bounds = "DRAW".equals(message.getType()) ? BoundingBox.of(message.getCoordinates(), 0) : null;
+                boundsResolved = true;
+            }
+            return bounds;
+        }
+    }
+
+    /**
+     * Fixed-size ring of the most recent events of one session
+     */
+    private static class EventRing {
+        final Event[] events;
+        long nextSeq = System.currentTimeMillis() * 1000;
+        final long firstSeq = nextSeq;
+        volatile long lastPublish = System.currentTimeMillis();
+
+        EventRing(int capacity) {
+            this.events = new Event[Math.max(1, capacity)];
+        }
+
+        void add(Event event) {
+            events[(int) (nextSeq % events.length)] = event;
+            nextSeq++;
+            lastPublish = System.currentTimeMillis();
+        }
+
+        long oldestSeq() {
+            return Math.max(firstSeq, nextSeq - events.length);
+        }
+
+        Event get(long seq) {
+            return events[(int) (seq % events.length)];
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import com.sketchflow.sketchflow_backend.service.CanvasCheckpointStore;
+import com.sketchflow.sketchflow_backend.service.CanvasHistoryService;
+import com.sketchflow.sketchflow_backend.service.CanvasStateStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Replays a session's drawing history to one connection at 1x to 32x speed.
+ *
+ * A playback seeks to the checkpoint nearest its start time, folds the log up to that time
+ * into a PLAYBACK_STATE frame, then keeps reading the same cursor and sends the following
+ * log entries (tombstones included) in PLAYBACK frames as a virtual clock, advanced by real
+ * time times the speed, passes them. Idle stretches longer than max-gap-ms are skipped.
+ * The clock stops while the connection's outbound queue is degraded, so a slow client is
+ * never flooded. Memory per playback is one cursor batch plus one frame, apart from the
+ * starting state. PLAYBACK_END is sent once the log read is exhausted; live events are not
+ * part of the playback.
+ */
+@Component
+public class SessionPlayback {
+
+    private static final Logger logger = Logger.getLogger(SessionPlayback.class.getName());
+
+    static final double MIN_SPEED = 1;
+    static final double MAX_SPEED = 32;
+
+    @Autowired
+    private CanvasHistoryService historyService;
+
+    @Autowired
+    private CanvasCheckpointStore checkpointStore;
+
+    @Value("${whiteboard.playback.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${whiteboard.playback.tick-ms:50}")
+    private long tickMs;
+
+    @Value("${whiteboard.playback.max-gap-ms:2000}")
+    private long maxGapMs;
+
+    @Value("${whiteboard.playback.max-frame-actions:200}")
+    private int maxFrameActions;
+
+    @Value("${whiteboard.playback.threads:2}")
+    private int threads;
+
+    private ScheduledExecutorService scheduler;
+
+    // Map: connectionId -> running playback
+    private final Map<String, Playback> playbacks = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong actionsSent = new AtomicLong();
+    private final AtomicLong pausedTicks = new AtomicLong();
+
+    /**
+     * Where a playback's frames go
+     */
+    public interface Viewer {
+        void send(WebSocketMessage frame);
+
+        /**
+         * Whether the connection is behind on what it was sent; the playback waits meanwhile
+         */
+        boolean isBackedUp();
+
+        boolean isOpen();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newScheduledThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "Whiteboard-Playback");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start playing a session back to a connection, replacing any playback it already has
+     * @param from epoch millis to start at, or null for the beginning of the canvas
+     * @param speed playback speed, clamped to 1..32 (null: 1)
+     * @return false if too many playbacks are running
+     */
+    public boolean start(String connectionId, String sessionId, Long from, Double speed, Viewer viewer) {
+        stop(connectionId);
+        if (playbacks.size() >= maxConcurrent) {
+            rejected.incrementAndGet();
+            WebSocketMessage end = new WebSocketMessage();
+            end.setType("PLAYBACK_END");
+            end.setMessageContent("Too many playbacks running, try again later");
+            end.setTimestamp(System.currentTimeMillis());
+            viewer.send(end);
+            return false;
+        }
+        double clamped = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed != null && !speed.isNaN() ? speed : MIN_SPEED));
+        Playback playback = new Playback(connectionId, sessionId, from != null ? toTime(from) : null, clamped, viewer);
+        playbacks.put(connectionId, playback);
+        playback.future = scheduler.scheduleWithFixedDelay(playback::safeTick, 0, tickMs, TimeUnit.MILLISECONDS);
+        started.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stop a connection's playback, if any; its cursor is closed by its own next tick
+     */
+    public void stop(String connectionId) {
+        Playback playback = playbacks.remove(connectionId);
+        if (playback != null) {
+            playback.stopped = true;
+        }
+    }
+
+    static LocalDateTime toTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * One connection's playback; ticks of one playback never overlap
+     */
+    private final class Playback {
+        final String connectionId;
+        final String sessionId;
+        final LocalDateTime from;
+        final double speed;
+        final Viewer viewer;
+        // Stopped by the client or the connection closing: no PLAYBACK_END
+        volatile boolean stopped;
+        volatile boolean finished;
+        volatile ScheduledFuture<?> future;
+
+        CanvasHistoryService.Seek seek;
+        Stream<DrawingAction> log;
+        Iterator<DrawingAction> cursor;
+        // Next entry to send, read ahead to know when it is due
+        DrawingAction next;
+        Keyset position;
+        LocalDateTime clock;
+        long lastTick;
+        long sent;
+
+        Playback(String connectionId, String sessionId, LocalDateTime from, double speed, Viewer viewer) {
+            this.connectionId = connectionId;
+            this.sessionId = sessionId;
+            this.from = from;
+            this.speed = speed;
+            this.viewer = viewer;
+        }
+
+        void safeTick() {
+            if (finished) {
+                // Ended before its future was known
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            try {
+                if (stopped || !viewer.isOpen()) {
+                    finish(null);
+                    return;
+                }
+                if (log == null) {
+                    open();
+                } else {
+                    tick();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.warning("Playback of session " + sessionId + " to " + connectionId + " failed: " + e.getMessage());
+                finish("Playback failed");
+            }
+        }
+
+        /**
+         * Seek to the start time and send the canvas as it was then
+         */
+        void open() {
+            LocalDateTime start = from;
+            LocalDateTime clearedAt = historyService.clearedAt(sessionId);
+            if (start != null && clearedAt != null && start.isBefore(clearedAt)) {
+                // Nothing before the last clear survives
+                start = clearedAt;
+            }
+            seek = historyService.seek(sessionId, start);
+            log = historyService.openLog(sessionId, seek, null);
+            cursor = log.iterator();
+            position = seek.start();
+
+            if (start != null) {
+                CanvasStateStore.Replay replay = new CanvasStateStore.Replay();
+                if (seek.checkpoint() != null) {
+                    checkpointStore.forEachFolded(seek.checkpoint(), replay::add);
+                }
+                advance();
+                while (next != null && next.getTimestamp() != null && !next.getTimestamp().isAfter(start)) {
+                    replay.add(next);
+                    advance();
+                }
+                WebSocketMessage state = new WebSocketMessage();
+                state.setType("PLAYBACK_STATE");
+                state.setActions(replay.visible());
+                state.setEpoch(seek.epoch());
+                state.setTimestamp(toMillis(start));
+                state.setMessageContent(seek.complete() ? null : "History before this point was compacted away");
+                viewer.send(state);
+                clock = start;
+            } else {
+                advance();
+                clock = next != null && next.getTimestamp() != null ? next.getTimestamp() : LocalDateTime.now();
+            }
+            lastTick = System.currentTimeMillis();
+        }
+
+        /**
+         * Advance the virtual clock and send what it passed
+         */
+        void tick() {
+            long now = System.currentTimeMillis();
+            long elapsed = now - lastTick;
+            lastTick = now;
+            if (viewer.isBackedUp()) {
+                pausedTicks.incrementAndGet();
+                return;
+            }
+            if (next == null) {
+                finish(null);
+                return;
+            }
+            clock = clock.plusNanos((long) (elapsed * speed * 1_000_000L));
+            if (next.getTimestamp() != null && next.getTimestamp().isAfter(clock.plusNanos(maxGapMs * 1_000_000L))) {
+                // Nobody drew for a while: skip ahead to shortly before the next entry
+                clock = next.getTimestamp().minusNanos(maxGapMs * 1_000_000L);
+            }
+            List<DrawingAction> frame = new ArrayList<>();
+            while (next != null && frame.size() < maxFrameActions
+                    && (next.getTimestamp() == null || !next.getTimestamp().isAfter(clock))) {
+                frame.add(next);
+                advance();
+            }
+            if (!frame.isEmpty()) {
+                WebSocketMessage message = new WebSocketMessage();
+                message.setType("PLAYBACK");
+                message.setActions(frame);
+                message.setTimestamp(toMillis(clock));
+                viewer.send(message);
+                sent += frame.size();
+                actionsSent.addAndGet(frame.size());
+            }
+        }
+
+        /**
+         * Read the next log entry; a cursor that timed out while paused is reopened where it stopped
+         */
+        void advance() {
+            try {
+                next = cursor.hasNext() ? cursor.next() : null;
+            } catch (RuntimeException e) {
+                logger.fine("Reopening playback cursor of session " + sessionId + ": " + e.getMessage());
+                log.close();
+                log = historyService.openLog(sessionId,
+                    new CanvasHistoryService.Seek(seek.epoch(), null, position, seek.archived(), seek.complete()), null);
+                cursor = log.iterator();
+                next = cursor.hasNext() ? cursor.next() : null;
+            }
+            if (next != null) {
+                position = new Keyset(next.getTimestamp(), next.getActionId());
+            }
+        }
+
+        void finish(String reason) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (log != null) {
+                log.close();
+            }
+            playbacks.remove(connectionId, this);
+            if (!stopped && viewer.isOpen()) {
+                WebSocketMessage end = new WebSocketMessage();
+                end.setType("PLAYBACK_END");
+                end.setMessageContent(reason);
+                end.setTimestamp(clock != null ? toMillis(clock) : System.currentTimeMillis());
+                viewer.send(end);
+                if (reason == null) {
+                    completed.incrementAndGet();
+                }
+            }
+            finished = true;
+            logger.fine("Playback of session " + sessionId + " to " + connectionId + " ended after " + sent + " actions");
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", playbacks.size());
+        stats.put("started", started.get());
+        stats.put("completed", completed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("failed", failed.get());
+        stats.put("actionsSent", actionsSent.get());
+        stats.put("pausedTicks", pausedTicks.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Playback playback : playbacks.values()) {
+            playback.stopped = true;
+            if (playback.log != null) {
+                playback.log.close();
+            }
+        }
+        playbacks.clear();
+    }
+}
@@ -0,0 +1,150 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections and traffic counters of one whiteboard session.
+ *
+ * Membership is a ConcurrentHashMap plus a member count that doubles as a lifecycle flag:
+ * -1 means the registry was retired (empty and unlinked from the manager), and adds to a
+ * retired registry fail so the caller retries on a fresh one. Broadcast reads a cached array
+ * snapshot that is rebuilt only after membership changed, so iterating it allocates nothing.
+ */
+public final class SessionRegistry {
+
+    private static final WebSocketSession[] EMPTY = new WebSocketSession[0];
+
+    private final String sessionId;
+    private final Map<String, WebSocketSession> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger members = new AtomicInteger();
+
+    // Bumped after every membership change; a snapshot is valid only for the version it was built from
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, EMPTY);
+
+    // Traffic counters
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+
+    SessionRegistry(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Add a connection
+     * @return false if the registry has been retired
+     */
+    boolean tryAdd(WebSocketSession session) {
+        int current;
+        do {
+            current = members.get();
+            if (current < 0) {
+                return false;
+            }
+        } while (!members.compareAndSet(current, current + 1));
+
+        if (connections.put(session.getId(), session) != null) {
+            // Same connection registered again; undo the extra reservation
+            members.decrementAndGet();
+        } else {
+            joins.increment();
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    boolean remove(WebSocketSession session) {
+        if (connections.remove(session.getId()) == null) {
+            return false;
+        }
+        members.decrementAndGet();
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Retire the registry if it is empty; no connection can be added afterwards
+     */
+    boolean tryRetire() {
+        return members.compareAndSet(0, -1);
+    }
+
+    /**
+     * Retire the registry regardless of members and return the connections it held
+     */
+    WebSocketSession[] retire() {
+        members.set(-1);
+        WebSocketSession[] remaining = connections.values().toArray(EMPTY);
+        connections.clear();
+        version.incrementAndGet();
+        return remaining;
+    }
+
+    /**
+     * Current connections. The array is shared between callers and must not be modified.
+     */
+    public WebSocketSession[] snapshot() {
+        long v = version.get();
+        Snapshot s = snapshot;
+        if (s.version == v) {
+            return s.connections;
+        }
+        WebSocketSession[] rebuilt = connections.values().toArray(EMPTY);
+        snapshot = new Snapshot(v, rebuilt);
+        return rebuilt;
+    }
+
+    public int size() {
+        return Math.max(0, members.get());
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void recordInbound(long bytes) {
+        messagesIn.increment();
+        bytesIn.add(bytes);
+    }
+
+    public void recordOutbound(long messages, long bytes) {
+        if (messages > 0) {
+            messagesOut.add(messages);
+            bytesOut.add(bytes);
+        }
+    }
+
+    /**
+     * Get connection and traffic counters for this session
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connections", size());
+        stats.put("joins", joins.sum());
+        stats.put("messagesIn", messagesIn.sum());
+        stats.put("messagesOut", messagesOut.sum());
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("bytesOut", bytesOut.sum());
+        return stats;
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final WebSocketSession[] connections;
+
+        Snapshot(long version, WebSocketSession[] connections) {
+            this.version = version;
+            this.connections = connections;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escalation policy for WebSocket peers that cannot keep up with their board.
+ *
+ * A connection is judged by its outbound queue: pending bytes, lag (age of the oldest
+ * unsent frame or of a stuck send) and frames lost to backpressure. It escalates through
+ * DEGRADED (cursor traffic dropped, stroke deltas coalesced), RESYNC (backlog discarded,
+ * fresh CANVAS_STATE sent) and finally DISCONNECT when resyncs do not help. A degraded
+ * connection returns to NORMAL once it stays below half of the degrade thresholds.
+ */
+@Component
+public class SlowConsumerPolicy {
+
+    public enum Level {
+        NORMAL,
+        DEGRADED,
+        RESYNC,
+        DISCONNECT
+    }
+
+    @Value("${whiteboard.ws.slow-consumer.degrade-pending-bytes:262144}")
+    private long degradePendingBytes;
+
+    @Value("${whiteboard.ws.slow-consumer.degrade-lag-ms:500}")
+    private long degradeLagMs;
+
+    @Value("${whiteboard.ws.slow-consumer.resync-pending-bytes:2097152}")
+    private long resyncPendingBytes;
+
+    @Value("${whiteboard.ws.slow-consumer.resync-lag-ms:3000}")
+    private long resyncLagMs;
+
+    @Value("${whiteboard.ws.slow-consumer.disconnect-lag-ms:15000}")
+    private long disconnectLagMs;
+
+    @Value("${whiteboard.ws.slow-consumer.max-resyncs:3}")
+    private int maxResyncs;
+
+    @Value("${whiteboard.ws.slow-consumer.resync-window-ms:60000}")
+    private long resyncWindowMs;
+
+    @Value("${whiteboard.ws.slow-consumer.min-degraded-ms:2000}")
+    private long minDegradedMs;
+
+    // Metrics
+    private final AtomicLong degraded = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong cursorFramesDropped = new AtomicLong();
+    private final AtomicLong strokeDeltasCoalesced = new AtomicLong();
+
+    /**
+     * Decide the level a connection should be at now.
+     * Returns RESYNC at most as an action to take; the queue itself stays DEGRADED afterwards.
+     */
+    public Level evaluate(OutboundMessageQueue queue, long now) {
+        long pending = queue.getPendingBytes();
+        long lag = queue.getLagMs();
+        Level current = queue.getLevel();
+
+        if (lag >= disconnectLagMs) {
+            return Level.DISCONNECT;
+        }
+
+        boolean needsResync = queue.getDroppedSinceResync() > 0
+            || pending >= resyncPendingBytes
+            || lag >= resyncLagMs;
+        if (needsResync) {
+            // Give the last resync time to reach the peer before judging it again
+            if (now - queue.getLastResyncAt() < resyncLagMs) {
+                return Level.DEGRADED;
+            }
+            // Resyncing a peer that keeps falling behind only moves the backlog around
+            return queue.getRecentResyncs(now, resyncWindowMs) >= maxResyncs ? Level.DISCONNECT : Level.RESYNC;
+        }
+
+        if (pending >= degradePendingBytes || lag >= degradeLagMs) {
+            return Level.DEGRADED;
+        }
+
+        if (current != Level.NORMAL) {
+            // Hysteresis: stay degraded until clearly caught up and for a minimum time
+            boolean caughtUp = pending < degradePendingBytes / 2 && lag < degradeLagMs / 2;
+            if (!caughtUp || now - queue.getLevelSince() < minDegradedMs) {
+                return Level.DEGRADED;
+            }
+        }
+        return Level.NORMAL;
+    }
+
+    /**
+     * Apply a level transition to the queue and count it
+     */
+    void transition(OutboundMessageQueue queue, Level target, long now) {
+        Level current = queue.getLevel();
+        switch (target) {
+            case RESYNC:
+                resyncs.incrementAndGet();
+                queue.recordResync(now, resyncWindowMs);
+                if (current == Level.NORMAL) {
+                    degraded.incrementAndGet();
+                }
+                queue.setLevel(Level.DEGRADED);
+                break;
+            case DISCONNECT:
+                disconnects.incrementAndGet();
+                queue.setLevel(Level.DISCONNECT);
+                break;
+            case DEGRADED:
+                if (current == Level.NORMAL) {
+                    degraded.incrementAndGet();
+                }
+                queue.setLevel(Level.DEGRADED);
+                break;
+            default:
+                if (current != Level.NORMAL) {
+                    recovered.incrementAndGet();
+                }
+                queue.setLevel(Level.NORMAL);
+        }
+    }
+
+    void recordCursorDropped() {
+        cursorFramesDropped.incrementAndGet();
+    }
+
+    void recordStrokeDeltaCoalesced() {
+        strokeDeltasCoalesced.incrementAndGet();
+    }
+
+    /**
+     * Get thresholds and transition counters
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("degraded", degraded.get());
+        stats.put("recovered", recovered.get());
+        stats.put("resyncs", resyncs.get());
+        stats.put("disconnects", disconnects.get());
+        stats.put("cursorFramesDropped", cursorFramesDropped.get());
+        stats.put("strokeDeltasCoalesced", strokeDeltasCoalesced.get());
+
+        Map<String, Object> thresholds = new HashMap<>();
+        thresholds.put("degradePendingBytes", degradePendingBytes);
+        thresholds.put("degradeLagMs", degradeLagMs);
+        thresholds.put("resyncPendingBytes", resyncPendingBytes);
+        thresholds.put("resyncLagMs", resyncLagMs);
+        thresholds.put("disconnectLagMs", disconnectLagMs);
+        thresholds.put("maxResyncs", maxResyncs);
+        thresholds.put("resyncWindowMs", resyncWindowMs);
+        stats.put("thresholds", thresholds);
+        return stats;
+    }
+}
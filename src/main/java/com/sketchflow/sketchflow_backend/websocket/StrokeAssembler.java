@@ -0,0 +1,278 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.sketchflow.sketchflow_backend.dto.DrawingActionRequest;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.service.DrawingActionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Assembles strokes streamed as STROKE_BEGIN / STROKE_APPEND / STROKE_END.
+ * Deltas are relayed to peers by the handler as they arrive; only the finished
+ * stroke is persisted, as a single DrawingAction keyed by the stroke's actionId.
+ */
+@Component
+public class StrokeAssembler {
+
+    private static final Logger logger = Logger.getLogger(StrokeAssembler.class.getName());
+
+    /**
+     * Outcome of ending a stroke
+     */
+    public enum Ended {
+        // No such stroke on the connection: nothing to tell peers
+        UNKNOWN,
+        // Closed and queued for persistence
+        SAVED,
+        // Closed but nothing was stored: empty, a retry of a stored stroke, or refused
+        NOT_SAVED
+    }
+
+    // Map: stroke actionId -> stroke in progress
+    private final Map<String, InProgressStroke> strokes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-StrokeSweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Metrics
+    private final AtomicLong strokesStarted = new AtomicLong();
+    private final AtomicLong strokesCompleted = new AtomicLong();
+    private final AtomicLong strokesAbandoned = new AtomicLong();
+    private final AtomicLong pointsAppended = new AtomicLong();
+
+    private volatile BiConsumer<String, WebSocketMessage> abandonListener;
+
+    @Autowired
+    private DrawingActionService drawingActionService;
+
+    @Value("${whiteboard.stroke.max-points:20000}")
+    private int maxPointsPerStroke;
+
+    @Value("${whiteboard.stroke.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @PostConstruct
+    public void start() {
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        sweeper.scheduleAtFixedRate(this::sweepIdleStrokes, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register the sink that tells peers a stroke was closed by the server (owner vanished)
+     */
+    public void setAbandonListener(BiConsumer<String, WebSocketMessage> abandonListener) {
+        this.abandonListener = abandonListener;
+    }
+
+    /**
+     * Start a stroke
+     * @return false if the stroke has no id or the id is already in progress
+     */
+    public boolean begin(String sessionId, String connectionId, WebSocketMessage message) {
+        String strokeId = message.getActionId();
+        if (sessionId == null || strokeId == null) {
+            return false;
+        }
+
+        InProgressStroke stroke = new InProgressStroke(sessionId, connectionId, message);
+        if (message.getCoordinates() != null && message.getCoordinates().getPoints() != null) {
+            stroke.points.addAll(message.getCoordinates().getPoints());
+        }
+        if (strokes.putIfAbsent(strokeId, stroke) != null) {
+            logger.warning("Stroke " + strokeId + " already in progress");
+            return false;
+        }
+        strokesStarted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Append points to a stroke owned by the given connection
+     * @return false if the stroke is unknown, not owned by the connection, or over the point limit
+     */
+    public boolean append(String connectionId, String strokeId, List<DrawingAction.Point> points) {
+        InProgressStroke stroke = strokeId != null ? strokes.get(strokeId) : null;
+        if (stroke == null || !stroke.connectionId.equals(connectionId) || points == null) {
+            return false;
+        }
+
+        synchronized (stroke) {
+            if (stroke.closed) {
+                return false;
+            }
+            if (stroke.points.size() + points.size() > maxPointsPerStroke) {
+                logger.warning("Stroke " + strokeId + " exceeded " + maxPointsPerStroke + " points");
+                return false;
+            }
+            stroke.points.addAll(points);
+            stroke.lastUpdate = System.currentTimeMillis();
+        }
+        pointsAppended.addAndGet(points.size());
+        return true;
+    }
+
+    /**
+     * Finish a stroke and persist it as one drawing action. Unless the stroke is unknown it
+     * is closed either way, so peers must be told it ended even when nothing was stored.
+     * @param finalPoints optional trailing points carried by STROKE_END
+     * @return UNKNOWN if the stroke is unknown or not owned by the connection
+     */
+    public Ended end(String connectionId, String strokeId, List<DrawingAction.Point> finalPoints) {
+        InProgressStroke stroke = strokeId != null ? strokes.get(strokeId) : null;
+        if (stroke == null || !stroke.connectionId.equals(connectionId) || !strokes.remove(strokeId, stroke)) {
+            return Ended.UNKNOWN;
+        }
+        if (finalPoints != null) {
+            synchronized (stroke) {
+                stroke.points.addAll(finalPoints);
+            }
+        }
+        strokesCompleted.incrementAndGet();
+        try {
+            return persist(strokeId, stroke) ? Ended.SAVED : Ended.NOT_SAVED;
+        } catch (RejectedExecutionException e) {
+            // Not stored (persistence backed up)
+            logger.warning("Could not save stroke " + strokeId + ": " + e.getMessage());
+            return Ended.NOT_SAVED;
+        }
+    }
+
+    /**
+     * Close every stroke still open on a connection (connection dropped mid-stroke)
+     */
+    public void abandonConnection(String connectionId) {
+        strokes.forEach((strokeId, stroke) -> {
+            if (stroke.connectionId.equals(connectionId)) {
+                abandon(strokeId, stroke);
+            }
+        });
+    }
+
+    private void sweepIdleStrokes() {
+        try {
+            long threshold = System.currentTimeMillis() - idleTimeoutMs;
+            strokes.forEach((strokeId, stroke) -> {
+                if (stroke.lastUpdate < threshold) {
+                    abandon(strokeId, stroke);
+                }
+            });
+        } catch (Exception e) {
+            logger.warning("Error sweeping idle strokes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Persist what we have of an unfinished stroke and let peers close it
+     */
+    private void abandon(String strokeId, InProgressStroke stroke) {
+        if (!strokes.remove(strokeId, stroke)) {
+            return;
+        }
+        try {
+            persist(strokeId, stroke);
+        } catch (RejectedExecutionException e) {
+            // Not stored (persistence backed up); peers still close it
+            logger.warning("Could not save abandoned stroke " + strokeId + ": " + e.getMessage());
+        }
+        strokesAbandoned.incrementAndGet();
+
+        BiConsumer<String, WebSocketMessage> listener = abandonListener;
+        if (listener != null) {
+            WebSocketMessage endFrame = new WebSocketMessage();
+            endFrame.setType("STROKE_END");
+            endFrame.setActionId(strokeId);
+            endFrame.setUserId(stroke.userId);
+            endFrame.setTimestamp(System.currentTimeMillis());
+            listener.accept(stroke.sessionId, endFrame);
+        }
+    }
+
+    /**
+     * Close a stroke and queue it for persistence
+     * @return whether it was queued: false if it has no points or is a retry of a stored stroke
+     * @throws RejectedExecutionException if persistence is backed up; nothing was stored
+     */
+    private boolean persist(String strokeId, InProgressStroke stroke) {
+        List<DrawingAction.Point> points;
+        synchronized (stroke) {
+            stroke.closed = true;
+            points = new ArrayList<>(stroke.points);
+        }
+        if (points.isEmpty()) {
+            return false;
+        }
+
+        DrawingActionRequest request = new DrawingActionRequest();
+        request.setActionId(strokeId);
+        request.setUserId(stroke.userId);
+        request.setTool(stroke.tool);
+        request.setColor(stroke.color);
+        request.setActionType("draw");
+        request.setCoordinates(new DrawingAction.Coordinates(points, points.get(0), points.get(points.size() - 1)));
+
+        return drawingActionService.saveNewActionAsync(stroke.sessionId, request).isPresent();
+    }
+
+    /**
+     * Get stroke statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inProgress", strokes.size());
+        stats.put("started", strokesStarted.get());
+        stats.put("completed", strokesCompleted.get());
+        stats.put("abandoned", strokesAbandoned.get());
+        stats.put("pointsAppended", pointsAppended.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdown();
+        // Keep whatever was drawn so far
+        strokes.forEach(this::abandon);
+    }
+
+    /**
+     * Stroke state while the owner is still drawing
+     */
+    private static class InProgressStroke {
+        final String sessionId;
+        final String connectionId;
+        final String userId;
+        final String tool;
+        final String color;
+        final List<DrawingAction.Point> points = new ArrayList<>();
+        volatile long lastUpdate;
+        boolean closed;
+
+        InProgressStroke(String sessionId, String connectionId, WebSocketMessage begin) {
+            this.sessionId = sessionId;
+            this.connectionId = connectionId;
+            this.userId = begin.getUserId();
+            this.tool = begin.getTool();
+            this.color = begin.getColor();
+            this.lastUpdate = System.currentTimeMillis();
+        }
+    }
+}
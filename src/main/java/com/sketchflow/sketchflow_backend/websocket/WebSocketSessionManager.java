@@ -6,101 +6,143 @@ import org.springframework.web.socket.WebSocketSession;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Logger;
 
 /**
  * Thread-safe WebSocket session manager
- * Manages connections per whiteboard session using concurrent data structures
+ * Manages connections per whiteboard session in per-session {@link SessionRegistry} instances.
+ * There is no manager-wide lock: joins and leaves of different sessions never contend, and
+ * broadcast iterates a cached array snapshot instead of copying on every membership change.
  */
 @Component
 public class WebSocketSessionManager {
 
     private static final Logger logger = Logger.getLogger(WebSocketSessionManager.class.getName());
 
-    // Map: sessionId -> Set of WebSocket sessions
-    private final Map<String, Set<WebSocketSession>> sessionConnections = new ConcurrentHashMap<>();
+    // Map: sessionId -> registry of its connections
+    private final Map<String, SessionRegistry> registries = new ConcurrentHashMap<>();
 
-    // Map: WebSocket session ID -> whiteboard sessionId
-    private final Map<String, String> sessionMapping = new ConcurrentHashMap<>();
-
-    // Map: WebSocket session ID -> userId
-    private final Map<String, String> userMapping = new ConcurrentHashMap<>();
+    // Map: WebSocket session ID -> (whiteboard sessionId, userId, registry)
+    private final Map<String, ConnectionInfo> connections = new ConcurrentHashMap<>();
 
     /**
      * Add a WebSocket connection to a whiteboard session
      */
-    public synchronized void addSession(String whiteboardSessionId, WebSocketSession wsSession, String userId) {
-        sessionConnections.computeIfAbsent(whiteboardSessionId, k -> new CopyOnWriteArraySet<>())
-                         .add(wsSession);
-        sessionMapping.put(wsSession.getId(), whiteboardSessionId);
-        userMapping.put(wsSession.getId(), userId);
+    public void addSession(String whiteboardSessionId, WebSocketSession wsSession, String userId) {
+        SessionRegistry registry;
+        do {
+            registry = registries.computeIfAbsent(whiteboardSessionId, SessionRegistry::new);
+            if (!registry.tryAdd(wsSession)) {
+                // Retired between lookup and add; unlink it if still present and retry on a fresh one
+                registries.remove(whiteboardSessionId, registry);
+                registry = null;
+            }
+        } while (registry == null);
+
+        ConnectionInfo previous = connections.put(wsSession.getId(),
+            new ConnectionInfo(whiteboardSessionId, userId, registry));
+        if (previous != null && previous.registry != registry) {
+            // Connection moved to another whiteboard session
+            leaveRegistry(previous.registry, wsSession);
+        }
 
         logger.info("Added WebSocket session " + wsSession.getId() +
                    " to whiteboard session " + whiteboardSessionId +
                    " for user " + userId +
-                   ". Total connections in session: " + sessionConnections.get(whiteboardSessionId).size());
+                   ". Total connections in session: " + registry.size());
     }
 
     /**
      * Remove a WebSocket connection
      */
-    public synchronized void removeSession(WebSocketSession wsSession) {
+    public void removeSession(WebSocketSession wsSession) {
         String wsSessionId = wsSession.getId();
-        String whiteboardSessionId = sessionMapping.remove(wsSessionId);
-        String userId = userMapping.remove(wsSessionId);
-
-        if (whiteboardSessionId != null) {
-            Set<WebSocketSession> sessions = sessionConnections.get(whiteboardSessionId);
-            if (sessions != null) {
-                sessions.remove(wsSession);
-                logger.info("Removed WebSocket session " + wsSessionId +
-                           " from whiteboard session " + whiteboardSessionId +
-                           " for user " + userId +
-                           ". Remaining connections: " + sessions.size());
-
-                // Clean up empty session sets
-                if (sessions.isEmpty()) {
-                    sessionConnections.remove(whiteboardSessionId);
-                }
-            }
+        ConnectionInfo info = connections.remove(wsSessionId);
+
+        if (info != null) {
+            leaveRegistry(info.registry, wsSession);
+            logger.info("Removed WebSocket session " + wsSessionId +
+                       " from whiteboard session " + info.sessionId +
+                       " for user " + info.userId +
+                       ". Remaining connections: " + info.registry.size());
+        }
+    }
+
+    private void leaveRegistry(SessionRegistry registry, WebSocketSession wsSession) {
+        registry.remove(wsSession);
+        // Clean up empty registries
+        if (registry.tryRetire()) {
+            registries.remove(registry.getSessionId(), registry);
         }
     }
 
     /**
-     * Get all WebSocket sessions for a whiteboard session
+     * Get the registry (connections and counters) of a whiteboard session, or null if it has none
+     */
+    public SessionRegistry getRegistry(String whiteboardSessionId) {
+        return whiteboardSessionId != null ? registries.get(whiteboardSessionId) : null;
+    }
+
+    /**
+     * Get all WebSocket sessions for a whiteboard session (a copy; broadcast uses the registry snapshot)
      */
     public Set<WebSocketSession> getSessionConnections(String whiteboardSessionId) {
-        return sessionConnections.getOrDefault(whiteboardSessionId, Collections.emptySet());
+        SessionRegistry registry = getRegistry(whiteboardSessionId);
+        if (registry == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(registry.snapshot()));
     }
 
     /**
      * Get whiteboard session ID for a WebSocket session
      */
     public String getWhiteboardSessionId(WebSocketSession wsSession) {
-        return sessionMapping.get(wsSession.getId());
+        ConnectionInfo info = connections.get(wsSession.getId());
+        return info != null ? info.sessionId : null;
     }
 
     /**
      * Get user ID for a WebSocket session
      */
     public String getUserId(WebSocketSession wsSession) {
-        return userMapping.get(wsSession.getId());
+        ConnectionInfo info = connections.get(wsSession.getId());
+        return info != null ? info.userId : null;
+    }
+
+    /**
+     * Count an inbound frame against the connection's whiteboard session
+     */
+    public void recordInbound(WebSocketSession wsSession, long bytes) {
+        ConnectionInfo info = connections.get(wsSession.getId());
+        if (info != null) {
+            info.registry.recordInbound(bytes);
+        }
+    }
+
+    /**
+     * Count frames sent to a single connection against its whiteboard session
+     */
+    public void recordOutbound(WebSocketSession wsSession, long messages, long bytes) {
+        ConnectionInfo info = connections.get(wsSession.getId());
+        if (info != null) {
+            info.registry.recordOutbound(messages, bytes);
+        }
     }
 
     /**
      * Get total connection count for a whiteboard session
      */
     public int getConnectionCount(String whiteboardSessionId) {
-        Set<WebSocketSession> sessions = sessionConnections.get(whiteboardSessionId);
-        return sessions != null ? sessions.size() : 0;
+        SessionRegistry registry = getRegistry(whiteboardSessionId);
+        return registry != null ? registry.size() : 0;
     }
 
     /**
      * Get all active whiteboard session IDs
      */
     public Set<String> getActiveSessionIds() {
-        return sessionConnections.keySet();
+        return registries.keySet();
     }
 
     /**
@@ -113,21 +155,21 @@ public class WebSocketSessionManager {
     /**
      * Close all connections for a whiteboard session
      */
-    public synchronized void closeAllSessionConnections(String whiteboardSessionId) {
-        Set<WebSocketSession> sessions = sessionConnections.remove(whiteboardSessionId);
-        if (sessions != null) {
+    public void closeAllSessionConnections(String whiteboardSessionId) {
+        SessionRegistry registry = registries.remove(whiteboardSessionId);
+        if (registry != null) {
+            WebSocketSession[] sessions = registry.retire();
             for (WebSocketSession session : sessions) {
                 try {
+                    connections.remove(session.getId());
                     if (session.isOpen()) {
                         session.close();
                     }
-                    sessionMapping.remove(session.getId());
-                    userMapping.remove(session.getId());
                 } catch (IOException e) {
                     logger.warning("Error closing WebSocket session: " + e.getMessage());
                 }
             }
-            logger.info("Closed " + sessions.size() + " WebSocket connections for whiteboard session " + whiteboardSessionId);
+            logger.info("Closed " + sessions.length + " WebSocket connections for whiteboard session " + whiteboardSessionId);
         }
     }
 
@@ -136,16 +178,33 @@ public class WebSocketSessionManager {
      */
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalWhiteboardSessions", sessionConnections.size());
-        stats.put("totalWebSocketConnections", sessionMapping.size());
+        stats.put("totalWhiteboardSessions", registries.size());
+        stats.put("totalWebSocketConnections", connections.size());
 
         Map<String, Integer> sessionCounts = new HashMap<>();
-        for (Map.Entry<String, Set<WebSocketSession>> entry : sessionConnections.entrySet()) {
+        Map<String, Object> perSession = new HashMap<>();
+        for (Map.Entry<String, SessionRegistry> entry : registries.entrySet()) {
             sessionCounts.put(entry.getKey(), entry.getValue().size());
+            perSession.put(entry.getKey(), entry.getValue().getStatistics());
         }
         stats.put("connectionsPerSession", sessionCounts);
+        stats.put("sessions", perSession);
 
         return stats;
     }
-}
 
+    /**
+     * Where a WebSocket connection belongs
+     */
+    private static final class ConnectionInfo {
+        final String sessionId;
+        final String userId;
+        final SessionRegistry registry;
+
+        ConnectionInfo(String sessionId, String userId, SessionRegistry registry) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.registry = registry;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.sketchflow.sketchflow_backend.codec.PointCodec;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary frame codec for the "sketchflow.bin.v1" WebSocket sub-protocol.
+ *
+ * Every frame starts with a one-byte type. Strings are varint length-prefixed UTF-8
+ * (length + 1, so 0 encodes null) and point arrays use {@link PointCodec}'s delta/zigzag
+ * varint encoding. Only high-volume message types have a binary form; everything else
+ * is still exchanged as JSON text frames on the same connection.
+ */
+public final class WhiteboardBinaryCodec {
+
+    public static final String SUBPROTOCOL = "sketchflow.bin.v1";
+    public static final String JSON_SUBPROTOCOL = "sketchflow.json.v1";
+
+    // Frame types
+    static final byte TYPE_DRAW = 0x01;
+    static final byte TYPE_CURSOR_MOVE = 0x02;
+    static final byte TYPE_CURSORS = 0x03;
+    static final byte TYPE_STROKE_BEGIN = 0x04;
+    static final byte TYPE_STROKE_APPEND = 0x05;
+    static final byte TYPE_STROKE_END = 0x06;
+    static final byte TYPE_UNDO = 0x07;
+    static final byte TYPE_REDO = 0x08;
+
+    // DRAW / CURSORS flags (SEQ only on DRAW, STROKE_* and UNDO/REDO; CURSORS frames are not sequenced)
+    private static final int FLAG_START = 1;
+    private static final int FLAG_END = 1 << 1;
+    private static final int FLAG_TIMESTAMP = 1 << 2;
+    private static final int FLAG_POINTS = 1 << 3;
+    private static final int FLAG_SEQ = 1 << 4;
+
+    private WhiteboardBinaryCodec() {
+    }
+
+    /**
+     * Whether a message type has a binary representation
+     */
+    public static boolean isEncodable(WebSocketMessage message) {
+        if (message == null || message.getType() == null) {
+            return false;
+        }
+        switch (message.getType()) {
+            case "DRAW":
+            case "STROKE_BEGIN":
+            case "STROKE_APPEND":
+            case "STROKE_END":
+            case "UNDO":
+            case "REDO":
+            case "CURSORS":
+                return true;
+            case "CURSOR_MOVE":
+                return message.getPosition() != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Encode a message, or return null if its type has no binary form
+     */
+    public static byte[] encode(WebSocketMessage message) {
+        return encode(message, PointCodec.DEFAULT_SCALE);
+    }
+
+    public static byte[] encode(WebSocketMessage message, int scale) {
+        if (!isEncodable(message)) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        switch (message.getType()) {
+            case "DRAW":
+                encodeDraw(out, TYPE_DRAW, message, scale);
+                break;
+            case "STROKE_BEGIN":
+                encodeDraw(out, TYPE_STROKE_BEGIN, message, scale);
+                break;
+            case "STROKE_APPEND":
+                encodeDraw(out, TYPE_STROKE_APPEND, message, scale);
+                break;
+            case "STROKE_END":
+                encodeDraw(out, TYPE_STROKE_END, message, scale);
+                break;
+            case "UNDO":
+                encodeDraw(out, TYPE_UNDO, message, scale);
+                break;
+            case "REDO":
+                encodeDraw(out, TYPE_REDO, message, scale);
+                break;
+            case "CURSOR_MOVE":
+                encodeCursorMove(out, message, scale);
+                break;
+            case "CURSORS":
+                encodeCursors(out, message, scale);
+                break;
+            default:
+                return null;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a binary frame into the same message model used for JSON frames
+     * @throws IllegalArgumentException if the frame is malformed or of an unknown type
+     */
+    public static WebSocketMessage decode(ByteBuffer frame) {
+        try {
+            byte type = frame.get();
+            switch (type) {
+                case TYPE_DRAW:
+                    return decodeDraw(frame, "DRAW");
+                case TYPE_STROKE_BEGIN:
+                    return decodeDraw(frame, "STROKE_BEGIN");
+                case TYPE_STROKE_APPEND:
+                    return decodeDraw(frame, "STROKE_APPEND");
+                case TYPE_STROKE_END:
+                    return decodeDraw(frame, "STROKE_END");
+                case TYPE_UNDO:
+                    return decodeDraw(frame, "UNDO");
+                case TYPE_REDO:
+                    return decodeDraw(frame, "REDO");
+                case TYPE_CURSOR_MOVE:
+                    return decodeCursorMove(frame);
+                case TYPE_CURSORS:
+                    return decodeCursors(frame);
+                default:
+                    throw new IllegalArgumentException("Unknown binary frame type " + type);
+            }
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary frame", e);
+        }
+    }
+
+    /**
+     * DRAW, the STROKE_* frames and UNDO/REDO share one layout; they differ only in the type
+     * byte. UNDO/REDO carry no coordinates, only the user and (server to client) the actionId
+     */
+    private static void encodeDraw(ByteArrayOutputStream out, byte type, WebSocketMessage message, int scale) {
+        DrawingAction.Coordinates coords = message.getCoordinates();
+        int flags = 0;
+        if (coords != null && coords.getStart() != null) flags |= FLAG_START;
+        if (coords != null && coords.getEnd() != null) flags |= FLAG_END;
+        if (message.getTimestamp() != null) flags |= FLAG_TIMESTAMP;
+        if (coords != null && coords.getPoints() != null) flags |= FLAG_POINTS;
+        if (message.getSeq() != null) flags |= FLAG_SEQ;
+
+        out.write(type);
+        out.write(flags);
+        PointCodec.writeVarInt(out, scale);
+        writeString(out, message.getUserId());
+        writeString(out, message.getActionId());
+        writeString(out, message.getTool());
+        writeString(out, message.getColor());
+        if ((flags & FLAG_TIMESTAMP) != 0) PointCodec.writeVarLong(out, message.getTimestamp());
+        if ((flags & FLAG_SEQ) != 0) PointCodec.writeVarLong(out, message.getSeq());
+        if ((flags & FLAG_POINTS) != 0) PointCodec.writePoints(out, coords.getPoints(), scale);
+        if ((flags & FLAG_START) != 0) PointCodec.writePoint(out, coords.getStart(), scale);
+        if ((flags & FLAG_END) != 0) PointCodec.writePoint(out, coords.getEnd(), scale);
+    }
+
+    private static WebSocketMessage decodeDraw(ByteBuffer in, String type) {
+        int flags = in.get() & 0xFF;
+        int scale = readScale(in);
+
+        WebSocketMessage message = new WebSocketMessage();
+        message.setType(type);
+        message.setUserId(readString(in));
+        message.setActionId(readString(in));
+        message.setTool(readString(in));
+        message.setColor(readString(in));
+        if ((flags & FLAG_TIMESTAMP) != 0) message.setTimestamp(PointCodec.readVarLong(in));
+        if ((flags & FLAG_SEQ) != 0) message.setSeq(PointCodec.readVarLong(in));
+
+        if ((flags & (FLAG_POINTS | FLAG_START | FLAG_END)) != 0) {
+            DrawingAction.Coordinates coords = new DrawingAction.Coordinates();
+            if ((flags & FLAG_POINTS) != 0) coords.setPoints(PointCodec.readPoints(in));
+            if ((flags & FLAG_START) != 0) coords.setStart(PointCodec.readPoint(in, scale));
+            if ((flags & FLAG_END) != 0) coords.setEnd(PointCodec.readPoint(in, scale));
+            message.setCoordinates(coords);
+        }
+        return message;
+    }
+
+    private static void encodeCursorMove(ByteArrayOutputStream out, WebSocketMessage message, int scale) {
+        out.write(TYPE_CURSOR_MOVE);
+        PointCodec.writeVarInt(out, scale);
+        writeString(out, message.getUserId());
+        writeString(out, message.getUsername());
+        PointCodec.writeSignedVarLong(out, PointCodec.quantize(message.getPosition().getX(), scale));
+        PointCodec.writeSignedVarLong(out, PointCodec.quantize(message.getPosition().getY(), scale));
+    }
+
+    private static WebSocketMessage decodeCursorMove(ByteBuffer in) {
+        int scale = readScale(in);
+
+        WebSocketMessage message = new WebSocketMessage();
+        message.setType("CURSOR_MOVE");
+        message.setUserId(readString(in));
+        message.setUsername(readString(in));
+        DrawingAction.Point p = PointCodec.readPoint(in, scale);
+        message.setPosition(new WebSocketMessage.CursorPosition(p.getX(), p.getY()));
+        return message;
+    }
+
+    private static void encodeCursors(ByteArrayOutputStream out, WebSocketMessage message, int scale) {
+        List<WebSocketMessage.CursorUpdate> cursors = message.getCursors();
+        int flags = message.getTimestamp() != null ? FLAG_TIMESTAMP : 0;
+
+        out.write(TYPE_CURSORS);
+        out.write(flags);
+        PointCodec.writeVarInt(out, scale);
+        if ((flags & FLAG_TIMESTAMP) != 0) PointCodec.writeVarLong(out, message.getTimestamp());
+        PointCodec.writeVarInt(out, cursors == null ? 0 : cursors.size());
+        if (cursors != null) {
+            for (WebSocketMessage.CursorUpdate c : cursors) {
+                writeString(out, c.getUserId());
+                writeString(out, c.getUsername());
+                PointCodec.writeSignedVarLong(out, PointCodec.quantize(c.getX(), scale));
+                PointCodec.writeSignedVarLong(out, PointCodec.quantize(c.getY(), scale));
+            }
+        }
+    }
+
+    private static WebSocketMessage decodeCursors(ByteBuffer in) {
+        int flags = in.get() & 0xFF;
+        int scale = readScale(in);
+
+        WebSocketMessage message = new WebSocketMessage();
+        message.setType("CURSORS");
+        if ((flags & FLAG_TIMESTAMP) != 0) message.setTimestamp(PointCodec.readVarLong(in));
+
+        int count = PointCodec.readVarInt(in);
+        if (count > in.remaining()) {
+            throw new IllegalArgumentException("Cursor count " + count + " exceeds frame size");
+        }
+        List<WebSocketMessage.CursorUpdate> cursors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String userId = readString(in);
+            String username = readString(in);
+            DrawingAction.Point p = PointCodec.readPoint(in, scale);
+            cursors.add(new WebSocketMessage.CursorUpdate(userId, username, p.getX(), p.getY()));
+        }
+        message.setCursors(cursors);
+        return message;
+    }
+
+    private static int readScale(ByteBuffer in) {
+        int scale = PointCodec.readVarInt(in);
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Invalid point scale " + scale);
+        }
+        return scale;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            PointCodec.writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        PointCodec.writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = PointCodec.readVarInt(in);
+        if (len == 0) {
+            return null;
+        }
+        len -= 1;
+        if (len > in.remaining()) {
+            throw new IllegalArgumentException("String length " + len + " exceeds frame size");
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
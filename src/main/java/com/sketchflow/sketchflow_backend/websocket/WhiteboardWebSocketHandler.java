@@ -1,37 +1,86 @@
 package com.sketchflow.sketchflow_backend.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchflow.sketchflow_backend.cluster.WhiteboardEventBus;
 import com.sketchflow.sketchflow_backend.dto.DrawingActionRequest;
 import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
 import com.sketchflow.sketchflow_backend.service.ActiveUserService;
+import com.sketchflow.sketchflow_backend.service.CanvasStateStore;
 import com.sketchflow.sketchflow_backend.service.DrawingActionService;
+import com.sketchflow.sketchflow_backend.service.UndoHistory;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 import com.sketchflow.sketchflow_backend.model.ChatMessage;
 import com.sketchflow.sketchflow_backend.service.ChatService;
 
-import java.io.IOException;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
 
 /**
  * WebSocket handler for real-time collaborative whiteboard
  * Uses NIO concepts and multi-threading for high-performance message handling
+ *
+ * Clients that negotiate the "sketchflow.bin.v1" sub-protocol exchange DRAW and cursor
+ * traffic as compact binary frames (see {@link WhiteboardBinaryCodec}); all other
+ * messages, and all traffic for clients without the sub-protocol, stay JSON text frames.
  */
 @Component
-public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
+public class WhiteboardWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger logger = Logger.getLogger(WhiteboardWebSocketHandler.class.getName());
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Shared mapper (JavaTimeModule) so CANVAS_STATE can carry DrawingAction timestamps
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Writer pool draining per-connection outbound queues (one writer per connection at a time)
+    private ExecutorService writerExecutor;
+
+    // Map: WebSocket session ID -> outbound queue
+    private final Map<String, OutboundMessageQueue> outboundQueues = new ConcurrentHashMap<>();
+
+    // Map: WebSocket session ID -> visible canvas area (absent = whole canvas)
+    private final Map<String, BoundingBox> viewports = new ConcurrentHashMap<>();
+
+    // Map: WebSocket session ID -> stroke actionId -> merged STROKE_APPEND held back for a degraded peer
+    // Only touched under the whiteboard session's event lock
+    private final Map<String, Map<String, WebSocketMessage>> coalescedStrokes = new ConcurrentHashMap<>();
+
+    // Periodic slow-consumer check over all outbound queues
+    private final ScheduledExecutorService slowConsumerChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Whiteboard-SlowConsumer");
+        t.setDaemon(true);
+        return t;
+    });
 
-    // Thread pool for message broadcasting (NIO-style async processing)
-    private final ExecutorService broadcastExecutor = Executors.newFixedThreadPool(20);
+    @Value("${whiteboard.ws.writer.threads:8}")
+    private int writerThreads;
+
+    @Value("${whiteboard.ws.outbound.high-watermark:1024}")
+    private int outboundHighWatermark;
+
+    @Value("${whiteboard.ws.outbound.low-watermark:256}")
+    private int outboundLowWatermark;
+
+    @Value("${whiteboard.ws.slow-consumer.check-interval-ms:250}")
+    private long slowConsumerCheckIntervalMs;
 
     // Rate limiter: user -> last action timestamp
     private final ConcurrentHashMap<String, Long> rateLimiter = new ConcurrentHashMap<>();
@@ -49,95 +98,317 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private CursorAggregator cursorAggregator;
+
+    @Autowired
+    private StrokeAssembler strokeAssembler;
+
+    @Autowired
+    private CanvasStateStore canvasStateStore;
+
+    @Autowired
+    private SessionEventLog eventLog;
+
+    @Autowired
+    private WhiteboardEventBus eventBus;
+
+    @Autowired
+    private SlowConsumerPolicy slowConsumerPolicy;
+
+    @Autowired
+    private UndoHistory undoHistory;
+
+    @Autowired
+    private SessionPlayback playback;
+
+    @PostConstruct
+    public void init() {
+        writerExecutor = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "Whiteboard-WsWriter");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.info("Started " + writerThreads + " WebSocket writer threads (outbound watermarks " +
+                   outboundLowWatermark + "/" + outboundHighWatermark + ")");
+
+        // Cursor moves are coalesced and flushed as one CURSORS frame per session per tick
+        cursorAggregator.setFlushListener(this::broadcastCursors);
+
+        // Strokes closed by the server (owner disconnected or went idle) still need a STROKE_END for peers
+        strokeAssembler.setAbandonListener((sessionId, endFrame) -> broadcastToSession(sessionId, endFrame, null));
+
+        // Events published by other nodes go to this node's connections only
+        eventBus.addListener(this::handleRemoteEvent);
+
+        slowConsumerChecker.scheduleWithFixedDelay(this::checkSlowConsumers,
+            slowConsumerCheckIntervalMs, slowConsumerCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         logger.info("WebSocket connection established: " + session.getId() +
                    " from " + session.getRemoteAddress());
 
+        outboundQueues.put(session.getId(), createOutboundQueue(session));
+
         // Session ID and user info should be passed during connection or first message
         // For now, we'll wait for the JOIN message
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WhiteboardBinaryCodec.SUBPROTOCOL, WhiteboardBinaryCodec.JSON_SUBPROTOCOL);
+    }
+
+    /*
+     * Inbound frames are handled on the container thread, which delivers one connection's
+     * messages sequentially. This keeps STROKE_BEGIN/APPEND/END in order. Handlers must not
+     * wait on the database here: they update in-memory state, enqueue outbound frames and
+     * hand every write (actions, presence and tool updates, chat, clears) to an executor.
+     */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
+        try {
+            sessionManager.recordInbound(session, message.getPayloadLength());
+            dispatch(session, objectMapper.readValue(message.getPayload(), WebSocketMessage.class));
+        } catch (Exception e) {
+            logger.severe("Error handling WebSocket message: " + e.getMessage());
+        }
+    }
 
-        // Use thread pool for async message processing
-        broadcastExecutor.submit(() -> {
-            try {
-                WebSocketMessage wsMessage = objectMapper.readValue(payload, WebSocketMessage.class);
-                String messageType = wsMessage.getType();
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        try {
+            sessionManager.recordInbound(session, message.getPayloadLength());
+            dispatch(session, WhiteboardBinaryCodec.decode(message.getPayload()));
+        } catch (Exception e) {
+            logger.severe("Error handling binary WebSocket message: " + e.getMessage());
+        }
+    }
 
-                logger.fine("Received WebSocket message type: " + messageType +
-                           " from session: " + session.getId());
+    /**
+     * Route a decoded message (JSON or binary) to its handler
+     */
+    private void dispatch(WebSocketSession session, WebSocketMessage wsMessage) {
+        String messageType = wsMessage.getType();
+
+        logger.fine("Received WebSocket message type: " + messageType +
+                   " from session: " + session.getId());
+
+        switch (messageType.toUpperCase()) {
+            case "JOIN":
+                handleJoinMessage(session, wsMessage);
+                break;
+            case "RESUME":
+                handleResumeMessage(session, wsMessage);
+                break;
+            case "VIEWPORT":
+                handleViewportMessage(session, wsMessage);
+                break;
+            case "DRAW":
+                handleDrawMessage(session, wsMessage);
+                break;
+            case "STROKE_BEGIN":
+                handleStrokeBegin(session, wsMessage);
+                break;
+            case "STROKE_APPEND":
+                handleStrokeAppend(session, wsMessage);
+                break;
+            case "STROKE_END":
+                handleStrokeEnd(session, wsMessage);
+                break;
+            case "CLEAR":
+                handleClearMessage(session, wsMessage);
+                break;
+            case "UNDO":
+                handleUndoRedo(session, wsMessage, true);
+                break;
+            case "REDO":
+                handleUndoRedo(session, wsMessage, false);
+                break;
+            case "PLAYBACK_START":
+                handlePlaybackStart(session, wsMessage);
+                break;
+            case "PLAYBACK_STOP":
+                playback.stop(session.getId());
+                break;
+            case "CURSOR_MOVE":
+                handleCursorMove(session, wsMessage);
+                break;
+            case "TOOL_CHANGE":
+                handleToolChange(session, wsMessage);
+                break;
+            case "LEAVE":
+                handleLeaveMessage(session, wsMessage);
+                break;
+
+            case "CHAT_MESSAGE":
+                handleChatMessage(session, wsMessage);
+                break;
+
+            default:
+                logger.warning("Unknown message type: " + messageType);
+        }
+    }
 
-                switch (messageType.toUpperCase()) {
-                    case "JOIN":
-                        handleJoinMessage(session, wsMessage);
-                        break;
-                    case "DRAW":
-                        handleDrawMessage(session, wsMessage);
-                        break;
-                    case "CLEAR":
-                        handleClearMessage(session, wsMessage);
-                        break;
-                    case "CURSOR_MOVE":
-                        handleCursorMove(session, wsMessage);
-                        break;
-                    case "TOOL_CHANGE":
-                        handleToolChange(session, wsMessage);
-                        break;
-                    case "LEAVE":
-                        handleLeaveMessage(session, wsMessage);
-                        break;
+    /**
+     * Handle JOIN message - user joining the whiteboard session
+     */
+    private void handleJoinMessage(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = extractSessionIdFromUri(session);
 
-                    case "CHAT_MESSAGE":
-                        handleChatMessage(session, wsMessage);
-                        break;
+            // Add to session manager
+            sessionManager.addSession(sessionId, session, message.getUserId());
+            updateViewport(session, message.getViewport());
 
-                    default:
-                        logger.warning("Unknown message type: " + messageType);
-                }
+            sendCanvasState(session, sessionId, "CANVAS_STATE");
+            announceJoin(session, sessionId, message);
 
-            } catch (Exception e) {
-                logger.severe("Error handling WebSocket message: " + e.getMessage());
-            }
-        });
+        } catch (Exception e) {
+            logger.severe("Error handling JOIN message: " + e.getMessage());
+        }
     }
 
     /**
-     * Handle JOIN message - user joining the whiteboard session
+     * Handle RESUME message - reconnecting user asks for the events after its last seen seq.
+     * Replays the missed tail from the session's event log; falls back to a full CANVAS_STATE
+     * only when the gap is no longer covered by the buffer.
      */
-    private void handleJoinMessage(WebSocketSession session, WebSocketMessage message) {
+    private void handleResumeMessage(WebSocketSession session, WebSocketMessage message) {
         try {
             String sessionId = extractSessionIdFromUri(session);
-            String userId = message.getUserId();
-            String username = message.getUsername();
-            String avatar = message.getAvatar();
+            Long lastSeq = message.getSeq();
+            updateViewport(session, message.getViewport());
+
+            // Register and replay under the session's event lock, so live events follow the tail in order
+            long[] resumedAt = {-1};
+            eventLog.atHead(sessionId, head -> {
+                sessionManager.addSession(sessionId, session, message.getUserId());
+                if (lastSeq != null) {
+                    resumedAt[0] = eventLog.replaySince(sessionId, lastSeq, event -> {
+                        if (isVisible(session, event)) {
+                            int length = sendEvent(session, event);
+                            if (length >= 0) {
+                                sessionManager.recordOutbound(session, 1, length);
+                            }
+                        }
+                    });
+                }
+            });
+
+            if (resumedAt[0] < 0) {
+                logger.info("Resume gap too large for session " + sessionId + ", sending full canvas state");
+                sendCanvasState(session, sessionId, "CANVAS_STATE");
+            } else {
+                WebSocketMessage resumed = new WebSocketMessage();
+                resumed.setType("RESUMED");
+                resumed.setSeq(resumedAt[0]);
+                resumed.setTimestamp(System.currentTimeMillis());
+                sendToConnection(session, resumed);
+            }
 
-            // Add to session manager
-            sessionManager.addSession(sessionId, session, userId);
+            announceJoin(session, sessionId, message);
 
-            // Add to active users
-            activeUserService.joinSessionAsync(sessionId, userId, username, avatar);
+        } catch (Exception e) {
+            logger.severe("Error handling RESUME message: " + e.getMessage());
+        }
+    }
 
-            // Broadcast to other users
-            WebSocketMessage joinNotification = new WebSocketMessage();
-            joinNotification.setType("USER_JOINED");
-            joinNotification.setUserId(userId);
-            joinNotification.setUsername(username);
-            joinNotification.setAvatar(avatar);
-            joinNotification.setTimestamp(System.currentTimeMillis());
+    /**
+     * Register the user as active and tell the other participants
+     */
+    private void announceJoin(WebSocketSession session, String sessionId, WebSocketMessage message) {
+        String userId = message.getUserId();
+
+        // Add to active users
+        activeUserService.joinSessionAsync(sessionId, userId, message.getUsername(), message.getAvatar());
+
+        // Broadcast to other users
+        WebSocketMessage joinNotification = new WebSocketMessage();
+        joinNotification.setType("USER_JOINED");
+        joinNotification.setUserId(userId);
+        joinNotification.setUsername(message.getUsername());
+        joinNotification.setAvatar(message.getAvatar());
+        joinNotification.setTimestamp(System.currentTimeMillis());
+
+        broadcastToSession(sessionId, joinNotification, session);
+
+        logger.info("User " + userId + " joined whiteboard session " + sessionId);
+    }
 
-            broadcastToSession(sessionId, joinNotification, session);
+    /**
+     * Handle VIEWPORT message - client scrolled or zoomed
+     * Stores the new visible area and answers with a VIEWPORT_STATE holding every stroke in it;
+     * clients merge it into what they already have by actionId.
+     */
+    private void handleViewportMessage(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            if (sessionId == null) return;
 
-            logger.info("User " + userId + " joined whiteboard session " + sessionId);
+            updateViewport(session, message.getViewport());
+            sendCanvasState(session, sessionId, "VIEWPORT_STATE");
 
         } catch (Exception e) {
-            logger.severe("Error handling JOIN message: " + e.getMessage());
+            logger.warning("Error handling VIEWPORT: " + e.getMessage());
         }
     }
 
+    /**
+     * Send the canvas (or the part inside the connection's viewport) from memory; hydration
+     * (first join only) runs off this thread.
+     * The snapshot is taken and enqueued under the session's event lock and carries the seq it
+     * reflects: every sequenced event the client received before it is already included.
+     * A DRAW with a higher seq may also be in the snapshot, so clients de-duplicate by actionId.
+     */
+    private void sendCanvasState(WebSocketSession session, String sessionId, String type) {
+        canvasStateStore.hydrateAsync(sessionId).thenRun(() -> eventLog.atHead(sessionId, head -> {
+            BoundingBox viewport = viewports.get(session.getId());
+
+            WebSocketMessage state = new WebSocketMessage();
+            state.setType(type);
+            state.setActions(viewport == null
+                ? canvasStateStore.getActions(sessionId)
+                : canvasStateStore.getActionsInViewport(sessionId, viewport));
+            state.setSeq(head);
+            state.setTimestamp(System.currentTimeMillis());
+            sendToConnection(session, state);
+        })).exceptionally(e -> {
+            logger.severe("Error loading canvas state for session " + sessionId + ": " + e.getMessage());
+            return null;
+        });
+    }
+
+    private void updateViewport(WebSocketSession session, WebSocketMessage.Viewport viewport) {
+        if (viewport == null) {
+            viewports.remove(session.getId());
+            return;
+        }
+        try {
+            viewports.put(session.getId(), new BoundingBox(
+                viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(), viewport.getMaxY()));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Ignoring invalid viewport from session " + session.getId() + ": " + e.getMessage());
+            viewports.remove(session.getId());
+        }
+    }
+
+    /**
+     * Whether an event concerns the connection's viewport. Only complete DRAW strokes are
+     * filtered; incremental STROKE_* deltas are always sent because a stroke's extent is
+     * unknown until it ends.
+     */
+    private boolean isVisible(WebSocketSession session, SessionEventLog.Event event) {
+        BoundingBox viewport = viewports.get(session.getId());
+        if (viewport == null) {
+            return true;
+        }
+        BoundingBox bounds = event.getBounds();
+        return bounds == null || bounds.intersects(viewport);
+    }
+
     /**
      * Handle DRAW message - drawing action from user
      */
@@ -152,29 +423,205 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
                 return;
             }
 
+            // Broadcast and canvas state share one actionId so clients can de-duplicate
+            if (message.getActionId() == null) {
+                message.setActionId(UUID.randomUUID().toString());
+            }
+
             // Create drawing action request
             DrawingActionRequest actionRequest = new DrawingActionRequest();
+            actionRequest.setActionId(message.getActionId());
             actionRequest.setUserId(userId);
             actionRequest.setTool(message.getTool());
             actionRequest.setColor(message.getColor());
             actionRequest.setActionType("draw");
             actionRequest.setCoordinates(message.getCoordinates());
 
-            // Save action asynchronously
-            drawingActionService.saveActionAsync(sessionId, actionRequest);
+            // Save action asynchronously; a re-sent DRAW (e.g. after a reconnect) is already on the canvas
+            if (drawingActionService.saveNewActionAsync(sessionId, actionRequest).isEmpty()) {
+                logger.fine("Dropped duplicate DRAW " + message.getActionId() + " from session " + session.getId());
+                return;
+            }
+            recordUndo(session, sessionId, message.getActionId());
 
             // Update user activity
-            activeUserService.updateActivity(sessionId, userId);
+            activeUserService.updateActivityAsync(sessionId, userId);
 
             // Broadcast to all users in session (including sender for confirmation)
             message.setTimestamp(System.currentTimeMillis());
             broadcastToSession(sessionId, message, null);
 
+        } catch (RejectedExecutionException e) {
+            // Not stored (persistence backed up): not broadcast either
+            logger.warning("Refused DRAW " + message.getActionId() + ": " + e.getMessage());
         } catch (Exception e) {
             logger.severe("Error handling DRAW message: " + e.getMessage());
         }
     }
 
+    /**
+     * Handle STROKE_BEGIN message - user started an incremental stroke
+     */
+    private void handleStrokeBegin(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            if (sessionId == null) return;
+
+            if (!strokeAssembler.begin(sessionId, session.getId(), message)) {
+                logger.warning("Rejected STROKE_BEGIN without a new actionId from session " + session.getId());
+                return;
+            }
+
+            // Relay immediately to peers; the sender already rendered it locally
+            message.setTimestamp(System.currentTimeMillis());
+            broadcastToSession(sessionId, message, session);
+
+        } catch (Exception e) {
+            logger.severe("Error handling STROKE_BEGIN message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle STROKE_APPEND message - new points for a stroke in progress
+     */
+    private void handleStrokeAppend(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            if (sessionId == null || message.getCoordinates() == null) return;
+
+            if (!strokeAssembler.append(session.getId(), message.getActionId(), message.getCoordinates().getPoints())) {
+                logger.fine("Dropped STROKE_APPEND for unknown stroke " + message.getActionId());
+                return;
+            }
+
+            // Relay only the delta
+            broadcastToSession(sessionId, message, session);
+
+        } catch (Exception e) {
+            logger.severe("Error handling STROKE_APPEND message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle STROKE_END message - persist the finished stroke as one drawing action
+     */
+    private void handleStrokeEnd(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            if (sessionId == null) return;
+
+            List<DrawingAction.Point> finalPoints =
+                message.getCoordinates() != null ? message.getCoordinates().getPoints() : null;
+            StrokeAssembler.Ended ended = strokeAssembler.end(session.getId(), message.getActionId(), finalPoints);
+            if (ended == StrokeAssembler.Ended.UNKNOWN) {
+                logger.fine("Dropped STROKE_END for unknown stroke " + message.getActionId());
+                return;
+            }
+
+            // The stroke is closed whether or not it was stored: peers always get STROKE_END
+            message.setTimestamp(System.currentTimeMillis());
+            broadcastToSession(sessionId, message, session);
+
+            activeUserService.updateActivityAsync(sessionId, message.getUserId());
+            if (ended == StrokeAssembler.Ended.SAVED) {
+                recordUndo(session, sessionId, message.getActionId());
+            }
+
+        } catch (RejectedExecutionException e) {
+            logger.warning("Refused STROKE_END " + message.getActionId() + ": " + e.getMessage());
+        } catch (Exception e) {
+            logger.severe("Error handling STROKE_END message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Push a finished action onto its author's undo stack.
+     * History is keyed by the user the connection joined as, so one user cannot undo another's strokes.
+     */
+    private void recordUndo(WebSocketSession session, String sessionId, String actionId) {
+        undoHistory.record(sessionId, sessionManager.getUserId(session), actionId, canvasStateStore.getLoadedEpoch(sessionId));
+    }
+
+    /**
+     * Handle UNDO / REDO message - hide or restore the user's latest action
+     * The server picks the action from the user's history, appends a tombstone to the canvas
+     * log and broadcasts one small frame naming it (actionId, userId); clients hide or
+     * restore that action locally instead of receiving the canvas again.
+     */
+    private void handleUndoRedo(WebSocketSession session, WebSocketMessage message, boolean undo) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            String userId = sessionManager.getUserId(session);
+            if (sessionId == null || userId == null) return;
+
+            if (!checkRateLimit(userId)) {
+                logger.warning("Rate limit exceeded for user: " + userId);
+                return;
+            }
+
+            long epoch = canvasStateStore.getLoadedEpoch(sessionId);
+            String actionId = undo ? undoHistory.undo(sessionId, userId, epoch) : undoHistory.redo(sessionId, userId, epoch);
+            if (actionId == null) {
+                logger.fine("Nothing to " + (undo ? "undo" : "redo") + " for user " + userId);
+                return;
+            }
+
+            try {
+                drawingActionService.saveTombstoneAsync(sessionId, userId,
+                    undo ? CanvasStateStore.UNDO : CanvasStateStore.REDO, actionId);
+            } catch (RejectedExecutionException e) {
+                // Nothing was stored: put the entry back so the user can try again
+                undoHistory.revert(sessionId, userId, actionId, undo);
+                throw e;
+            }
+
+            WebSocketMessage tombstone = new WebSocketMessage();
+            tombstone.setType(undo ? "UNDO" : "REDO");
+            tombstone.setActionId(actionId);
+            tombstone.setUserId(userId);
+            tombstone.setTimestamp(System.currentTimeMillis());
+            broadcastToSession(sessionId, tombstone, null);
+
+        } catch (RejectedExecutionException e) {
+            logger.warning("Refused " + message.getType() + ": " + e.getMessage());
+        } catch (Exception e) {
+            logger.severe("Error handling " + message.getType() + " message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle PLAYBACK_START message - replay the session's history to this connection only
+     * From the state at "from" (or the beginning), at "speed"; the frames go through the
+     * connection's outbound queue and the playback waits while that queue is degraded.
+     */
+    private void handlePlaybackStart(WebSocketSession session, WebSocketMessage message) {
+        try {
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+            if (sessionId == null) return;
+
+            playback.start(session.getId(), sessionId, message.getFrom(), message.getSpeed(), new SessionPlayback.Viewer() {
+                @Override
+                public void send(WebSocketMessage frame) {
+                    sendToConnection(session, frame);
+                }
+
+                @Override
+                public boolean isBackedUp() {
+                    OutboundMessageQueue queue = outboundQueues.get(session.getId());
+                    return queue != null && (queue.isDegraded() || queue.getDepth() >= outboundLowWatermark);
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return session.isOpen();
+                }
+            });
+
+        } catch (Exception e) {
+            logger.severe("Error handling PLAYBACK_START message: " + e.getMessage());
+        }
+    }
+
     /**
      * Handle CLEAR message - clear entire canvas
      */
@@ -183,14 +630,19 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
             String sessionId = sessionManager.getWhiteboardSessionId(session);
             String userId = message.getUserId();
 
-            // Clear all drawing actions
-            drawingActionService.clearSessionActionsAsync(sessionId);
-
-            // Broadcast clear to all users
-            message.setTimestamp(System.currentTimeMillis());
-            broadcastToSession(sessionId, message, null);
+            // Clear all drawing actions off this thread; not broadcast if it failed. Strokes
+            // arriving meanwhile are in the old epoch and are cleared with it, everywhere.
+            drawingActionService.clearSessionActionsAsync(sessionId).whenComplete((v, ex) -> {
+                if (ex != null) {
+                    logger.severe("Error clearing canvas of session " + sessionId + ": " + ex.getMessage());
+                    return;
+                }
+                // Broadcast clear to all users
+                message.setTimestamp(System.currentTimeMillis());
+                broadcastToSession(sessionId, message, null);
 
-            logger.info("Canvas cleared for session " + sessionId + " by user " + userId);
+                logger.info("Canvas cleared for session " + sessionId + " by user " + userId);
+            });
 
         } catch (Exception e) {
             logger.severe("Error handling CLEAR message: " + e.getMessage());
@@ -198,31 +650,40 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * Handle CURSOR_MOVE message - update user cursor position
+     * Handle CURSOR_MOVE message - record latest cursor position
+     * Nothing is sent or persisted here; the CursorAggregator flushes coalesced positions per tick.
      */
     private void handleCursorMove(WebSocketSession session, WebSocketMessage message) {
         try {
             String sessionId = sessionManager.getWhiteboardSessionId(session);
             String userId = message.getUserId();
 
-            // Update cursor position
             if (message.getPosition() != null) {
-                activeUserService.updateCursorPosition(
+                cursorAggregator.update(
                     sessionId,
                     userId,
+                    message.getUsername(),
                     message.getPosition().getX(),
                     message.getPosition().getY()
                 );
             }
 
-            // Broadcast to others (not to sender)
-            broadcastToSession(sessionId, message, session);
-
         } catch (Exception e) {
             logger.fine("Error handling CURSOR_MOVE: " + e.getMessage());
         }
     }
 
+    /**
+     * Broadcast one combined CURSORS frame (clients ignore their own entry)
+     */
+    private void broadcastCursors(String sessionId, List<WebSocketMessage.CursorUpdate> cursors) {
+        WebSocketMessage frame = new WebSocketMessage();
+        frame.setType("CURSORS");
+        frame.setCursors(cursors);
+        frame.setTimestamp(System.currentTimeMillis());
+        broadcastToSession(sessionId, frame, null);
+    }
+
     /**
      * Handle TOOL_CHANGE message - user changed drawing tool or color
      */
@@ -232,7 +693,7 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
             String userId = message.getUserId();
 
             // Update user tool
-            activeUserService.updateUserTool(sessionId, userId, message.getTool(), message.getColor());
+            activeUserService.updateUserToolAsync(sessionId, userId, message.getTool(), message.getColor());
 
             // Broadcast to others
             broadcastToSession(sessionId, message, session);
@@ -252,6 +713,7 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
 
             // Remove from active users
             activeUserService.leaveSessionAsync(sessionId, userId);
+            cursorAggregator.removeUser(sessionId, userId);
 
             // Broadcast to others
             message.setTimestamp(System.currentTimeMillis());
@@ -259,6 +721,7 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
 
             // Remove from session manager
             sessionManager.removeSession(session);
+            releaseSessionStateIfEmpty(sessionId);
 
             logger.info("User " + userId + " left session " + sessionId);
 
@@ -274,9 +737,9 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
             String sessionId = sessionManager.getWhiteboardSessionId(session);
             if (sessionId == null) return;
 
-            // 1. Save the message to the database
-            // We save it first, which gives it a timestamp and ID
-            ChatMessage savedMessage = chatService.saveMessage(message, sessionId);
+            // 1. Save the message to the database, in the background
+            // The stored message is built here, which gives it a timestamp
+            ChatMessage savedMessage = chatService.saveMessageAsync(message, sessionId);
 
             // 2. Prepare the message for broadcast
             // We use the server-generated timestamp for consistency
@@ -299,6 +762,10 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
         String sessionId = sessionManager.getWhiteboardSessionId(session);
         String userId = sessionManager.getUserId(session);
 
+        // Keep whatever part of an in-progress stroke was drawn before the drop
+        strokeAssembler.abandonConnection(session.getId());
+        playback.stop(session.getId());
+
         logger.info("WebSocket connection closed: " + session.getId() +
                    ", status: " + status +
                    ", sessionId: " + sessionId +
@@ -307,6 +774,7 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
         if (sessionId != null && userId != null) {
             // Clean up user session
             activeUserService.leaveSessionAsync(sessionId, userId);
+            cursorAggregator.removeUser(sessionId, userId);
 
             // Notify others
             WebSocketMessage leaveMessage = new WebSocketMessage();
@@ -319,6 +787,16 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
 
         // Remove from session manager
         sessionManager.removeSession(session);
+        if (sessionId != null) {
+            releaseSessionStateIfEmpty(sessionId);
+        }
+
+        viewports.remove(session.getId());
+        coalescedStrokes.remove(session.getId());
+        OutboundMessageQueue queue = outboundQueues.remove(session.getId());
+        if (queue != null) {
+            queue.clear();
+        }
     }
 
     @Override
@@ -329,41 +807,332 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * Broadcast message to all users in a session (async using thread pool)
+     * Broadcast message to all users in a session, on this node and (once per node) on all others
+     * Every event except CURSORS is stamped with the session's next seq and kept for RESUME.
+     * Each event is serialized at most once per wire format and enqueued on each connection's
+     * outbound queue, so the cost per recipient is a single non-blocking enqueue.
      * @param excludeSession - session to exclude from broadcast (null to broadcast to all)
      */
     private void broadcastToSession(String sessionId, WebSocketMessage message, WebSocketSession excludeSession) {
-        Set<WebSocketSession> sessions = sessionManager.getSessionConnections(sessionId);
+        deliverLocally(sessionId, message, excludeSession, true);
+    }
 
-        if (sessions.isEmpty()) {
+    /**
+     * Deliver an event published by another node to this node's connections
+     */
+    private void handleRemoteEvent(String sessionId, WebSocketMessage message) {
+        // Canvas mutations are applied by CanvasStateStore; they are not client frames
+        if (message.getType() == null || message.getType().startsWith("CANVAS_")) {
             return;
         }
+        deliverLocally(sessionId, message, null, false);
+    }
 
-        // Convert message to JSON once
-        String jsonMessage;
-        try {
-            jsonMessage = objectMapper.writeValueAsString(message);
-        } catch (Exception e) {
-            logger.severe("Error serializing message: " + e.getMessage());
+    private void deliverLocally(String sessionId, WebSocketMessage message, WebSocketSession excludeSession,
+                                boolean publishToBus) {
+        if (sessionId == null) {
+            return;
+        }
+
+        // Cursor frames are ephemeral: not sequenced and never replayed
+        if ("CURSORS".equals(message.getType())) {
+            fanOut(sessionId, new SessionEventLog.Event(message), excludeSession);
+            if (publishToBus) {
+                eventBus.publish(sessionId, message);
+            }
+            return;
+        }
+
+        // Publishing under the session lock keeps the bus order identical to the local seq order
+        eventLog.publish(sessionId, message, event -> {
+            fanOut(sessionId, event, excludeSession);
+            if (publishToBus) {
+                eventBus.publish(sessionId, message);
+            }
+        });
+    }
+
+    private void fanOut(String sessionId, SessionEventLog.Event event, WebSocketSession excludeSession) {
+        SessionRegistry registry = sessionManager.getRegistry(sessionId);
+        if (registry == null) {
             return;
         }
 
-        // Parallel broadcast using thread pool
-        CompletableFuture<?>[] futures = sessions.stream()
-            .filter(s -> !s.equals(excludeSession) && s.isOpen())
-            .map(s -> CompletableFuture.runAsync(() -> {
+        // Indexed loop over the registry's cached snapshot: no copy, no iterator
+        WebSocketSession[] sessions = registry.snapshot();
+        long sent = 0;
+        long bytes = 0;
+        for (int i = 0; i < sessions.length; i++) {
+            WebSocketSession s = sessions[i];
+            if (s.equals(excludeSession) || !s.isOpen() || !isVisible(s, event)) {
+                continue;
+            }
+            int length = deliver(s, event);
+            if (length >= 0) {
+                sent++;
+                bytes += length;
+            }
+        }
+        registry.recordOutbound(sent, bytes);
+    }
+
+    /**
+     * Send a broadcast event to one connection, applying the degraded mode of slow peers:
+     * cursor frames are dropped and stroke deltas are merged until the next other event
+     * @return the payload length sent, or -1 if nothing was enqueued
+     */
+    private int deliver(WebSocketSession session, SessionEventLog.Event event) {
+        OutboundMessageQueue queue = outboundQueues.get(session.getId());
+        String type = event.getMessage().getType();
+        if (queue != null && queue.isDegraded()) {
+            if ("CURSORS".equals(type)) {
+                slowConsumerPolicy.recordCursorDropped();
+                return -1;
+            }
+            if ("STROKE_APPEND".equals(type)) {
+                coalesceStrokeDelta(session, event.getMessage());
+                return -1;
+            }
+        }
+        if (!"CURSORS".equals(type)) {
+            // Held-back deltas go out before anything that may depend on them
+            flushCoalescedStrokes(session);
+        }
+        return sendEvent(session, event);
+    }
+
+    private void coalesceStrokeDelta(WebSocketSession session, WebSocketMessage delta) {
+        if (delta.getCoordinates() == null || delta.getCoordinates().getPoints() == null) {
+            return;
+        }
+        Map<String, WebSocketMessage> pending =
+            coalescedStrokes.computeIfAbsent(session.getId(), id -> new LinkedHashMap<>());
+        WebSocketMessage merged = pending.get(delta.getActionId());
+        if (merged == null) {
+            merged = new WebSocketMessage();
+            merged.setType(delta.getType());
+            merged.setActionId(delta.getActionId());
+            merged.setUserId(delta.getUserId());
+            merged.setCoordinates(new DrawingAction.Coordinates(new ArrayList<>(), null, null));
+            pending.put(delta.getActionId(), merged);
+        } else {
+            slowConsumerPolicy.recordStrokeDeltaCoalesced();
+        }
+        merged.getCoordinates().getPoints().addAll(delta.getCoordinates().getPoints());
+        merged.setSeq(delta.getSeq());
+        merged.setTimestamp(delta.getTimestamp());
+    }
+
+    private void flushCoalescedStrokes(WebSocketSession session) {
+        Map<String, WebSocketMessage> pending = coalescedStrokes.get(session.getId());
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        for (WebSocketMessage merged : pending.values()) {
+            int length = sendEvent(session, new SessionEventLog.Event(merged));
+            if (length >= 0) {
+                sessionManager.recordOutbound(session, 1, length);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Evaluate every connection against the slow-consumer policy and apply the outcome
+     */
+    private void checkSlowConsumers() {
+        long now = System.currentTimeMillis();
+        for (OutboundMessageQueue queue : outboundQueues.values()) {
+            try {
+                WebSocketSession session = queue.getSession();
+                if (!session.isOpen() || queue.getLevel() == SlowConsumerPolicy.Level.DISCONNECT) {
+                    continue;
+                }
+                SlowConsumerPolicy.Level current = queue.getLevel();
+                SlowConsumerPolicy.Level target = slowConsumerPolicy.evaluate(queue, now);
+                if (target == current) {
+                    continue;
+                }
+                String sessionId = sessionManager.getWhiteboardSessionId(session);
+                slowConsumerPolicy.transition(queue, target, now);
+
+                switch (target) {
+                    case DEGRADED:
+                        logger.warning("Connection " + session.getId() + " in session " + sessionId +
+                                      " is lagging (" + queue.getLagMs() + "ms, " + queue.getPendingBytes() +
+                                      " bytes pending), degrading");
+                        break;
+                    case RESYNC:
+                        resync(queue, sessionId);
+                        break;
+                    case DISCONNECT:
+                        logger.warning("Disconnecting slow consumer " + session.getId() + " in session " + sessionId +
+                                      " (" + queue.getLagMs() + "ms behind)");
+                        queue.clear();
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                        break;
+                    default:
+                        logger.info("Connection " + session.getId() + " caught up, leaving degraded mode");
+                        if (sessionId != null) {
+                            eventLog.atHead(sessionId, head -> flushCoalescedStrokes(session));
+                        }
+                }
+            } catch (Exception e) {
+                logger.warning("Error checking slow consumer: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replace a lagging connection's backlog with a fresh canvas snapshot
+     */
+    private void resync(OutboundMessageQueue queue, String sessionId) {
+        WebSocketSession session = queue.getSession();
+        if (sessionId == null) {
+            queue.clear();
+            return;
+        }
+        // Under the event lock no broadcast can slip between the discard and the snapshot's head
+        eventLog.atHead(sessionId, head -> {
+            int discarded = queue.clear();
+            coalescedStrokes.remove(session.getId());
+            logger.warning("Resyncing slow consumer " + session.getId() + " in session " + sessionId +
+                          ", discarded " + discarded + " pending frames");
+        });
+        sendCanvasState(session, sessionId, "CANVAS_STATE");
+    }
+
+    /**
+     * Enqueue an event in the connection's wire format, encoding it on first use
+     * @return the frame's payload length, or -1 if nothing was enqueued
+     */
+    private int sendEvent(WebSocketSession session, SessionEventLog.Event event) {
+        org.springframework.web.socket.WebSocketMessage<?> frame;
+        if (isBinaryClient(session) && WhiteboardBinaryCodec.isEncodable(event.getMessage())) {
+            if (event.binary == null) {
+                event.binary = WhiteboardBinaryCodec.encode(event.getMessage());
+            }
+            // Sending consumes the ByteBuffer position, so each recipient gets its own wrapper
+            frame = new BinaryMessage(event.binary);
+        } else {
+            if (event.text == null) {
                 try {
-                    synchronized (s) {
-                        s.sendMessage(new TextMessage(jsonMessage));
-                    }
-                } catch (IOException e) {
-                    logger.warning("Failed to send message to session " + s.getId() + ": " + e.getMessage());
+                    event.text = new TextMessage(objectMapper.writeValueAsString(event.getMessage()));
+                } catch (Exception e) {
+                    logger.severe("Error serializing message: " + e.getMessage());
+                    return -1;
                 }
-            }, broadcastExecutor))
-            .toArray(CompletableFuture[]::new);
+            }
+            frame = event.text;
+        }
+        outboundQueues.computeIfAbsent(session.getId(), id -> createOutboundQueue(session)).enqueue(frame);
+        return frame.getPayloadLength();
+    }
+
+    /**
+     * Send a JSON frame to a single connection through its outbound queue
+     */
+    private void sendToConnection(WebSocketSession session, WebSocketMessage message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            TextMessage frame = new TextMessage(objectMapper.writeValueAsString(message));
+            outboundQueues.computeIfAbsent(session.getId(), id -> createOutboundQueue(session)).enqueue(frame);
+            sessionManager.recordOutbound(session, 1, frame.getPayloadLength());
+        } catch (Exception e) {
+            logger.severe("Error serializing message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the connection negotiated the binary sub-protocol
+     */
+    private boolean isBinaryClient(WebSocketSession session) {
+        return WhiteboardBinaryCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    /**
+     * Drop per-session real-time state once the last connection has left
+     */
+    private void releaseSessionStateIfEmpty(String sessionId) {
+        if (sessionManager.getConnectionCount(sessionId) == 0) {
+            cursorAggregator.removeSession(sessionId);
+            undoHistory.removeSession(sessionId);
+            // Canvas state stays cached for the idle grace period in case someone rejoins
+            canvasStateStore.touch(sessionId);
+        }
+    }
+
+    private OutboundMessageQueue createOutboundQueue(WebSocketSession session) {
+        return new OutboundMessageQueue(session, writerExecutor, outboundHighWatermark, outboundLowWatermark);
+    }
+
+    /**
+     * Get outbound queue statistics (queue depth, drops, saturated connections)
+     */
+    public Map<String, Object> getOutboundStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        int totalDepth = 0;
+        int maxDepth = 0;
+        int saturatedConnections = 0;
+        Map<String, Object> perConnection = new HashMap<>();
+
+        for (Map.Entry<String, OutboundMessageQueue> entry : outboundQueues.entrySet()) {
+            OutboundMessageQueue queue = entry.getValue();
+            int depth = queue.getDepth();
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            if (queue.isSaturated()) {
+                saturatedConnections++;
+            }
+            perConnection.put(entry.getKey(), queue.getStatistics());
+        }
 
-        // Wait for all broadcasts to complete (non-blocking)
-        CompletableFuture.allOf(futures);
+        stats.put("connections", outboundQueues.size());
+        stats.put("totalQueueDepth", totalDepth);
+        stats.put("maxQueueDepth", maxDepth);
+        stats.put("saturatedConnections", saturatedConnections);
+        stats.put("highWatermark", outboundHighWatermark);
+        stats.put("lowWatermark", outboundLowWatermark);
+        stats.put("perConnection", perConnection);
+        return stats;
+    }
+
+    /**
+     * Get slow-consumer policy counters and the connections currently lagging, grouped by board
+     */
+    public Map<String, Object> getSlowConsumerStatistics() {
+        Map<String, Object> stats = new HashMap<>(slowConsumerPolicy.getStatistics());
+        Map<String, List<Map<String, Object>>> laggingBySession = new HashMap<>();
+        int lagging = 0;
+
+        for (Map.Entry<String, OutboundMessageQueue> entry : outboundQueues.entrySet()) {
+            OutboundMessageQueue queue = entry.getValue();
+            if (!queue.isDegraded()) {
+                continue;
+            }
+            lagging++;
+            WebSocketSession session = queue.getSession();
+            String sessionId = sessionManager.getWhiteboardSessionId(session);
+
+            Map<String, Object> connection = new HashMap<>();
+            connection.put("connectionId", entry.getKey());
+            connection.put("userId", sessionManager.getUserId(session));
+            connection.put("level", queue.getLevel().name());
+            connection.put("since", queue.getLevelSince());
+            connection.put("lagMs", queue.getLagMs());
+            connection.put("pendingBytes", queue.getPendingBytes());
+            connection.put("depth", queue.getDepth());
+            connection.put("avgSendLatencyMs", Math.round(queue.getAvgSendLatencyMs() * 10) / 10.0);
+            laggingBySession.computeIfAbsent(sessionId != null ? sessionId : "unjoined", k -> new ArrayList<>())
+                .add(connection);
+        }
+
+        stats.put("laggingConnections", lagging);
+        stats.put("laggingBySession", laggingBySession);
+        stats.put("checkIntervalMs", slowConsumerCheckIntervalMs);
+        return stats;
     }
 
     /**
@@ -396,8 +1165,12 @@ public class WhiteboardWebSocketHandler extends TextWebSocketHandler {
         return false;
     }
 
+    @PreDestroy
     public void shutdown() {
-        broadcastExecutor.shutdown();
+        slowConsumerChecker.shutdownNow();
+        if (writerExecutor != null) {
+            writerExecutor.shutdown();
+        }
     }
 }
 
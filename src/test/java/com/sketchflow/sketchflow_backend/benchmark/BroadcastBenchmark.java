@@ -0,0 +1,134 @@
+package com.sketchflow.sketchflow_backend.benchmark;
+
+import com.sketchflow.sketchflow_backend.cluster.LocalEventBus;
+import com.sketchflow.sketchflow_backend.config.MongoConfig;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.websocket.CursorAggregator;
+import com.sketchflow.sketchflow_backend.websocket.SessionEventLog;
+import com.sketchflow.sketchflow_backend.websocket.SlowConsumerPolicy;
+import com.sketchflow.sketchflow_backend.websocket.StrokeAssembler;
+import com.sketchflow.sketchflow_backend.websocket.WebSocketSessionManager;
+import com.sketchflow.sketchflow_backend.websocket.WhiteboardBinaryCodec;
+import com.sketchflow.sketchflow_backend.websocket.WhiteboardWebSocketHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.ExecutorServiceAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WhiteboardWebSocketHandler.broadcastToSession: sequencing, one serialization per wire format
+ * and the per-recipient enqueue. Writers run inline against discarding sessions, so each
+ * operation also includes draining every recipient's queue once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastBenchmark {
+
+    private static final String BOARD = "bench-board";
+
+    @Param({"10", "100"})
+    public int recipients;
+
+    // Wire format negotiated by the recipients
+    @Param({"json", "binary"})
+    public String wire;
+
+    private WhiteboardWebSocketHandler handler;
+    private ExecutorService writerPool;
+    private MethodHandle broadcastToSession;
+    private WebSocketMessage draw;
+    private WebSocketMessage chat;
+
+    @Setup
+    public void setup() throws Throwable {
+        WebSocketSessionManager sessionManager = new WebSocketSessionManager();
+        SessionEventLog eventLog = new SessionEventLog();
+        ReflectionTestUtils.setField(eventLog, "bufferSize", 1024);
+
+        handler = new WhiteboardWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "objectMapper", new MongoConfig().objectMapper());
+        ReflectionTestUtils.setField(handler, "sessionManager", sessionManager);
+        ReflectionTestUtils.setField(handler, "eventLog", eventLog);
+        ReflectionTestUtils.setField(handler, "eventBus", new LocalEventBus());
+        ReflectionTestUtils.setField(handler, "cursorAggregator", new CursorAggregator());
+        ReflectionTestUtils.setField(handler, "strokeAssembler", new StrokeAssembler());
+        ReflectionTestUtils.setField(handler, "slowConsumerPolicy", new SlowConsumerPolicy());
+        ReflectionTestUtils.setField(handler, "writerThreads", 1);
+        ReflectionTestUtils.setField(handler, "outboundHighWatermark", 1024);
+        ReflectionTestUtils.setField(handler, "outboundLowWatermark", 256);
+        ReflectionTestUtils.setField(handler, "slowConsumerCheckIntervalMs", 60_000L);
+        handler.init();
+
+        // Drain on the broadcasting thread so queues never build up across iterations
+        writerPool = (ExecutorService) ReflectionTestUtils.getField(handler, "writerExecutor");
+        ReflectionTestUtils.setField(handler, "writerExecutor", new ExecutorServiceAdapter(new SyncTaskExecutor()));
+
+        String protocol = "binary".equals(wire) ? WhiteboardBinaryCodec.SUBPROTOCOL : null;
+        for (int i = 0; i < recipients; i++) {
+            WebSocketSession session = new StubWebSocketSession("ws-" + i, protocol, BOARD);
+            handler.afterConnectionEstablished(session);
+            sessionManager.addSession(BOARD, session, "user-" + i);
+        }
+
+        broadcastToSession = MethodHandles.privateLookupIn(WhiteboardWebSocketHandler.class, MethodHandles.lookup())
+            .findVirtual(WhiteboardWebSocketHandler.class, "broadcastToSession",
+                MethodType.methodType(void.class, String.class, WebSocketMessage.class, WebSocketSession.class));
+
+        draw = new WebSocketMessage();
+        draw.setType("DRAW");
+        draw.setUserId("user-0");
+        draw.setActionId("6f1c2a3e-5b8d-4c1e-9a7f-0d2b4e6f8a1c");
+        draw.setTool("pen");
+        draw.setColor("#1e88e5");
+        List<DrawingAction.Point> stroke = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            stroke.add(new DrawingAction.Point(100 + i * 1.5, 200 + Math.sin(i / 4.0) * 30));
+        }
+        draw.setCoordinates(new DrawingAction.Coordinates(stroke, stroke.get(0), stroke.get(stroke.size() - 1)));
+        draw.setTimestamp(System.currentTimeMillis());
+
+        // Always JSON: chat has no binary encoding
+        chat = new WebSocketMessage();
+        chat.setType("CHAT_MESSAGE");
+        chat.setUserId("user-0");
+        chat.setUsername("alice");
+        chat.setMessageContent("Can everyone see the diagram on the left?");
+        chat.setTimestamp(System.currentTimeMillis());
+    }
+
+    @TearDown
+    public void tearDown() {
+        // The inline adapter cannot be shut down; hand the original pool back for shutdown
+        ReflectionTestUtils.setField(handler, "writerExecutor", writerPool);
+        handler.shutdown();
+    }
+
+    @Benchmark
+    public void broadcastDraw() throws Throwable {
+        broadcastToSession.invoke(handler, BOARD, draw, (WebSocketSession) null);
+    }
+
+    @Benchmark
+    public void broadcastChat() throws Throwable {
+        broadcastToSession.invoke(handler, BOARD, chat, (WebSocketSession) null);
+    }
+}
@@ -0,0 +1,60 @@
+package com.sketchflow.sketchflow_backend.benchmark;
+
+import com.sketchflow.sketchflow_backend.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JwtTokenProvider.validateToken as called by the authentication filter on every request.
+ * Its console diagnostics still run (formatting, synchronized PrintStream) but go to a null sink.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtValidationBenchmark {
+
+    private JwtTokenProvider provider;
+    private String token;
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @Setup
+    public void setup() {
+        provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret",
+            "benchmark-secret-key-for-jwt-token-generation-must-be-at-least-512-bits-long-0123456789");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", TimeUnit.DAYS.toMillis(1));
+        token = provider.generateTokenFromUsername("alice");
+
+        Logger.getLogger(JwtTokenProvider.class.getName()).setLevel(Level.WARNING);
+        originalOut = System.out;
+        originalErr = System.err;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(sink);
+        System.setErr(sink);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return provider.validateToken(token);
+    }
+}
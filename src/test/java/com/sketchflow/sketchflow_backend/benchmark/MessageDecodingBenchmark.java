@@ -0,0 +1,81 @@
+package com.sketchflow.sketchflow_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchflow.sketchflow_backend.config.MongoConfig;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.websocket.WhiteboardBinaryCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound decoding of whiteboard frames: Jackson (JSON clients) against the binary codec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageDecodingBenchmark {
+
+    @Param({"16", "256"})
+    public int points;
+
+    private ObjectMapper objectMapper;
+    private String drawJson;
+    private String cursorJson;
+    private byte[] drawBinary;
+
+    @Setup
+    public void setup() throws Exception {
+        // Same mapper configuration as the application
+        objectMapper = new MongoConfig().objectMapper();
+
+        WebSocketMessage draw = new WebSocketMessage();
+        draw.setType("DRAW");
+        draw.setUserId("user-1");
+        draw.setUsername("alice");
+        draw.setActionId("6f1c2a3e-5b8d-4c1e-9a7f-0d2b4e6f8a1c");
+        draw.setTool("pen");
+        draw.setColor("#1e88e5");
+        List<DrawingAction.Point> stroke = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            stroke.add(new DrawingAction.Point(100 + i * 1.5, 200 + Math.sin(i / 4.0) * 30));
+        }
+        draw.setCoordinates(new DrawingAction.Coordinates(stroke, stroke.get(0), stroke.get(stroke.size() - 1)));
+        draw.setTimestamp(System.currentTimeMillis());
+        drawJson = objectMapper.writeValueAsString(draw);
+        drawBinary = WhiteboardBinaryCodec.encode(draw);
+
+        WebSocketMessage cursor = new WebSocketMessage();
+        cursor.setType("CURSOR_MOVE");
+        cursor.setUserId("user-1");
+        cursor.setUsername("alice");
+        cursor.setPosition(new WebSocketMessage.CursorPosition(512.5, 384.25));
+        cursorJson = objectMapper.writeValueAsString(cursor);
+    }
+
+    @Benchmark
+    public WebSocketMessage jacksonDecodeDraw() throws Exception {
+        return objectMapper.readValue(drawJson, WebSocketMessage.class);
+    }
+
+    @Benchmark
+    public WebSocketMessage jacksonDecodeCursor() throws Exception {
+        return objectMapper.readValue(cursorJson, WebSocketMessage.class);
+    }
+
+    @Benchmark
+    public WebSocketMessage binaryDecodeDraw() {
+        return WhiteboardBinaryCodec.decode(ByteBuffer.wrap(drawBinary));
+    }
+}
@@ -0,0 +1,82 @@
+package com.sketchflow.sketchflow_backend.benchmark;
+
+import com.sketchflow.sketchflow_backend.udp.OnlineUserTracker;
+import com.sketchflow.sketchflow_backend.udp.Packet;
+import com.sketchflow.sketchflow_backend.udp.PacketUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * UDP notification path: packet framing, checksums and presence heartbeats
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UdpPacketBenchmark {
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    // Distinct peers sending heartbeats
+    private static final int PEERS = 1024;
+
+    private Packet packet;
+    private byte[] wire;
+    private byte[] payload;
+    private OnlineUserTracker tracker;
+    private InetSocketAddress[] peers;
+    private String[] userIds;
+
+    @Setup
+    public void setup() {
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        packet = Packet.of(42L, Packet.Type.DATA, payload);
+        wire = packet.toBytes();
+
+        // Only the first heartbeat per peer logs; keep that out of the console
+        Logger.getLogger(OnlineUserTracker.class.getName()).setLevel(Level.WARNING);
+        tracker = new OnlineUserTracker(null, null);
+        peers = new InetSocketAddress[PEERS];
+        userIds = new String[PEERS];
+        for (int i = 0; i < PEERS; i++) {
+            peers[i] = new InetSocketAddress("10.0." + (i / 256) + "." + (i % 256), 40000 + i);
+            userIds[i] = "user-" + i;
+            tracker.onHeartbeat(peers[i], userIds[i], System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public byte[] packetToBytes() {
+        return packet.toBytes();
+    }
+
+    @Benchmark
+    public Packet packetFromBytes() {
+        return Packet.fromBytes(ByteBuffer.wrap(wire));
+    }
+
+    @Benchmark
+    public int crc32() {
+        return PacketUtils.crc32(payload);
+    }
+
+    @Benchmark
+    public void onHeartbeat() {
+        int i = ThreadLocalRandom.current().nextInt(PEERS);
+        tracker.onHeartbeat(peers[i], userIds[i], System.currentTimeMillis() - 5);
+    }
+}
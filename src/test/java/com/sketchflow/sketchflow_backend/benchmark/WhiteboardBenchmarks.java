@@ -0,0 +1,46 @@
+package com.sketchflow.sketchflow_backend.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH suite with the gc profiler (gc.alloc.rate.norm = bytes allocated per operation).
+ * Skipped unless enabled, e.g.
+ *
+ *   mvn test -Dtest=WhiteboardBenchmarks -Djmh=true [-Djmh.include=Broadcast] [-Djmh.forks=1]
+ *
+ * Results are also written to target/jmh-result.json for comparison between runs.
+ */
+@EnabledIfSystemProperty(named = "jmh", matches = "true")
+public class WhiteboardBenchmarks {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        new Runner(options()).run();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(options()).run();
+    }
+
+    private static Options options() {
+        return new OptionsBuilder()
+            .include(WhiteboardBenchmarks.class.getPackageName() + ".*" + System.getProperty("jmh.include", "Benchmark") + ".*")
+            .addProfiler(GCProfiler.class)
+            .forks(Integer.getInteger("jmh.forks", 1))
+            .warmupIterations(Integer.getInteger("jmh.warmup", 3))
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(Integer.getInteger("jmh.iterations", 5))
+            .measurementTime(TimeValue.seconds(1))
+            .jvmArgsAppend("-Xms512m", "-Xmx512m")
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/jmh-result.json")
+            .build();
+    }
+}
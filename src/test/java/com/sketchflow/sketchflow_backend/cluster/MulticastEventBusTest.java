@@ -0,0 +1,132 @@
+package com.sketchflow.sketchflow_backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MulticastEventBusTest {
+
+    @Test
+    public void testStreamDropsDuplicatesAndRestoresOrder() {
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        OrderedStream stream = new OrderedStream(8, 1000, duplicates, skipped);
+
+        List<String> delivered = new ArrayList<>();
+        collect(delivered, stream.offer(10, message("a"), 0));
+        collect(delivered, stream.offer(12, message("c"), 1));
+        collect(delivered, stream.offer(10, message("a"), 2));
+        collect(delivered, stream.offer(11, message("b"), 3));
+        collect(delivered, stream.offer(12, message("c"), 4));
+
+        assertEquals(List.of("a", "b", "c"), delivered);
+        assertEquals(2, duplicates.get());
+        assertEquals(0, skipped.get());
+    }
+
+    @Test
+    public void testStreamSkipsGapAfterHoldTime() {
+        AtomicLong skipped = new AtomicLong();
+        OrderedStream stream = new OrderedStream(8, 100, new AtomicLong(), skipped);
+
+        List<String> delivered = new ArrayList<>();
+        collect(delivered, stream.offer(1, message("a"), 0));
+        collect(delivered, stream.offer(3, message("c"), 10));
+        collect(delivered, stream.expire(50));
+        assertEquals(List.of("a"), delivered);
+        assertFalse(stream.takeSkippedGap());
+
+        collect(delivered, stream.expire(110));
+        assertEquals(List.of("a", "c"), delivered);
+        assertEquals(1, skipped.get());
+
+        // Reported once, so the session is reloaded once
+        assertTrue(stream.takeSkippedGap());
+        assertFalse(stream.takeSkippedGap());
+    }
+
+    @Test
+    public void testLoopbackDeliveryBetweenNodes() throws Exception {
+        MulticastEventBus nodeA = bus();
+        MulticastEventBus nodeB = bus();
+        try {
+            nodeA.start();
+            nodeB.start();
+            assumeTrue((Boolean) nodeA.getStatistics().get("running") && (Boolean) nodeB.getStatistics().get("running"),
+                    "Multicast is not available in this environment");
+
+            int count = 50;
+            List<String> received = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch latch = new CountDownLatch(count + 1);
+            nodeB.addListener((sessionId, message) -> {
+                if ("board-1".equals(sessionId)) {
+                    received.add(message.getActionId());
+                    latch.countDown();
+                }
+            });
+
+            // A large payload exercises fragmentation
+            WebSocketMessage large = message("large");
+            large.setMessageContent("x".repeat(150_000));
+
+            for (int i = 0; i < count; i++) {
+                nodeA.publish("board-1", message("m" + i));
+            }
+            nodeA.publish("board-1", large);
+
+            boolean complete = latch.await(5, TimeUnit.SECONDS);
+            assumeTrue(complete || !received.isEmpty(), "Multicast loopback delivery is not available in this environment");
+            assertTrue(complete, "received " + received.size());
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                expected.add("m" + i);
+            }
+            expected.add("large");
+            assertEquals(expected, received);
+        } finally {
+            nodeA.shutdown();
+            nodeB.shutdown();
+        }
+    }
+
+    private MulticastEventBus bus() {
+        MulticastEventBus bus = new MulticastEventBus();
+        ReflectionTestUtils.setField(bus, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(bus, "group", "239.255.42.98");
+        ReflectionTestUtils.setField(bus, "port", 47998);
+        ReflectionTestUtils.setField(bus, "ttl", 0);
+        ReflectionTestUtils.setField(bus, "interfaceName", "");
+        ReflectionTestUtils.setField(bus, "receiveBufferSize", 4 * 1024 * 1024);
+        ReflectionTestUtils.setField(bus, "reorderWindow", 64);
+        ReflectionTestUtils.setField(bus, "reorderHoldMs", 200L);
+        return bus;
+    }
+
+    private WebSocketMessage message(String id) {
+        WebSocketMessage message = new WebSocketMessage();
+        message.setType("DRAW");
+        message.setActionId(id);
+        return message;
+    }
+
+    private void collect(List<String> into, List<WebSocketMessage> messages) {
+        for (WebSocketMessage message : messages) {
+            into.add(message.getActionId());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sketchflow.sketchflow_backend.codec;
+
+import com.sketchflow.sketchflow_backend.config.MongoConfig;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoordinatesConvertersTest {
+
+    @Test
+    public void testPointsArePackedAndReadBack() {
+        MappingMongoConverter converter = converter("packed");
+        List<DrawingAction.Point> stroke = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            stroke.add(new DrawingAction.Point(100 + i * 0.75, 200 - i * 0.25));
+        }
+        DrawingAction action = action(new DrawingAction.Coordinates(stroke, stroke.get(0), stroke.get(199)));
+
+        Document stored = new Document();
+        converter.write(action, stored);
+        Document coordinates = (Document) stored.get("coordinates");
+        Binary packed = assertInstanceOf(Binary.class, coordinates.get("points"));
+        assertEquals(CoordinatesConverters.VERSION_DELTA_VARINT, packed.getData()[0]);
+        // Small steps cost a couple of bytes per point instead of a {x, y} sub-document
+        assertTrue(packed.getData().length < 200 * 4, "packed size " + packed.getData().length);
+
+        DrawingAction read = converter.read(DrawingAction.class, stored);
+        assertEquals(200, read.getCoordinates().getPoints().size());
+        assertEquals(149.5, read.getCoordinates().getPoints().get(66).getX(), 1e-9);
+        assertEquals(183.5, read.getCoordinates().getPoints().get(66).getY(), 1e-9);
+        assertEquals(stroke.get(199), read.getCoordinates().getEnd());
+        assertEquals("a1", read.getActionId());
+    }
+
+    @Test
+    public void testDocumentsWrittenBeforePackingStillLoad() {
+        Document legacy = new Document("_id", "a1")
+            .append("sessionId", "board")
+            .append("coordinates", new Document("points", List.of(
+                    new Document("x", 1.5).append("y", 2.0),
+                    new Document("x", 3).append("y", 4.25)))
+                .append("start", new Document("x", 1.5).append("y", 2.0))
+                .append("end", new Document("x", 3).append("y", 4.25)));
+
+        DrawingAction read = converter("packed").read(DrawingAction.class, legacy);
+        assertEquals(List.of(new DrawingAction.Point(1.5, 2.0), new DrawingAction.Point(3, 4.25)),
+            read.getCoordinates().getPoints());
+        assertEquals(new DrawingAction.Point(3, 4.25), read.getCoordinates().getEnd());
+
+        // With packing switched off points are written as documents again
+        Document stored = new Document();
+        converter("documents").write(read, stored);
+        assertInstanceOf(List.class, ((Document) stored.get("coordinates")).get("points"));
+    }
+
+    private static MappingMongoConverter converter(String encoding) {
+        MongoCustomConversions conversions = new MongoConfig().mongoCustomConversions(encoding, 100);
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static DrawingAction action(DrawingAction.Coordinates coordinates) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId("a1");
+        action.setSessionId("board");
+        action.setTool("pen");
+        action.setCoordinates(coordinates);
+        return action;
+    }
+}
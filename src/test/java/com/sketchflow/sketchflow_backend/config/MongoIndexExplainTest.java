@@ -0,0 +1,108 @@
+package com.sketchflow.sketchflow_backend.config;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sketchflow.sketchflow_backend.model.ActivityLog;
+import com.sketchflow.sketchflow_backend.model.ChatMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies the bootstrapped indexes to a local mongod and explains the hot queries.
+ * Skipped when no mongod is listening on localhost:27017.
+ */
+class MongoIndexExplainTest {
+
+    private static final String DATABASE = "sketchflow_index_explain_test";
+
+    private MongoClient client;
+    private MongoTemplate template;
+
+    @BeforeEach
+    void connect() {
+        client = MongoClients.create("mongodb://localhost:27017/?serverSelectionTimeoutMS=1000&connectTimeoutMS=1000");
+        boolean reachable;
+        try {
+            client.getDatabase("admin").runCommand(new Document("ping", 1));
+            reachable = true;
+        } catch (Exception e) {
+            reachable = false;
+        }
+        if (!reachable) {
+            client.close();
+        }
+        Assumptions.assumeTrue(reachable, "No mongod on localhost:27017");
+        template = new MongoTemplate(client, DATABASE);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        if (template != null) {
+            template.getDb().drop();
+            client.close();
+        }
+    }
+
+    @Test
+    void hotQueriesUseIndexes() throws Exception {
+        // A few documents so the planner has something to choose between
+        for (int i = 0; i < 10; i++) {
+            template.insert(new Document("sessionId", "s" + (i % 3)).append("timestamp", LocalDateTime.now()),
+                template.getCollectionName(DrawingAction.class));
+            template.insert(new Document("sessionId", "s" + (i % 3)).append("timestamp", LocalDateTime.now()),
+                template.getCollectionName(ChatMessage.class));
+            template.insert(new Document("userId", "u" + (i % 3)).append("timestamp", LocalDateTime.now()),
+                template.getCollectionName(ActivityLog.class));
+        }
+
+        MongoIndexBootstrapper bootstrapper = new MongoIndexBootstrapper();
+        set(bootstrapper, "mongoTemplate", template);
+        set(bootstrapper, "enabled", true);
+        set(bootstrapper, "activeSessionTtlHours", 24L);
+        assertEquals(0, bootstrapper.applyAll());
+        // Idempotent: applying again changes nothing and does not fail
+        assertEquals(0, bootstrapper.applyAll());
+
+        assertIndexed(template.getCollectionName(DrawingAction.class),
+            "{sessionId: 's1', epoch: 3}", "{timestamp: 1, _id: 1}");
+        assertIndexed(template.getCollectionName(DrawingAction.class),
+            "{sessionId: 's1', epoch: 3, $or: [{timestamp: {$gt: {$date: '2024-01-01T00:00:00Z'}}}]}", "{timestamp: 1, _id: 1}");
+        assertIndexed(template.getCollectionName(ChatMessage.class),
+            "{sessionId: 's2'}", "{timestamp: 1, _id: 1}");
+        assertIndexed(template.getCollectionName(ActivityLog.class),
+            "{}", "{timestamp: -1, _id: -1}");
+        assertIndexed(template.getCollectionName(ActivityLog.class),
+            "{userId: 'u1'}", "{timestamp: -1, _id: -1}");
+
+        // Sanity check of the detector itself: an unindexed field scans the collection
+        Document unindexed = QueryPlanMonitor.explainFind(template, DATABASE,
+            template.getCollectionName(ActivityLog.class), BsonDocument.parse("{details: 'x'}"), null);
+        assertTrue(QueryPlanMonitor.usesCollectionScan(unindexed));
+    }
+
+    private void assertIndexed(String collection, String filter, String sort) {
+        Document explain = QueryPlanMonitor.explainFind(template, DATABASE, collection,
+            BsonDocument.parse(filter), BsonDocument.parse(sort));
+        assertFalse(QueryPlanMonitor.usesCollectionScan(explain),
+            collection + " " + filter + " sort " + sort + " ran as a collection scan");
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,86 @@
+package com.sketchflow.sketchflow_backend.controller;
+
+import com.sketchflow.sketchflow_backend.config.MongoConfig;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.service.DrawingActionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class DrawingActionStreamTest {
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        DrawingActionService service = mock(DrawingActionService.class);
+        doAnswer(invocation -> {
+            Consumer<DrawingAction> sink = invocation.getArgument(1);
+            for (int i = 0; i < 300; i++) {
+                DrawingAction action = new DrawingAction();
+                action.setActionId("a" + i);
+                action.setSessionId("board");
+                action.setTimestamp(LocalDateTime.of(2024, 1, 1, 12, 0).plusSeconds(i));
+                sink.accept(action);
+            }
+            return 300L;
+        }).when(service).streamSessionActions(eq("board"), any());
+
+        DrawingActionController controller = new DrawingActionController();
+        ReflectionTestUtils.setField(controller, "drawingActionService", service);
+        ReflectionTestUtils.setField(controller, "objectMapper", new MongoConfig().objectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testNdjsonWritesOneActionPerLine() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/whiteboard/sessions/board/actions/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(300, lines.length);
+        assertEquals('{', lines[0].charAt(0));
+        assertEquals(true, lines[299].contains("\"actionId\":\"a299\""));
+        assertEquals(true, lines[1].contains("\"timestamp\":\"2024-01-01T12:00:01\""));
+    }
+
+    @Test
+    public void testJsonFormatWritesAnArray() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/whiteboard/sessions/board/actions/stream").param("format", "json"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(300))
+            .andExpect(jsonPath("$[0].actionId").value("a0"));
+
+        MvcResult rejected = mockMvc.perform(get("/api/whiteboard/sessions/board/actions/stream").param("format", "xml"))
+            .andReturn();
+        mockMvc.perform(asyncDispatch(rejected))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error").value("format must be ndjson or json"));
+    }
+}
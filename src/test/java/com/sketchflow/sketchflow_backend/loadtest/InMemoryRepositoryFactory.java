@@ -0,0 +1,643 @@
+package com.sketchflow.sketchflow_backend.loadtest;
+
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-memory stand-in for the Mongo repositories, so the server can run under load without Atlas.
+ *
+ * Each repository interface is backed by a map keyed by the entity's @Id. CRUD methods and
+ * derived queries (findBy / streamBy / countBy / existsBy / deleteBy with And, Or, Before, After,
+ * GreaterThan, LessThan, Between, True, False, Containing, IsNull, IsNotNull and OrderBy)
+ * are interpreted from the method name; anything else fails loudly.
+ */
+public final class InMemoryRepositoryFactory {
+
+    private InMemoryRepositoryFactory() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R extends Repository<?, ?>> R create(Class<R> repositoryType) {
+        Class<?> entityType = entityTypeOf(repositoryType);
+        Store store = new Store(entityType);
+        return (R) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+            new Handler(repositoryType, store));
+    }
+
+    private static Class<?> entityTypeOf(Class<?> repositoryType) {
+        for (Type type : repositoryType.getGenericInterfaces()) {
+            if (type instanceof ParameterizedType parameterized) {
+                return (Class<?>) parameterized.getActualTypeArguments()[0];
+            }
+        }
+        throw new IllegalArgumentException("Cannot resolve entity type of " + repositoryType.getName());
+    }
+
+    /**
+     * Entities of one repository, keyed by id
+     */
+    private static final class Store {
+        final Class<?> entityType;
+        final Field idField;
+        final Map<Object, Object> entities = new ConcurrentHashMap<>();
+
+        Store(Class<?> entityType) {
+            this.entityType = entityType;
+            this.idField = findIdField(entityType);
+        }
+
+        Object save(Object entity) {
+            Object id = get(entity, idField);
+            if (id == null) {
+                id = new ObjectId().toHexString();
+                set(entity, idField, id);
+            }
+            entities.put(id, entity);
+            return entity;
+        }
+
+        Object idOf(Object entity) {
+            return get(entity, idField);
+        }
+
+        List<Object> all() {
+            return new ArrayList<>(entities.values());
+        }
+
+        private static Field findIdField(Class<?> type) {
+            Field byName = null;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Id.class)) {
+                        field.setAccessible(true);
+                        return field;
+                    }
+                    if (byName == null && field.getName().equals("id")) {
+                        byName = field;
+                    }
+                }
+            }
+            if (byName == null) {
+                throw new IllegalArgumentException("No id field on " + type.getName());
+            }
+            byName.setAccessible(true);
+            return byName;
+        }
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Class<?> repositoryType;
+        private final Store store;
+        private final Map<Method, Query> queries = new ConcurrentHashMap<>();
+
+        Handler(Class<?> repositoryType, Store store) {
+            this.repositoryType = repositoryType;
+            this.store = store;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "InMemory" + repositoryType.getSimpleName();
+                }
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            Object[] a = args != null ? args : new Object[0];
+            Object crud = crud(method, a);
+            if (crud != NOT_CRUD) {
+                return crud;
+            }
+            return queries.computeIfAbsent(method, Query::parse).execute(store, method, a);
+        }
+
+        private static final Object NOT_CRUD = new Object();
+
+        private Object crud(Method method, Object[] a) {
+            String name = method.getName();
+            switch (name) {
+                case "save":
+                case "insert":
+                    if (a[0] instanceof Iterable<?> iterable) {
+                        List<Object> saved = new ArrayList<>();
+                        iterable.forEach(e -> saved.add(store.save(e)));
+                        return saved;
+                    }
+                    return store.save(a[0]);
+                case "insertUnordered":
+                    // Bulk insert that skips existing ids and returns them, as the Mongo fragment does
+                    List<Object> skipped = new ArrayList<>();
+                    for (Object e : (Iterable<?>) a[0]) {
+                        Object id = store.idOf(e);
+                        if (id == null || store.entities.putIfAbsent(id, e) == null) {
+                            if (id == null) {
+                                store.save(e);
+                            }
+                        } else {
+                            skipped.add(e);
+                        }
+                    }
+                    return skipped;
+                case "updateCursorPositions":
+                    // Users of the session present in the map, as the Mongo fragment's bulk update matches them
+                    int matched = 0;
+                    for (Object e : store.all()) {
+                        Object position = ((Map<?, ?>) a[1]).get(property(e, "userId"));
+                        if (position != null && a[0].equals(property(e, "sessionId"))) {
+                            setProperty(e, "cursorPosition", position);
+                            setProperty(e, "lastActivity", LocalDateTime.now());
+                            matched++;
+                        }
+                    }
+                    return matched;
+                case "findTail":
+                case "streamTail":
+                case "countTail":
+                    // Rows of a session and clear epoch after a (timestamp, id) position, as the Mongo fragment reads them
+                    List<Object> tail = store.all().stream()
+                        .filter(e -> a[0].equals(property(e, "sessionId")) && a[1].equals(property(e, "epoch"))
+                            && compareToKeyset(e, (Keyset) a[2]) > 0)
+                        .sorted((x, y) -> compareToKeyset(x, new Keyset((LocalDateTime) property(y, "timestamp"), (String) store.idOf(y))))
+                        .collect(Collectors.toList());
+                    if (name.equals("countTail")) {
+                        return (long) tail.size();
+                    }
+                    return name.equals("streamTail") ? tail.stream() : tail;
+                case "streamRange":
+                    // No archive collection here (see compactUpTo)
+                    if ((boolean) a[4]) {
+                        return Stream.empty();
+                    }
+                    return store.all().stream()
+                        .filter(e -> a[0].equals(property(e, "sessionId")) && a[1].equals(property(e, "epoch"))
+                            && compareToKeyset(e, (Keyset) a[2]) > 0
+                            && (a[3] == null || !((LocalDateTime) property(e, "timestamp")).isAfter((LocalDateTime) a[3])))
+                        .sorted((x, y) -> compareToKeyset(x, new Keyset((LocalDateTime) property(y, "timestamp"), (String) store.idOf(y))));
+                case "compactUpTo":
+                    // No archive collection here: compaction only removes
+                    long removed = 0;
+                    for (Object e : store.all()) {
+                        if (a[0].equals(property(e, "sessionId")) && a[1].equals(property(e, "epoch"))
+                                && compareToKeyset(e, (Keyset) a[2]) <= 0) {
+                            store.entities.remove(store.idOf(e));
+                            removed++;
+                        }
+                    }
+                    return removed;
+                case "deleteBeforeEpoch":
+                    int deleted = 0;
+                    for (Object e : store.all()) {
+                        if (deleted < (int) a[2] && a[0].equals(property(e, "sessionId")) && (long) property(e, "epoch") < (long) a[1]) {
+                            store.entities.remove(store.idOf(e));
+                            deleted++;
+                        }
+                    }
+                    return deleted;
+                case "incrementEpoch":
+                    synchronized (store) {
+                        Object epoch = store.entities.computeIfAbsent(a[0], id -> newEntity(id));
+                        long next = (long) property(epoch, "epoch") + 1;
+                        setProperty(epoch, "epoch", next);
+                        setProperty(epoch, "clearedAt", LocalDateTime.now());
+                        setProperty(epoch, "collected", false);
+                        return next;
+                    }
+                case "markCollected":
+                    synchronized (store) {
+                        Object epoch = store.entities.get(a[0]);
+                        if (epoch == null || !a[1].equals(property(epoch, "epoch"))) {
+                            return false;
+                        }
+                        setProperty(epoch, "collected", true);
+                        return true;
+                    }
+                case "addActions":
+                case "resetEpoch":
+                    // Counter of a session's clear epoch, restarted by a newer epoch, as the Mongo fragment keeps it
+                    synchronized (store) {
+                        Object stats = store.entities.get(a[0]);
+                        long epoch = (long) a[1];
+                        long current = stats != null ? (long) property(stats, "epoch") : -1;
+                        if (current > epoch || (name.equals("resetEpoch") && current == epoch)) {
+                            return 0L;
+                        }
+                        if (stats == null) {
+                            stats = newEntity(a[0]);
+                            store.entities.put(a[0], stats);
+                        }
+                        long previous = (long) property(stats, "actionCount");
+                        long delta = name.equals("addActions") ? (long) a[2] : 0;
+                        boolean sameEpoch = current == epoch;
+                        setProperty(stats, "epoch", epoch);
+                        setProperty(stats, "actionCount", sameEpoch ? previous + delta : delta);
+                        setProperty(stats, "dirty", true);
+                        setProperty(stats, "updatedAt", LocalDateTime.now());
+                        return sameEpoch ? delta : delta - previous;
+                    }
+                case "seed":
+                    synchronized (store) {
+                        if (store.entities.containsKey(a[0])) {
+                            return false;
+                        }
+                        Object stats = newEntity(a[0]);
+                        setProperty(stats, "epoch", a[1]);
+                        setProperty(stats, "actionCount", a[2]);
+                        setProperty(stats, "dirty", true);
+                        setProperty(stats, "updatedAt", LocalDateTime.now());
+                        store.entities.put(a[0], stats);
+                        return true;
+                    }
+                case "compareAndSetCount":
+                    synchronized (store) {
+                        Object stats = store.entities.get(a[0]);
+                        if (stats == null || !a[1].equals(property(stats, "epoch")) || !a[2].equals(property(stats, "actionCount"))) {
+                            return false;
+                        }
+                        setProperty(stats, "actionCount", a[3]);
+                        setProperty(stats, "dirty", false);
+                        setProperty(stats, "reconciledAt", LocalDateTime.now());
+                        return true;
+                    }
+                case "sumSessionCounts":
+                    return store.all().stream().filter(e -> !"_global".equals(store.idOf(e)))
+                        .mapToLong(e -> (long) property(e, "actionCount")).sum();
+                case "saveAll":
+                    List<Object> saved = new ArrayList<>();
+                    ((Iterable<?>) a[0]).forEach(e -> saved.add(store.save(e)));
+                    return saved;
+                case "findById":
+                    return Optional.ofNullable(store.entities.get(a[0]));
+                case "existsById":
+                    return store.entities.containsKey(a[0]);
+                case "findAllById":
+                    return StreamSupport.stream(((Iterable<?>) a[0]).spliterator(), false)
+                        .map(store.entities::get).filter(e -> e != null).collect(Collectors.toList());
+                case "count":
+                    if (a.length == 0) {
+                        return (long) store.entities.size();
+                    }
+                    break;
+                case "findAll":
+                    if (a.length == 0) {
+                        return store.all();
+                    }
+                    if (a[0] instanceof Sort sort) {
+                        return sorted(store.all(), sort);
+                    }
+                    if (a[0] instanceof Pageable pageable) {
+                        return page(store.all(), pageable);
+                    }
+                    break;
+                case "deleteById":
+                    store.entities.remove(a[0]);
+                    return null;
+                case "delete":
+                    store.entities.remove(store.idOf(a[0]));
+                    return null;
+                case "deleteAllById":
+                    ((Iterable<?>) a[0]).forEach(store.entities::remove);
+                    return null;
+                case "deleteAll":
+                    if (a.length == 0) {
+                        store.entities.clear();
+                    } else {
+                        ((Iterable<?>) a[0]).forEach(e -> store.entities.remove(store.idOf(e)));
+                    }
+                    return null;
+                default:
+                    return NOT_CRUD;
+            }
+            throw new UnsupportedOperationException(repositoryType.getSimpleName() + "." + name +
+                " is not supported by the in-memory repository");
+        }
+
+        private Object newEntity(Object id) {
+            try {
+                Object entity = store.entityType.getDeclaredConstructor().newInstance();
+                set(entity, store.idField, id);
+                return entity;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Compare an entity's (timestamp, id) with a position; a null position sorts first
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private int compareToKeyset(Object entity, Keyset keyset) {
+            if (keyset == null) {
+                return 1;
+            }
+            Comparator<Comparable> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+            int byTimestamp = nullsFirst.compare((Comparable) property(entity, "timestamp"), keyset.timestamp());
+            return byTimestamp != 0 ? byTimestamp : nullsFirst.compare((Comparable) store.idOf(entity), keyset.id());
+        }
+    }
+
+    /**
+     * A derived query parsed from a repository method name
+     */
+    private static final class Query {
+        enum Kind { FIND, COUNT, EXISTS, DELETE }
+
+        final Kind kind;
+        // Disjunction of conjunctions
+        final List<List<Condition>> criteria;
+        final Sort orderBy;
+
+        private Query(Kind kind, List<List<Condition>> criteria, Sort orderBy) {
+            this.kind = kind;
+            this.criteria = criteria;
+            this.orderBy = orderBy;
+        }
+
+        static Query parse(Method method) {
+            String name = method.getName();
+            Kind kind;
+            String rest;
+            if (name.startsWith("countBy")) {
+                kind = Kind.COUNT;
+                rest = name.substring("countBy".length());
+            } else if (name.startsWith("existsBy")) {
+                kind = Kind.EXISTS;
+                rest = name.substring("existsBy".length());
+            } else if (name.startsWith("deleteBy") || name.startsWith("removeBy")) {
+                kind = Kind.DELETE;
+                rest = name.substring("deleteBy".length());
+            } else if (name.matches("(find|read|get|query|stream)(All)?By.*")) {
+                kind = Kind.FIND;
+                rest = name.substring(name.indexOf("By") + 2);
+            } else {
+                throw new UnsupportedOperationException(method + " is not supported by the in-memory repository");
+            }
+
+            Sort orderBy = Sort.unsorted();
+            int order = rest.indexOf("OrderBy");
+            if (order >= 0) {
+                orderBy = parseOrder(rest.substring(order + "OrderBy".length()));
+                rest = rest.substring(0, order);
+            }
+
+            List<List<Condition>> criteria = new ArrayList<>();
+            int argIndex = 0;
+            if (!rest.isEmpty()) {
+                for (String disjunct : rest.split("Or(?=[A-Z])")) {
+                    List<Condition> conjunction = new ArrayList<>();
+                    for (String part : disjunct.split("And(?=[A-Z])")) {
+                        Condition condition = Condition.parse(part, argIndex);
+                        argIndex += condition.arity;
+                        conjunction.add(condition);
+                    }
+                    criteria.add(conjunction);
+                }
+            }
+            return new Query(kind, criteria, orderBy);
+        }
+
+        private static Sort parseOrder(String spec) {
+            List<Sort.Order> orders = new ArrayList<>();
+            for (String part : spec.split("(?<=Asc|Desc)(?=[A-Z])")) {
+                if (part.endsWith("Desc")) {
+                    orders.add(Sort.Order.desc(decapitalize(part.substring(0, part.length() - 4))));
+                } else if (part.endsWith("Asc")) {
+                    orders.add(Sort.Order.asc(decapitalize(part.substring(0, part.length() - 3))));
+                } else {
+                    orders.add(Sort.Order.asc(decapitalize(part)));
+                }
+            }
+            return Sort.by(orders);
+        }
+
+        Object execute(Store store, Method method, Object[] args) {
+            Pageable pageable = null;
+            Sort sort = orderBy;
+            for (Object arg : args) {
+                if (arg instanceof Pageable p) {
+                    pageable = p;
+                    if (p.getSort().isSorted()) {
+                        sort = p.getSort();
+                    }
+                } else if (arg instanceof Sort s && s.isSorted()) {
+                    sort = s;
+                }
+            }
+
+            Predicate<Object> matches = entity -> criteria.isEmpty() || criteria.stream()
+                .anyMatch(conjunction -> conjunction.stream().allMatch(c -> c.test(entity, args)));
+            List<Object> result = store.all().stream().filter(matches).collect(Collectors.toList());
+
+            Class<?> returnType = method.getReturnType();
+            switch (kind) {
+                case COUNT:
+                    return returnType == int.class || returnType == Integer.class ? (Object) result.size() : (Object) (long) result.size();
+                case EXISTS:
+                    return !result.isEmpty();
+                case DELETE:
+                    result.forEach(e -> store.entities.remove(store.idOf(e)));
+                    if (returnType == void.class) {
+                        return null;
+                    }
+                    return returnType == long.class || returnType == Long.class ? (Object) (long) result.size() : result;
+                default:
+                    result = sorted(result, sort);
+                    if (Page.class.isAssignableFrom(returnType)) {
+                        return page(result, pageable != null ? pageable : Pageable.unpaged());
+                    }
+                    if (pageable != null && pageable.isPaged()) {
+                        result = slice(result, pageable);
+                    }
+                    if (Optional.class.isAssignableFrom(returnType)) {
+                        return result.stream().findFirst();
+                    }
+                    if (Collection.class.isAssignableFrom(returnType) || Iterable.class.isAssignableFrom(returnType)) {
+                        return result;
+                    }
+                    if (java.util.stream.Stream.class.isAssignableFrom(returnType)) {
+                        return result.stream();
+                    }
+                    return result.isEmpty() ? null : result.get(0);
+            }
+        }
+    }
+
+    /**
+     * One property condition of a derived query
+     */
+    private static final class Condition {
+        enum Op { EQ, BEFORE, AFTER, BETWEEN, TRUE, FALSE, CONTAINING, NULL, NOT_NULL }
+
+        final String property;
+        final Op op;
+        final int argIndex;
+        final int arity;
+
+        private Condition(String property, Op op, int argIndex) {
+            this.property = property;
+            this.op = op;
+            this.argIndex = argIndex;
+            this.arity = op == Op.BETWEEN ? 2 : (op == Op.TRUE || op == Op.FALSE || op == Op.NULL || op == Op.NOT_NULL) ? 0 : 1;
+        }
+
+        static Condition parse(String part, int argIndex) {
+            String[][] suffixes = {
+                {"GreaterThanEqual", "AFTER"}, {"LessThanEqual", "BEFORE"},
+                {"GreaterThan", "AFTER"}, {"LessThan", "BEFORE"}, {"Before", "BEFORE"}, {"After", "AFTER"},
+                {"Between", "BETWEEN"}, {"IsNotNull", "NOT_NULL"}, {"IsNull", "NULL"},
+                {"True", "TRUE"}, {"False", "FALSE"}, {"Containing", "CONTAINING"}, {"Equals", "EQ"}, {"Is", "EQ"}
+            };
+            for (String[] suffix : suffixes) {
+                if (part.endsWith(suffix[0]) && part.length() > suffix[0].length()) {
+                    return new Condition(decapitalize(part.substring(0, part.length() - suffix[0].length())),
+                        Op.valueOf(suffix[1]), argIndex);
+                }
+            }
+            return new Condition(decapitalize(part), Op.EQ, argIndex);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        boolean test(Object entity, Object[] args) {
+            Object value = property(entity, property);
+            switch (op) {
+                case TRUE:
+                    return Boolean.TRUE.equals(value);
+                case FALSE:
+                    return Boolean.FALSE.equals(value) || value == null;
+                case NULL:
+                    return value == null;
+                case NOT_NULL:
+                    return value != null;
+                case CONTAINING:
+                    if (value instanceof Collection<?> collection) {
+                        return collection.contains(args[argIndex]);
+                    }
+                    return value != null && value.toString().contains(String.valueOf(args[argIndex]));
+                case BEFORE:
+                    return value != null && ((Comparable) value).compareTo(args[argIndex]) < 0;
+                case AFTER:
+                    return value != null && ((Comparable) value).compareTo(args[argIndex]) > 0;
+                case BETWEEN:
+                    return value != null && ((Comparable) value).compareTo(args[argIndex]) > 0
+                        && ((Comparable) value).compareTo(args[argIndex + 1]) < 0;
+                default:
+                    Object expected = args[argIndex];
+                    if (value instanceof Number n && expected instanceof Number e) {
+                        return n.doubleValue() == e.doubleValue();
+                    }
+                    return value == null ? expected == null : value.equals(expected);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Object> sorted(List<Object> entities, Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return entities;
+        }
+        Comparator<Object> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Object> next = Comparator.comparing(
+                e -> (Comparable) property(e, order.getProperty()),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        List<Object> copy = new ArrayList<>(entities);
+        copy.sort(comparator);
+        return copy;
+    }
+
+    private static List<Object> slice(List<Object> entities, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), entities.size());
+        int to = Math.min(from + pageable.getPageSize(), entities.size());
+        return new ArrayList<>(entities.subList(from, to));
+    }
+
+    private static Page<Object> page(List<Object> entities, Pageable pageable) {
+        List<Object> sorted = sorted(entities, pageable.getSort());
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted);
+        }
+        return new PageImpl<>(slice(sorted, pageable), pageable, sorted.size());
+    }
+
+    private static Object property(Object entity, String name) {
+        for (Class<?> c = entity.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                return get(entity, field);
+            } catch (NoSuchFieldException ignored) {
+                // Look in the superclass
+            }
+        }
+        throw new IllegalArgumentException("No property " + name + " on " + entity.getClass().getName());
+    }
+
+    private static void setProperty(Object entity, String name, Object value) {
+        for (Class<?> c = entity.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                set(entity, c.getDeclaredField(name), value);
+                return;
+            } catch (NoSuchFieldException ignored) {
+                // Look in the superclass
+            }
+        }
+        throw new IllegalArgumentException("No property " + name + " on " + entity.getClass().getName());
+    }
+
+    private static Object get(Object entity, Field field) {
+        try {
+            field.setAccessible(true);
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(Object entity, Field field, Object value) {
+        try {
+            field.setAccessible(true);
+            field.set(entity, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decapitalize(String name) {
+        return name.isEmpty() ? name : Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
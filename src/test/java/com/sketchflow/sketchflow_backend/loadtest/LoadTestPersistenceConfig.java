@@ -0,0 +1,114 @@
+package com.sketchflow.sketchflow_backend.loadtest;
+
+import com.sketchflow.sketchflow_backend.repository.ActiveUserSessionRepository;
+import com.sketchflow.sketchflow_backend.repository.ActivityLogRepository;
+import com.sketchflow.sketchflow_backend.repository.CanvasCheckpointRepository;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.repository.CanvasSnapshotRepository;
+import com.sketchflow.sketchflow_backend.repository.ChatMessageRepository;
+import com.sketchflow.sketchflow_backend.repository.DirectMessageRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.NotificationRepository;
+import com.sketchflow.sketchflow_backend.repository.SessionStatsRepository;
+import com.sketchflow.sketchflow_backend.repository.UserRepository;
+import com.sketchflow.sketchflow_backend.repository.VoiceChatRepository;
+import com.sketchflow.sketchflow_backend.repository.WhiteboardSessionRepository;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Replaces every Mongo repository with an in-memory one.
+ * The Mongo repositories are still created (the application enables them explicitly) but never
+ * used, and with {@link #PROPERTIES} their client points at localhost and never connects.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class LoadTestPersistenceConfig {
+
+    // Points the (unused) Mongo client at localhost instead of Atlas, keeps the WAL under target/
+    // and skips index bootstrapping, which would only retry against the missing server
+    public static final String[] PROPERTIES = {
+        "spring.data.mongodb.uri=mongodb://localhost:27017/sketchflow-loadtest",
+        "spring.data.mongodb.database=sketchflow-loadtest",
+        "whiteboard.persistence.wal.dir=target/loadtest-wal",
+        "whiteboard.mongo.indexes.enabled=false"
+    };
+
+    @Bean
+    @Primary
+    public ActiveUserSessionRepository inMemoryActiveUserSessionRepository() {
+        return InMemoryRepositoryFactory.create(ActiveUserSessionRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public ActivityLogRepository inMemoryActivityLogRepository() {
+        return InMemoryRepositoryFactory.create(ActivityLogRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public CanvasCheckpointRepository inMemoryCanvasCheckpointRepository() {
+        return InMemoryRepositoryFactory.create(CanvasCheckpointRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public CanvasEpochRepository inMemoryCanvasEpochRepository() {
+        return InMemoryRepositoryFactory.create(CanvasEpochRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public CanvasSnapshotRepository inMemoryCanvasSnapshotRepository() {
+        return InMemoryRepositoryFactory.create(CanvasSnapshotRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public ChatMessageRepository inMemoryChatMessageRepository() {
+        return InMemoryRepositoryFactory.create(ChatMessageRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public DirectMessageRepository inMemoryDirectMessageRepository() {
+        return InMemoryRepositoryFactory.create(DirectMessageRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public DrawingActionRepository inMemoryDrawingActionRepository() {
+        return InMemoryRepositoryFactory.create(DrawingActionRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public NotificationRepository inMemoryNotificationRepository() {
+        return InMemoryRepositoryFactory.create(NotificationRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public SessionStatsRepository inMemorySessionStatsRepository() {
+        return InMemoryRepositoryFactory.create(SessionStatsRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public UserRepository inMemoryUserRepository() {
+        return InMemoryRepositoryFactory.create(UserRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public VoiceChatRepository inMemoryVoiceChatRepository() {
+        return InMemoryRepositoryFactory.create(VoiceChatRepository.class);
+    }
+
+    @Bean
+    @Primary
+    public WhiteboardSessionRepository inMemoryWhiteboardSessionRepository() {
+        return InMemoryRepositoryFactory.create(WhiteboardSessionRepository.class);
+    }
+}
@@ -0,0 +1,28 @@
+package com.sketchflow.sketchflow_backend.loadtest;
+
+import com.sketchflow.sketchflow_backend.SketchflowBackendApplication;
+import org.springframework.boot.SpringApplication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the backend with in-memory persistence, as a target for {@link WhiteboardLoadGenerator}.
+ *
+ *   mvn spring-boot:test-run -Dspring-boot.run.main-class=com.sketchflow.sketchflow_backend.loadtest.LoadTestServer
+ */
+public class LoadTestServer {
+
+    public static void main(String[] args) {
+        List<String> arguments = new ArrayList<>();
+        for (String property : LoadTestPersistenceConfig.PROPERTIES) {
+            arguments.add("--" + property);
+        }
+        arguments.addAll(Arrays.asList(args));
+
+        SpringApplication.from(SketchflowBackendApplication::main)
+            .with(LoadTestPersistenceConfig.class)
+            .run(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,387 @@
+package com.sketchflow.sketchflow_backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket load generator for whiteboard sessions.
+ *
+ * Opens N clients spread over M boards on /api/whiteboard/sessions/{sessionId}/ws, has each
+ * one JOIN and then send a DRAW / CURSOR_MOVE / CHAT_MESSAGE mix at a fixed rate, and measures
+ * draw-to-peer latency: the time from a client sending a DRAW to every other client on the
+ * same board receiving it. Senders and receivers share this JVM, so one clock serves both.
+ *
+ * Run against a server started by {@link LoadTestServer} (or any node):
+ *
+ *   java ... WhiteboardLoadGenerator --url=ws://localhost:8080 --clients=200 --sessions=20 --duration=60
+ */
+public class WhiteboardLoadGenerator {
+
+    private static final String PATH = "/api/whiteboard/sessions/%s/ws";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Load shape
+     */
+    public static final class Config {
+        public String url = "ws://localhost:8080";
+        public int clients = 50;
+        public int sessions = 5;
+        public int durationSeconds = 30;
+        public int warmupSeconds = 5;
+        // Messages per second per client (the server rate-limits DRAW to 100/s per user)
+        public double rate = 20;
+        public double drawRatio = 0.3;
+        public double chatRatio = 0.02;
+        public int pointsPerDraw = 16;
+        public String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Expected --key=value, got " + arg);
+                }
+                switch (kv[0]) {
+                    case "url": config.url = kv[1]; break;
+                    case "clients": config.clients = Integer.parseInt(kv[1]); break;
+                    case "sessions": config.sessions = Integer.parseInt(kv[1]); break;
+                    case "duration": config.durationSeconds = Integer.parseInt(kv[1]); break;
+                    case "warmup": config.warmupSeconds = Integer.parseInt(kv[1]); break;
+                    case "rate": config.rate = Double.parseDouble(kv[1]); break;
+                    case "draw-ratio": config.drawRatio = Double.parseDouble(kv[1]); break;
+                    case "chat-ratio": config.chatRatio = Double.parseDouble(kv[1]); break;
+                    case "points": config.pointsPerDraw = Integer.parseInt(kv[1]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + kv[0]);
+                }
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Outcome of a run
+     */
+    public static final class Report {
+        public final Map<String, Object> values = new LinkedHashMap<>();
+
+        public long get(String key) {
+            return ((Number) values.get(key)).longValue();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder("Whiteboard load test\n");
+            values.forEach((k, v) -> out.append(String.format("  %-26s %s%n", k, v)));
+            return out.toString();
+        }
+    }
+
+    // Shared run state
+    private final Map<String, Long> drawSentAt = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder drawsSent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder skippedSends = new LongAdder();
+    private final LongAdder connectErrors = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+    private final LongAdder socketErrors = new LongAdder();
+    private final LongAdder unexpectedCloses = new LongAdder();
+    private final Map<String, LongAdder> receivedByType = new ConcurrentHashMap<>();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+    private volatile boolean stopping = false;
+
+    public Report run(Config config) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        ScheduledExecutorService ticker = Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "LoadGen-Ticker");
+                t.setDaemon(true);
+                return t;
+            });
+
+        // Connect and JOIN everyone before the clock starts
+        List<Client> clients = new ArrayList<>();
+        List<CompletableFuture<?>> connecting = new ArrayList<>();
+        for (int i = 0; i < config.clients; i++) {
+            String sessionId = "load-" + config.runId + "-" + (i % config.sessions);
+            Client client = new Client(config, "u" + i + "-" + config.runId, sessionId);
+            clients.add(client);
+            connecting.add(client.connect(http).exceptionally(e -> {
+                connectErrors.increment();
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(connecting.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+        long periodNanos = (long) (1_000_000_000L / config.rate);
+        for (Client client : clients) {
+            if (client.socket != null) {
+                ticker.scheduleAtFixedRate(client::tick,
+                    ThreadLocalRandom.current().nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmupSeconds));
+        measureFromNanos = System.nanoTime();
+        long sentBefore = sent.sum();
+        long receivedBefore = received.sum();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds));
+        long measuredNanos = System.nanoTime() - measureFromNanos;
+        long sentDuring = sent.sum() - sentBefore;
+        long receivedDuring = received.sum() - receivedBefore;
+        long connected = clients.stream().filter(c -> c.socket != null).count();
+
+        stopping = true;
+        ticker.shutdownNow();
+        // Let in-flight frames land before closing
+        Thread.sleep(500);
+        for (Client client : clients) {
+            client.close();
+        }
+
+        double seconds = measuredNanos / 1e9;
+        Report report = new Report();
+        report.values.put("clients", config.clients);
+        report.values.put("sessions", config.sessions);
+        report.values.put("connected", connected);
+        report.values.put("durationSeconds", Math.round(seconds * 10) / 10.0);
+        report.values.put("totalRuntimeSeconds", Math.round((System.nanoTime() - start) / 1e8) / 10.0);
+        report.values.put("sentPerSecond", Math.round(sentDuring / seconds));
+        report.values.put("receivedPerSecond", Math.round(receivedDuring / seconds));
+        report.values.put("drawsSent", drawsSent.sum());
+        report.values.put("drawDeliveries", latencies.count());
+        report.values.put("latencyP50Ms", latencies.percentileMs(50));
+        report.values.put("latencyP90Ms", latencies.percentileMs(90));
+        report.values.put("latencyP99Ms", latencies.percentileMs(99));
+        report.values.put("latencyP999Ms", latencies.percentileMs(99.9));
+        report.values.put("latencyMaxMs", latencies.percentileMs(100));
+        report.values.put("bytesReceived", bytesReceived.sum());
+        report.values.put("skippedSends", skippedSends.sum());
+        report.values.put("connectErrors", connectErrors.sum());
+        report.values.put("sendErrors", sendErrors.sum());
+        report.values.put("socketErrors", socketErrors.sum());
+        report.values.put("unexpectedCloses", unexpectedCloses.sum());
+        Map<String, Long> byType = new LinkedHashMap<>();
+        receivedByType.forEach((type, count) -> byType.put(type, count.sum()));
+        report.values.put("receivedByType", byType);
+        return report;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Report report = new WhiteboardLoadGenerator().run(Config.parse(args));
+        System.out.println(report);
+    }
+
+    /**
+     * One simulated user
+     */
+    private final class Client implements WebSocket.Listener {
+        final Config config;
+        final String userId;
+        final String sessionId;
+        final StringBuilder partial = new StringBuilder();
+        final AtomicLong drawCounter = new AtomicLong();
+        volatile WebSocket socket;
+        // java.net.http allows one outstanding send per socket
+        volatile CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+
+        Client(Config config, String userId, String sessionId) {
+            this.config = config;
+            this.userId = userId;
+            this.sessionId = sessionId;
+        }
+
+        CompletableFuture<WebSocket> connect(HttpClient http) {
+            URI uri = URI.create(config.url + String.format(PATH, sessionId));
+            return http.newWebSocketBuilder().buildAsync(uri, this).thenCompose(ws -> {
+                socket = ws;
+                ObjectNode join = message("JOIN");
+                return send(join);
+            });
+        }
+
+        void tick() {
+            if (stopping || socket == null) {
+                return;
+            }
+            if (!lastSend.isDone()) {
+                // The socket has not taken the previous frame yet
+                skippedSends.increment();
+                return;
+            }
+            double roll = ThreadLocalRandom.current().nextDouble();
+            ObjectNode frame;
+            if (roll < config.drawRatio) {
+                frame = draw();
+            } else if (roll < config.drawRatio + config.chatRatio) {
+                frame = message("CHAT_MESSAGE");
+                frame.put("messageContent", "load test message " + System.nanoTime());
+            } else {
+                frame = message("CURSOR_MOVE");
+                ObjectNode position = frame.putObject("position");
+                position.put("x", ThreadLocalRandom.current().nextDouble(2000));
+                position.put("y", ThreadLocalRandom.current().nextDouble(2000));
+            }
+            send(frame);
+        }
+
+        private ObjectNode draw() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String actionId = userId + "-" + drawCounter.incrementAndGet();
+            ObjectNode frame = message("DRAW");
+            frame.put("actionId", actionId);
+            frame.put("tool", "pen");
+            frame.put("color", "#1e88e5");
+            ArrayNode points = frame.putObject("coordinates").putArray("points");
+            double x = random.nextDouble(2000);
+            double y = random.nextDouble(2000);
+            for (int i = 0; i < config.pointsPerDraw; i++) {
+                x += random.nextDouble(-8, 8);
+                y += random.nextDouble(-8, 8);
+                points.addObject().put("x", Math.round(x * 10) / 10.0).put("y", Math.round(y * 10) / 10.0);
+            }
+            drawSentAt.put(actionId, System.nanoTime());
+            drawsSent.increment();
+            return frame;
+        }
+
+        private ObjectNode message(String type) {
+            ObjectNode frame = objectMapper.createObjectNode();
+            frame.put("type", type);
+            frame.put("userId", userId);
+            frame.put("username", userId);
+            return frame;
+        }
+
+        private CompletableFuture<WebSocket> send(ObjectNode frame) {
+            CompletableFuture<WebSocket> future = socket.sendText(frame.toString(), true);
+            lastSend = future;
+            sent.increment();
+            return future.whenComplete((ws, e) -> {
+                if (e != null && !stopping) {
+                    sendErrors.increment();
+                }
+            });
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                onFrame(text);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            bytesReceived.add(data.remaining());
+            webSocket.request(1);
+            return null;
+        }
+
+        private void onFrame(String text) {
+            long now = System.nanoTime();
+            received.increment();
+            bytesReceived.add(text.length());
+            try {
+                JsonNode frame = objectMapper.readTree(text);
+                String type = frame.path("type").asText("UNKNOWN");
+                receivedByType.computeIfAbsent(type, k -> new LongAdder()).increment();
+                if ("DRAW".equals(type) && !userId.equals(frame.path("userId").asText())) {
+                    Long sentAt = drawSentAt.get(frame.path("actionId").asText());
+                    if (sentAt != null && sentAt >= measureFromNanos) {
+                        latencies.record(now - sentAt);
+                    }
+                }
+            } catch (Exception e) {
+                socketErrors.increment();
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (!stopping) {
+                unexpectedCloses.increment();
+            }
+            socket = null;
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (!stopping) {
+                socketErrors.increment();
+            }
+            socket = null;
+        }
+
+        void close() {
+            WebSocket ws = socket;
+            if (ws != null) {
+                ws.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            }
+        }
+    }
+
+    /**
+     * Latency samples in nanoseconds; percentiles are exact over everything recorded
+     */
+    static final class LatencyRecorder {
+        private long[] samples = new long[1 << 16];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized double percentileMs(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            long nanos = sorted[Math.max(0, Math.min(size - 1, index))];
+            return Math.round(nanos / 1e4) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sketchflow.sketchflow_backend.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link WhiteboardLoadGenerator} against an in-process server with in-memory persistence.
+ * Skipped unless enabled, e.g.
+ *
+ *   mvn test -Dtest=WhiteboardLoadTest -Dloadtest=true -Dloadtest.clients=200 -Dloadtest.sessions=20
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(LoadTestPersistenceConfig.class)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class WhiteboardLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void inMemoryPersistence(DynamicPropertyRegistry registry) {
+        for (String property : LoadTestPersistenceConfig.PROPERTIES) {
+            String[] kv = property.split("=", 2);
+            registry.add(kv[0], () -> kv[1]);
+        }
+    }
+
+    @Test
+    public void testDrawFanOutUnderLoad() throws Exception {
+        WhiteboardLoadGenerator.Config config = new WhiteboardLoadGenerator.Config();
+        config.url = "ws://localhost:" + port;
+        config.clients = Integer.getInteger("loadtest.clients", 40);
+        config.sessions = Integer.getInteger("loadtest.sessions", 4);
+        config.durationSeconds = Integer.getInteger("loadtest.duration", 10);
+        config.warmupSeconds = Integer.getInteger("loadtest.warmup", 2);
+        config.rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+
+        WhiteboardLoadGenerator.Report report = new WhiteboardLoadGenerator().run(config);
+        System.out.println(report);
+
+        assertEquals(config.clients, report.get("connected"));
+        assertEquals(0, report.get("connectErrors"));
+        assertTrue(report.get("drawDeliveries") > 0, "no DRAW reached a peer");
+    }
+}
@@ -0,0 +1,101 @@
+package com.sketchflow.sketchflow_backend.render;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.service.CanvasStateStore;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CanvasTileCacheTest {
+
+    private CanvasStateStore canvas;
+    private CanvasTileCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        canvas = mock(CanvasStateStore.class);
+        cache = new CanvasTileCache();
+        ReflectionTestUtils.setField(cache, "canvasStateStore", canvas);
+        ReflectionTestUtils.setField(cache, "tileSize", 100);
+        ReflectionTestUtils.setField(cache, "thumbnailSize", 64);
+        ReflectionTestUtils.setField(cache, "threads", 1);
+        ReflectionTestUtils.setField(cache, "queueCapacity", 8);
+        ReflectionTestUtils.setField(cache, "cacheMaxBytes", 1L << 20);
+        cache.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    public void testTileDrawsStrokesAndIsCachedUntilAStrokeLandsOnIt() throws Exception {
+        DrawingAction stroke = stroke("a1", "#ff0000", 10, 50, 90, 50);
+        when(canvas.getActionsInViewport(eq("board"), any())).thenReturn(List.of(stroke));
+
+        byte[] png = cache.tile("board", 0, 0).get();
+        BufferedImage tile = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(100, tile.getWidth());
+        assertEquals(0xffff0000, tile.getRGB(50, 50));
+        assertEquals(0, tile.getRGB(50, 10) >>> 24);
+        cache.tile("board", 1, 0).get();
+
+        // Served from the cache
+        assertSame(png, cache.tile("board", 0, 0).get());
+
+        // A stroke landing on tile (1, 0) only drops that tile
+        cache.invalidate("board", new BoundingBox(150, 20, 160, 30));
+        assertSame(png, cache.tile("board", 0, 0).get());
+        cache.tile("board", 1, 0).get();
+        verify(canvas, times(3)).getActionsInViewport(eq("board"), any());
+
+        // A clear drops them all
+        cache.invalidate("board", null);
+        cache.tile("board", 0, 0).get();
+        verify(canvas, times(4)).getActionsInViewport(eq("board"), any());
+        assertEquals(2L, cache.getStatistics().get("hits"));
+    }
+
+    @Test
+    public void testThumbnailFitsTheDrawing() throws Exception {
+        when(canvas.getActions("board")).thenReturn(List.of(stroke("a1", "#00f", 1000, 1000, 3000, 1000)));
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(cache.thumbnail("board").get()));
+        assertEquals(64, thumbnail.getWidth());
+        assertEquals(64, thumbnail.getHeight());
+        // Scaled into the square and centered vertically, on white
+        int center = thumbnail.getRGB(32, 32);
+        assertTrue((center & 0xff) > (center >> 16 & 0xff), "stroke is drawn blue");
+        assertEquals(0xffffffff, thumbnail.getRGB(32, 5));
+    }
+
+    private static DrawingAction stroke(String actionId, String color, double x1, double y1, double x2, double y2) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(actionId);
+        action.setSessionId("board");
+        action.setTool("pen");
+        action.setColor(color);
+        action.setCoordinates(new DrawingAction.Coordinates(
+            List.of(new DrawingAction.Point(x1, y1), new DrawingAction.Point(x2, y2)), null, null));
+        action.setProperties(new DrawingAction.Properties(8, false));
+        return action;
+    }
+}
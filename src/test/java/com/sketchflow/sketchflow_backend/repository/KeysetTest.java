@@ -0,0 +1,54 @@
+package com.sketchflow.sketchflow_backend.repository;
+
+import com.sketchflow.sketchflow_backend.dto.KeysetPage;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeysetTest {
+
+    @Test
+    public void testTokenRoundTripAndRejectsGarbage() {
+        Keyset key = new Keyset(LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000), "65f1c0ffee");
+        String token = key.encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        assertEquals(key, Keyset.decode(token));
+        assertEquals(new Keyset(null, "a1"), Keyset.decode(new Keyset(null, "a1").encode()));
+        assertNull(Keyset.decode(""));
+
+        assertThrows(IllegalArgumentException.class, () -> Keyset.decode("not a token"));
+        assertThrows(IllegalArgumentException.class, () -> Keyset.decode("djIKeHl6CmEx"));
+    }
+
+    @Test
+    public void testSeekCriteriaAndPaging() {
+        LocalDateTime t = LocalDateTime.of(2024, 3, 1, 9, 30);
+        // timestamp > t OR (timestamp = t AND _id > "a5")
+        List<?> or = (List<?>) new Keyset(t, "a5").after("timestamp", false).getCriteriaObject().get("$or");
+        assertEquals(new Document("timestamp", new Document("$gt", t)), or.get(0));
+        assertEquals(new Document("$and", List.of(new Document("timestamp", t), new Document("_id", new Document("$gt", "a5")))),
+            or.get(1));
+        List<?> descending = (List<?>) new Keyset(t, "a5").after("timestamp", true).getCriteriaObject().get("$or");
+        assertEquals(new Document("timestamp", new Document("$lt", t)), descending.get(0));
+
+        List<String> rows = new ArrayList<>(List.of("a1", "a2", "a3"));
+        KeysetPage<String> page = KeysetPager.page(rows, 2, null, id -> new Keyset(t, id));
+        assertEquals(List.of("a1", "a2"), page.getItems());
+        assertTrue(page.isHasMore());
+        assertEquals("a2", Keyset.decode(page.getNextCursor()).id());
+
+        KeysetPage<String> last = KeysetPager.page(List.of("a3"), 2, 3L, id -> new Keyset(t, id));
+        assertFalse(last.isHasMore());
+        assertNull(last.getNextCursor());
+        assertEquals(3L, last.getTotal());
+    }
+}
@@ -0,0 +1,93 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.service.ActionDeduplicator.Claim;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ActionDeduplicatorTest {
+
+    private CanvasStateStore canvas;
+    private ActionDeduplicator deduplicator;
+
+    @BeforeEach
+    public void setUp() {
+        canvas = mock(CanvasStateStore.class);
+        deduplicator = new ActionDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "canvasStateStore", canvas);
+        ReflectionTestUtils.setField(deduplicator, "expectedActions", 1000);
+        ReflectionTestUtils.setField(deduplicator, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(deduplicator, "maxSessions", 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        deduplicator.shutdown();
+    }
+
+    @Test
+    public void testRetriesAreDroppedWithoutTheDatabase() throws Exception {
+        seedCanvas("board", "before-restart");
+        when(canvas.contains("board", "before-restart")).thenReturn(true);
+
+        // On the canvas: a duplicate even before the filter is seeded in the background
+        assertEquals(Claim.DUPLICATE, deduplicator.claim("board", "before-restart"));
+        awaitSeeds(1);
+
+        // Claimed a moment ago, possibly not on the canvas yet
+        assertEquals(Claim.NEW, deduplicator.claim("board", "a1"));
+        assertEquals(Claim.DUPLICATE, deduplicator.claim("board", "a1"));
+
+        // Refused before it was stored: released, so the retry goes through
+        deduplicator.release("board", "a1");
+        assertEquals(Claim.NEW, deduplicator.claim("board", "a1"));
+
+        // Fresh ids are answered by the filters; growing past capacity keeps it that way
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(Claim.NEW, deduplicator.claim("board", "stroke-" + i));
+        }
+        assertTrue((long) deduplicator.getStatistics().get("unconfirmedHits") < 100);
+        assertEquals(2L, deduplicator.getStatistics().get("duplicates"));
+    }
+
+    @Test
+    public void testUnconfirmedHitsAreAcceptedWithoutTheDatabase() throws Exception {
+        seedCanvas("board", "persisted");
+        assertEquals(Claim.NEW, deduplicator.claim("board", "warm-up"));
+        awaitSeeds(1);
+
+        // Persisted, no longer cached: the filter hits, but only the unique index can tell
+        assertEquals(Claim.NEW, deduplicator.claim("board", "persisted"));
+        assertEquals(1L, deduplicator.getStatistics().get("unconfirmedHits"));
+
+        // Claimed just now, so a repeat is caught in memory
+        assertEquals(Claim.DUPLICATE, deduplicator.claim("board", "persisted"));
+    }
+
+    private void seedCanvas(String sessionId, String actionId) {
+        doAnswer(invocation -> {
+            Consumer<String> sink = invocation.getArgument(1);
+            sink.accept(actionId);
+            return null;
+        }).when(canvas).forEachActionId(eq(sessionId), any());
+    }
+
+    private void awaitSeeds(long seeds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((long) deduplicator.getStatistics().get("seeds") < seeds && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue((long) deduplicator.getStatistics().get("seeds") >= seeds);
+    }
+}
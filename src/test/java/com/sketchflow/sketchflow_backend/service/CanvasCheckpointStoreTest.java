@@ -0,0 +1,162 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasCheckpointRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CanvasCheckpointStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    public void testLoadIsCheckpointPlusTail() {
+        Map<String, CanvasCheckpoint> saved = new LinkedHashMap<>();
+        CanvasCheckpointRepository checkpoints = checkpointRepository(saved);
+        DrawingActionRepository actions = mock(DrawingActionRepository.class);
+        CanvasCheckpointStore store = store(checkpoints, actions, 2);
+
+        List<DrawingAction> log = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            log.add(action("a" + i, i));
+        }
+        CanvasCheckpoint header = store.write("board", 2, log.subList(0, 5));
+
+        // Three parts of at most two actions, then the header
+        assertEquals(List.of(1, 2, 3, 0), saved.values().stream().map(CanvasCheckpoint::getPart).collect(Collectors.toList()));
+        assertEquals(3, header.getParts());
+        assertEquals(5, header.getActionCount());
+        assertEquals(new Keyset(T0.plusSeconds(4), "a4"), CanvasCheckpointStore.positionOf(header));
+
+        // Only the actions after the checkpoint position are read from the log
+        when(actions.streamTail("board", 2, new Keyset(T0.plusSeconds(4), "a4")))
+            .thenAnswer(invocation -> log.subList(5, 7).stream());
+        when(actions.countTail("board", 2, new Keyset(T0.plusSeconds(4), "a4"))).thenReturn(2L);
+
+        List<DrawingAction> loaded = store.loadActions("board", 2);
+        assertEquals(List.of("a0", "a1", "a2", "a3", "a4", "a5", "a6"),
+            loaded.stream().map(DrawingAction::getActionId).collect(Collectors.toList()));
+        assertEquals(7, store.countActions("board", 2));
+
+        // Another clear epoch sees neither the checkpoint nor the tail
+        assertNull(store.latest("board", 3));
+        when(actions.streamTail("board", 3, null)).thenAnswer(invocation -> Stream.empty());
+        assertEquals(List.of(), store.loadActions("board", 3));
+    }
+
+    @Test
+    public void testPruneKeepsNewestGenerations() {
+        Map<String, CanvasCheckpoint> saved = new LinkedHashMap<>();
+        CanvasCheckpointRepository checkpoints = checkpointRepository(saved);
+        CanvasCheckpointStore store = store(checkpoints, mock(DrawingActionRepository.class), 10);
+        assertNull(store.latest("board", 0));
+
+        long[] generations = new long[4];
+        for (int i = 0; i < 4; i++) {
+            generations[i] = store.write("board", 0, List.of(action("a" + i, i))).getGeneration();
+        }
+        // Generations increase even when written within the same millisecond
+        for (int i = 1; i < 4; i++) {
+            assertTrue(generations[i] > generations[i - 1]);
+        }
+
+        assertEquals(2, store.prune("board", 0, 2));
+        assertEquals(generations[3], store.latest("board", 0).getGeneration());
+        assertEquals(List.of(generations[2], generations[3]),
+            saved.values().stream().map(CanvasCheckpoint::getGeneration).distinct().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testNewGenerationsShareUnchangedParts() {
+        Map<String, CanvasCheckpoint> saved = new LinkedHashMap<>();
+        CanvasCheckpointRepository checkpoints = checkpointRepository(saved);
+        DrawingActionRepository actions = mock(DrawingActionRepository.class);
+        CanvasCheckpointStore store = store(checkpoints, actions, 2);
+
+        List<DrawingAction> log = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            log.add(action("a" + i, i));
+        }
+        CanvasCheckpoint first = store.write("board", 0, log.subList(0, 3));
+        CanvasCheckpoint second = store.write("board", 0, log.subList(0, 7));
+
+        // The first full part is shared; only the changed tail parts are new
+        assertEquals(first.getPartIds().get(0), second.getPartIds().get(0));
+        assertEquals(4, second.getPartIds().size());
+        assertEquals(2 + 1 + 3 + 1, saved.size());
+
+        // Pruning the first generation keeps the part the second still lists
+        assertEquals(1, store.prune("board", 0, 1));
+        assertEquals(4 + 1, saved.size());
+        when(actions.streamTail("board", 0, new Keyset(T0.plusSeconds(6), "a6"))).thenAnswer(invocation -> Stream.empty());
+        assertEquals(List.of("a0", "a1", "a2", "a3", "a4", "a5", "a6"),
+            store.loadActions("board", 0).stream().map(DrawingAction::getActionId).collect(Collectors.toList()));
+    }
+
+    private static CanvasCheckpointStore store(CanvasCheckpointRepository checkpoints, DrawingActionRepository actions, int perPart) {
+        CanvasCheckpointStore store = new CanvasCheckpointStore();
+        ReflectionTestUtils.setField(store, "checkpointRepository", checkpoints);
+        ReflectionTestUtils.setField(store, "actionRepository", actions);
+        ReflectionTestUtils.setField(store, "actionsPerPart", perPart);
+        return store;
+    }
+
+    /**
+     * Mock repository over a map, in save order
+     */
+    private static CanvasCheckpointRepository checkpointRepository(Map<String, CanvasCheckpoint> saved) {
+        CanvasCheckpointRepository repository = mock(CanvasCheckpointRepository.class);
+        doAnswer(invocation -> {
+            CanvasCheckpoint checkpoint = invocation.getArgument(0);
+            saved.put(checkpoint.getCheckpointId(), checkpoint);
+            return checkpoint;
+        }).when(repository).save(any(CanvasCheckpoint.class));
+        when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(saved.get(invocation.<String>getArgument(0))));
+        when(repository.findBySessionIdAndEpochAndPartOrderByGenerationDesc(anyString(), anyLong(), anyInt())).thenAnswer(invocation -> saved.values().stream()
+            .filter(c -> c.getSessionId().equals(invocation.getArgument(0)) && c.getEpoch() == invocation.<Long>getArgument(1)
+                && c.getPart() == invocation.<Integer>getArgument(2))
+            .sorted((x, y) -> Long.compare(y.getGeneration(), x.getGeneration()))
+            .collect(Collectors.toList()));
+        doAnswer(invocation -> {
+            invocation.<Iterable<CanvasCheckpoint>>getArgument(0).forEach(c -> saved.put(c.getCheckpointId(), c));
+            return invocation.getArgument(0);
+        }).when(repository).insert(anyIterable());
+        doAnswer(invocation -> {
+            invocation.<Iterable<String>>getArgument(0).forEach(saved::remove);
+            return null;
+        }).when(repository).deleteAllById(anyIterable());
+        return repository;
+    }
+
+    private static DrawingAction action(String id, int second) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(id);
+        action.setSessionId("board");
+        action.setTimestamp(T0.plusSeconds(second));
+        return action;
+    }
+}
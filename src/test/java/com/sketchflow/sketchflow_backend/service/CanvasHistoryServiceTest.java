@@ -0,0 +1,123 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.CanvasCheckpoint;
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import com.sketchflow.sketchflow_backend.repository.Keyset;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CanvasHistoryServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    public void testStateAtReplaysNearestCheckpointPlusLogUpToTheTime() {
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        CanvasCheckpoint older = header("board:100:0", 100, 2, false);
+        CanvasCheckpoint newer = header("board:200:0", 200, 6, false);
+        when(checkpoints.headers("board", 1)).thenReturn(List.of(newer, older));
+        doAnswer(invocation -> {
+            Consumer<DrawingAction> sink = invocation.getArgument(1);
+            sink.accept(action("a0", 0));
+            sink.accept(action("a1", 1));
+            sink.accept(action("a2", 2));
+            return 3L;
+        }).when(checkpoints).forEachFolded(any(), any());
+
+        // The newer checkpoint folds past T: start from the older one and read the log up to T
+        LocalDateTime at = T0.plusSeconds(4);
+        DrawingActionRepository actions = mock(DrawingActionRepository.class);
+        when(actions.streamRange("board", 1, new Keyset(T0.plusSeconds(2), "a2"), at, false))
+            .thenAnswer(invocation -> Stream.of(action("a3", 3), undo("u1", 4, "a1")));
+
+        CanvasHistoryService service = service(checkpoints, actions, CanvasCheckpointer.Compaction.ARCHIVE);
+        CanvasHistoryService.HistoryState state = service.stateAt("board", at);
+
+        assertEquals("board:100:0", state.checkpointId());
+        assertEquals(List.of("a0", "a2", "a3"), state.actions().stream().map(DrawingAction::getActionId).collect(Collectors.toList()));
+        assertEquals(2, state.replayed());
+        assertEquals(new Keyset(T0.plusSeconds(4), "u1"), state.position());
+        assertTrue(state.complete());
+    }
+
+    @Test
+    public void testDeletedCompactionMakesEarlierStatesIncomplete() {
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        when(checkpoints.headers("board", 1)).thenReturn(List.of(header("board:200:0", 200, 6, true)));
+        DrawingActionRepository actions = mock(DrawingActionRepository.class);
+        when(actions.streamRange("board", 1, null, T0.plusSeconds(3), false)).thenAnswer(invocation -> Stream.empty());
+
+        CanvasHistoryService deleting = service(checkpoints, actions, CanvasCheckpointer.Compaction.DELETE);
+        assertFalse(deleting.stateAt("board", T0.plusSeconds(3)).complete());
+
+        // Archived instead: the log before the checkpoint is read from the archive as well
+        when(actions.streamRange("board", 1, null, T0.plusSeconds(3), true))
+            .thenAnswer(invocation -> Stream.of(action("a0", 0), action("a1", 1)));
+        CanvasHistoryService archiving = service(checkpoints, actions, CanvasCheckpointer.Compaction.ARCHIVE);
+        CanvasHistoryService.HistoryState state = archiving.stateAt("board", T0.plusSeconds(3));
+        assertTrue(state.complete());
+        assertEquals(2, state.actions().size());
+    }
+
+    private static CanvasHistoryService service(CanvasCheckpointStore checkpoints, DrawingActionRepository actions,
+                                                CanvasCheckpointer.Compaction compaction) {
+        CanvasEpochRepository epochs = mock(CanvasEpochRepository.class);
+        when(epochs.findById("board")).thenReturn(Optional.of(new CanvasEpoch("board", 1, T0.minusHours(1), true)));
+        CanvasCheckpointer checkpointer = mock(CanvasCheckpointer.class);
+        when(checkpointer.getCompaction()).thenReturn(compaction);
+
+        CanvasHistoryService service = new CanvasHistoryService();
+        ReflectionTestUtils.setField(service, "checkpointStore", checkpoints);
+        ReflectionTestUtils.setField(service, "checkpointer", checkpointer);
+        ReflectionTestUtils.setField(service, "actionRepository", actions);
+        ReflectionTestUtils.setField(service, "epochRepository", epochs);
+        return service;
+    }
+
+    private static CanvasCheckpoint header(String id, long generation, int upTo, boolean compacted) {
+        CanvasCheckpoint header = new CanvasCheckpoint();
+        header.setCheckpointId(id);
+        header.setSessionId("board");
+        header.setGeneration(generation);
+        header.setEpoch(1);
+        header.setUpToTimestamp(T0.plusSeconds(upTo));
+        header.setUpToActionId("a" + upTo);
+        header.setCompacted(compacted);
+        return header;
+    }
+
+    private static DrawingAction action(String actionId, int second) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(actionId);
+        action.setSessionId("board");
+        action.setEpoch(1);
+        action.setActionType("draw");
+        action.setTimestamp(T0.plusSeconds(second));
+        return action;
+    }
+
+    private static DrawingAction undo(String actionId, int second, String targetActionId) {
+        DrawingAction action = action(actionId, second);
+        action.setActionType(CanvasStateStore.UNDO);
+        action.setTargetActionId(targetActionId);
+        return action;
+    }
+}
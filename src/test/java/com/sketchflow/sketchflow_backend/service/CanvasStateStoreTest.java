@@ -0,0 +1,153 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.cluster.WhiteboardEventBus;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.CanvasEpoch;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.CanvasEpochRepository;
+import com.sketchflow.sketchflow_backend.spatial.BoundingBox;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CanvasStateStoreTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClearStartsNewEpochAndDropsStaleActions() {
+        CanvasEpochRepository epochs = mock(CanvasEpochRepository.class);
+        when(epochs.findById("board")).thenReturn(Optional.of(new CanvasEpoch("board", 4, null, true)));
+        when(epochs.incrementEpoch("board")).thenReturn(5L);
+
+        List<WebSocketMessage> published = new ArrayList<>();
+        AtomicReference<BiConsumer<String, WebSocketMessage>> remote = new AtomicReference<>();
+        WhiteboardEventBus bus = mock(WhiteboardEventBus.class);
+        doAnswer(invocation -> published.add(invocation.getArgument(1))).when(bus).publish(eq("board"), any());
+        doAnswer(invocation -> {
+            remote.set(invocation.getArgument(0));
+            return null;
+        }).when(bus).addListener(any());
+
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        CanvasStateStore store = new CanvasStateStore();
+        ReflectionTestUtils.setField(store, "epochRepository", epochs);
+        ReflectionTestUtils.setField(store, "eventBus", bus);
+        ReflectionTestUtils.setField(store, "checkpointStore", checkpoints);
+        store.start();
+        try {
+            // Local appends are stamped with the session's epoch, loaded once
+            DrawingAction before = action("a1", 1);
+            store.append(before);
+            assertEquals(4, before.getEpoch());
+
+            // The clear is one epoch increment; nothing is deleted and nothing has to be hydrated
+            assertEquals(5, store.clear("board"));
+            assertEquals(5L, published.get(published.size() - 1).getEpoch());
+            assertEquals(List.of(), store.getActions("board"));
+            verify(checkpoints, never()).loadActions(eq("board"), anyLong());
+
+            // A stroke drawn before the clear but delivered after it is dropped
+            remote.get().accept("board", appendEvent(action("a2", 2), 4));
+            DrawingAction after = action("a3", 3);
+            store.append(after);
+            assertEquals(5, after.getEpoch());
+            assertEquals(List.of("a3"), ids(store.getActions("board")));
+
+            // A stroke from a newer epoch implies a clear this node has not seen yet
+            remote.get().accept("board", appendEvent(action("a4", 4), 6));
+            assertEquals(List.of("a4"), ids(store.getActions("board")));
+            assertEquals(6, store.getEpoch("board"));
+
+            // ...and that late clear is then ignored
+            WebSocketMessage lateClear = new WebSocketMessage();
+            lateClear.setType("CANVAS_CLEAR");
+            lateClear.setEpoch(6L);
+            remote.get().accept("board", lateClear);
+            assertEquals(List.of("a4"), ids(store.getActions("board")));
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void testUndoTombstonesHideAndRestoreTheirTargets() {
+        CanvasEpochRepository epochs = mock(CanvasEpochRepository.class);
+        when(epochs.findById("board")).thenReturn(Optional.empty());
+
+        // The persisted log already holds an undo of a1
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        when(checkpoints.loadActions("board", 0)).thenReturn(
+            new ArrayList<>(List.of(action("a1", 1), tombstone("t1", 2, CanvasStateStore.UNDO, "a1"))));
+
+        CanvasStateStore store = new CanvasStateStore();
+        ReflectionTestUtils.setField(store, "epochRepository", epochs);
+        ReflectionTestUtils.setField(store, "eventBus", mock(WhiteboardEventBus.class));
+        ReflectionTestUtils.setField(store, "checkpointStore", checkpoints);
+        store.start();
+        try {
+            store.append(action("a2", 3));
+            assertEquals(List.of("a2"), ids(store.getActions("board")));
+            assertEquals(1, store.getActionCount("board"));
+
+            // Redo restores a1 in its original place, in the list and in the spatial index
+            store.append(tombstone("t2", 4, CanvasStateStore.REDO, "a1"));
+            assertEquals(List.of("a1", "a2"), ids(store.getActions("board")));
+            assertEquals(List.of("a1", "a2"), ids(store.getActionsInViewport("board", new BoundingBox(0, 0, 10, 10))));
+            assertEquals(2, store.getActionCount("board"));
+
+            // Undo hides a2 everywhere, paging included
+            store.append(tombstone("t3", 5, CanvasStateStore.UNDO, "a2"));
+            assertEquals(List.of("a1"), ids(store.getActionsInViewport("board", new BoundingBox(0, 0, 10, 10))));
+            assertEquals(List.of(), ids(store.getActions("board", 1, 10)));
+
+            // The raw log keeps everything for checkpoints and export
+            assertEquals(List.of("a1", "t1", "a2", "t2", "t3"), ids(store.peek("board").actions()));
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    private static DrawingAction tombstone(String id, int second, String type, String targetId) {
+        DrawingAction tombstone = action(id, second);
+        tombstone.setActionType(type);
+        tombstone.setTargetActionId(targetId);
+        return tombstone;
+    }
+
+    private static WebSocketMessage appendEvent(DrawingAction action, long epoch) {
+        action.setEpoch(epoch);
+        WebSocketMessage event = new WebSocketMessage();
+        event.setType("CANVAS_APPEND");
+        event.setActions(List.of(action));
+        return event;
+    }
+
+    private static DrawingAction action(String id, int second) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(id);
+        action.setSessionId("board");
+        action.setTimestamp(LocalDateTime.of(2024, 1, 1, 12, 0).plusSeconds(second));
+        return action;
+    }
+
+    private static List<String> ids(List<DrawingAction> actions) {
+        return actions.stream().map(DrawingAction::getActionId).collect(Collectors.toList());
+    }
+}
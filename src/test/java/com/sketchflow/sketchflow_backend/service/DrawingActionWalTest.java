@@ -0,0 +1,122 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.config.MongoConfig;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DrawingActionWalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testUnreleasedActionsAreRecoveredAfterRestart() throws Exception {
+        DrawingActionWal wal = wal(4096);
+        assertTrue(wal.recover().isEmpty());
+        long first = wal.append(action("a1"));
+        wal.append(action("a2"));
+        // Roll over into further segments; a1..a2 stay pending in the first one
+        for (int i = 3; i <= 40; i++) {
+            long segment = wal.append(action("a" + i));
+            if (segment != first) {
+                wal.release(segment, 1);
+            }
+        }
+        wal.close();
+
+        DrawingActionWal restarted = wal(4096);
+        List<DrawingAction> recovered = restarted.recover();
+        assertTrue(recovered.size() >= 2);
+        assertEquals("a1", recovered.get(0).getActionId());
+        assertEquals("a2", recovered.get(1).getActionId());
+        assertEquals(3.5, recovered.get(0).getCoordinates().getPoints().get(1).getX());
+
+        restarted.discardRecovered();
+        restarted.close();
+        assertEquals(1, segmentFiles());
+    }
+
+    @Test
+    public void testReleasingEverythingRewindsTheActiveSegment() throws Exception {
+        DrawingActionWal wal = wal(1 << 16);
+        wal.recover();
+        long segment = wal.append(action("a1"));
+        wal.append(action("a2"));
+        wal.release(segment, 2);
+        wal.append(action("a3"));
+        wal.close();
+
+        List<DrawingAction> recovered = wal(1 << 16).recover();
+        assertEquals(1, recovered.size());
+        assertEquals("a3", recovered.get(0).getActionId());
+    }
+
+    @Test
+    public void testTornRecordEndsTheSegment() throws Exception {
+        DrawingActionWal wal = wal(1 << 16);
+        wal.recover();
+        wal.append(action("a1"));
+        wal.append(action("a2"));
+        wal.close();
+
+        // Corrupt the payload of the second record
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            int second = 8 + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), second + 8 + 2);
+        }
+
+        DrawingActionWal restarted = wal(1 << 16);
+        List<DrawingAction> recovered = restarted.recover();
+        assertEquals(1, recovered.size());
+        assertEquals(1, restarted.getStatistics().get("corruptTails"));
+    }
+
+    private DrawingActionWal wal(int segmentBytes) {
+        DrawingActionWal wal = new DrawingActionWal();
+        ReflectionTestUtils.setField(wal, "objectMapper", new MongoConfig().objectMapper());
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "directory", dir.toString());
+        ReflectionTestUtils.setField(wal, "segmentBytes", segmentBytes);
+        return wal;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static DrawingAction action(String actionId) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(actionId);
+        action.setSessionId("board");
+        action.setUserId("user-1");
+        action.setTool("pen");
+        action.setActionType("DRAW");
+        action.setTimestamp(LocalDateTime.now());
+        List<DrawingAction.Point> points = List.of(new DrawingAction.Point(1, 2), new DrawingAction.Point(3.5, 4));
+        action.setCoordinates(new DrawingAction.Coordinates(points, points.get(0), points.get(1)));
+        return action;
+    }
+}
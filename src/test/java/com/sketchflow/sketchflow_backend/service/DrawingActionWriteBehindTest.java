@@ -0,0 +1,211 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.repository.DrawingActionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DrawingActionWriteBehindTest {
+
+    @Test
+    public void testBatchesAreFlushedBeforeBarrierRuns() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        DrawingActionRepository repository = mock(DrawingActionRepository.class);
+        doAnswer(invocation -> {
+            Collection<DrawingAction> batch = invocation.getArgument(0);
+            batch.forEach(a -> written.add(a.getActionId()));
+            return List.of();
+        }).when(repository).insertUnordered(any());
+
+        DrawingActionWriteBehind writeBehind = writeBehind(repository, 100, 60_000, 10_000, "drop-newest");
+        try {
+            for (int i = 0; i < 250; i++) {
+                assertTrue(writeBehind.submit(action("board", "a" + i)));
+            }
+            // Two full batches went out on size; the barrier flushes the partial third one first
+            List<String> seenByBarrier = new ArrayList<>();
+            writeBehind.afterPending("board", () -> seenByBarrier.addAll(written)).get(5, TimeUnit.SECONDS);
+            assertEquals(250, seenByBarrier.size());
+            assertEquals("a0", seenByBarrier.get(0));
+            assertEquals("a249", seenByBarrier.get(249));
+
+            Map<String, Object> stats = writeBehind.getStatistics();
+            assertEquals(250L, stats.get("written"));
+            assertEquals(2L, stats.get("sizeFlushes"));
+            assertEquals(0, stats.get("queueDepth"));
+        } finally {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullPartitionDropsNewestAndCountsIt() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DrawingActionRepository repository = mock(DrawingActionRepository.class);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).when(repository).insertUnordered(any());
+
+        // Two slots, flushed one by one: the first write blocks, the second fills the queue
+        DrawingActionWriteBehind writeBehind = writeBehind(repository, 1, 0, 2, "drop-newest");
+        try {
+            assertTrue(writeBehind.submit(action("board", "a0")));
+            assertTrue(writeBehind.submit(action("board", "a1")));
+            assertFalse(writeBehind.submit(action("board", "a2")));
+            assertEquals(1L, writeBehind.getStatistics().get("dropped"));
+        } finally {
+            release.countDown();
+            writeBehind.shutdown();
+        }
+        assertEquals(2L, writeBehind.getStatistics().get("written"));
+    }
+
+    @Test
+    public void testDropOldestTakesBackTheEvictedAction() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DrawingActionRepository repository = mock(DrawingActionRepository.class);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        }).when(repository).insertUnordered(any());
+
+        DrawingActionWriteBehind writeBehind = writeBehind(repository, 1, 0, 2, "drop-oldest");
+        List<String> discarded = Collections.synchronizedList(new ArrayList<>());
+        writeBehind.setDiscardListener(a -> discarded.add(a.getActionId()));
+        try {
+            assertTrue(writeBehind.submit(action("board", "a0")));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            assertTrue(writeBehind.submit(action("board", "a1")));
+
+            // a1 was accepted and is on the canvas: evicting it must take it back
+            assertTrue(writeBehind.submit(action("board", "a2")));
+            assertEquals(List.of("a1"), discarded);
+            assertEquals(1L, writeBehind.getStatistics().get("dropped"));
+        } finally {
+            release.countDown();
+            writeBehind.shutdown();
+        }
+        assertEquals(2L, writeBehind.getStatistics().get("written"));
+    }
+
+    @Test
+    public void testFullPartitionSpillsWithoutBlockingTheCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        DrawingActionRepository repository = mock(DrawingActionRepository.class);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            Collection<DrawingAction> batch = invocation.getArgument(0);
+            batch.forEach(a -> written.add(a.getActionId()));
+            return List.of();
+        }).when(repository).insertUnordered(any());
+
+        // Database stalled: the partition fills, then the spill writer, then actions are dropped
+        DrawingActionWriteBehind writeBehind = writeBehind(repository, 1, 0, 2, "spill");
+        try {
+            long started = System.nanoTime();
+            for (int i = 0; i < 4; i++) {
+                assertTrue(writeBehind.submit(action("board", "a" + i)));
+            }
+            assertFalse(writeBehind.submit(action("board", "a4")));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1000);
+
+            // A barrier still runs after the spilled actions are written
+            CompletableFuture<Void> barrier = writeBehind.afterPending("board", () -> assertEquals(4, written.size()));
+            release.countDown();
+            barrier.get(5, TimeUnit.SECONDS);
+            assertEquals(2L, writeBehind.getStatistics().get("spilled"));
+        } finally {
+            release.countDown();
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void testIdStoredByAnotherSessionIsDiscarded() throws Exception {
+        DrawingAction stored = action("other", "taken");
+        DrawingActionRepository repository = mock(DrawingActionRepository.class);
+        doAnswer(invocation -> {
+            List<DrawingAction> skipped = new ArrayList<>();
+            for (DrawingAction a : invocation.<Collection<DrawingAction>>getArgument(0)) {
+                if (a.getActionId().equals("taken") || a.getActionId().equals("retried")) {
+                    skipped.add(a);
+                }
+            }
+            return skipped;
+        }).when(repository).insertUnordered(any());
+        when(repository.findAllById(any())).thenReturn(List.of(stored, action("board", "retried")));
+
+        DrawingActionWriteBehind writeBehind = writeBehind(repository, 10, 60_000, 100, "drop-newest");
+        List<String> discarded = Collections.synchronizedList(new ArrayList<>());
+        writeBehind.setDiscardListener(a -> discarded.add(a.getSessionId() + "/" + a.getActionId()));
+        try {
+            writeBehind.submit(action("board", "fresh"));
+            writeBehind.submit(action("board", "retried"));
+            writeBehind.submit(action("board", "taken"));
+            writeBehind.afterPending("board", () -> { }).get(5, TimeUnit.SECONDS);
+
+            // The retry is just skipped; the id of another session's action is taken back
+            assertEquals(List.of("board/taken"), discarded);
+            Map<String, Object> stats = writeBehind.getStatistics();
+            assertEquals(1L, stats.get("written"));
+            assertEquals(2L, stats.get("duplicates"));
+            assertEquals(1L, stats.get("conflicts"));
+
+            // Only the row actually inserted is counted
+            SessionStatsService sessionStats = (SessionStatsService) ReflectionTestUtils.getField(writeBehind, "sessionStats");
+            verify(sessionStats).recordPersisted(argThat(actions -> actions.size() == 1
+                && actions.get(0).getActionId().equals("fresh")));
+        } finally {
+            writeBehind.shutdown();
+        }
+    }
+
+    private static DrawingActionWriteBehind writeBehind(DrawingActionRepository repository, int batchSize,
+                                                        long flushIntervalMs, int capacity, String policy) {
+        DrawingActionWriteBehind writeBehind = new DrawingActionWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "actionRepository", repository);
+        // Write-ahead log left disabled
+        ReflectionTestUtils.setField(writeBehind, "wal", new DrawingActionWal());
+        ReflectionTestUtils.setField(writeBehind, "sessionStats", mock(SessionStatsService.class));
+        ReflectionTestUtils.setField(writeBehind, "writerCount", 1);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMs", flushIntervalMs);
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", capacity);
+        ReflectionTestUtils.setField(writeBehind, "overflowPolicyName", policy);
+        ReflectionTestUtils.setField(writeBehind, "offerTimeoutMs", 0L);
+        ReflectionTestUtils.setField(writeBehind, "maxRetries", 0);
+        ReflectionTestUtils.setField(writeBehind, "retryBackoffMs", 0L);
+        writeBehind.start();
+        return writeBehind;
+    }
+
+    private static DrawingAction action(String sessionId, String actionId) {
+        DrawingAction action = new DrawingAction();
+        action.setSessionId(sessionId);
+        action.setActionId(actionId);
+        return action;
+    }
+}
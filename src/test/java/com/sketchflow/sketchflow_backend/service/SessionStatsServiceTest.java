@@ -0,0 +1,90 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import com.sketchflow.sketchflow_backend.model.SessionStats;
+import com.sketchflow.sketchflow_backend.repository.SessionStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionStatsServiceTest {
+
+    @Test
+    public void testPersistedActionsAreCountedInMemoryThenFlushedPerEpoch() {
+        SessionStatsRepository repository = mock(SessionStatsRepository.class);
+        when(repository.findById("board")).thenReturn(Optional.of(stats("board", 2, 10)));
+        when(repository.addActions(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> invocation.getArgument(2));
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        SessionStatsService service = service(repository, checkpoints, mock(CanvasStateStore.class));
+
+        service.recordPersisted(List.of(action("board", 2), action("board", 2), action("board", 1), action("other", 0)));
+
+        // Read without counting drawing_actions: the document plus what is not flushed yet
+        assertEquals(12, service.getActionCount("board"));
+        verify(checkpoints, never()).countActions(anyString(), anyLong());
+
+        service.flush();
+        verify(repository).addActions("board", 2, 2);
+        verify(repository).addActions("board", 1, 1);
+        verify(repository).addActions("other", 0, 1);
+        verify(repository).addActions(SessionStats.GLOBAL_ID, 0, 4);
+        assertEquals(0L, service.getStatistics().get("pendingActions"));
+    }
+
+    @Test
+    public void testReconciliationCorrectsDriftedCounters() {
+        SessionStatsRepository repository = mock(SessionStatsRepository.class);
+        when(repository.findByDirtyTrueAndUpdatedAtBefore(any(), any())).thenReturn(List.of(stats("board", 3, 7)));
+        when(repository.compareAndSetCount("board", 3, 7, 5)).thenReturn(true);
+        when(repository.findById(SessionStats.GLOBAL_ID)).thenReturn(Optional.of(stats(SessionStats.GLOBAL_ID, 0, 20)));
+        when(repository.sumSessionCounts()).thenReturn(18L);
+        when(repository.compareAndSetCount(SessionStats.GLOBAL_ID, 0, 20, 18)).thenReturn(true);
+        CanvasCheckpointStore checkpoints = mock(CanvasCheckpointStore.class);
+        when(checkpoints.countActions("board", 3)).thenReturn(5L);
+        CanvasStateStore canvas = mock(CanvasStateStore.class);
+        when(canvas.getEpoch("board")).thenReturn(3L);
+        SessionStatsService service = service(repository, checkpoints, canvas);
+
+        service.reconcile();
+
+        // The session is recounted from checkpoint plus tail, the global total from the session counters
+        verify(repository).compareAndSetCount("board", 3, 7, 5);
+        verify(repository).addActions(SessionStats.GLOBAL_ID, 0, -2);
+        verify(repository).compareAndSetCount(SessionStats.GLOBAL_ID, 0, 20, 18);
+        assertEquals(2L, service.getStatistics().get("corrections"));
+    }
+
+    private static SessionStatsService service(SessionStatsRepository repository, CanvasCheckpointStore checkpoints,
+                                               CanvasStateStore canvas) {
+        SessionStatsService service = new SessionStatsService();
+        ReflectionTestUtils.setField(service, "statsRepository", repository);
+        ReflectionTestUtils.setField(service, "checkpointStore", checkpoints);
+        ReflectionTestUtils.setField(service, "canvasStateStore", canvas);
+        ReflectionTestUtils.setField(service, "quietMs", 60000L);
+        ReflectionTestUtils.setField(service, "reconcileBatchSize", 200);
+        return service;
+    }
+
+    private static SessionStats stats(String sessionId, long epoch, long count) {
+        return new SessionStats(sessionId, epoch, count, true, LocalDateTime.now().minusMinutes(5), null);
+    }
+
+    private static DrawingAction action(String sessionId, long epoch) {
+        DrawingAction action = new DrawingAction();
+        action.setSessionId(sessionId);
+        action.setEpoch(epoch);
+        return action;
+    }
+}
@@ -0,0 +1,58 @@
+package com.sketchflow.sketchflow_backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UndoHistoryTest {
+
+    @Test
+    public void testUndoAndRedoMoveTheLatestEntry() {
+        UndoHistory history = history();
+        history.record("board", "alice", "a1", 0);
+        history.record("board", "alice", "a2", 0);
+        history.record("board", "bob", "b1", 0);
+
+        assertEquals("a2", history.undo("board", "alice", 0));
+        assertEquals("a1", history.undo("board", "alice", 0));
+        assertNull(history.undo("board", "alice", 0));
+        assertEquals("a1", history.redo("board", "alice", 0));
+
+        // A clear drops the user's stale entries
+        assertNull(history.undo("board", "alice", 1));
+        assertNull(history.redo("board", "alice", 1));
+        assertEquals("b1", history.undo("board", "bob", 0));
+    }
+
+    @Test
+    public void testRefusedUndoIsPutBack() {
+        UndoHistory history = history();
+        history.record("board", "alice", "a1", 0);
+        history.record("board", "alice", "a2", 0);
+
+        // The tombstone for a2 could not be saved: a2 is still the next thing to undo
+        assertEquals("a2", history.undo("board", "alice", 0));
+        history.revert("board", "alice", "a2", true);
+        assertNull(history.redo("board", "alice", 0));
+        assertEquals("a2", history.undo("board", "alice", 0));
+
+        // Same for a refused redo
+        assertEquals("a2", history.redo("board", "alice", 0));
+        history.revert("board", "alice", "a2", false);
+        assertEquals("a2", history.redo("board", "alice", 0));
+
+        // Only the entry on top is taken back
+        history.revert("board", "alice", "a1", true);
+        assertEquals("a2", history.undo("board", "alice", 0));
+        assertEquals("a1", history.undo("board", "alice", 0));
+        assertEquals(2L, history.getStatistics().get("reverts"));
+    }
+
+    private static UndoHistory history() {
+        UndoHistory history = new UndoHistory();
+        ReflectionTestUtils.setField(history, "maxDepth", 100);
+        return history;
+    }
+}
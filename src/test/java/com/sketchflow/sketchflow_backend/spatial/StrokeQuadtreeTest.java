@@ -0,0 +1,103 @@
+package com.sketchflow.sketchflow_backend.spatial;
+
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StrokeQuadtreeTest {
+
+    @Test
+    public void testQueryMatchesBruteForce() {
+        StrokeQuadtree tree = new StrokeQuadtree();
+        Random random = new Random(7);
+        List<DrawingAction> all = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Spread well beyond the initial root so it has to grow in every direction
+            double x = (random.nextDouble() - 0.5) * 40000;
+            double y = (random.nextDouble() - 0.5) * 40000;
+            DrawingAction action = stroke("a" + i, x, y, x + random.nextDouble() * 300, y + random.nextDouble() * 300);
+            all.add(action);
+            tree.insert(action);
+        }
+
+        BoundingBox viewport = new BoundingBox(-1000, -800, 1200, 900);
+        Set<String> expected = all.stream()
+                .filter(a -> BoundingBox.of(a).intersects(viewport))
+                .map(DrawingAction::getActionId)
+                .collect(Collectors.toSet());
+        Set<String> actual = tree.query(viewport).stream()
+                .map(DrawingAction::getActionId)
+                .collect(Collectors.toSet());
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRemoveReplaceAndUnbounded() {
+        StrokeQuadtree tree = new StrokeQuadtree();
+        tree.insert(stroke("a", 0, 0, 10, 10));
+        tree.insert(stroke("b", 500, 500, 510, 510));
+        DrawingAction text = new DrawingAction();
+        text.setActionId("c");
+        tree.insert(text);
+
+        BoundingBox origin = new BoundingBox(-5, -5, 5, 5);
+        assertEquals(Set.of("a", "c"), ids(tree.query(origin)));
+
+        // Re-inserting an id moves it
+        tree.insert(stroke("a", 1000, 1000, 1010, 1010));
+        assertEquals(Set.of("c"), ids(tree.query(origin)));
+
+        assertTrue(tree.remove("b"));
+        assertEquals(2, tree.size());
+        assertEquals(Set.of("a", "c"), ids(tree.query(new BoundingBox(0, 0, 2000, 2000))));
+    }
+
+    @Test
+    public void testUnusableLineWidthIsClamped() {
+        StrokeQuadtree tree = new StrokeQuadtree();
+        for (double lineWidth : new double[]{Double.POSITIVE_INFINITY, Double.NaN, 1e300, -5}) {
+            DrawingAction action = stroke("w" + lineWidth, 0, 0, 10, 10);
+            action.setProperties(new DrawingAction.Properties(lineWidth, false));
+            tree.insert(action);
+        }
+        assertEquals(4, tree.size());
+        assertEquals(0.0, BoundingBox.of(tree.query(new BoundingBox(0, 0, 1, 1)).stream()
+            .filter(a -> a.getActionId().equals("wNaN")).findFirst().orElseThrow()).getMinX());
+    }
+
+    @Test
+    public void testParseRejectsMalformedBox() {
+        assertEquals("1.0,2.0,3.0,4.0", BoundingBox.parse("1,2,3,4").toString());
+        assertThrows(IllegalArgumentException.class, () -> BoundingBox.parse("1,2,3"));
+        assertThrows(IllegalArgumentException.class, () -> BoundingBox.parse("a,2,3,4"));
+        assertThrows(IllegalArgumentException.class, () -> BoundingBox.parse("5,2,3,4"));
+    }
+
+    private DrawingAction stroke(String id, double x1, double y1, double x2, double y2) {
+        DrawingAction action = new DrawingAction();
+        action.setActionId(id);
+        action.setCoordinates(new DrawingAction.Coordinates(
+                List.of(new DrawingAction.Point(x1, y1), new DrawingAction.Point(x2, y2)), null, null));
+        return action;
+    }
+
+    private Set<String> ids(List<DrawingAction> actions) {
+        Set<String> ids = new HashSet<>();
+        for (DrawingAction action : actions) {
+            ids.add(action.getActionId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,100 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SlowConsumerPolicyTest {
+
+    @Test
+    public void testBlockedPeerEscalatesFromDegradedToResyncToDisconnect() throws Exception {
+        SlowConsumerPolicy policy = policy();
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("slow");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            OutboundMessageQueue queue = new OutboundMessageQueue(session, writer, 1000, 10);
+            long now = System.currentTimeMillis();
+            assertEquals(SlowConsumerPolicy.Level.NORMAL, policy.evaluate(queue, now));
+
+            // Pending bytes alone degrade the peer
+            for (int i = 0; i < 20; i++) {
+                queue.enqueue(new TextMessage("x".repeat(100)));
+            }
+            assertTrue(queue.getPendingBytes() >= 2000);
+            SlowConsumerPolicy.Level level = policy.evaluate(queue, now);
+            assertEquals(SlowConsumerPolicy.Level.DEGRADED, level);
+            policy.transition(queue, level, now);
+            assertTrue(queue.isDegraded());
+
+            // The stuck send makes it lag past the resync threshold
+            Thread.sleep(120);
+            level = policy.evaluate(queue, now);
+            assertEquals(SlowConsumerPolicy.Level.RESYNC, level);
+            policy.transition(queue, level, now);
+            assertEquals(20, queue.clear() + 1);
+            assertEquals(SlowConsumerPolicy.Level.DEGRADED, queue.getLevel());
+
+            // Within the grace period after a resync it is not resynced again
+            assertEquals(SlowConsumerPolicy.Level.DEGRADED, policy.evaluate(queue, now + 50));
+
+            // Once resyncs stop helping it is disconnected
+            policy.transition(queue, SlowConsumerPolicy.Level.RESYNC, now + 200);
+            assertEquals(SlowConsumerPolicy.Level.DISCONNECT, policy.evaluate(queue, now + 400));
+        } finally {
+            release.countDown();
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDegradedPeerRecoversAfterCatchingUp() {
+        SlowConsumerPolicy policy = policy();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("recovering");
+        when(session.isOpen()).thenReturn(true);
+
+        OutboundMessageQueue queue = new OutboundMessageQueue(session, Runnable::run, 1000, 10);
+        long now = System.currentTimeMillis();
+        policy.transition(queue, SlowConsumerPolicy.Level.DEGRADED, now);
+
+        // Caught up, but not yet degraded for the minimum time
+        assertEquals(SlowConsumerPolicy.Level.DEGRADED, policy.evaluate(queue, now));
+        assertEquals(SlowConsumerPolicy.Level.NORMAL, policy.evaluate(queue, now + 1000));
+        policy.transition(queue, SlowConsumerPolicy.Level.NORMAL, now + 1000);
+        assertEquals(1L, policy.getStatistics().get("recovered"));
+    }
+
+    private SlowConsumerPolicy policy() {
+        SlowConsumerPolicy policy = new SlowConsumerPolicy();
+        ReflectionTestUtils.setField(policy, "degradePendingBytes", 1000L);
+        ReflectionTestUtils.setField(policy, "degradeLagMs", 50L);
+        ReflectionTestUtils.setField(policy, "resyncPendingBytes", 1_000_000L);
+        ReflectionTestUtils.setField(policy, "resyncLagMs", 100L);
+        ReflectionTestUtils.setField(policy, "disconnectLagMs", 60_000L);
+        ReflectionTestUtils.setField(policy, "maxResyncs", 2);
+        ReflectionTestUtils.setField(policy, "resyncWindowMs", 60_000L);
+        ReflectionTestUtils.setField(policy, "minDegradedMs", 500L);
+        return policy;
+    }
+}
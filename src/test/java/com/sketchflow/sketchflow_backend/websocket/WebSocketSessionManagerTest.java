@@ -0,0 +1,97 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebSocketSessionManagerTest {
+
+    @Test
+    public void testSnapshotIsReusedUntilMembershipChanges() {
+        WebSocketSessionManager manager = new WebSocketSessionManager();
+        WebSocketSession a = connection("a");
+        manager.addSession("board", a, "u1");
+        manager.addSession("board", connection("b"), "u2");
+
+        SessionRegistry registry = manager.getRegistry("board");
+        WebSocketSession[] first = registry.snapshot();
+        assertEquals(2, first.length);
+        assertSame(first, registry.snapshot());
+
+        WebSocketSession c = connection("c");
+        manager.addSession("board", c, "u3");
+        assertEquals(3, registry.snapshot().length);
+
+        manager.removeSession(c);
+        assertEquals(2, registry.snapshot().length);
+        assertEquals("u1", manager.getUserId(a));
+        assertEquals("board", manager.getWhiteboardSessionId(a));
+    }
+
+    @Test
+    public void testConcurrentChurnLeavesConsistentRegistries() throws Exception {
+        WebSocketSessionManager manager = new WebSocketSessionManager();
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        List<WebSocketSession> survivors = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            WebSocketSession survivor = connection("survivor-" + t);
+            survivors.add(survivor);
+            int thread = t;
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        // Few sessions so joins, leaves and registry retirement race on the same keys
+                        String board = "board-" + (i % 3);
+                        WebSocketSession ws = connection("t" + thread + "-" + i);
+                        manager.addSession(board, ws, "user");
+                        manager.removeSession(ws);
+                    }
+                    manager.addSession("board-" + (thread % 3), survivor, "user");
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        int total = 0;
+        for (int b = 0; b < 3; b++) {
+            int count = manager.getConnectionCount("board-" + b);
+            assertEquals(count, manager.getRegistry("board-" + b).snapshot().length);
+            total += count;
+        }
+        assertEquals(threads, total);
+
+        for (WebSocketSession survivor : survivors) {
+            manager.removeSession(survivor);
+        }
+        for (int b = 0; b < 3; b++) {
+            assertNull(manager.getRegistry("board-" + b));
+        }
+    }
+
+    private WebSocketSession connection(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,153 @@
+package com.sketchflow.sketchflow_backend.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sketchflow.sketchflow_backend.dto.WebSocketMessage;
+import com.sketchflow.sketchflow_backend.model.DrawingAction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WhiteboardBinaryCodecTest {
+
+    @Test
+    public void testDrawRoundTrip() {
+        List<DrawingAction.Point> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add(new DrawingAction.Point(100 + i * 1.5, 250 - i * 0.3));
+        }
+        WebSocketMessage draw = new WebSocketMessage();
+        draw.setType("DRAW");
+        draw.setUserId("user-1");
+        draw.setActionId("action-1");
+        draw.setTool("pen");
+        draw.setColor("#3B82F6");
+        draw.setTimestamp(1700000000000L);
+        draw.setSeq(1700000000000123L);
+        draw.setCoordinates(new DrawingAction.Coordinates(points,
+                new DrawingAction.Point(-12.5, 3), new DrawingAction.Point(400, 190.1)));
+
+        WebSocketMessage decoded = WhiteboardBinaryCodec.decode(ByteBuffer.wrap(WhiteboardBinaryCodec.encode(draw)));
+
+        assertEquals("DRAW", decoded.getType());
+        assertEquals("user-1", decoded.getUserId());
+        assertEquals("action-1", decoded.getActionId());
+        assertEquals("pen", decoded.getTool());
+        assertEquals("#3B82F6", decoded.getColor());
+        assertEquals(1700000000000L, decoded.getTimestamp());
+        assertEquals(1700000000000123L, decoded.getSeq());
+        assertEquals(points.size(), decoded.getCoordinates().getPoints().size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getX(), decoded.getCoordinates().getPoints().get(i).getX(), 0.05);
+            assertEquals(points.get(i).getY(), decoded.getCoordinates().getPoints().get(i).getY(), 0.05);
+        }
+        assertEquals(-12.5, decoded.getCoordinates().getStart().getX(), 0.05);
+        assertEquals(190.1, decoded.getCoordinates().getEnd().getY(), 0.05);
+    }
+
+    @Test
+    public void testBinaryIsMuchSmallerThanJson() throws Exception {
+        List<DrawingAction.Point> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(new DrawingAction.Point(300 + Math.sin(i / 10.0) * 80, 200 + i * 0.7));
+        }
+        WebSocketMessage draw = new WebSocketMessage();
+        draw.setType("DRAW");
+        draw.setUserId("user-1");
+        draw.setTool("pen");
+        draw.setColor("#000000");
+        draw.setCoordinates(new DrawingAction.Coordinates(points, null, null));
+
+        int jsonSize = new ObjectMapper().writeValueAsBytes(draw).length;
+        int binarySize = WhiteboardBinaryCodec.encode(draw).length;
+
+        assertTrue(binarySize * 5 < jsonSize, "binary=" + binarySize + " json=" + jsonSize);
+    }
+
+    @Test
+    public void testCursorsRoundTrip() {
+        WebSocketMessage cursors = new WebSocketMessage();
+        cursors.setType("CURSORS");
+        cursors.setTimestamp(42L);
+        cursors.setCursors(List.of(
+                new WebSocketMessage.CursorUpdate("a", "alice", 10.2, 20.7),
+                new WebSocketMessage.CursorUpdate("b", null, -5, 0)));
+
+        WebSocketMessage decoded = WhiteboardBinaryCodec.decode(ByteBuffer.wrap(WhiteboardBinaryCodec.encode(cursors)));
+
+        assertEquals(42L, decoded.getTimestamp());
+        assertEquals(2, decoded.getCursors().size());
+        assertEquals("alice", decoded.getCursors().get(0).getUsername());
+        assertEquals(20.7, decoded.getCursors().get(0).getY(), 0.05);
+        assertNull(decoded.getCursors().get(1).getUsername());
+        assertEquals(-5, decoded.getCursors().get(1).getX(), 0.05);
+    }
+
+    @Test
+    public void testStrokeAppendRoundTrip() {
+        WebSocketMessage append = new WebSocketMessage();
+        append.setType("STROKE_APPEND");
+        append.setActionId("stroke-1");
+        append.setCoordinates(new DrawingAction.Coordinates(
+                List.of(new DrawingAction.Point(1, 2), new DrawingAction.Point(3, 4)), null, null));
+
+        WebSocketMessage decoded = WhiteboardBinaryCodec.decode(ByteBuffer.wrap(WhiteboardBinaryCodec.encode(append)));
+
+        assertEquals("STROKE_APPEND", decoded.getType());
+        assertEquals("stroke-1", decoded.getActionId());
+        assertEquals(2, decoded.getCoordinates().getPoints().size());
+        assertEquals(4, decoded.getCoordinates().getPoints().get(1).getY(), 0.05);
+    }
+
+    @Test
+    public void testUndoRoundTrip() {
+        WebSocketMessage undo = new WebSocketMessage();
+        undo.setType("UNDO");
+        undo.setUserId("u1");
+        undo.setActionId("stroke-1");
+        undo.setSeq(42L);
+
+        byte[] frame = WhiteboardBinaryCodec.encode(undo);
+        WebSocketMessage decoded = WhiteboardBinaryCodec.decode(ByteBuffer.wrap(frame));
+
+        assertEquals("UNDO", decoded.getType());
+        assertEquals("u1", decoded.getUserId());
+        assertEquals("stroke-1", decoded.getActionId());
+        assertEquals(42L, decoded.getSeq());
+        assertNull(decoded.getCoordinates());
+        assertTrue(frame.length < 20);
+    }
+
+    @Test
+    public void testNonBinaryTypesFallBackToJson() {
+        WebSocketMessage chat = new WebSocketMessage();
+        chat.setType("CHAT_MESSAGE");
+        chat.setMessageContent("hello");
+
+        assertNull(WhiteboardBinaryCodec.encode(chat));
+    }
+
+    @Test
+    public void testMalformedFrameIsRejected() {
+        byte[] frame = WhiteboardBinaryCodec.encode(cursorMove());
+        byte[] truncated = new byte[frame.length - 2];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> WhiteboardBinaryCodec.decode(ByteBuffer.wrap(truncated)));
+        assertThrows(IllegalArgumentException.class, () -> WhiteboardBinaryCodec.decode(ByteBuffer.wrap(new byte[]{0x7F})));
+    }
+
+    private WebSocketMessage cursorMove() {
+        WebSocketMessage move = new WebSocketMessage();
+        move.setType("CURSOR_MOVE");
+        move.setUserId("user-1");
+        move.setPosition(new WebSocketMessage.CursorPosition(1000.25, 2000.75));
+        return move;
+    }
+}